@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench.index;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.io.file.PathUtils;
+import org.apache.lucene.util.IOUtils;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.core.CoreContainer;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequestBase;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.apache.solr.update.processor.UpdateRequestProcessorChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A benchmark of concurrent adds to a single core through the default update chain, i.e. the
+ * version assignment of {@code DistributedUpdateProcessor.versionAdd}, the per-id update locks and
+ * the update log, without the network and the parsing of the requests. Run it with different
+ * numbers of threads ({@code -t}) to see how the updates scale; "hot" ids make the threads contend
+ * on the same ids and optimistic concurrency looks up the current version of every id.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+@Warmup(time = 5, iterations = 3)
+@Measurement(time = 10, iterations = 5)
+@Fork(value = 1)
+public class ConcurrentVersionAdd {
+
+  @State(Scope.Benchmark)
+  public static class BenchState {
+
+    static final String CORE = "versionAdd";
+
+    /** "unique" ids are never updated again, "hot" ids are picked among {@link #hotIds}. */
+    @Param({"unique", "hot"})
+    String ids;
+
+    @Param("1000")
+    int hotIds;
+
+    /**
+     * Adds a {@code _version_} constraint on the id: must not exist if unique, must exist if hot
+     */
+    @Param({"false", "true"})
+    boolean optimistic;
+
+    private final AtomicLong nextId = new AtomicLong();
+    private Path solrHome;
+    private CoreContainer container;
+    private SolrCore core;
+    private UpdateRequestProcessorChain chain;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+      solrHome = Files.createTempDirectory("concurrent-version-add").toAbsolutePath();
+      PathUtils.copyDirectory(
+          Path.of("src/resources/configs/cloud-minimal/conf"),
+          solrHome.resolve("configsets").resolve("cloud-minimal").resolve("conf"));
+      PathUtils.copyFileToDirectory(Path.of("src/resources/solr.xml"), solrHome);
+
+      container = CoreContainer.createAndLoad(solrHome);
+      container.create(CORE, Map.of("configSet", "cloud-minimal"));
+      core = container.getCore(CORE);
+      chain = core.getUpdateProcessingChain(null);
+
+      if ("hot".equals(ids)) {
+        for (int i = 0; i < hotIds; i++) {
+          add(doc(Integer.toString(i), 0));
+        }
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+      if (core != null) {
+        core.close();
+      }
+      if (container != null) {
+        container.shutdown();
+      }
+      IOUtils.rm(solrHome);
+    }
+
+    SolrInputDocument nextDoc(SplittableRandom random) {
+      if ("hot".equals(ids)) {
+        return doc(Integer.toString(random.nextInt(hotIds)), optimistic ? 1 : 0);
+      }
+      return doc("u" + nextId.getAndIncrement(), optimistic ? -1 : 0);
+    }
+
+    private static SolrInputDocument doc(String id, long version) {
+      SolrInputDocument doc = new SolrInputDocument();
+      doc.addField("id", id);
+      doc.addField("text", "version add " + id);
+      if (version != 0) {
+        doc.addField("_version_", version);
+      }
+      return doc;
+    }
+
+    long add(SolrInputDocument doc) throws Exception {
+      SolrQueryRequest req = new SolrQueryRequestBase(core, new ModifiableSolrParams());
+      SolrQueryResponse rsp = new SolrQueryResponse();
+      SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+      try {
+        AddUpdateCommand cmd = new AddUpdateCommand(req);
+        cmd.solrDoc = doc;
+        UpdateRequestProcessor processor = chain.createProcessor(req, rsp);
+        try {
+          processor.processAdd(cmd);
+          processor.finish();
+        } finally {
+          processor.close();
+        }
+        return cmd.getVersion();
+      } finally {
+        SolrRequestInfo.clearRequestInfo();
+        req.close();
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    private final SplittableRandom random = new SplittableRandom();
+  }
+
+  @Benchmark
+  public long versionAdd(BenchState state, ThreadState threadState) throws Exception {
+    return state.add(state.nextDoc(threadState.random));
+  }
+}
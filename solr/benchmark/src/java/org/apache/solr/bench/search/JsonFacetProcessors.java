@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench.search;
+
+import static org.apache.solr.bench.Docs.docs;
+import static org.apache.solr.bench.generators.SourceDSL.integers;
+import static org.apache.solr.bench.generators.SourceDSL.strings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.bench.Docs;
+import org.apache.solr.bench.SolrBenchState;
+import org.apache.solr.bench.SolrRandomnessSource;
+import org.apache.solr.bench.generators.SolrGen;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the JSON facet processors and aggregations on a single core, across the cardinality
+ * and density of the faceted field. Unlike {@link JsonFaceting}, each benchmark runs a single facet
+ * so that the results can be used to pick a facet method for a field's data, and to catch
+ * regressions in the collection loops of the individual processors and accumulators.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Warmup(time = 5, iterations = 3)
+@Measurement(time = 10, iterations = 5)
+@Fork(value = 1)
+public class JsonFacetProcessors {
+
+  static final String COLLECTION = "c1";
+
+  /** The index, which is shared by all benchmarks with the same parameters. */
+  @State(Scope.Benchmark)
+  public static class BenchState {
+
+    @Param("200000")
+    int docCount;
+
+    /** The max number of unique values of the faceted fields */
+    @Param({"10", "1000", "100000"})
+    int facetCard;
+
+    /** The percentage of docs that have a value in the faceted fields */
+    @Param({"100", "20"})
+    int density;
+
+    String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setupTrial(SolrBenchState solrBenchState) throws Exception {
+      solrBenchState.startSolr(1);
+      solrBenchState.createCollection(COLLECTION, 1, 1);
+
+      Docs docs =
+          docs()
+              .field("id", integers().incrementing())
+              .field(
+                  "facet_s_dv",
+                  withDensity(
+                      strings()
+                          .basicLatinAlphabet()
+                          .maxCardinality(facetCard)
+                          .ofLengthBetween(1, 32)))
+              .field(
+                  "facet_ss",
+                  withDensity(
+                      multiValued(
+                          strings()
+                              .basicLatinAlphabet()
+                              .maxCardinality(facetCard)
+                              .ofLengthBetween(1, 32))))
+              .field("facet_i_dv", withDensity(integers().allWithMaxCardinality(facetCard)))
+              .field("range_i_dv", withDensity(integers().between(0, 999_999)))
+              .field("val_i_dv", integers().between(0, 9_999))
+              .field("fore_i_dv", integers().between(0, 9));
+
+      solrBenchState.index(COLLECTION, docs, docCount);
+      solrBenchState.forceMerge(COLLECTION, 10);
+      baseUrl = solrBenchState.nodes.get(0);
+    }
+
+    private <T> SolrGen<T> withDensity(SolrGen<T> gen) {
+      final int density = this.density;
+      return new SolrGen<>() {
+        @Override
+        public T generate(SolrRandomnessSource in) {
+          // null values are skipped when indexing
+          return in.next(0, 100) < density ? gen.generate(in) : null;
+        }
+      };
+    }
+
+    /** Generates lists of a few values */
+    private static SolrGen<List<String>> multiValued(SolrGen<String> gen) {
+      return new SolrGen<>() {
+        @Override
+        public List<String> generate(SolrRandomnessSource in) {
+          int numValues = (int) in.next(1, 4);
+          List<String> values = new ArrayList<>(numValues);
+          for (int i = 0; i < numValues; i++) {
+            values.add(gen.generate(in));
+          }
+          return values;
+        }
+      };
+    }
+
+    NamedList<Object> query(SolrBenchState solrBenchState, QueryRequest request) throws Exception {
+      return solrBenchState.client.requestWithBaseUrl(baseUrl, request, COLLECTION);
+    }
+  }
+
+  /**
+   * A terms facet on a field, counting only, with each of the facet processors. The processor
+   * depends on both the facet method and the field, see {@code FacetField.createFacetProcessor}, so
+   * each one is benchmarked on a field it is picked for.
+   */
+  @State(Scope.Benchmark)
+  public static class MethodState {
+
+    @Param({"ArrayDV", "HashDV_string", "HashDV_numeric", "ArrayUIF", "EnumTermsStream"})
+    String processor;
+
+    QueryRequest request;
+
+    @Setup(Level.Trial)
+    public void setupTrial(SolrBenchState solrBenchState, BenchState benchState) throws Exception {
+      final String facet;
+      switch (processor) {
+        case "ArrayDV":
+          facet = "field:facet_s_dv, method:dv";
+          break;
+        case "HashDV_string":
+          facet = "field:facet_s_dv, method:dvhash";
+          break;
+        case "HashDV_numeric":
+          // numeric fields always use the hash, whatever the method
+          facet = "field:facet_i_dv";
+          break;
+        case "ArrayUIF":
+          // multi-valued, without docValues
+          facet = "field:facet_ss, method:uif";
+          break;
+        case "EnumTermsStream":
+          // streams the terms of an indexed field in index order only
+          facet = "field:facet_s_dv, method:enum, sort:'index asc'";
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown processor: " + processor);
+      }
+      final String json = "{f:{type:terms, " + facet + ", limit:10}}";
+      request = new QueryRequest(facetParams(json));
+
+      // check that the processor being benchmarked is the one actually used
+      final ModifiableSolrParams debugParams = facetParams(json);
+      debugParams.set(CommonParams.DEBUG, "true");
+      final Object debug =
+          benchState.query(solrBenchState, new QueryRequest(debugParams)).get("debug");
+      final Object trace = debug instanceof NamedList<?> nl ? nl.get("facet-trace") : null;
+      if (!String.valueOf(trace).contains("FacetFieldProcessorBy" + processor.split("_")[0])) {
+        throw new IllegalStateException(
+            "Facet " + json + " not processed by " + processor + ": " + trace);
+      }
+    }
+  }
+
+  /** A terms facet sorted by each of the (more expensive) aggregations. */
+  @State(Scope.Benchmark)
+  public static class AggState {
+
+    @Param({"hll(val_i_dv)", "percentile(val_i_dv,50,90)", "unique(val_i_dv)", "relatedness"})
+    String agg;
+
+    QueryRequest request;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+      final String stat =
+          "relatedness".equals(agg) ? "'relatedness($fore,$back)'" : "'" + agg + "'";
+      final ModifiableSolrParams params =
+          facetParams(
+              "{f:{type:terms, field:facet_s_dv, limit:10, sort:'x desc', facet:{x:"
+                  + stat
+                  + "}}}");
+      params.set("fore", "fore_i_dv:[0 TO 2]");
+      params.set("back", "*:*");
+      request = new QueryRequest(params);
+    }
+  }
+
+  static ModifiableSolrParams facetParams(String facet) {
+    return SolrBenchState.params("q", "*:*", "rows", "0", "json.facet", facet);
+  }
+
+  static final QueryRequest RANGE_REQUEST =
+      new QueryRequest(
+          facetParams(
+              "{r:{type:range, field:range_i_dv, start:0, end:1000000, gap:10000,"
+                  + " other:all, facet:{x:'sum(val_i_dv)'}}}"));
+
+  @Benchmark
+  public Object termsFacet(
+      SolrBenchState solrBenchState, BenchState benchState, MethodState methodState)
+      throws Exception {
+    return benchState.query(solrBenchState, methodState.request);
+  }
+
+  @Benchmark
+  public Object termsFacetSortedByAgg(
+      SolrBenchState solrBenchState, BenchState benchState, AggState aggState) throws Exception {
+    return benchState.query(solrBenchState, aggState.request);
+  }
+
+  @Benchmark
+  public Object rangeFacet(SolrBenchState solrBenchState, BenchState benchState) throws Exception {
+    return benchState.query(solrBenchState, RANGE_REQUEST);
+  }
+}
@@ -299,12 +299,18 @@ public class SolrConfig implements MapSerializable {
 
       filterCacheConfig =
           CacheConfig.getConfig(this, get("query").get("filterCache"), "query/filterCache");
+      segmentFilterCacheConfig =
+          CacheConfig.getConfig(
+              this, get("query").get("segmentFilterCache"), "query/segmentFilterCache");
       queryResultCacheConfig =
           CacheConfig.getConfig(
               this, get("query").get("queryResultCache"), "query/queryResultCache");
       featureVectorCacheConfig =
           CacheConfig.getConfig(
               this, get("query").get("featureVectorCache"), "query/featureVectorCache");
+      cursorMarkCacheConfig =
+          CacheConfig.getConfig(this, get("query").get("cursorMarkCache"), "query/cursorMarkCache");
+      cursorMarkWindowSize = Math.max(1, get("query").get("cursorMarkWindowSize").intVal(1000));
       documentCacheConfig =
           CacheConfig.getConfig(this, get("query").get("documentCache"), "query/documentCache");
       CacheConfig conf =
@@ -331,6 +337,8 @@ public class SolrConfig implements MapSerializable {
       httpCachingConfig = new HttpCachingConfig(this);
 
       maxWarmingSearchers = get("query").get("maxWarmingSearchers").intVal(1);
+      cancelSupersededWarming = get("query").get("cancelSupersededWarming").boolVal(false);
+      autowarmThreads = get("query").get("autowarmThreads").intVal(1);
       slowQueryThresholdMillis = get("query").get("slowQueryThresholdMillis").intVal(-1);
       for (SolrPluginInfo plugin : plugins) loadPluginInfo(plugin);
 
@@ -655,15 +663,18 @@ public class SolrConfig implements MapSerializable {
   //  public final float filtOptThreshold;
   // SolrIndexSearcher - caches configurations
   public final CacheConfig filterCacheConfig;
+  public final CacheConfig segmentFilterCacheConfig;
   public final CacheConfig queryResultCacheConfig;
   public final CacheConfig documentCacheConfig;
   public final CacheConfig fieldValueCacheConfig;
   public final CacheConfig featureVectorCacheConfig;
+  public final CacheConfig cursorMarkCacheConfig;
   public final Map<String, CacheConfig> userCacheConfigs;
   // SolrIndexSearcher - more...
   public final boolean useFilterForSortedQuery;
   public final int queryResultWindowSize;
   public final int queryResultMaxDocsCached;
+  public final int cursorMarkWindowSize;
   public final boolean enableLazyFieldLoading;
 
   // IndexConfig settings
@@ -674,6 +685,10 @@ public class SolrConfig implements MapSerializable {
   private Map<String, List<PluginInfo>> pluginStore = new LinkedHashMap<>();
 
   public final int maxWarmingSearchers;
+  // stop autowarming searchers that a newer searcher was opened after
+  public final boolean cancelSupersededWarming;
+  // number of threads to autowarm the caches of a searcher concurrently with
+  public final int autowarmThreads;
   public final boolean useColdSearcher;
   public final Version luceneMatchVersion;
   protected String dataDir;
@@ -962,6 +977,7 @@ public class SolrConfig implements MapSerializable {
     m.put("useFilterForSortedQuery", useFilterForSortedQuery);
     m.put("queryResultWindowSize", queryResultWindowSize);
     m.put("queryResultMaxDocsCached", queryResultMaxDocsCached);
+    m.put("cursorMarkWindowSize", cursorMarkWindowSize);
     m.put("enableLazyFieldLoading", enableLazyFieldLoading);
     m.put("maxBooleanClauses", booleanQueryMaxClauseCount);
     m.put(MIN_PREFIX_QUERY_TERM_LENGTH, prefixQueryMinPrefixLength);
@@ -997,10 +1013,12 @@ public class SolrConfig implements MapSerializable {
     addCacheConfig(
         m,
         filterCacheConfig,
+        segmentFilterCacheConfig,
         queryResultCacheConfig,
         documentCacheConfig,
         fieldValueCacheConfig,
-        featureVectorCacheConfig);
+        featureVectorCacheConfig,
+        cursorMarkCacheConfig);
     m = new LinkedHashMap<>();
     result.put("requestDispatcher", m);
     if (httpCachingConfig != null) m.put("httpCaching", httpCachingConfig);
@@ -136,7 +136,11 @@ import org.apache.solr.schema.FieldType;
 import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.schema.ManagedIndexSchema;
 import org.apache.solr.schema.SimilarityFactory;
+import org.apache.solr.search.CaffeineCache;
+import org.apache.solr.search.DocSet;
 import org.apache.solr.search.QParserPlugin;
+import org.apache.solr.search.SegmentFilterCache;
+import org.apache.solr.search.SolrCache;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.ValueSourceParser;
 import org.apache.solr.search.stats.LocalStatsCache;
@@ -238,6 +242,7 @@ public class SolrCore implements SolrInfoBean, Closeable {
   // singleton listener for all packages used in schema
 
   private final CircuitBreakerRegistry circuitBreakerRegistry;
+  private final SegmentFilterCache segmentFilterCache;
 
   private final List<Runnable> confListeners = new CopyOnWriteArrayList<>();
 
@@ -253,6 +258,7 @@ public class SolrCore implements SolrInfoBean, Closeable {
   private AttributedLongCounter newSearcherOtherErrorsCounter;
   private AttributedLongTimer newSearcherTimer;
   private AttributedLongTimer newSearcherWarmupTimer;
+  private AttributedLongCounter newSearcherWarmupCancelledCounter;
 
   private final String metricTag = SolrMetricProducer.getUniqueMetricTag(this, null);
   private final SolrMetricsContext solrMetricsContext;
@@ -1122,6 +1128,11 @@ public class SolrCore implements SolrInfoBean, Closeable {
       initPlugins(null, CircuitBreaker.class);
 
       this.maxWarmingSearchers = solrConfig.maxWarmingSearchers;
+      this.autowarmExecutor =
+          solrConfig.autowarmThreads > 1
+              ? ExecutorUtil.newMDCAwareFixedThreadPool(
+                  solrConfig.autowarmThreads, new SolrNamedThreadFactory("autowarmExecutor"))
+              : null;
       this.slowQueryThresholdMillis = solrConfig.slowQueryThresholdMillis;
 
       initListeners();
@@ -1130,6 +1141,7 @@ public class SolrCore implements SolrInfoBean, Closeable {
       this.solrDelPolicy = initDeletionPolicy(delPolicy);
 
       this.codec = initCodec(solrConfig, this.schema);
+      this.segmentFilterCache = initSegmentFilterCache();
       initIndex(prev != null, reload);
 
       initWriters();
@@ -1353,6 +1365,41 @@ public class SolrCore implements SolrInfoBean, Closeable {
                 OtelUnit.MILLISECONDS),
             baseSearcherAttributes);
 
+    newSearcherWarmupCancelledCounter =
+        new AttributedLongCounter(
+            parentContext.longCounter(
+                "solr.core.searcher.warming_cancelled",
+                "Total number of searcher warmups cancelled because a newer searcher was opened"),
+            baseSearcherAttributes);
+
+    parentContext.observableLongGauge(
+        "solr.core.indexsearcher.open.warmup.entries",
+        "Number of cache entries to autowarm (total) and autowarmed so far (warmed) by the searchers that are warming",
+        (observableLongMeasurement -> {
+          final Map<String, long[]> entriesByCache = new HashMap<>();
+          synchronized (searcherLock) {
+            for (SolrIndexSearcher searcher : warmingSearchers) {
+              for (SolrCache<?, ?> cache : searcher.getCaches()) {
+                if (cache instanceof CaffeineCache<?, ?> caffeineCache) {
+                  final long[] entries =
+                      entriesByCache.computeIfAbsent(cache.name(), k -> new long[2]);
+                  entries[0] += caffeineCache.getWarmupEntries();
+                  entries[1] += caffeineCache.getWarmedEntries();
+                }
+              }
+            }
+          }
+          entriesByCache.forEach(
+              (name, entries) -> {
+                final Attributes cacheAttributes =
+                    baseSearcherAttributes.toBuilder().put(NAME_ATTR, name).build();
+                observableLongMeasurement.record(
+                    entries[0], cacheAttributes.toBuilder().put(STATE_KEY_ATTR, "total").build());
+                observableLongMeasurement.record(
+                    entries[1], cacheAttributes.toBuilder().put(STATE_KEY_ATTR, "warmed").build());
+              });
+        }));
+
     parentContext.observableLongGauge(
         "solr.core.ref_count",
         "The current number of active references to a Solr core",
@@ -1724,6 +1771,35 @@ public class SolrCore implements SolrInfoBean, Closeable {
     return circuitBreakerRegistry;
   }
 
+  /**
+   * Returns the per-segment filter cache shared by the searchers of this core, or null if none is
+   * configured.
+   */
+  public SegmentFilterCache getSegmentFilterCache() {
+    return segmentFilterCache;
+  }
+
+  private SegmentFilterCache initSegmentFilterCache() {
+    if (solrConfig.segmentFilterCacheConfig == null) {
+      return null;
+    }
+    @SuppressWarnings("unchecked")
+    SolrCache<SegmentFilterCache.Key, DocSet> cache =
+        solrConfig.segmentFilterCacheConfig.newInstance();
+    if (cache == null) {
+      return null;
+    }
+    cache.setState(SolrCache.State.LIVE);
+    if (cache instanceof CaffeineCache<?, ?> caffeineCache) {
+      caffeineCache.initializeMetrics(
+          solrMetricsContext,
+          coreAttributes.toBuilder().put(NAME_ATTR, cache.name()).build(),
+          "solr.core.indexsearcher.cache");
+    }
+    infoRegistry.put(cache.name(), cache);
+    return new SegmentFilterCache(cache);
+  }
+
   // this core current usage count
   private final AtomicInteger refCount = new AtomicInteger(1);
 
@@ -1856,6 +1932,17 @@ public class SolrCore implements SolrInfoBean, Closeable {
     }
     assert ObjectReleaseTracker.release(searcherExecutor);
 
+    if (autowarmExecutor != null) {
+      try {
+        ExecutorUtil.shutdownAndAwaitTermination(autowarmExecutor);
+      } catch (Throwable e) {
+        log.error("Exception shutting down autowarmExecutor", e);
+        if (e instanceof Error) {
+          throw (Error) e;
+        }
+      }
+    }
+
     try {
       // Since we waited for the searcherExecutor to shut down,
       // there should be no more searchers warming in the background
@@ -1872,6 +1959,17 @@ public class SolrCore implements SolrInfoBean, Closeable {
       }
     }
 
+    if (segmentFilterCache != null) {
+      try {
+        segmentFilterCache.close();
+      } catch (Throwable e) {
+        log.error("Exception closing segmentFilterCache", e);
+        if (e instanceof Error) {
+          throw (Error) e;
+        }
+      }
+    }
+
     if (coreStateClosed) {
       try {
         cleanupOldIndexDirectories(false);
@@ -2098,7 +2196,11 @@ public class SolrCore implements SolrInfoBean, Closeable {
   final ExecutorService searcherExecutor =
       ExecutorUtil.newMDCAwareSingleLazyThreadExecutor(
           new SolrNamedThreadFactory("searcherExecutor"), 60L, TimeUnit.SECONDS);
+  // Bounded pool to autowarm the caches of a searcher concurrently, or null to warm them in order
+  private final ExecutorService autowarmExecutor;
   private int onDeckSearchers; // number of searchers preparing
+  // searchers that are autowarming, guarded by searcherLock
+  private final List<SolrIndexSearcher> warmingSearchers = new ArrayList<>();
   // Lock ordering: one can acquire the openSearcherLock and then the searcherLock, but not
   // vice-versa.
   private final Object searcherLock = new Object(); // the sync object for the searcher
@@ -2586,6 +2688,10 @@ public class SolrCore implements SolrInfoBean, Closeable {
         } else if (onDeckSearchers > maxWarmingSearchers) {
           onDeckSearchers--;
           newSearcherMaxReachedCounter.inc();
+          if (solrConfig.cancelSupersededWarming) {
+            // the searcher we are about to open supersedes them, so don't wait for their warming
+            cancelWarmingSearchers();
+          }
           try {
             searcherLock.wait();
           } catch (InterruptedException e) {
@@ -2647,12 +2753,20 @@ public class SolrCore implements SolrInfoBean, Closeable {
         // warm the new searcher based on the current searcher.
         // should this go before the other event handlers or after?
         if (currSearcher != null) {
+          synchronized (searcherLock) {
+            if (solrConfig.cancelSupersededWarming) {
+              // any searcher still warming will be replaced by this one shortly after it's
+              // registered, so stop spending time on its caches
+              cancelWarmingSearchers();
+            }
+            warmingSearchers.add(newSearcher);
+          }
           future =
               searcherExecutor.submit(
                   () -> {
                     AttributedLongTimer.MetricTimer warmupContext = newSearcherWarmupTimer.start();
                     try {
-                      newSearcher.warm(currSearcher);
+                      newSearcher.warm(currSearcher, autowarmExecutor);
                     } catch (Throwable e) {
                       log.error("Exception warming new searcher", e);
                       if (e instanceof Error) {
@@ -2660,6 +2774,9 @@ public class SolrCore implements SolrInfoBean, Closeable {
                       }
                     } finally {
                       warmupContext.stop();
+                      synchronized (searcherLock) {
+                        warmingSearchers.remove(newSearcher);
+                      }
                     }
                     return null;
                   });
@@ -2748,6 +2865,9 @@ public class SolrCore implements SolrInfoBean, Closeable {
         newSearcherOtherErrorsCounter.inc();
         synchronized (searcherLock) {
           onDeckSearchers--;
+          if (searchHolder != null) {
+            warmingSearchers.remove(searchHolder.get());
+          }
 
           if (onDeckSearchers < 0) {
             // sanity check... should never happen
@@ -2779,6 +2899,17 @@ public class SolrCore implements SolrInfoBean, Closeable {
     }
   }
 
+  // must be called while holding searcherLock
+  private void cancelWarmingSearchers() {
+    for (SolrIndexSearcher searcher : warmingSearchers) {
+      if (!searcher.isWarmingCancelled()) {
+        log.info("Cancelling autowarming of superseded searcher {}", searcher);
+        searcher.cancelWarming();
+        newSearcherWarmupCancelledCounter.inc();
+      }
+    }
+  }
+
   private RefCounted<SolrIndexSearcher> newHolder(
       SolrIndexSearcher newSearcher, final ArrayDeque<RefCounted<SolrIndexSearcher>> searcherList) {
     RefCounted<SolrIndexSearcher> holder =
@@ -42,6 +42,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Array;
@@ -57,6 +58,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -65,11 +67,16 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 import java.util.zip.Adler32;
@@ -86,6 +93,7 @@ import org.apache.lucene.store.FilterDirectory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RateLimiter;
 import org.apache.solr.client.api.model.FileMetaData;
 import org.apache.solr.client.solrj.SolrRequest;
 import org.apache.solr.client.solrj.SolrServerException;
@@ -98,10 +106,13 @@ import org.apache.solr.cloud.ZkController;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrException.ErrorCode;
 import org.apache.solr.common.cloud.ClusterState;
+import org.apache.solr.common.cloud.DocCollection;
 import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.EnvUtils;
 import org.apache.solr.common.util.ExecutorUtil;
 import org.apache.solr.common.util.FastInputStream;
 import org.apache.solr.common.util.IOUtils;
@@ -165,6 +176,9 @@ public class IndexFetcher {
 
   private volatile DirectoryFileFetcher dirFileFetcher;
 
+  /** The index files being downloaded, by name; several of them if {@link #fetchThreads} > 1 */
+  private final Map<String, DirectoryFileFetcher> filesInProgress = new ConcurrentHashMap<>();
+
   private volatile LocalFsFileFetcher localFileFetcher;
 
   private volatile ExecutorService fsyncService;
@@ -183,6 +197,20 @@ public class IndexFetcher {
 
   private boolean skipCommitOnLeaderVersionZero = true;
 
+  /** The number of index files downloaded concurrently */
+  private int fetchThreads;
+
+  /** The maximum download rate, shared by the concurrent downloads, or 0 if unlimited */
+  private double maxFetchMBPerSec;
+
+  /** Whether to download index files from other replicas than the leader, in SolrCloud */
+  private boolean fetchFromPeers;
+
+  /** The other replicas each index file can be downloaded from, by file name */
+  private volatile Map<String, List<FileSource>> peerSources = Map.of();
+
+  private final AtomicInteger nextSource = new AtomicInteger();
+
   private static final String INTERRUPT_RESPONSE_MESSAGE =
       "Interrupted while waiting for modify lock";
 
@@ -283,6 +311,25 @@ public class IndexFetcher {
     useInternalCompression = ReplicationHandler.INTERNAL.equals(compress);
     useExternalCompression = ReplicationHandler.EXTERNAL.equals(compress);
     soTimeout = getParameter(initArgs, SolrHttpConstants.PROP_SO_TIMEOUT, 120000, null);
+    // may be strings when the args are the params of a fetchindex request
+    Object fetchThreads = initArgs.get(ReplicationHandler.FETCH_THREADS);
+    this.fetchThreads =
+        Math.max(
+            1,
+            fetchThreads == null
+                ? EnvUtils.getPropertyAsInteger("solr.index.replication.fetchThreads", 1)
+                : Integer.parseInt(fetchThreads.toString()));
+    Object maxFetchMBPerSec = initArgs.get(ReplicationHandler.MAX_FETCH_PER_SECOND);
+    this.maxFetchMBPerSec =
+        maxFetchMBPerSec == null
+            ? Double.parseDouble(
+                EnvUtils.getProperty("solr.index.replication.maxFetchMBPerSec", "0"))
+            : Double.parseDouble(maxFetchMBPerSec.toString());
+    Object fetchFromPeers = initArgs.get(ReplicationHandler.FETCH_FROM_PEERS);
+    this.fetchFromPeers =
+        fetchFromPeers == null
+            ? EnvUtils.getPropertyAsBool("solr.index.replication.fetchFromPeers", false)
+            : Boolean.parseBoolean(fetchFromPeers.toString());
 
     String httpBasicAuthUser = (String) initArgs.get(SolrHttpConstants.PROP_BASIC_AUTH_USER);
     String httpBasicAuthPassword = (String) initArgs.get(SolrHttpConstants.PROP_BASIC_AUTH_PASS);
@@ -564,6 +611,9 @@ public class IndexFetcher {
       if (log.isInfoEnabled()) {
         log.info("Number of files in latest index in leader: {}", filesToDownload.size());
       }
+      if (fetchFromPeers && solrCore.getCoreContainer().isZooKeeperAware()) {
+        peerSources = findPeerSources();
+      }
 
       // Create the sync service
       fsyncService =
@@ -813,6 +863,7 @@ public class IndexFetcher {
       markReplicationStop();
       dirFileFetcher = null;
       localFileFetcher = null;
+      peerSources = Map.of();
       if (fsyncService != null && !ExecutorUtil.isShutdown(fsyncService)) fsyncService.shutdown();
       fsyncService = null;
       stop = false;
@@ -969,12 +1020,9 @@ public class IndexFetcher {
       bytesDownloaded += (Long) file.get(SIZE);
     }
 
-    // get size from current file being downloaded
-    Map<String, Object> currentFile = getCurrentFile();
-    if (currentFile != null) {
-      if (currentFile.containsKey("bytesDownloaded")) {
-        bytesDownloaded += (Long) currentFile.get("bytesDownloaded");
-      }
+    // get size from the files being downloaded
+    for (Map<String, Object> file : getFilesInProgress()) {
+      bytesDownloaded += (Long) file.get("bytesDownloaded");
     }
     return bytesDownloaded;
   }
@@ -1123,6 +1171,7 @@ public class IndexFetcher {
           FilterDirectory.unwrap(tmpIndexDir));
     }
 
+    List<Map<String, Object>> filesToFetch = new ArrayList<>();
     for (Map<String, Object> file : filesToDownload) {
       String filename = (String) file.get(NAME);
       long size = (Long) file.get(SIZE);
@@ -1154,21 +1203,17 @@ public class IndexFetcher {
           // efficient as compared to a file copy. TODO: Maybe we could do a move safely here?
           Files.createLink(Path.of(tmpIndexDirPath, filename), localFile);
           bytesSkippedCopying += Files.size(localFile);
+          filesDownloaded.add(new HashMap<>(file));
         } else {
-          dirFileFetcher =
-              new DirectoryFileFetcher(
-                  tmpIndexDir, file, (String) file.get(NAME), FILE, latestGeneration);
-          currentFile = file;
-          dirFileFetcher.fetchFile();
-          bytesDownloaded += dirFileFetcher.getBytesDownloaded();
+          filesToFetch.add(file);
         }
-        filesDownloaded.add(new HashMap<>(file));
       } else {
         if (log.isDebugEnabled()) {
           log.debug("Skipping download for {} because it already exists", file.get(NAME));
         }
       }
     }
+    bytesDownloaded += fetchIndexFiles(tmpIndexDir, filesToFetch, latestGeneration);
     log.info(
         "Bytes downloaded: {}, Bytes skipped downloading: {}",
         bytesDownloaded,
@@ -1176,10 +1221,209 @@ public class IndexFetcher {
     return bytesDownloaded;
   }
 
+  /**
+   * Downloads the given index files, concurrently if {@link #fetchThreads} &gt; 1, largest files
+   * first so that a large file does not end up being downloaded alone.
+   *
+   * @return the number of bytes downloaded
+   */
+  private long fetchIndexFiles(
+      Directory tmpIndexDir, List<Map<String, Object>> files, long latestGeneration)
+      throws Exception {
+    long bytesDownloaded = 0;
+    if (fetchThreads == 1 || files.size() < 2) {
+      for (Map<String, Object> file : files) {
+        bytesDownloaded += fetchIndexFile(tmpIndexDir, file, latestGeneration);
+      }
+      return bytesDownloaded;
+    }
+
+    files = new ArrayList<>(files);
+    files.sort(
+        Comparator.comparingLong((Map<String, Object> file) -> (Long) file.get(SIZE)).reversed());
+    ExecutorService executor =
+        ExecutorUtil.newMDCAwareFixedThreadPool(
+            Math.min(fetchThreads, files.size()), new SolrNamedThreadFactory("indexFetcher"));
+    try {
+      CompletionService<Long> completionService = new ExecutorCompletionService<>(executor);
+      for (Map<String, Object> file : files) {
+        completionService.submit(
+            () -> {
+              try {
+                return fetchIndexFile(tmpIndexDir, file, latestGeneration);
+              } catch (Exception | Error e) {
+                // have the other downloads abort right away, their files are discarded with the
+                // temp index dir
+                stop = true;
+                throw e;
+              }
+            });
+      }
+      // in completion order, so that the first failure is rethrown without waiting for the others
+      for (int i = 0; i < files.size(); i++) {
+        try {
+          bytesDownloaded += completionService.take().get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception cause) {
+            throw cause;
+          }
+          throw new SolrException(ErrorCode.SERVER_ERROR, e.getCause());
+        }
+      }
+      return bytesDownloaded;
+    } finally {
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+    }
+  }
+
+  private long fetchIndexFile(
+      Directory tmpIndexDir, Map<String, Object> file, long latestGeneration) throws Exception {
+    String name = (String) file.get(NAME);
+    FileSource leader = leaderSource(latestGeneration);
+    FileSource source = pickSource(name, leader);
+    DirectoryFileFetcher fetcher;
+    try {
+      fetcher = fetchIndexFile(tmpIndexDir, file, source);
+    } catch (ReplicationHandlerException e) {
+      throw e;
+    } catch (Exception e) {
+      if (source.equals(leader)) {
+        throw e;
+      }
+      // e.g. the replica released its commit point, the leader always has the file
+      log.warn("Error fetching file: {} from {}, fetching it from the leader", name, source, e);
+      fetcher = fetchIndexFile(tmpIndexDir, file, leader);
+    }
+    filesDownloaded.add(new HashMap<>(file));
+    return fetcher.getBytesDownloaded();
+  }
+
+  private DirectoryFileFetcher fetchIndexFile(
+      Directory tmpIndexDir, Map<String, Object> file, FileSource source) throws Exception {
+    String name = (String) file.get(NAME);
+    DirectoryFileFetcher fetcher = new DirectoryFileFetcher(tmpIndexDir, file, name, FILE, source);
+    filesInProgress.put(name, fetcher);
+    dirFileFetcher = fetcher;
+    currentFile = file;
+    try {
+      fetcher.fetchFile();
+    } finally {
+      filesInProgress.remove(name);
+    }
+    return fetcher;
+  }
+
+  /**
+   * Returns where to download the given index file from: the leader, or any of the other active
+   * replicas which have an identical copy of the file, in turn, to spread the load across the
+   * shard.
+   */
+  private FileSource pickSource(String fileName, FileSource leader) {
+    List<FileSource> peers = peerSources.getOrDefault(fileName, List.of());
+    if (peers.isEmpty()) {
+      return leader;
+    }
+    int i = Math.floorMod(nextSource.getAndIncrement(), peers.size() + 1);
+    return i == peers.size() ? leader : peers.get(i);
+  }
+
+  private FileSource leaderSource(long generation) {
+    return new FileSource(leaderBaseUrl, leaderCoreName, generation);
+  }
+
+  /**
+   * Finds the index files which can be downloaded from other active replicas of the shard than the
+   * leader: the files of their latest commit point with the same name, size and checksum as in the
+   * leader's list of files to download.
+   *
+   * @return the replicas each file can be downloaded from, by file name
+   */
+  @SuppressWarnings({"unchecked"})
+  private Map<String, List<FileSource>> findPeerSources() {
+    CloudDescriptor cd = solrCore.getCoreDescriptor().getCloudDescriptor();
+    ClusterState clusterState = solrCore.getCoreContainer().getZkController().getClusterState();
+    DocCollection collection = clusterState.getCollectionOrNull(cd.getCollectionName());
+    Slice slice = collection == null ? null : collection.getSlice(cd.getShardId());
+    if (slice == null) {
+      return Map.of();
+    }
+
+    Map<String, Map<String, Object>> leaderFiles = new HashMap<>();
+    for (Map<String, Object> file : getFilesToDownload()) {
+      if (file.get(CHECKSUM) != null) {
+        leaderFiles.put((String) file.get(NAME), file);
+      }
+    }
+    Map<String, List<FileSource>> sources = new HashMap<>();
+    for (Replica replica : slice.getReplicas()) {
+      if (replica.getName().equals(cd.getCoreNodeName())
+          || replica.getCoreUrl().equals(leaderCoreUrl)
+          || replica.getState() != Replica.State.ACTIVE
+          || !clusterState.liveNodesContain(replica.getNodeName())) {
+        continue;
+      }
+      try {
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(COMMAND, CMD_INDEX_VERSION);
+        params.set(CommonParams.WT, JAVABIN);
+        NamedList<?> response =
+            solrClient.requestWithBaseUrl(
+                replica.getBaseUrl(),
+                createReplicationHandlerRequest(params),
+                replica.getCoreName());
+        long generation = (Long) response.get(GENERATION);
+        if (generation == 0L) {
+          continue;
+        }
+
+        params = new ModifiableSolrParams();
+        params.set(COMMAND, CMD_GET_FILE_LIST);
+        params.set(GENERATION, String.valueOf(generation));
+        params.set(CommonParams.WT, JAVABIN);
+        response =
+            solrClient.requestWithBaseUrl(
+                replica.getBaseUrl(),
+                createReplicationHandlerRequest(params),
+                replica.getCoreName());
+        List<Map<String, Object>> files =
+            (List<Map<String, Object>>) response.get(CMD_GET_FILE_LIST);
+        if (files == null) {
+          continue;
+        }
+        FileSource source = new FileSource(replica.getBaseUrl(), replica.getCoreName(), generation);
+        for (Map<String, Object> file : files) {
+          Map<String, Object> leaderFile = leaderFiles.get((String) file.get(NAME));
+          if (leaderFile != null
+              && leaderFile.get(SIZE).equals(file.get(SIZE))
+              && leaderFile.get(CHECKSUM).equals(file.get(CHECKSUM))) {
+            sources.computeIfAbsent((String) file.get(NAME), k -> new ArrayList<>()).add(source);
+          }
+        }
+      } catch (Exception e) {
+        log.warn("Could not list the index files of replica: {}", replica.getCoreUrl(), e);
+      }
+    }
+    if (log.isInfoEnabled()) {
+      log.info(
+          "{} of the files to download are also available from other replicas", sources.size());
+    }
+    return sources;
+  }
+
+  /**
+   * A node serving index files: the leader, or another replica with identical copies of some of
+   * them.
+   */
+  record FileSource(String baseUrl, String coreName, long generation) {}
+
   // only for testing purposes. do not use this anywhere else
   // -----------START----------------------
   static BooleanSupplier testWait = () -> true;
 
+  // called before each request for the content of a file, with where from; throwing fails the
+  // request
+  static volatile BiConsumer<String, FileSource> testGetFileStream = (name, source) -> {};
+
   // ------------ END---------------------
 
   static boolean filesToAlwaysDownloadIfNoChecksums(
@@ -1511,6 +1755,20 @@ public class IndexFetcher {
     return tmp == null ? List.of() : new ArrayList<>(tmp);
   }
 
+  /** Returns the index files being downloaded, with the number of bytes downloaded so far. */
+  List<Map<String, Object>> getFilesInProgress() {
+    List<Map<String, Object>> files = new ArrayList<>();
+    for (DirectoryFileFetcher fetcher : filesInProgress.values()) {
+      Map<String, Object> file = new HashMap<>();
+      file.put(NAME, fetcher.getFileName());
+      file.put(SIZE, fetcher.getSize());
+      file.put("bytesDownloaded", fetcher.getBytesDownloaded());
+      file.put("source", fetcher.getSource().baseUrl() + "/" + fetcher.getSource().coreName());
+      files.add(file);
+    }
+    return files;
+  }
+
   // TODO: currently does not reflect conf files
   Map<String, Object> getCurrentFile() {
     Map<String, Object> tmp = currentFile;
@@ -1549,12 +1807,16 @@ public class IndexFetcher {
     private final String fileName;
     private final String saveAs;
     private final String solrParamOutput;
-    private final Long indexGen;
+    private final FileSource source;
+    // a failed download from a peer is not retried, it falls back to the leader right away
+    private final boolean retry;
 
     private final long size;
-    private long bytesDownloaded = 0;
+    private volatile long bytesDownloaded = 0;
     private byte[] buf;
     private final Checksum checksum;
+    private final RateLimiter rateLimiter;
+    private long bytesSincePause = 0;
     private int errorCount = 0;
     private boolean aborted = false;
 
@@ -1563,19 +1825,38 @@ public class IndexFetcher {
         Map<String, Object> fileDetails,
         String saveAs,
         String solrParamOutput,
-        long latestGen) {
+        FileSource source) {
       this.file = file;
       this.fileName = (String) fileDetails.get(NAME);
       this.size = (Long) fileDetails.get(SIZE);
       buf = new byte[(int) Math.min(this.size, ReplicationAPIBase.PACKET_SZ)];
       this.solrParamOutput = solrParamOutput;
       this.saveAs = saveAs;
-      indexGen = latestGen;
+      this.source = source;
+      this.retry =
+          source.baseUrl().equals(leaderBaseUrl) && source.coreName().equals(leaderCoreName);
       if (includeChecksum) {
         checksum = new Adler32();
       } else {
         checksum = null;
       }
+      // the concurrent downloads share the maximum rate
+      rateLimiter =
+          maxFetchMBPerSec > 0
+              ? new RateLimiter.SimpleRateLimiter(maxFetchMBPerSec / fetchThreads)
+              : null;
+    }
+
+    public String getFileName() {
+      return fileName;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public FileSource getSource() {
+      return source;
     }
 
     public long getBytesDownloaded() {
@@ -1588,7 +1869,7 @@ public class IndexFetcher {
       try {
         fetch();
       } catch (Exception e) {
-        if (!aborted) {
+        if (!aborted && retry) {
           IndexFetcher.log.error("Error fetching file, doing one retry...", e);
           // one retry
           fetch();
@@ -1601,7 +1882,27 @@ public class IndexFetcher {
     private void fetch() throws Exception {
       try {
         while (true) {
-          try (FastInputStream fis = getStream()) {
+          checkAborted();
+          FastInputStream stream;
+          try {
+            stream = getStream();
+          } catch (IOException e) {
+            // no response, e.g. the leader is restarting, resume from where it got broken. A
+            // response with an error status is not retried, see getStream
+            if (!retry || ++errorCount > MAX_RETRIES) {
+              throw e;
+            }
+            log.warn(
+                "Error connecting to fetch file: {} (downloaded {} of {} bytes), retrying",
+                fileName,
+                bytesDownloaded,
+                size,
+                e);
+            checkAborted();
+            Thread.sleep(500L * errorCount);
+            continue;
+          }
+          try (FastInputStream fis = stream) {
             int result;
             // fetch packets one by one in a single request
             result = fetchPackets(fis);
@@ -1637,11 +1938,7 @@ public class IndexFetcher {
             }
             return 0;
           }
-          if (stop) {
-            stop = false;
-            aborted = true;
-            throw new ReplicationHandlerException("User aborted replication");
-          }
+          checkAborted();
           long checkSumServer = -1;
 
           fis.readFully(intbytes);
@@ -1679,9 +1976,17 @@ public class IndexFetcher {
           // if everything is fine, write down the packet to the file
           file.write(buf, packetSize);
           bytesDownloaded += packetSize;
+          if (rateLimiter != null) {
+            bytesSincePause += packetSize;
+            if (bytesSincePause >= rateLimiter.getMinPauseCheckBytes()) {
+              rateLimiter.pause(bytesSincePause);
+              bytesSincePause = 0;
+            }
+          }
           log.debug("Fetched and wrote {} bytes of file: {}", bytesDownloaded, fileName);
           // errorCount is always set to zero after a successful packet
           errorCount = 0;
+          assert TestInjection.injectBreakIndexFetchStream(bytesDownloaded, size);
         }
       } catch (ReplicationHandlerException e) {
         throw e;
@@ -1692,6 +1997,20 @@ public class IndexFetcher {
             bytesDownloaded,
             size,
             e);
+        if (!retry) {
+          throw new SolrException(
+              SolrException.ErrorCode.SERVER_ERROR,
+              "Failed to fetch file: "
+                  + fileName
+                  + " from "
+                  + source.coreName()
+                  + " (downloaded "
+                  + bytesDownloaded
+                  + " of "
+                  + size
+                  + " bytes)",
+              e);
+        }
         // for any failure, increment the error count
         errorCount++;
         // if it fails for the same packet for MAX_RETRIES fail and come out
@@ -1716,6 +2035,13 @@ public class IndexFetcher {
       }
     }
 
+    private void checkAborted() throws ReplicationHandlerException {
+      if (stop) {
+        aborted = true;
+        throw new ReplicationHandlerException("User aborted replication");
+      }
+    }
+
     /**
      * The web container flushes the data only after it fills the buffer size. So, all data has to
      * be read as readFully() otherwise it fails. So read everything as bytes and then extract an
@@ -1766,13 +2092,19 @@ public class IndexFetcher {
       }
     }
 
-    /** Open a new stream using HttpClient */
+    /**
+     * Open a new stream using HttpClient
+     *
+     * @throws IOException if no response was received, e.g. the connection was refused
+     * @throws SolrException if the response has an error status, e.g. the file or the commit point
+     *     is gone
+     */
     private FastInputStream getStream() throws IOException {
       ModifiableSolrParams params = new ModifiableSolrParams();
 
       // the method is command=filecontent
       params.set(COMMAND, CMD_GET_FILE);
-      params.set(GENERATION, Long.toString(indexGen));
+      params.set(GENERATION, Long.toString(source.generation()));
       // add the version to download. This is used to reserve the download
       params.set(solrParamOutput, fileName);
       if (useInternalCompression) {
@@ -1792,32 +2124,35 @@ public class IndexFetcher {
 
       NamedList<?> response;
       InputStream is = null;
+      final int responseStatus;
       try {
+        testGetFileStream.accept(fileName, source);
+        assert TestInjection.injectFailIndexFetchReconnect(bytesDownloaded);
         var req = createReplicationHandlerRequest(params);
         req.setResponseParser(new InputStreamResponseParser(FILE_STREAM));
         if (useExternalCompression) req.addHeader("Accept-Encoding", "gzip");
-        response = solrClient.requestWithBaseUrl(leaderBaseUrl, req, leaderCoreName);
-        final var responseStatus = (Integer) response.get("responseStatus");
+        response = solrClient.requestWithBaseUrl(source.baseUrl(), req, source.coreName());
+        responseStatus = (Integer) response.get("responseStatus");
         is = (InputStream) response.get("stream");
+      } catch (SolrServerException | IOException | UncheckedIOException e) {
+        throw closeStreamAndBuildIOE(is, "Could not download file '" + fileName + "'", e);
+      }
 
-        if (responseStatus != 200) {
-          final var errorMsg =
-              String.format(
-                  Locale.ROOT,
-                  "Unexpected status code [%d] when downloading file [%s].",
-                  responseStatus,
-                  fileName);
-          closeStreamAndBuildIOE(is, errorMsg, null);
-        }
+      if (responseStatus != 200) {
+        IOUtils.closeQuietly(is);
+        throw new SolrException(
+            ErrorCode.getErrorCode(responseStatus),
+            String.format(
+                Locale.ROOT,
+                "Unexpected status code [%d] when downloading file [%s].",
+                responseStatus,
+                fileName));
+      }
 
-        if (useInternalCompression) {
-          is = new InflaterInputStream(is);
-        }
-        return new FastInputStream(is);
-      } catch (Exception e) {
-        final var ioe = closeStreamAndBuildIOE(is, "Could not download file '" + fileName + "'", e);
-        throw ioe;
+      if (useInternalCompression) {
+        is = new InflaterInputStream(is);
       }
+      return new FastInputStream(is);
     }
 
     private IOException closeStreamAndBuildIOE(
@@ -1870,8 +2205,17 @@ public class IndexFetcher {
         String solrParamOutput,
         long latestGen)
         throws IOException {
-      super(
-          new DirectoryFile(tmpIndexDir, saveAs), fileDetails, saveAs, solrParamOutput, latestGen);
+      this(tmpIndexDir, fileDetails, saveAs, solrParamOutput, leaderSource(latestGen));
+    }
+
+    DirectoryFileFetcher(
+        Directory tmpIndexDir,
+        Map<String, Object> fileDetails,
+        String saveAs,
+        String solrParamOutput,
+        FileSource source)
+        throws IOException {
+      super(new DirectoryFile(tmpIndexDir, saveAs), fileDetails, saveAs, solrParamOutput, source);
     }
   }
 
@@ -1929,7 +2273,12 @@ public class IndexFetcher {
         String solrParamOutput,
         long latestGen)
         throws IOException {
-      super(new LocalFsFile(dir, saveAs), fileDetails, saveAs, solrParamOutput, latestGen);
+      super(
+          new LocalFsFile(dir, saveAs),
+          fileDetails,
+          saveAs,
+          solrParamOutput,
+          leaderSource(latestGen));
     }
   }
 
@@ -1066,6 +1066,24 @@ public class ReplicationHandler extends RequestHandlerBase
             bytesDownloaded += (Long) file.get(SIZE);
           }
 
+          // the index files may be downloaded concurrently, the current file is the last one
+          // started
+          List<NamedList<Object>> filesInProgress = new ArrayList<>();
+          for (Map<String, Object> file : fetcher.getFilesInProgress()) {
+            long fileSize = (Long) file.get(SIZE);
+            long fileSizeDownloaded = (Long) file.get("bytesDownloaded");
+            bytesDownloaded += fileSizeDownloaded;
+            NamedList<Object> fileInProgress = new SimpleOrderedMap<>();
+            fileInProgress.add(NAME, file.get(NAME));
+            fileInProgress.add(SIZE, NumberUtils.readableSize(fileSize));
+            fileInProgress.add("bytesDownloaded", NumberUtils.readableSize(fileSizeDownloaded));
+            fileInProgress.add("source", file.get("source"));
+            fileInProgress.add(
+                "percent",
+                String.valueOf(fileSize > 0 ? (float) (fileSizeDownloaded * 100) / fileSize : 0));
+            filesInProgress.add(fileInProgress);
+          }
+
           Map<String, Object> currentFile = fetcher.getCurrentFile();
           String currFile = null;
           long currFileSize = 0, currFileSizeDownloaded = 0;
@@ -1075,13 +1093,13 @@ public class ReplicationHandler extends RequestHandlerBase
             currFileSize = (Long) currentFile.get(SIZE);
             if (currentFile.containsKey("bytesDownloaded")) {
               currFileSizeDownloaded = (Long) currentFile.get("bytesDownloaded");
-              bytesDownloaded += currFileSizeDownloaded;
               if (currFileSize > 0)
                 percentDownloaded = (float) (currFileSizeDownloaded * 100) / currFileSize;
             }
           }
           follower.add("filesDownloaded", filesDownloaded);
           follower.add("numFilesDownloaded", String.valueOf(filesDownloaded.size()));
+          follower.add("filesInProgress", filesInProgress);
 
           long estimatedTimeRemaining = 0;
 
@@ -1588,6 +1606,18 @@ public class ReplicationHandler extends RequestHandlerBase
   // state from leader.
   public static final String SKIP_COMMIT_ON_LEADER_VERSION_ZERO = "skipCommitOnLeaderVersionZero";
 
+  /** The number of index files a follower downloads concurrently. */
+  public static final String FETCH_THREADS = "fetchThreads";
+
+  /** The maximum rate at which a follower downloads index files, in MB per second. */
+  public static final String MAX_FETCH_PER_SECOND = "maxFetchMBPerSec";
+
+  /**
+   * Whether a replica downloads the index files it can from the other active replicas of its shard
+   * rather than from the leader, in SolrCloud.
+   */
+  public static final String FETCH_FROM_PEERS = "fetchFromPeers";
+
   public static final String MESSAGE = "message";
 
   public static final String COMMAND = "command";
@@ -280,6 +280,11 @@ public class CombinedQueryComponent extends QueryComponent implements SolrCoreAw
    * deduplicated across sub-queries, so any processing of "response_per_query" must exclude docs
    * not present in "response" to avoid reintroducing docs that were eliminated while deduplication.
    */
+  @Override
+  protected boolean mergesIdsIncrementally(ResponseBuilder rb) {
+    return false;
+  }
+
   @Override
   protected void mergeIds(ResponseBuilder rb, ShardRequest sreq) {
     SortSpec ss = rb.getSortSpec();
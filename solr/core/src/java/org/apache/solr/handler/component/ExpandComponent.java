@@ -28,6 +28,7 @@ import com.carrotsearch.hppc.cursors.ObjectCursor;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -41,7 +42,9 @@ import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.LeafCollector;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
@@ -54,6 +57,7 @@ import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopDocsCollector;
 import org.apache.lucene.search.TopFieldCollector;
 import org.apache.lucene.search.TopFieldCollectorManager;
+import org.apache.lucene.search.TopFieldDocs;
 import org.apache.lucene.search.TopScoreDocCollectorManager;
 import org.apache.lucene.search.TotalHitCountCollector;
 import org.apache.lucene.search.TotalHits;
@@ -62,8 +66,11 @@ import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.lucene.util.CharsRefBuilder;
 import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.IOSupplier;
 import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ExpandParams;
 import org.apache.solr.common.params.GroupParams;
 import org.apache.solr.common.params.SolrParams;
@@ -79,6 +86,7 @@ import org.apache.solr.search.CollapsingQParserPlugin;
 import org.apache.solr.search.DocIterator;
 import org.apache.solr.search.DocList;
 import org.apache.solr.search.DocSlice;
+import org.apache.solr.search.MemoryAccounting;
 import org.apache.solr.search.QParser;
 import org.apache.solr.search.QueryLimits;
 import org.apache.solr.search.QueryUtils;
@@ -110,6 +118,10 @@ import org.apache.solr.util.plugin.PluginInfoInitialized;
 public class ExpandComponent extends SearchComponent implements PluginInfoInitialized {
   public static final String COMPONENT_NAME = "expand";
   private static final int finishingStage = ResponseBuilder.STAGE_GET_FIELDS;
+  // a doc collected for a group, and its slot in the priority queue of the group
+  private static final long BYTES_PER_EXPANDED_DOC =
+      RamUsageEstimator.shallowSizeOfInstance(FieldDoc.class)
+          + RamUsageEstimator.NUM_BYTES_OBJECT_REF;
   private PluginInfo info = PluginInfo.EMPTY_INFO;
 
   @Override
@@ -391,11 +403,8 @@ public class ExpandComponent extends SearchComponent implements PluginInfoInitia
       groupQuery = outer.build();
     }
 
-    Collector collector;
     if (sort != null) sort = sort.rewrite(searcher);
 
-    GroupCollector groupExpandCollector = null;
-
     if (values != null) {
       // Get The Top Level SortedDocValues again so we can re-iterate:
       if (CollapsingQParserPlugin.HINT_TOP_FC.equals(hint)) {
@@ -405,30 +414,6 @@ public class ExpandComponent extends SearchComponent implements PluginInfoInitia
       } else {
         values = DocValues.getSorted(reader, field);
       }
-
-      groupExpandCollector =
-          new GroupExpandCollector(
-              limit,
-              sort,
-              query,
-              expandNullGroup,
-              fieldType,
-              ordBytes,
-              values,
-              groupBits,
-              collapsedSet);
-    } else {
-      groupExpandCollector =
-          new NumericGroupExpandCollector(
-              limit,
-              sort,
-              query,
-              expandNullGroup,
-              fieldType,
-              ordBytes,
-              field,
-              groupSet,
-              collapsedSet);
     }
 
     if (groupQuery != null) {
@@ -437,19 +422,97 @@ public class ExpandComponent extends SearchComponent implements PluginInfoInitia
     }
 
     SolrIndexSearcher.ProcessedFilter pfilter = searcher.getProcessedFilter(newFilters);
-    if (pfilter.postFilter != null) {
-      pfilter.postFilter.setLastDelegate(groupExpandCollector);
-      collector = pfilter.postFilter;
+    Query expandQuery = QueryUtils.combineQueryAndFilter(query, pfilter.filter);
+
+    // The groups can be collected concurrently, each slice of the index into its own collectors,
+    // unless the top level doc values are a single iterator over all the segments (top_fc)
+    final boolean concurrent =
+        params.getBool(CommonParams.MULTI_THREADED, false)
+            && pfilter.isConcurrent()
+            && (values == null
+                || values instanceof MultiDocValues.MultiSortedDocValues
+                || contexts.size() == 1);
+    final String groupField = field;
+    final Sort groupSort = sort;
+    final SortedDocValues groupValues = values;
+    final FixedBitSet groupOrds = groupBits;
+    final LongHashSet groupValueSet = groupSet;
+    final IntObjectHashMap<BytesRef> groupOrdBytes = ordBytes;
+    final IOSupplier<GroupCollector> groupCollectors =
+        () -> {
+          if (groupValues != null) {
+            return new GroupExpandCollector(
+                limit,
+                groupSort,
+                query,
+                expandNullGroup,
+                fieldType,
+                groupOrdBytes,
+                groupValues,
+                groupOrds,
+                collapsedSet);
+          }
+          return new NumericGroupExpandCollector(
+              limit,
+              groupSort,
+              query,
+              expandNullGroup,
+              fieldType,
+              groupOrdBytes,
+              groupField,
+              groupValueSet,
+              collapsedSet);
+        };
+
+    List<GroupCollector> groupExpandCollectors;
+    if (concurrent) {
+      groupExpandCollectors =
+          searcher.search(
+              expandQuery,
+              pfilter.wrap(
+                  new CollectorManager<GroupCollector, List<GroupCollector>>() {
+                    @Override
+                    public GroupCollector newCollector() throws IOException {
+                      return groupCollectors.get();
+                    }
+
+                    @Override
+                    public List<GroupCollector> reduce(Collection<GroupCollector> collectors) {
+                      return new ArrayList<>(collectors);
+                    }
+                  }));
     } else {
-      collector = groupExpandCollector;
-    }
-
-    searcher.search(QueryUtils.combineQueryAndFilter(query, pfilter.filter), collector);
+      GroupCollector groupExpandCollector = groupCollectors.get();
+      Collector collector;
+      if (pfilter.postFilter != null) {
+        pfilter.postFilter.setLastDelegate(groupExpandCollector);
+        collector = pfilter.postFilter;
+      } else {
+        collector = groupExpandCollector;
+      }
+      searcher.search(expandQuery, collector);
+      groupExpandCollectors = List.of(groupExpandCollector);
+    }
+
+    queryLimits
+        .getMemoryAccounting()
+        .add(
+            MemoryAccounting.EXPAND,
+            collapsedSet.ramBytesAllocated()
+                + (groupBits == null ? 0 : groupBits.ramBytesUsed())
+                + (ordBytes == null ? 0 : ordBytes.ramBytesAllocated())
+                + (groupSet == null ? 0 : groupSet.ramBytesAllocated())
+                + (long) groupExpandCollectors.size()
+                    * groupExpandCollectors.get(0).getGroups().size()
+                    * limit
+                    * BYTES_PER_EXPANDED_DOC);
     if (queryLimits.maybeExitWithPartialResults("Expand expand")) {
       return;
     }
 
-    rb.rsp.add("expanded", groupExpandCollector.getGroups(searcher, rb.rsp.getReturnFields()));
+    rb.rsp.add(
+        "expanded",
+        GroupCollector.getGroups(groupExpandCollectors, searcher, rb.rsp.getReturnFields()));
   }
 
   @Override
@@ -737,21 +800,36 @@ public class ExpandComponent extends SearchComponent implements PluginInfoInitia
 
     protected abstract LongObjectMap<Collector> getGroups();
 
-    public final SimpleOrderedMap<DocSlice> getGroups(
-        SolrIndexSearcher searcher, ReturnFields returnFields) throws IOException {
-
+    /**
+     * Returns the expanded groups collected by the given collectors, each of which collected the
+     * same groups from a slice of the index.
+     */
+    public static SimpleOrderedMap<DocSlice> getGroups(
+        List<GroupCollector> collectors, SolrIndexSearcher searcher, ReturnFields returnFields)
+        throws IOException {
+      final GroupCollector first = collectors.get(0);
       final SimpleOrderedMap<DocSlice> outMap = new SimpleOrderedMap<>();
       final CharsRefBuilder charsRef = new CharsRefBuilder();
-      for (LongObjectCursor<Collector> cursor : getGroups()) {
+      final List<Collector> groupCollectors = new ArrayList<>(collectors.size());
+      for (LongObjectCursor<Collector> cursor : first.getGroups()) {
         final long groupValue = cursor.key;
-        final DocSlice slice = collectorToDocSlice(cursor.value, searcher, returnFields);
+        groupCollectors.clear();
+        for (GroupCollector collector : collectors) {
+          groupCollectors.add(collector.getGroups().get(groupValue));
+        }
+        final DocSlice slice = first.collectorsToDocSlice(groupCollectors, searcher, returnFields);
         if (null != slice) {
-          addGroupSliceToOutputMap(outMap, charsRef, groupValue, slice);
+          first.addGroupSliceToOutputMap(outMap, charsRef, groupValue, slice);
         }
       }
-      if (expandNullGroup) {
-        assert null != nullGroupCollector;
-        final DocSlice nullGroup = collectorToDocSlice(nullGroupCollector, searcher, returnFields);
+      if (first.expandNullGroup) {
+        groupCollectors.clear();
+        for (GroupCollector collector : collectors) {
+          assert null != collector.nullGroupCollector;
+          groupCollectors.add(collector.nullGroupCollector);
+        }
+        final DocSlice nullGroup =
+            first.collectorsToDocSlice(groupCollectors, searcher, returnFields);
         if (null != nullGroup) {
           outMap.add(null, nullGroup);
         }
@@ -759,12 +837,26 @@ public class ExpandComponent extends SearchComponent implements PluginInfoInitia
       return outMap;
     }
 
-    private DocSlice collectorToDocSlice(
-        Collector groupCollector, SolrIndexSearcher searcher, ReturnFields returnFields)
+    private DocSlice collectorsToDocSlice(
+        List<Collector> groupCollectors, SolrIndexSearcher searcher, ReturnFields returnFields)
         throws IOException {
-      if (groupCollector instanceof TopDocsCollector) {
-        TopDocsCollector<?> topDocsCollector = TopDocsCollector.class.cast(groupCollector);
-        TopDocs topDocs = topDocsCollector.topDocs();
+      if (groupCollectors.get(0) instanceof TopDocsCollector) {
+        TopDocs topDocs;
+        if (groupCollectors.size() == 1) {
+          topDocs = ((TopDocsCollector<?>) groupCollectors.get(0)).topDocs();
+        } else if (sort == null) {
+          TopDocs[] shardHits = new TopDocs[groupCollectors.size()];
+          for (int i = 0; i < shardHits.length; i++) {
+            shardHits[i] = ((TopDocsCollector<?>) groupCollectors.get(i)).topDocs();
+          }
+          topDocs = TopDocs.merge(limit, shardHits);
+        } else {
+          TopFieldDocs[] shardHits = new TopFieldDocs[groupCollectors.size()];
+          for (int i = 0; i < shardHits.length; i++) {
+            shardHits[i] = ((TopFieldCollector) groupCollectors.get(i)).topDocs();
+          }
+          topDocs = TopDocs.merge(sort, limit, shardHits);
+        }
         ScoreDoc[] scoreDocs = topDocs.scoreDocs;
         if (scoreDocs.length > 0) {
           if (returnFields.wantsScore() && sort != null) {
@@ -788,7 +880,10 @@ public class ExpandComponent extends SearchComponent implements PluginInfoInitia
               TotalHits.Relation.EQUAL_TO);
         }
       } else {
-        int totalHits = ((TotalHitCountCollector) groupCollector).getTotalHits();
+        int totalHits = 0;
+        for (Collector groupCollector : groupCollectors) {
+          totalHits += ((TotalHitCountCollector) groupCollector).getTotalHits();
+        }
         if (totalHits > 0) {
           return new DocSlice(0, 0, null, null, totalHits, 0, TotalHits.Relation.EQUAL_TO);
         }
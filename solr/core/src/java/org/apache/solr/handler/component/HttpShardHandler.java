@@ -24,12 +24,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import net.jcip.annotations.NotThreadSafe;
 import org.apache.solr.client.solrj.SolrRequest;
 import org.apache.solr.client.solrj.SolrResponse;
@@ -37,6 +39,7 @@ import org.apache.solr.client.solrj.impl.LBAsyncSolrClient;
 import org.apache.solr.client.solrj.impl.LBSolrClient;
 import org.apache.solr.client.solrj.request.QueryRequest;
 import org.apache.solr.client.solrj.routing.NoOpReplicaListTransformer;
+import org.apache.solr.client.solrj.routing.ReplicaLatencyStats;
 import org.apache.solr.client.solrj.routing.ReplicaListTransformer;
 import org.apache.solr.cloud.CloudDescriptor;
 import org.apache.solr.cloud.ZkController;
@@ -98,6 +101,7 @@ public class HttpShardHandler extends ShardHandler {
 
   private final Map<String, List<String>> shardToURLs;
   protected LBAsyncSolrClient lbClient;
+  private Consumer<ShardResponse> responseListener;
 
   public HttpShardHandler(HttpShardHandlerFactory httpShardHandlerFactory) {
     this.httpShardHandlerFactory = httpShardHandlerFactory;
@@ -266,6 +270,27 @@ public class HttpShardHandler extends ShardHandler {
       ShardResponse srsp,
       long startTimeNS) {
     CompletableFuture<LBSolrClient.Rsp> future = this.lbClient.requestAsync(lbReq);
+    // the replica that gets the request unless it fails
+    final ReplicaLatencyStats latencyStats = httpShardHandlerFactory.getReplicaLatencyStats();
+    final String preferredUrl =
+        latencyStats == null ? null : lbReq.getEndpoints().get(0).toString();
+    if (latencyStats != null) {
+      latencyStats.requestStarted(preferredUrl);
+      // measure the preferred replica by its own request, which is the one a hedge may replace
+      future.whenComplete(
+          (rsp, throwable) ->
+              recordLatency(latencyStats, preferredUrl, rsp, throwable, startTimeNS));
+    }
+    final ShardRequestHedger hedger = httpShardHandlerFactory.getHedger();
+    if (hedger != null && params.getBool(ShardParams.SHARDS_HEDGE, hedger.isEnabledByDefault())) {
+      future =
+          hedger.hedge(
+              future,
+              lbReq,
+              startTimeNS,
+              this.lbClient::requestAsync,
+              httpShardHandlerFactory.commExecutor);
+    }
     // Synchronize on canceled, so that we know precisely whether to add it to the responseFutureMap
     // or not.
     synchronized (canceled) {
@@ -301,6 +326,22 @@ public class HttpShardHandler extends ShardHandler {
         });
   }
 
+  private static void recordLatency(
+      ReplicaLatencyStats latencyStats,
+      String preferredUrl,
+      LBSolrClient.Rsp rsp,
+      Throwable throwable,
+      long startTimeNS) {
+    if (throwable instanceof CancellationException) {
+      // canceled because of other shards or a hedge, says nothing about this replica
+      latencyStats.requestAbandoned(preferredUrl);
+      return;
+    }
+    // responses from another replica mean that the preferred one failed
+    boolean error = rsp == null || !preferredUrl.equals(rsp.getServer());
+    latencyStats.requestFinished(preferredUrl, System.nanoTime() - startTimeNS, error);
+  }
+
   /** Subclasses could modify the request based on the shard */
   @SuppressWarnings("unused")
   protected QueryRequest createQueryRequest(
@@ -316,6 +357,11 @@ public class HttpShardHandler extends ShardHandler {
     return rsp;
   }
 
+  @Override
+  public void setResponseListener(Consumer<ShardResponse> listener) {
+    this.responseListener = listener;
+  }
+
   @Override
   public ShardResponse takeCompletedIncludingErrors() {
     return take(false);
@@ -356,6 +402,9 @@ public class HttpShardHandler extends ShardHandler {
           // for a request was received.  Otherwise, we might return the same
           // request more than once.
           rsp.getShardRequest().responses.add(rsp);
+          if (responseListener != null) {
+            responseListener.accept(rsp);
+          }
 
           if (rsp.getException() != null
               && (bailOnError || disallowPartialResults(rsp.getShardRequest().params))) {
@@ -38,7 +38,10 @@ import org.apache.solr.client.solrj.impl.SolrHttpConstants;
 import org.apache.solr.client.solrj.jetty.HttpJettySolrClient;
 import org.apache.solr.client.solrj.jetty.LBJettySolrClient;
 import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.client.solrj.response.JavaBinResponseParser;
+import org.apache.solr.client.solrj.routing.AdaptiveReplicaListTransformerFactory;
 import org.apache.solr.client.solrj.routing.AffinityReplicaListTransformerFactory;
+import org.apache.solr.client.solrj.routing.ReplicaLatencyStats;
 import org.apache.solr.client.solrj.routing.ReplicaListTransformer;
 import org.apache.solr.client.solrj.routing.ReplicaListTransformerFactory;
 import org.apache.solr.client.solrj.routing.RequestReplicaListTransformerGenerator;
@@ -107,6 +110,11 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
   private RequestReplicaListTransformerGenerator requestReplicaListTransformerGenerator =
       new RequestReplicaListTransformerGenerator();
 
+  // non-null when "adaptive" replica routing is the default, see getReplicaLatencyStats()
+  private volatile ReplicaLatencyStats replicaLatencyStats;
+
+  private ShardRequestHedger hedger;
+
   // URL scheme to be used in distributed search.
   static final String INIT_URL_SCHEME = "urlScheme";
 
@@ -134,6 +142,21 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
   // Configure if the threadpool favours fairness over throughput
   static final String INIT_FAIRNESS_POLICY = "fairnessPolicy";
 
+  // Whether the fields of documents in shard responses are only decoded when accessed
+  static final String READ_DOCS_LAZILY = "readDocsLazily";
+
+  // Whether shard requests are hedged by default, see ShardParams.SHARDS_HEDGE
+  static final String HEDGE_REQUESTS = "hedgeRequests";
+
+  // The percentile of recent shard request latencies after which a request is hedged
+  static final String HEDGE_PERCENTILE = "hedgePercentile";
+
+  // The minimum time after which a shard request is hedged
+  static final String HEDGE_MIN_DELAY_MS = "hedgeMinDelayMs";
+
+  // The maximum number of hedges, as percentage of the number of shard requests
+  static final String HEDGE_MAX_EXTRA_LOAD_PERCENT = "hedgeMaxExtraLoadPercent";
+
   /** Get {@link ShardHandler} that uses the default http client. */
   @Override
   public ShardHandler getShardHandler() {
@@ -165,6 +188,7 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
   private void initReplicaListTransformers(NamedList<?> routingConfig) {
     String defaultRouting = null;
     ReplicaListTransformerFactory stableRltFactory = null;
+    AdaptiveReplicaListTransformerFactory adaptiveRltFactory = null;
     ReplicaListTransformerFactory defaultRltFactory;
     if (routingConfig != null && routingConfig.size() > 0) {
       Iterator<? extends Entry<String, ?>> iter = routingConfig.iterator();
@@ -185,6 +209,12 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
             defaultRouting = checkDefaultReplicaListTransformer(c, key, defaultRouting);
             stableRltFactory = new AffinityReplicaListTransformerFactory(c);
             break;
+          case ShardParams.REPLICA_ADAPTIVE:
+            NamedList<?> adaptiveConfig = getNamedList(e.getValue());
+            defaultRouting =
+                checkDefaultReplicaListTransformer(adaptiveConfig, key, defaultRouting);
+            adaptiveRltFactory = new AdaptiveReplicaListTransformerFactory(adaptiveConfig);
+            break;
           default:
             throw new IllegalArgumentException("invalid replica routing spec name: " + key);
         }
@@ -195,6 +225,9 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
     }
     if (ShardParams.REPLICA_STABLE.equals(defaultRouting)) {
       defaultRltFactory = stableRltFactory;
+    } else if (ShardParams.REPLICA_ADAPTIVE.equals(defaultRouting)) {
+      defaultRltFactory = adaptiveRltFactory;
+      this.replicaLatencyStats = adaptiveRltFactory.getStats();
     } else {
       defaultRltFactory = RequestReplicaListTransformerGenerator.RANDOM_RLTF;
     }
@@ -222,6 +255,15 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
    *       false otherwise
    *   <li>replicaRouting - a NamedList of preferences used to select the order in which replicas
    *       for a shard will be used by created ShardHandlers
+   *   <li>readDocsLazily - true if the fields of documents in shard responses should only be
+   *       decoded when accessed
+   *   <li>hedgeRequests - true if shard requests should be hedged by default, i.e. duplicated to
+   *       another replica when they are slow
+   *   <li>hedgePercentile - the percentile of recent shard request latencies after which a shard
+   *       request is hedged
+   *   <li>hedgeMinDelayMs - the minimum time, in milliseconds, after which a request is hedged
+   *   <li>hedgeMaxExtraLoadPercent - the maximum number of hedges, as a percentage of all shard
+   *       requests
    * </ul>
    *
    * @param info configuration for the created factory, typically reflecting the contents of a
@@ -302,6 +344,7 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
     int soTimeout =
         getParameter(
             args, SolrHttpConstants.PROP_SO_TIMEOUT, SolrHttpConstants.DEFAULT_SO_TIMEOUT, sb);
+    boolean readDocsLazily = getParameter(args, READ_DOCS_LAZILY, false, sb);
 
     this.defaultClient =
         new HttpJettySolrClient.Builder()
@@ -309,12 +352,20 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
             .withIdleTimeout(soTimeout, TimeUnit.MILLISECONDS)
             .withExecutor(commExecutor)
             .withMaxConnectionsPerHost(maxConnectionsPerHost)
+            .withResponseParser(new JavaBinResponseParser().setReadDocsLazily(readDocsLazily))
             .build();
     this.defaultClient.addListenerFactory(this.httpListenerFactory);
     this.loadbalancer = new LBJettySolrClient.Builder(defaultClient).build();
 
     initReplicaListTransformers(getParameter(args, "replicaRouting", null, sb));
 
+    this.hedger =
+        new ShardRequestHedger(
+            getParameter(args, HEDGE_REQUESTS, false, sb),
+            getParameter(args, HEDGE_PERCENTILE, (Number) 95, sb).doubleValue(),
+            getParameter(args, HEDGE_MIN_DELAY_MS, (Number) 20, sb).longValue(),
+            getParameter(args, HEDGE_MAX_EXTRA_LOAD_PERCENT, (Number) 5, sb).doubleValue());
+
     log.debug("created with {}", sb);
   }
 
@@ -350,6 +401,7 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
           IOUtils.closeQuietly(defaultClient);
         }
       } finally {
+        IOUtils.closeQuietly(hedger);
         ExecutorUtil.shutdownAndAwaitTermination(commExecutor);
       }
     }
@@ -395,6 +447,19 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
     return urls;
   }
 
+  /**
+   * Returns the stats that {@link HttpShardHandler}s should record their requests in, or null if
+   * replicas aren't routed by them.
+   */
+  public ReplicaLatencyStats getReplicaLatencyStats() {
+    return replicaLatencyStats;
+  }
+
+  /** Returns what hedges the requests of {@link HttpShardHandler}s, null if not initialized */
+  ShardRequestHedger getHedger() {
+    return hedger;
+  }
+
   protected ReplicaListTransformer getReplicaListTransformer(final SolrQueryRequest req) {
     final SolrParams params = req.getParams();
     final SolrCore core = req.getCore(); // explicit check for null core (temporary?, for tests)
@@ -456,6 +521,9 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory
   public void initializeMetrics(SolrMetricsContext parentContext, Attributes attributes) {
     solrMetricsContext = parentContext.getChildContext(this);
     httpListenerFactory.initializeMetrics(solrMetricsContext, Attributes.empty());
+    if (hedger != null) {
+      hedger.initializeMetrics(solrMetricsContext);
+    }
     commExecutor =
         solrMetricsContext.instrumentedExecutorService(
             commExecutor, "solr.core.executor", "httpShardExecutor", SolrInfoBean.Category.QUERY);
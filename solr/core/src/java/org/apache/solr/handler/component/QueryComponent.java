@@ -26,7 +26,9 @@ import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -909,6 +911,15 @@ public class QueryComponent extends SearchComponent {
   protected abstract static class ShardDocQueue {
     public abstract boolean push(ShardDoc shardDoc);
 
+    /**
+     * Whether the doc would make it into the queue, false if the queue is full of better docs. As
+     * each shard sorts its docs, none of the docs that a shard sorts after such a doc can make it
+     * either.
+     */
+    public boolean isCompetitive(ShardDoc shardDoc) {
+      return true;
+    }
+
     public abstract Map<Object, ShardDoc> resultIds(int offset);
   }
   ;
@@ -944,6 +955,12 @@ public class QueryComponent extends SearchComponent {
         return true;
       }
 
+      @Override
+      public boolean isCompetitive(ShardDoc shardDoc) {
+        // the same as what insertWithOverflow() checks
+        return queue.size() < size || (queue.size() > 0 && queue.lessThan(queue.top(), shardDoc));
+      }
+
       @Override
       public Map<Object, ShardDoc> resultIds(int offset) {
         final Map<Object, ShardDoc> resultIds = new HashMap<>();
@@ -984,41 +1001,52 @@ public class QueryComponent extends SearchComponent {
       }
     }
 
-    SortSpec ss = rb.getSortSpec();
-    Sort sort = ss.getSort();
-
-    SortField[] sortFields = null;
-    if (sort != null) sortFields = sort.getSort();
-    else {
-      sortFields = new SortField[] {SortField.FIELD_SCORE};
+    ShardIdsMerger merger = getShardIdsMerger(rb, sreq);
+    for (ShardResponse srsp : sreq.responses) {
+      merger.add(srsp); // unless it was already, as it was received
     }
+    rb.req.getContext().remove(ShardIdsMerger.class);
+    merger.finish();
+  }
 
-    // If the shard request was also used to get fields (along with the scores), there is no reason
-    // to copy over the score dependent fields, since those will already exist in the document with
-    // the return fields
-    Set<String> scoreDependentFields;
-    if ((sreq.purpose & ShardRequest.PURPOSE_GET_FIELDS) == 0) {
-      scoreDependentFields =
-          rb.rsp.getReturnFields().getScoreDependentReturnFields().keySet().stream()
-              .filter(field -> !field.equals(SolrReturnFields.SCORE))
-              .collect(Collectors.toSet());
-    } else {
-      scoreDependentFields = Set.of();
-    }
+  /**
+   * Whether the top ids from the shards can be merged by {@link #mergeIds} as each shard responds,
+   * rather than once they all have, i.e. whether {@link #mergeIds} merges them into a {@link
+   * ShardDocQueue}.
+   */
+  protected boolean mergesIdsIncrementally(ResponseBuilder rb) {
+    return !rb.grouping() && rb.getMergeStrategies() == null;
+  }
 
-    IndexSchema schema = rb.req.getSchema();
-    SchemaField uniqueKeyField = schema.getUniqueKeyField();
+  @Override
+  public void handleShardResponse(ResponseBuilder rb, ShardResponse srsp) {
+    ShardRequest sreq = srsp.getShardRequest();
+    if ((sreq.purpose & ShardRequest.PURPOSE_GET_TOP_IDS) != 0 && mergesIdsIncrementally(rb)) {
+      getShardIdsMerger(rb, sreq).add(srsp);
+    }
+  }
 
-    // Merge the docs via a priority queue so we don't have to sort *all* of the
-    // documents... we only need to order the top (rows+start)
-    final ShardDocQueue shardDocQueue =
-        newShardDocQueue(rb.req.getSearcher(), sortFields, ss.getOffset() + ss.getCount());
+  private ShardIdsMerger getShardIdsMerger(ResponseBuilder rb, ShardRequest sreq) {
+    Map<Object, Object> context = rb.req.getContext();
+    if (context.get(ShardIdsMerger.class) instanceof ShardIdsMerger merger && merger.sreq == sreq) {
+      return merger;
+    }
+    ShardIdsMerger merger = new ShardIdsMerger(rb, sreq);
+    context.put(ShardIdsMerger.class, merger);
+    return merger;
+  }
 
+  /** Merges the top ids of the responses to a request, one response at a time */
+  private class ShardIdsMerger {
+    final ResponseBuilder rb;
+    final ShardRequest sreq;
+    final Set<ShardResponse> merged = Collections.newSetFromMap(new IdentityHashMap<>());
+    final SortSpec ss;
+    final Set<String> scoreDependentFields;
+    final IndexSchema schema;
+    final SchemaField uniqueKeyField;
+    final ShardDocQueue shardDocQueue;
     NamedList<Object> shardInfo = null;
-    if (rb.req.getParams().getBool(ShardParams.SHARDS_INFO, false)) {
-      shardInfo = new SimpleOrderedMap<>();
-      rb.rsp.getValues().add(ShardParams.SHARDS_INFO, shardInfo);
-    }
 
     long numFound = 0;
     boolean hitCountIsExact = true;
@@ -1028,7 +1056,48 @@ public class QueryComponent extends SearchComponent {
     boolean maxHitsTerminatedEarly = false;
     long approximateTotalHits = 0;
     int failedShardCount = 0;
-    for (ShardResponse srsp : sreq.responses) {
+
+    ShardIdsMerger(ResponseBuilder rb, ShardRequest sreq) {
+      this.rb = rb;
+      this.sreq = sreq;
+      ss = rb.getSortSpec();
+      Sort sort = ss.getSort();
+
+      SortField[] sortFields = null;
+      if (sort != null) sortFields = sort.getSort();
+      else {
+        sortFields = new SortField[] {SortField.FIELD_SCORE};
+      }
+
+      // If the shard request was also used to get fields (along with the scores), there is no
+      // reason to copy over the score dependent fields, since those will already exist in the
+      // document with the return fields
+      if ((sreq.purpose & ShardRequest.PURPOSE_GET_FIELDS) == 0) {
+        scoreDependentFields =
+            rb.rsp.getReturnFields().getScoreDependentReturnFields().keySet().stream()
+                .filter(field -> !field.equals(SolrReturnFields.SCORE))
+                .collect(Collectors.toSet());
+      } else {
+        scoreDependentFields = Set.of();
+      }
+
+      schema = rb.req.getSchema();
+      uniqueKeyField = schema.getUniqueKeyField();
+
+      // Merge the docs via a priority queue so we don't have to sort *all* of the
+      // documents... we only need to order the top (rows+start)
+      shardDocQueue =
+          newShardDocQueue(rb.req.getSearcher(), sortFields, ss.getOffset() + ss.getCount());
+
+      if (rb.req.getParams().getBool(ShardParams.SHARDS_INFO, false)) {
+        shardInfo = new SimpleOrderedMap<>();
+      }
+    }
+
+    void add(ShardResponse srsp) {
+      if (!merged.add(srsp)) {
+        return;
+      }
       SolrDocumentList docs = null;
       NamedList<?> responseHeader = null;
 
@@ -1055,7 +1124,7 @@ public class QueryComponent extends SearchComponent {
                   SolrResponseUtil.getSubsectionFromShardResponse(
                       rb, srsp, "responseHeader", false);
           if (responseHeader == null) {
-            continue;
+            return;
           }
           final Object rhste =
               responseHeader.get(SolrQueryResponse.RESPONSE_HEADER_SEGMENT_TERMINATED_EARLY_KEY);
@@ -1076,7 +1145,7 @@ public class QueryComponent extends SearchComponent {
               (SolrDocumentList)
                   SolrResponseUtil.getSubsectionFromShardResponse(rb, srsp, "response", false);
           if (docs == null) {
-            continue;
+            return;
           }
           nl.add("numFound", docs.getNumFound());
           nl.add("numFoundExact", docs.getNumFoundExact());
@@ -1097,7 +1166,7 @@ public class QueryComponent extends SearchComponent {
       // now that we've added the shard info, let's only proceed if we have no error.
       if (srsp.getException() != null) {
         thereArePartialResults = true;
-        continue;
+        return;
       }
 
       if (docs == null) { // could have been initialized in the shards info block above
@@ -1171,7 +1240,7 @@ public class QueryComponent extends SearchComponent {
       // shard. This avoids an exception below. if the shard returned partial results but we don't
       // need to unmarshal (a normal scoring query), then merge what we got.
       if (thisResponseIsPartial && sortFieldValues.size() == 0 && needsUnmarshalling) {
-        continue;
+        return;
       }
 
       // Checking needsUnmarshalling saves on iterating the SortFields in the SortSpec again.
@@ -1201,59 +1270,70 @@ public class QueryComponent extends SearchComponent {
 
         shardDoc.sortFieldValues = unmarshalledSortFieldValues;
 
+        if (!shardDocQueue.isCompetitive(shardDoc)) {
+          // the shard sorted its docs, none of the remaining ones can make it either
+          break;
+        }
         if (!shardDocQueue.push(shardDoc)) {
           numFound--;
         }
       } // end for-each-doc-in-response
-    } // end for-each-response
+    }
 
-    // Add hits for distributed requests
-    // https://issues.apache.org/jira/browse/SOLR-3518
-    rb.rsp.addToLog("hits", numFound);
+    void finish() {
+      if (shardInfo != null) {
+        rb.rsp.getValues().add(ShardParams.SHARDS_INFO, shardInfo);
+      }
 
-    setResultIdsAndResponseDocs(
-        rb, shardDocQueue, maxScore, numFound, hitCountIsExact, ss.getOffset());
+      // Add hits for distributed requests
+      // https://issues.apache.org/jira/browse/SOLR-3518
+      rb.rsp.addToLog("hits", numFound);
 
-    populateNextCursorMarkFromMergedShards(rb);
+      setResultIdsAndResponseDocs(
+          rb, shardDocQueue, maxScore, numFound, hitCountIsExact, ss.getOffset());
 
-    if (thereArePartialResults) {
-      rb.rsp
-          .getResponseHeader()
-          .asShallowMap()
-          .put(SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY, Boolean.TRUE);
-    }
-    if (segmentTerminatedEarly != null) {
-      final Object existingSegmentTerminatedEarly =
-          rb.rsp
-              .getResponseHeader()
-              .get(SolrQueryResponse.RESPONSE_HEADER_SEGMENT_TERMINATED_EARLY_KEY);
-      if (existingSegmentTerminatedEarly == null) {
-        rb.rsp
-            .getResponseHeader()
-            .add(
-                SolrQueryResponse.RESPONSE_HEADER_SEGMENT_TERMINATED_EARLY_KEY,
-                segmentTerminatedEarly);
-      } else if (!Boolean.TRUE.equals(existingSegmentTerminatedEarly)
-          && Boolean.TRUE.equals(segmentTerminatedEarly)) {
-        rb.rsp
-            .getResponseHeader()
-            .remove(SolrQueryResponse.RESPONSE_HEADER_SEGMENT_TERMINATED_EARLY_KEY);
+      populateNextCursorMarkFromMergedShards(rb);
+
+      if (thereArePartialResults) {
         rb.rsp
             .getResponseHeader()
-            .add(
-                SolrQueryResponse.RESPONSE_HEADER_SEGMENT_TERMINATED_EARLY_KEY,
-                segmentTerminatedEarly);
+            .asShallowMap()
+            .put(SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY, Boolean.TRUE);
       }
-    }
-    if (maxHitsTerminatedEarly) {
-      rb.rsp
-          .getResponseHeader()
-          .add(SolrQueryResponse.RESPONSE_HEADER_MAX_HITS_TERMINATED_EARLY_KEY, Boolean.TRUE);
-      if (approximateTotalHits > 0) {
+      if (segmentTerminatedEarly != null) {
+        final Object existingSegmentTerminatedEarly =
+            rb.rsp
+                .getResponseHeader()
+                .get(SolrQueryResponse.RESPONSE_HEADER_SEGMENT_TERMINATED_EARLY_KEY);
+        if (existingSegmentTerminatedEarly == null) {
+          rb.rsp
+              .getResponseHeader()
+              .add(
+                  SolrQueryResponse.RESPONSE_HEADER_SEGMENT_TERMINATED_EARLY_KEY,
+                  segmentTerminatedEarly);
+        } else if (!Boolean.TRUE.equals(existingSegmentTerminatedEarly)
+            && Boolean.TRUE.equals(segmentTerminatedEarly)) {
+          rb.rsp
+              .getResponseHeader()
+              .remove(SolrQueryResponse.RESPONSE_HEADER_SEGMENT_TERMINATED_EARLY_KEY);
+          rb.rsp
+              .getResponseHeader()
+              .add(
+                  SolrQueryResponse.RESPONSE_HEADER_SEGMENT_TERMINATED_EARLY_KEY,
+                  segmentTerminatedEarly);
+        }
+      }
+      if (maxHitsTerminatedEarly) {
         rb.rsp
             .getResponseHeader()
-            .add(
-                SolrQueryResponse.RESPONSE_HEADER_APPROXIMATE_TOTAL_HITS_KEY, approximateTotalHits);
+            .add(SolrQueryResponse.RESPONSE_HEADER_MAX_HITS_TERMINATED_EARLY_KEY, Boolean.TRUE);
+        if (approximateTotalHits > 0) {
+          rb.rsp
+              .getResponseHeader()
+              .add(
+                  SolrQueryResponse.RESPONSE_HEADER_APPROXIMATE_TOTAL_HITS_KEY,
+                  approximateTotalHits);
+        }
       }
     }
   }
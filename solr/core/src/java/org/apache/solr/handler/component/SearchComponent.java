@@ -67,6 +67,15 @@ public abstract class SearchComponent implements SolrInfoBean, NamedListInitiali
   /** Called after another component adds a request */
   public void modifyRequest(ResponseBuilder rb, SearchComponent who, ShardRequest sreq) {}
 
+  /**
+   * Called with each response to a request as it is received, if the {@link ShardHandler} supports
+   * it, before {@link #handleResponses} is called once all responses were received. Lets components
+   * process responses while waiting for the others.
+   *
+   * @see ShardHandler#setResponseListener
+   */
+  public void handleShardResponse(ResponseBuilder rb, ShardResponse srsp) {}
+
   /** Called after all responses for a single request were received */
   public void handleResponses(ResponseBuilder rb, ShardRequest sreq) {}
 
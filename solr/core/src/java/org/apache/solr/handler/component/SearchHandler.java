@@ -67,6 +67,7 @@ import org.apache.solr.pkg.SolrPackageLoader;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.search.CursorMark;
+import org.apache.solr.search.MemoryAccounting;
 import org.apache.solr.search.QueryLimits;
 import org.apache.solr.search.SortSpec;
 import org.apache.solr.search.facet.FacetModule;
@@ -502,6 +503,11 @@ public class SearchHandler extends RequestHandlerBase
         // add the timing info
         if (rb.isDebugTimings()) {
           rb.addDebugInfo("timing", timer.asNamedList());
+          // and the memory accounted for the components, summed across shards when merged
+          MemoryAccounting memory = getQueryLimits(req, rsp).getMemoryAccounting();
+          if (!memory.isEmpty()) {
+            rb.addDebugInfo("memory", memory.toNamedList());
+          }
         }
       }
     } catch (ExitableDirectoryReader.ExitingReaderException ex) {
@@ -526,6 +532,12 @@ public class SearchHandler extends RequestHandlerBase
       rb.outgoing = new ArrayList<>();
     }
     rb.finished = new ArrayList<>();
+    shardHandler.setResponseListener(
+        srsp -> {
+          for (SearchComponent c : components) {
+            c.handleShardResponse(rb, srsp);
+          }
+        });
 
     int nextStage = 0;
     long totalShardCpuTime = 0L;
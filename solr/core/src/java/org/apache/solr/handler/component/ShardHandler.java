@@ -19,6 +19,7 @@ package org.apache.solr.handler.component;
 import static org.apache.solr.common.params.CommonParams.DISTRIB;
 import static org.apache.solr.common.params.CommonParams.INDENT;
 
+import java.util.function.Consumer;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.ShardParams;
@@ -71,6 +72,13 @@ public abstract class ShardHandler {
    */
   public abstract ShardResponse takeCompletedOrError();
 
+  /**
+   * Sets a listener that {@link #takeCompletedIncludingErrors()} and {@link
+   * #takeCompletedOrError()} call with each response as it is received, on the calling thread.
+   * Implementations that don't support it never call the listener.
+   */
+  public void setResponseListener(Consumer<ShardResponse> listener) {}
+
   /** Cancels all uncompleted requests managed by this instance */
   public abstract void cancelAll();
 
@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import io.opentelemetry.api.common.Attributes;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.apache.solr.client.solrj.impl.LBSolrClient;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
+import org.apache.solr.metrics.SolrMetricsContext;
+import org.apache.solr.metrics.otel.instruments.AttributedLongCounter;
+
+/**
+ * Hedges shard requests: when a shard request hasn't completed after a delay given by a percentile
+ * of recent shard request latencies, a duplicate request is sent to the next replica of the shard,
+ * the first successful response is used and the other request is canceled.
+ *
+ * <p>The extra load is bounded by a budget: every shard request earns {@code maxExtraLoadPercent}
+ * percent of a hedge, and a hedge is only sent if a whole one has been earned.
+ *
+ * @see HttpShardHandlerFactory
+ */
+class ShardRequestHedger implements Closeable {
+
+  /** Latencies kept to compute the hedge delay from */
+  static final int NUM_SAMPLES = 1024;
+
+  /** Hedging starts once this many latencies have been recorded */
+  static final int MIN_SAMPLES = 100;
+
+  /** How often the hedge delay is recomputed, in recorded latencies */
+  static final int RECOMPUTE_INTERVAL = 64;
+
+  /** Maximum number of hedges that may be sent in a burst */
+  static final double MAX_BUDGET = 10;
+
+  private final boolean enabledByDefault;
+  private final double percentile;
+  private final long minDelayNs;
+  private final double budgetPerRequest;
+
+  private final long[] samples = new long[NUM_SAMPLES]; // guarded by this
+  private long numSamples; // guarded by this
+  private volatile long delayNs = -1;
+  private double budget; // guarded by this
+
+  private volatile ScheduledExecutorService scheduler;
+  private AttributedLongCounter hedgesCounter;
+  private AttributedLongCounter hedgeWinsCounter;
+
+  ShardRequestHedger(
+      boolean enabledByDefault, double percentile, long minDelayMs, double maxExtraLoadPercent) {
+    if (!(percentile > 0 && percentile < 100)) {
+      throw new IllegalArgumentException("hedge percentile must be in (0, 100): " + percentile);
+    }
+    this.enabledByDefault = enabledByDefault;
+    this.percentile = percentile;
+    this.minDelayNs = TimeUnit.MILLISECONDS.toNanos(minDelayMs);
+    this.budgetPerRequest = maxExtraLoadPercent / 100;
+  }
+
+  /** Whether requests are hedged unless they specify otherwise */
+  boolean isEnabledByDefault() {
+    return enabledByDefault;
+  }
+
+  void initializeMetrics(SolrMetricsContext solrMetricsContext) {
+    hedgesCounter =
+        new AttributedLongCounter(
+            solrMetricsContext.longCounter(
+                "solr.client.request.hedges",
+                "Shard requests duplicated to another replica because they were slow"),
+            Attributes.empty());
+    hedgeWinsCounter =
+        new AttributedLongCounter(
+            solrMetricsContext.longCounter(
+                "solr.client.request.hedge_wins",
+                "Hedged shard requests that were answered by the duplicate first"),
+            Attributes.empty());
+  }
+
+  /** Records the latency of a successful shard request */
+  void recordLatency(long latencyNs) {
+    synchronized (this) {
+      samples[(int) (numSamples++ % NUM_SAMPLES)] = latencyNs;
+      if (numSamples < MIN_SAMPLES || numSamples % RECOMPUTE_INTERVAL != 0) {
+        return;
+      }
+    }
+    delayNs = Math.max(minDelayNs, computePercentile());
+  }
+
+  private long computePercentile() {
+    long[] sorted;
+    synchronized (this) {
+      sorted = Arrays.copyOf(samples, (int) Math.min(numSamples, NUM_SAMPLES));
+    }
+    Arrays.sort(sorted);
+    int idx = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+  }
+
+  /** The current hedge delay, or -1 if not enough latencies were recorded yet */
+  long getDelayNs() {
+    return delayNs;
+  }
+
+  private synchronized boolean tryAcquireBudget() {
+    if (budget >= 1) {
+      budget -= 1;
+      return true;
+    }
+    return false;
+  }
+
+  private synchronized void earnBudget() {
+    budget = Math.min(MAX_BUDGET, budget + budgetPerRequest);
+  }
+
+  /**
+   * Returns a future completing with whichever of {@code primary} or a hedge request, sent by
+   * {@code sender} on {@code executor} to the remaining replicas of {@code req} once the hedge
+   * delay has passed, first completes successfully. Canceling the returned future cancels both
+   * requests. The hedge is sent with the context of the calling thread, e.g. the {@link
+   * org.apache.solr.request.SolrRequestInfo} the request is authenticated with.
+   */
+  CompletableFuture<LBSolrClient.Rsp> hedge(
+      CompletableFuture<LBSolrClient.Rsp> primary,
+      LBSolrClient.Req req,
+      long startTimeNs,
+      Function<LBSolrClient.Req, CompletableFuture<LBSolrClient.Rsp>> sender,
+      Executor executor) {
+    earnBudget();
+    long delay = delayNs;
+    if (delay < 0 || req.getEndpoints().size() < 2) {
+      primary.thenAccept(rsp -> recordLatency(System.nanoTime() - startTimeNs));
+      return primary;
+    }
+    Hedged hedged = new Hedged(primary);
+    hedged.result.thenAccept(rsp -> recordLatency(System.nanoTime() - startTimeNs));
+    primary.whenComplete(hedged::onPrimary);
+    // not canceled when the request completes: the captured context is released by running it
+    Runnable timer =
+        ExecutorUtil.withCurrentContext(
+            () -> {
+              if (hedged.result.isDone()) {
+                return;
+              }
+              try {
+                // the executor takes over the context, the scheduler thread only hands over
+                executor.execute(() -> hedged.sendHedge(req, sender));
+              } catch (RejectedExecutionException e) {
+                // shutting down
+              }
+            });
+    getScheduler().schedule(timer, delay - (System.nanoTime() - startTimeNs), TimeUnit.NANOSECONDS);
+    hedged.result.whenComplete((rsp, t) -> hedged.cancelOutstanding());
+    return hedged.result;
+  }
+
+  private ScheduledExecutorService getScheduler() {
+    ScheduledExecutorService s = scheduler;
+    if (s == null) {
+      synchronized (this) {
+        s = scheduler;
+        if (s == null) {
+          s =
+              scheduler =
+                  ExecutorUtil.newMDCAwareSingleThreadScheduledExecutor(
+                      new SolrNamedThreadFactory("shardRequestHedger"));
+        }
+      }
+    }
+    return s;
+  }
+
+  /** Sends the request to the same replicas, starting with the second one */
+  static LBSolrClient.Req rotate(LBSolrClient.Req req) {
+    List<LBSolrClient.Endpoint> endpoints = new ArrayList<>(req.getEndpoints());
+    endpoints.add(endpoints.remove(0));
+    return new LBSolrClient.Req(req.getRequest(), endpoints, req.getNumServersToTry());
+  }
+
+  @Override
+  public void close() {
+    ScheduledExecutorService s = scheduler;
+    if (s != null) {
+      // let the pending timers run, to release the contexts they hold
+      ExecutorUtil.shutdownAndAwaitTermination(s);
+    }
+  }
+
+  private class Hedged {
+    final CompletableFuture<LBSolrClient.Rsp> result = new CompletableFuture<>();
+    final CompletableFuture<LBSolrClient.Rsp> primary;
+    // guarded by this
+    private boolean hedgeSent;
+    private CompletableFuture<LBSolrClient.Rsp> hedge;
+    private Throwable primaryError;
+    private boolean hedgeFailed;
+
+    Hedged(CompletableFuture<LBSolrClient.Rsp> primary) {
+      this.primary = primary;
+    }
+
+    void onPrimary(LBSolrClient.Rsp rsp, Throwable t) {
+      if (t == null) {
+        result.complete(rsp);
+        return;
+      }
+      synchronized (this) {
+        primaryError = t;
+        if (hedgeSent && !hedgeFailed) {
+          return; // the hedge may still succeed
+        }
+      }
+      result.completeExceptionally(t);
+    }
+
+    void onHedge(LBSolrClient.Rsp rsp, Throwable t) {
+      if (t == null) {
+        if (result.complete(rsp) && hedgeWinsCounter != null) {
+          hedgeWinsCounter.inc();
+        }
+        return;
+      }
+      Throwable error;
+      synchronized (this) {
+        hedgeFailed = true;
+        error = primaryError;
+      }
+      if (error != null) {
+        result.completeExceptionally(error);
+      }
+    }
+
+    void sendHedge(
+        LBSolrClient.Req req,
+        Function<LBSolrClient.Req, CompletableFuture<LBSolrClient.Rsp>> sender) {
+      synchronized (this) {
+        // the load balancer already failed over if the primary request failed
+        if (result.isDone() || primaryError != null || !tryAcquireBudget()) {
+          return;
+        }
+        hedgeSent = true;
+      }
+      if (hedgesCounter != null) {
+        hedgesCounter.inc();
+      }
+      CompletableFuture<LBSolrClient.Rsp> h;
+      try {
+        // not holding the lock, sending may block
+        h = sender.apply(rotate(req));
+      } catch (RuntimeException e) {
+        onHedge(null, e);
+        return;
+      }
+      synchronized (this) {
+        hedge = h;
+      }
+      h.whenComplete(this::onHedge);
+      if (result.isDone()) {
+        h.cancel(true);
+      }
+    }
+
+    void cancelOutstanding() {
+      // canceling a completed future is a no-op
+      primary.cancel(true);
+      CompletableFuture<LBSolrClient.Rsp> h;
+      synchronized (this) {
+        h = hedge;
+      }
+      if (h != null) {
+        h.cancel(true);
+      }
+    }
+  }
+}
@@ -58,6 +58,7 @@ class ExportBuffers {
   final int totalHits;
   Buffer fillBuffer;
   Buffer outputBuffer;
+  final MergeIterator mergeIterator;
   Runnable filler;
   ExecutorService service;
   Throwable error;
@@ -96,7 +97,7 @@ class ExportBuffers {
     outputBuffer = bufferTwo;
     SortDoc writerSortDoc = exportWriter.getSortDoc(searcher, sort.getSort());
 
-    MergeIterator mergeIterator = exportWriter.getMergeIterator(leaves, sets, writerSortDoc);
+    mergeIterator = exportWriter.getMergeIterator(leaves, sets, writerSortDoc);
 
     bufferOne.initialize(writerSortDoc);
     bufferTwo.initialize(writerSortDoc);
@@ -200,6 +201,7 @@ class ExportBuffers {
       service.shutdownNow();
       service = null;
     }
+    mergeIterator.close();
     shutDown = true;
   }
 
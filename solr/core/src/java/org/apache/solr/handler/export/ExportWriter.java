@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.lang.invoke.MethodHandles;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -32,6 +33,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedDocValues;
@@ -41,6 +46,7 @@ import org.apache.lucene.search.SortField;
 import org.apache.lucene.util.BitSetIterator;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.stream.ColumnarTupleBatch;
 import org.apache.solr.client.solrj.io.stream.StreamContext;
 import org.apache.solr.client.solrj.io.stream.TupleStream;
 import org.apache.solr.client.solrj.io.stream.expr.StreamExpression;
@@ -94,6 +100,10 @@ import org.slf4j.LoggerFactory;
  * that haven't been sent yet and stores them in a Priority Queue. They are then exported (written
  * across the wire) and marked as sent (unset in the bitmap). This process repeats until all
  * matching documents have been sent.
+ *
+ * <p>With {@code multiThreaded=true}, and when the node has an executor for multi-threaded search
+ * (see {@code indexSearcherExecutorThreads}), the passes over the segments run on it, in parallel
+ * and ahead of the merge of their results.
  */
 public class ExportWriter implements SolrCore.RawWriter, Closeable {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
@@ -122,6 +132,8 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
   final int batchSize;
   // The max combined size of the segment level priority queues.
   private int priorityQueueSize;
+  // Sorts the docs of the segments in parallel, if not null
+  final Executor executor;
   StreamExpression streamExpression;
   StreamContext streamContext;
   List<FieldWriter> fieldWriters;
@@ -145,11 +157,15 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     this.metricsPath = metricsPath;
     this.priorityQueueSize = req.getParams().getInt(QUEUE_SIZE_PARAM, DEFAULT_QUEUE_SIZE);
     this.batchSize = DEFAULT_BATCH_SIZE;
+    this.executor =
+        req.getParams().getBool(CommonParams.MULTI_THREADED, false)
+            ? req.getCoreContainer().getIndexSearcherExecutor()
+            : null;
   }
 
   @Override
   public String getContentType() {
-    if ("javabin".equals(wt)) {
+    if ("javabin".equals(wt) || ColumnarTupleBatch.WT.equals(wt)) {
       return JavaBinResponseParser.JAVABIN_CONTENT_TYPE;
     } else return "json";
   }
@@ -198,7 +214,9 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
 
   private void _write(OutputStream os) throws IOException {
     QueryResponseWriter rw = req.getCore().getResponseWriters().get(wt);
-    if (rw instanceof JacksonJsonWriter) {
+    if (ColumnarTupleBatch.WT.equals(wt)) {
+      writer = new JavaBinCodec(os, null);
+    } else if (rw instanceof JacksonJsonWriter) {
       writer = ((JacksonJsonWriter) rw).getWriter(os, req, res);
     } else if (rw instanceof JavaBinResponseWriter) {
       // todo add support for other writers after testing
@@ -342,7 +360,18 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
                 (MapWriter)
                     mw -> {
                       mw.put("numFound", totalHits);
-                      mw.put("docs", (IteratorWriter) iw -> writeDocs(req, os, iw, sort));
+                      mw.put(
+                          "docs",
+                          (IteratorWriter)
+                              iw -> {
+                                if (ColumnarTupleBatch.WT.equals(wt)) {
+                                  ColumnarBatchWriter batchWriter = new ColumnarBatchWriter(iw);
+                                  writeDocs(req, os, batchWriter, sort);
+                                  batchWriter.flush();
+                                } else {
+                                  writeDocs(req, os, iw, sort);
+                                }
+                              });
                     });
           });
     } catch (EOFException e) {
@@ -474,6 +503,34 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     }
   }
 
+  /** Writes the docs or tuples added to it in {@link ColumnarTupleBatch}es */
+  static class ColumnarBatchWriter implements IteratorWriter.ItemWriter {
+    private final IteratorWriter.ItemWriter out;
+    private final ColumnarTupleBatch batch = new ColumnarTupleBatch();
+
+    ColumnarBatchWriter(IteratorWriter.ItemWriter out) {
+      this.out = out;
+    }
+
+    @Override
+    public IteratorWriter.ItemWriter add(Object o) throws IOException {
+      batch.addRow((MapWriter) o);
+      if (batch.size() >= ColumnarTupleBatch.DEFAULT_MAX_ROWS) {
+        flush();
+      }
+      return this;
+    }
+
+    /** Writes the docs or tuples added since the last batch was written */
+    void flush() throws IOException {
+      if (batch.size() > 0) {
+        // the batch is serialized right away, so it can then be reused
+        out.add(batch);
+        batch.clear();
+      }
+    }
+  }
+
   void fillOutDocs(MergeIterator mergeIterator, ExportBuffers.Buffer buffer) throws IOException {
     transferBatchToBufferForOutput(mergeIterator, buffer);
   }
@@ -750,10 +807,23 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       }
       return outDoc;
     }
+
+    /** Stops the segment iterators from sorting docs ahead */
+    void close() {
+      for (SegmentIterator segmentIterator : segmentIterators) {
+        segmentIterator.close();
+      }
+    }
   }
 
   public MergeIterator getMergeIterator(
       List<LeafReaderContext> leaves, FixedBitSet[] bits, SortDoc sortDoc) throws IOException {
+    return getMergeIterator(leaves, bits, sortDoc, executor);
+  }
+
+  MergeIterator getMergeIterator(
+      List<LeafReaderContext> leaves, FixedBitSet[] bits, SortDoc sortDoc, Executor executor)
+      throws IOException {
     try {
       long totalDocs = 0;
       for (int i = 0; i < leaves.size(); i++) {
@@ -797,7 +867,7 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       for (int i = 0; i < segmentIterators.length; i++) {
         SortQueue sortQueue = new SortQueue(sizes[i], sortDoc.copy());
         segmentIterators[i] =
-            new SegmentIterator(bits[i], leaves.get(i), sortQueue, sortDoc.copy());
+            new SegmentIterator(bits[i], leaves.get(i), sortQueue, sortDoc.copy(), executor);
       }
 
       return new MergeIterator(segmentIterators, sortDoc);
@@ -805,85 +875,167 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     }
   }
 
+  /**
+   * Iterates over the docs of a segment in sort order, by repeatedly passing over the docs not
+   * exported yet to collect the top ones in a {@link SortQueue}. With an executor, the passes run
+   * on it, the next one while the docs of the current one are merged.
+   */
   private static class SegmentIterator {
 
+    // how many docs a pass goes through between checks for the iterator being closed
+    private static final int CLOSED_CHECK_INTERVAL = 4096;
+
     private final FixedBitSet bits;
-    private final SortQueue queue;
-    private final SortDoc sortDoc;
     private final LeafReaderContext context;
-    private final SortDoc[] outDocs;
-
+    private final Executor executor;
     private SortDoc nextDoc;
-    private int index;
+    // the docs being iterated over
+    private Pass current;
+    // with an executor, the pass that runs ahead
+    private Pass spare;
+    private CompletableFuture<Void> pending;
+    private boolean exhausted;
+    private volatile boolean closed;
 
     public SegmentIterator(
-        FixedBitSet bits, LeafReaderContext context, SortQueue sortQueue, SortDoc sortDoc)
-        throws IOException {
+        FixedBitSet bits,
+        LeafReaderContext context,
+        SortQueue sortQueue,
+        SortDoc sortDoc,
+        Executor executor) {
       this.bits = bits;
-      this.queue = sortQueue;
-      this.sortDoc = sortDoc;
-      this.nextDoc = sortDoc.copy();
       this.context = context;
-      this.outDocs = new SortDoc[sortQueue.maxSize];
-      topDocs();
+      this.executor = executor;
+      this.nextDoc = sortDoc.copy();
+      this.current = new Pass(sortQueue, sortDoc);
+      if (executor != null) {
+        this.spare = new Pass(new SortQueue(sortQueue.maxSize, sortDoc.copy()), sortDoc.copy());
+        this.pending = runAhead(spare);
+      }
     }
 
     public SortDoc next() throws IOException {
-      SortDoc _sortDoc = null;
-      if (index > -1) {
-        _sortDoc = outDocs[index--];
-      } else {
-        topDocs();
-        if (index > -1) {
-          _sortDoc = outDocs[index--];
+      if (current.index < 0) {
+        nextPass();
+        if (current.index < 0) {
+          return null;
         }
       }
+      SortDoc _sortDoc = current.outDocs[current.index--];
 
-      if (_sortDoc != null) {
-        // Clear the bit so it's not loaded again.
-        bits.clear(_sortDoc.docId);
+      // Load the global ordinal (only matters for strings)
+      _sortDoc.setGlobalValues(nextDoc);
 
-        // Load the global ordinal (only matters for strings)
-        _sortDoc.setGlobalValues(nextDoc);
+      nextDoc.setValues(_sortDoc);
+      // We are now done with this doc.
+      _sortDoc.reset();
+      return nextDoc;
+    }
 
-        nextDoc.setValues(_sortDoc);
-        // We are now done with this doc.
-        _sortDoc.reset();
+    private void nextPass() throws IOException {
+      if (exhausted) {
+        return;
+      }
+      if (pending == null) {
+        current.run();
       } else {
-        nextDoc = null;
+        try {
+          pending.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException(e);
+        } catch (ExecutionException e) {
+          throw new IOException(e.getCause());
+        }
+        Pass done = spare;
+        spare = current;
+        current = done;
+        pending = null;
+      }
+      // a pass that didn't fill the queue got all the remaining docs
+      if (current.index + 1 < current.queue.maxSize) {
+        exhausted = true;
+      } else if (executor != null) {
+        pending = runAhead(spare);
       }
-      return nextDoc;
     }
 
-    private void topDocs() throws IOException {
+    private CompletableFuture<Void> runAhead(Pass pass) {
       try {
-        queue.reset();
-        SortDoc top = queue.top();
-        this.sortDoc.setNextReader(context);
-        DocIdSetIterator it = new BitSetIterator(bits, 0); // cost is not useful here
-        int docId;
-        while ((docId = it.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-          this.sortDoc.setValues(docId);
-          // Always set the top doc if previously not set, otherwise
-          // set the top if the sortDoc is greater than current
-          if (top.lessThan(this.sortDoc) || top.docId == -1) {
-            top.setValues(this.sortDoc);
-            top = queue.updateTop();
-          }
+        return CompletableFuture.runAsync(
+            () -> {
+              try {
+                pass.run();
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            },
+            executor);
+      } catch (RejectedExecutionException e) {
+        // like Lucene does when the executor is saturated, run it in this thread
+        try {
+          pass.run();
+          return CompletableFuture.completedFuture(null);
+        } catch (IOException ioe) {
+          return CompletableFuture.failedFuture(ioe);
         }
+      }
+    }
+
+    /** Stops a pass running ahead, once the docs aren't needed anymore */
+    void close() {
+      closed = true;
+    }
+
+    /** A pass over the docs of the segment that weren't collected by a previous pass */
+    private class Pass {
+      final SortQueue queue;
+      final SortDoc sortDoc;
+      final SortDoc[] outDocs;
+      int index = -1;
+
+      Pass(SortQueue queue, SortDoc sortDoc) {
+        this.queue = queue;
+        this.sortDoc = sortDoc;
+        this.outDocs = new SortDoc[queue.maxSize];
+      }
 
-        // Pop the queue and load up the array.
-        index = -1;
+      void run() throws IOException {
+        try {
+          index = -1;
+          queue.reset();
+          SortDoc top = queue.top();
+          this.sortDoc.setNextReader(context);
+          DocIdSetIterator it = new BitSetIterator(bits, 0); // cost is not useful here
+          int docId;
+          int count = 0;
+          while ((docId = it.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+            if (++count % CLOSED_CHECK_INTERVAL == 0 && closed) {
+              return;
+            }
+            this.sortDoc.setValues(docId);
+            // Always set the top doc if previously not set, otherwise
+            // set the top if the sortDoc is greater than current
+            if (top.lessThan(this.sortDoc) || top.docId == -1) {
+              top.setValues(this.sortDoc);
+              top = queue.updateTop();
+            }
+          }
 
-        SortDoc _sortDoc;
-        while ((_sortDoc = queue.pop()) != null) {
-          if (_sortDoc.docId > -1) {
-            outDocs[++index] = _sortDoc;
+          // Pop the queue and load up the array.
+          SortDoc _sortDoc;
+          while ((_sortDoc = queue.pop()) != null) {
+            if (_sortDoc.docId > -1) {
+              outDocs[++index] = _sortDoc;
+              // Clear the bit so it's not loaded again, the next pass may run before these docs
+              // are merged
+              bits.clear(_sortDoc.docId);
+            }
           }
+        } catch (Exception e) {
+          log.error("Segment Iterator Error:", e);
+          throw new IOException(e);
         }
-      } catch (Exception e) {
-        log.error("Segment Iterator Error:", e);
-        throw new IOException(e);
       }
     }
   }
@@ -91,6 +91,8 @@ public class CaffeineCache<K, V> extends SolrCacheBase
   private Cache<K, V> cache;
   private AsyncCache<K, V> asyncCache;
   private long warmupTime;
+  private volatile int warmupEntries;
+  private volatile int warmedEntries;
   private int maxSize;
   private long maxRamBytes;
   private int initialSize;
@@ -406,7 +408,17 @@ public class CaffeineCache<K, V> extends SolrCacheBase
       hottest = other.cache.policy().eviction().map(p -> p.hottest(size)).orElse(Map.of());
     }
 
+    warmupEntries = hottest.size();
+    warmedEntries = 0;
+    int warmed = 0;
     for (Entry<K, V> entry : hottest.entrySet()) {
+      if (searcher != null && searcher.isWarmingCancelled()) {
+        if (log.isInfoEnabled()) {
+          log.info(
+              "Autowarming of {} cancelled after {} of {} entries", name(), warmed, hottest.size());
+        }
+        break;
+      }
       try {
         boolean continueRegen =
             regenerator.regenerateItem(searcher, this, old, entry.getKey(), entry.getValue());
@@ -416,6 +428,7 @@ public class CaffeineCache<K, V> extends SolrCacheBase
       } catch (Exception e) {
         log.error("Error during auto-warming of key: {}", entry.getKey(), e);
       }
+      warmedEntries = ++warmed;
     }
 
     hits.reset();
@@ -430,6 +443,18 @@ public class CaffeineCache<K, V> extends SolrCacheBase
         TimeUnit.MILLISECONDS.convert(System.nanoTime() - warmingStartTime, TimeUnit.NANOSECONDS);
   }
 
+  /**
+   * Returns the number of entries of the old cache that the current or last warming regenerates.
+   */
+  public int getWarmupEntries() {
+    return warmupEntries;
+  }
+
+  /** Returns the number of entries that the current or last warming has regenerated so far. */
+  public int getWarmedEntries() {
+    return warmedEntries;
+  }
+
   /** Returns the description of this cache. */
   private String generateDescription(int limit, int initialSize) {
     return String.format(
@@ -138,6 +138,25 @@ public class CollapsingQParserPlugin extends QParserPlugin {
    */
   public static final String HINT_BLOCK = "block";
 
+  /**
+   * Indicates that values in the collapse field are unique per segment, so a collapse algorithm
+   * selecting the group heads of each segment on its own can be used. This only holds when each
+   * group is always added atomically, as a block of documents (e.g. with child documents, which
+   * {@link org.apache.lucene.index.IndexWriter#addDocuments} keeps in one segment), and no document
+   * of a group is ever updated on its own, which moves it to a new segment. Routing documents on
+   * the collapse field only picks their shard, and the documents of a single update request may be
+   * flushed into several segments. It needs neither the top level ordinals of the field, nor group
+   * heads sized to the number of its unique values across the index, which makes a big difference
+   * in memory for fields with many unique values. This hint is currently only used for string
+   * fields with the group head selected by score, and will be ignored if other options prevent its
+   * use (notable: nullPolicy=collapse)
+   *
+   * <p><em>Do <strong>NOT</strong> use this hint if each unique value in the collapse field is not
+   * guaranteed to only exist in one segment, otherwise the results of the collapse filter will
+   * include more than one document per collapse value.</em>
+   */
+  public static final String HINT_SEGMENT = "segment";
+
   /**
    * If elevation is used in combination with the collapse query parser, we can define that we only
    * want to return the representative and not all elevated docs by setting this parameter to false
@@ -583,6 +602,14 @@ public class CollapsingQParserPlugin extends QParserPlugin {
     }
   }
 
+  /**
+   * Reports the structures holding the group heads collected by a collapsing collector to the
+   * {@link MemoryAccounting} of the request.
+   */
+  private static void accountGroupHeads(long bytes) {
+    MemoryAccounting.current().add(MemoryAccounting.COLLAPSE, bytes);
+  }
+
   /**
    * Collapses on Ordinal Values using Score to select the group head.
    *
@@ -713,6 +740,11 @@ public class CollapsingQParserPlugin extends QParserPlugin {
       if (contexts.length == 0) {
         return;
       }
+      accountGroupHeads(
+          collapsedSet.ramBytesUsed()
+              + ords.ramBytesUsed()
+              + scores.ramBytesUsed()
+              + (nullScores == null ? 0 : nullScores.ramBytesAllocated()));
 
       // Handle the boosted docs.
       boostedDocsCollector.purgeGroupsThatHaveBoostedDocs(
@@ -920,6 +952,10 @@ public class CollapsingQParserPlugin extends QParserPlugin {
       if (contexts.length == 0) {
         return;
       }
+      accountGroupHeads(
+          collapsedSet.ramBytesUsed()
+              + cmap.ramBytesAllocated()
+              + (nullScores == null ? 0 : nullScores.ramBytesAllocated()));
 
       // Handle the boosted docs.
       boostedDocsCollector.purgeGroupsThatHaveBoostedDocs(
@@ -1509,6 +1545,134 @@ public class CollapsingQParserPlugin extends QParserPlugin {
     }
   }
 
+  /**
+   * Collapses on the ordinals of a string field using the score to select the group head, one
+   * segment at a time, when each value of the field only exists in one segment (see {@link
+   * #HINT_SEGMENT}): the group heads only hold the ordinals of the current segment, and are
+   * delegated at the end of each segment.
+   *
+   * @lucene.internal
+   */
+  static class SegmentOrdScoreCollector extends DelegatingCollector {
+
+    private final String collapseField;
+    private final boolean expandNulls;
+    private final boolean collectElevatedDocsWhenCollapsing;
+    private final MergeBoost boostDocs;
+    private SortedDocValues segmentValues;
+    private IntIntDynamicMap ords;
+    private IntFloatDynamicMap scores;
+    private FixedBitSet collapsedSet;
+
+    /** The docs of the segment collected regardless of their group, in order, and their scores */
+    private final IntArrayList otherDocs = new IntArrayList();
+
+    private final FloatArrayList otherScores = new FloatArrayList();
+    private final IntArrayList boostedOrds = new IntArrayList();
+
+    public SegmentOrdScoreCollector(
+        String collapseField,
+        int nullPolicy,
+        IntIntHashMap boostDocsMap,
+        boolean collectElevatedDocsWhenCollapsing) {
+      assert nullPolicy != NullPolicy.COLLAPSE.getCode();
+      this.collapseField = collapseField;
+      this.expandNulls = NullPolicy.EXPAND.getCode() == nullPolicy;
+      this.collectElevatedDocsWhenCollapsing = collectElevatedDocsWhenCollapsing;
+      this.boostDocs = BoostedDocsCollector.build(boostDocsMap).getMergeBoost();
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+      return ScoreMode.COMPLETE;
+    }
+
+    @Override
+    public boolean isSegmentLocal() {
+      return true;
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+      collectGroupHeads();
+      // the segments of a slice of a concurrent search may not be in order
+      boostDocs.reset();
+      super.doSetNextReader(context);
+      this.segmentValues = DocValues.getSorted(context.reader(), collapseField);
+      int valueCount = segmentValues.getValueCount();
+      this.ords = new IntIntDynamicMap(valueCount, -1);
+      this.scores = new IntFloatDynamicMap(valueCount, -Float.MAX_VALUE);
+      int maxDoc = context.reader().maxDoc();
+      if (collapsedSet == null || collapsedSet.length() < maxDoc) {
+        collapsedSet = new FixedBitSet(maxDoc);
+      }
+    }
+
+    @Override
+    public void collect(int contextDoc) throws IOException {
+      boolean boosted =
+          collectElevatedDocsWhenCollapsing && boostDocs.boost(contextDoc + this.docBase);
+      if (segmentValues.advanceExact(contextDoc)) {
+        int ord = segmentValues.ordValue();
+        float score = scorer.score();
+        if (boosted) {
+          boostedOrds.add(ord);
+          otherDocs.add(contextDoc);
+          otherScores.add(score);
+        } else if (score > scores.get(ord)) {
+          ords.put(ord, contextDoc);
+          scores.put(ord, score);
+        }
+      } else if (boosted || expandNulls) {
+        otherDocs.add(contextDoc);
+        otherScores.add(scorer.score());
+      }
+    }
+
+    /** Delegates the group heads of the current segment, if any, in the order of their docs. */
+    private void collectGroupHeads() throws IOException {
+      if (ords == null) {
+        return;
+      }
+      accountGroupHeads(ords.ramBytesUsed() + scores.ramBytesUsed());
+
+      // remove the groups that have boosted docs, and add the docs collected regardless of groups
+      boostedOrds.forEach((IntProcedure) ord -> ords.remove(ord));
+      ords.forEachValue(doc -> collapsedSet.set(doc));
+      otherDocs.forEach((IntProcedure) doc -> collapsedSet.set(doc));
+
+      SortedDocValues values = DocValues.getSorted(context.reader(), collapseField);
+      ScoreAndDoc dummy = new ScoreAndDoc();
+      leafDelegate.setScorer(dummy);
+      int maxDoc = context.reader().maxDoc();
+      int index = 0;
+      DocIdSetIterator it = new BitSetIterator(collapsedSet, 0L); // cost is not useful here
+      for (int doc = it.nextDoc(); doc < maxDoc; doc = it.nextDoc()) {
+        if (index < otherDocs.size() && otherDocs.get(index) == doc) {
+          dummy.score = otherScores.get(index++);
+        } else {
+          values.advanceExact(doc);
+          dummy.score = scores.get(values.ordValue());
+        }
+        dummy.docId = doc;
+        leafDelegate.collect(doc);
+      }
+
+      collapsedSet.clear(0, maxDoc);
+      otherDocs.clear();
+      otherScores.clear();
+      boostedOrds.clear();
+      ords = null;
+      scores = null;
+    }
+
+    @Override
+    public void complete() throws IOException {
+      collectGroupHeads();
+      super.complete();
+    }
+  }
+
   /**
    * Base class for collectors that will do collapsing using "block indexed" documents
    *
@@ -1544,6 +1708,11 @@ public class CollapsingQParserPlugin extends QParserPlugin {
       return needsScores ? ScoreMode.COMPLETE : super.scoreMode();
     }
 
+    @Override
+    public boolean isSegmentLocal() {
+      return true;
+    }
+
     /** If we have a candidate match, delegate the collection of that match. */
     protected void maybeDelegateCollect() throws IOException {
       if (currentGroupState.isCurrentDocCollectable()) {
@@ -1568,8 +1737,10 @@ public class CollapsingQParserPlugin extends QParserPlugin {
     @Override
     protected void doSetNextReader(LeafReaderContext context) throws IOException {
       maybeDelegateCollect();
-      // Now setup for the next segment.
+      // Now setup for the next segment, which may not follow this one in a slice of a concurrent
+      // search.
       currentGroupState.resetForNewGroup();
+      boostDocs.reset();
       this.docBase = context.docBase;
       super.doSetNextReader(context);
     }
@@ -2083,6 +2254,17 @@ public class CollapsingQParserPlugin extends QParserPlugin {
 
       FieldType collapseFieldType = searcher.getSchema().getField(collapseField).getType();
 
+      final boolean segmentCollapse =
+          HINT_SEGMENT.equals(hint)
+              && collapseFieldType instanceof StrField
+              && GroupHeadSelectorType.SCORE.equals(groupHeadSelector.type)
+              && NullPolicy.COLLAPSE.getCode() != nullPolicy;
+      if (HINT_SEGMENT.equals(hint) && !segmentCollapse) {
+        log.debug(
+            "Query specifies hint={} but other local params prevent the use segment based collapse",
+            HINT_SEGMENT);
+      }
+
       if (collapseFieldType instanceof StrField) {
         // if we are using blockCollapse, then there is no need to bother with TOP_FC
         if (HINT_TOP_FC.equals(hint) && !blockCollapse) {
@@ -2148,6 +2330,10 @@ public class CollapsingQParserPlugin extends QParserPlugin {
           if (blockCollapse) {
             return new BlockOrdScoreCollector(collapseField, nullPolicy, boostDocs);
           }
+          if (segmentCollapse) {
+            return new SegmentOrdScoreCollector(
+                collapseField, nullPolicy, boostDocs, collectElevatedDocsWhenCollapsing);
+          }
           return new OrdScoreCollector(
               maxDoc,
               leafCount,
@@ -2326,7 +2512,16 @@ public class CollapsingQParserPlugin extends QParserPlugin {
       }
     }
 
+    /** Returns the size of the structures holding the group heads */
+    protected long ramBytesUsed() {
+      return collapsedSet.ramBytesUsed()
+          + ords.ramBytesUsed()
+          + (scores == null ? 0 : scores.ramBytesUsed())
+          + (nullScores == null ? 0 : nullScores.ramBytesAllocated());
+    }
+
     public FixedBitSet getCollapsedSet() {
+      accountGroupHeads(ramBytesUsed());
       // Handle the boosted docs.
       boostedDocsCollector.purgeGroupsThatHaveBoostedDocs(
           collapsedSet,
@@ -2398,6 +2593,11 @@ public class CollapsingQParserPlugin extends QParserPlugin {
       }
     }
 
+    @Override
+    protected long ramBytesUsed() {
+      return super.ramBytesUsed() + ordVals.ramBytesUsed();
+    }
+
     @Override
     public void setNextReader(LeafReaderContext context) throws IOException {
       this.minMaxValues = DocValues.getNumeric(context.reader(), this.field);
@@ -2475,6 +2675,11 @@ public class CollapsingQParserPlugin extends QParserPlugin {
       }
     }
 
+    @Override
+    protected long ramBytesUsed() {
+      return super.ramBytesUsed() + ordVals.ramBytesUsed();
+    }
+
     @Override
     public void setNextReader(LeafReaderContext context) throws IOException {
       this.minMaxValues = DocValues.getNumeric(context.reader(), this.field);
@@ -2554,6 +2759,11 @@ public class CollapsingQParserPlugin extends QParserPlugin {
       }
     }
 
+    @Override
+    protected long ramBytesUsed() {
+      return super.ramBytesUsed() + ordVals.ramBytesUsed();
+    }
+
     @Override
     public void setNextReader(LeafReaderContext context) throws IOException {
       this.minMaxVals = DocValues.getNumeric(context.reader(), this.field);
@@ -2640,6 +2850,11 @@ public class CollapsingQParserPlugin extends QParserPlugin {
       collapseScore.setupIfNeeded(groupHeadSelector, rcontext);
     }
 
+    @Override
+    protected long ramBytesUsed() {
+      return super.ramBytesUsed() + ordVals.ramBytesUsed();
+    }
+
     @Override
     public void setNextReader(LeafReaderContext context) throws IOException {
       functionValues = this.valueSource.getValues(rcontext, context);
@@ -2853,7 +3068,17 @@ public class CollapsingQParserPlugin extends QParserPlugin {
       }
     }
 
+    /** Returns the size of the structures holding the group heads */
+    protected long ramBytesUsed() {
+      return collapsedSet.ramBytesUsed()
+          + cmap.ramBytesAllocated()
+          + docs.ramBytesUsed()
+          + (scores == null ? 0 : scores.ramBytesUsed())
+          + (nullScores == null ? 0 : nullScores.ramBytesAllocated());
+    }
+
     public FixedBitSet getCollapsedSet() {
+      accountGroupHeads(ramBytesUsed());
 
       // Handle the boosted docs.
       boostedDocsCollector.purgeGroupsThatHaveBoostedDocs(
@@ -2943,6 +3168,11 @@ public class CollapsingQParserPlugin extends QParserPlugin {
       }
     }
 
+    @Override
+    protected long ramBytesUsed() {
+      return super.ramBytesUsed() + testValues.ramBytesUsed();
+    }
+
     @Override
     public void setNextReader(LeafReaderContext context) throws IOException {
       this.minMaxVals = DocValues.getNumeric(context.reader(), this.field);
@@ -3037,6 +3267,11 @@ public class CollapsingQParserPlugin extends QParserPlugin {
       }
     }
 
+    @Override
+    protected long ramBytesUsed() {
+      return super.ramBytesUsed() + testValues.ramBytesUsed();
+    }
+
     @Override
     public void setNextReader(LeafReaderContext context) throws IOException {
       this.minMaxVals = DocValues.getNumeric(context.reader(), this.field);
@@ -3146,6 +3381,11 @@ public class CollapsingQParserPlugin extends QParserPlugin {
       collapseScore.setupIfNeeded(groupHeadSelector, rcontext);
     }
 
+    @Override
+    protected long ramBytesUsed() {
+      return super.ramBytesUsed() + testValues.ramBytesUsed();
+    }
+
     @Override
     @SuppressWarnings({"unchecked"})
     public void setNextReader(LeafReaderContext context) throws IOException {
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.Arrays;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Pruning;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * The sorted docs following a {@link CursorMark} position, as collected by a single execution of a
+ * query, and cached in the cursorMarkCache of a {@link SolrIndexSearcher}. Since the docs are in
+ * sort order, the page following any cursor position at or after the one the window was collected
+ * for is a run of the window's docs, which can be returned without executing the query again.
+ */
+final class CursorWindow implements Accountable {
+  private static final long BASE_RAM_BYTES_USED =
+      RamUsageEstimator.shallowSizeOfInstance(CursorWindow.class);
+  private static final long BYTES_REF_RAM_BYTES_USED =
+      RamUsageEstimator.shallowSizeOfInstance(BytesRef.class);
+  // a boxed number, e.g. the Long or Float sort value of a doc
+  private static final long BOXED_RAM_BYTES_USED =
+      RamUsageEstimator.shallowSizeOfInstance(Long.class);
+
+  @SuppressWarnings("rawtypes")
+  private final FieldComparator[] comparators;
+
+  private final int[] reverseMul;
+  // the sort values of the position the docs follow, or null if they start with the first doc
+  private final Object[] start;
+  private final int[] docs;
+  private final float[] scores;
+  private final Object[][] sortValues;
+  // no docs follow the last one of the window
+  private final boolean complete;
+  private final long matches;
+  private final TotalHits.Relation matchesRelation;
+  private final float maxScore;
+  private final long ramBytesUsed;
+
+  /**
+   * @param weightedSort the sort of the query, weighted by the searcher
+   * @param after the position the docs follow, see {@link CursorMark#getSearchAfterFieldDoc}
+   * @param topDocs the docs collected after the position, with their sort values
+   * @param complete whether no more docs follow the collected ones
+   * @param docList the docs collected after the position, for their scores and hit count
+   */
+  CursorWindow(
+      Sort weightedSort, FieldDoc after, TopFieldDocs topDocs, boolean complete, DocList docList) {
+    final SortField[] sortFields = weightedSort.getSort();
+    this.comparators = new FieldComparator<?>[sortFields.length];
+    this.reverseMul = new int[sortFields.length];
+    for (int i = 0; i < sortFields.length; i++) {
+      // only compareValues is used, which doesn't depend on the number of hits
+      comparators[i] = sortFields[i].getComparator(1, Pruning.NONE);
+      reverseMul[i] = sortFields[i].getReverse() ? -1 : 1;
+    }
+    this.start = after == null ? null : after.fields;
+    final ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+    this.docs = new int[scoreDocs.length];
+    this.scores = docList.hasScores() ? new float[scoreDocs.length] : null;
+    this.sortValues = new Object[scoreDocs.length][];
+    long ram = BASE_RAM_BYTES_USED + sizeOfValues(start);
+    for (int i = 0; i < scoreDocs.length; i++) {
+      final FieldDoc doc = (FieldDoc) scoreDocs[i];
+      docs[i] = doc.doc;
+      if (scores != null) {
+        scores[i] = doc.score;
+      }
+      sortValues[i] = doc.fields;
+      ram += sizeOfValues(doc.fields);
+    }
+    this.complete = complete;
+    this.matches = docList.matches();
+    this.matchesRelation = docList.hitCountRelation();
+    this.maxScore = docList.maxScore();
+    this.ramBytesUsed =
+        ram
+            + RamUsageEstimator.sizeOf(docs)
+            + (scores == null ? 0 : RamUsageEstimator.sizeOf(scores))
+            + RamUsageEstimator.shallowSizeOf(sortValues);
+  }
+
+  private static long sizeOfValues(Object[] values) {
+    if (values == null) {
+      return 0;
+    }
+    long size = RamUsageEstimator.shallowSizeOf(values);
+    for (Object value : values) {
+      if (value instanceof BytesRef bytes) {
+        size += BYTES_REF_RAM_BYTES_USED + RamUsageEstimator.sizeOf(bytes.bytes);
+      } else if (value instanceof Number) {
+        size += BOXED_RAM_BYTES_USED;
+      } else {
+        size += RamUsageEstimator.sizeOfObject(value);
+      }
+    }
+    return size;
+  }
+
+  @SuppressWarnings("unchecked")
+  private int compare(Object[] first, Object[] second) {
+    for (int i = 0; i < comparators.length; i++) {
+      int c = reverseMul[i] * comparators[i].compareValues(first[i], second[i]);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Returns the index of the first doc following the cursor position, if this window has a page of
+   * docs for it: the position isn't before the start of the window, and either at least {@code len}
+   * docs follow it, or no more docs follow the window. Returns -1 otherwise.
+   *
+   * @param after the cursor position, see {@link CursorMark#getSearchAfterFieldDoc}
+   * @param len the number of docs requested
+   * @param needScores whether the page must have scores
+   */
+  int pageStart(FieldDoc after, int len, boolean needScores) {
+    if (needScores && scores == null) {
+      return -1;
+    }
+    if (after == null) {
+      return start == null && (docs.length >= len || complete) ? 0 : -1;
+    }
+    if (start != null && compare(after.fields, start) < 0) {
+      return -1;
+    }
+    // the sort includes the uniqueKey, so no two docs compare equal
+    int low = 0;
+    int high = docs.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compare(sortValues[mid], after.fields) <= 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return docs.length - low >= len || complete ? low : -1;
+  }
+
+  /** Returns the page of at most {@code len} docs starting at the given index */
+  DocSlice page(int start, int len) {
+    final int end = Math.min(docs.length, start + len);
+    return new DocSlice(
+        0,
+        end - start,
+        Arrays.copyOfRange(docs, start, end),
+        scores == null ? null : Arrays.copyOfRange(scores, start, end),
+        matches,
+        maxScore,
+        matchesRelation);
+  }
+
+  /** Returns the sort values of the doc at the given index */
+  Object[] sortValues(int index) {
+    return sortValues[index];
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+}
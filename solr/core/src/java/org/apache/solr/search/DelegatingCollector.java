@@ -45,6 +45,17 @@ public class DelegatingCollector extends SimpleCollector {
     this.delegate = delegate;
   }
 
+  /**
+   * Returns true if this collector collects each segment on its own, independently of the documents
+   * it collected from the other segments, so that a new instance can collect each slice of the
+   * index searched concurrently. Defaults to false.
+   *
+   * @see SolrIndexSearcher.ProcessedFilter#isConcurrent()
+   */
+  public boolean isSegmentLocal() {
+    return false;
+  }
+
   /** Sets the last delegate in a chain of DelegatingCollectors */
   public void setLastDelegate(Collector delegate) {
     DelegatingCollector ptr = this;
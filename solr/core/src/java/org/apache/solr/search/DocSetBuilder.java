@@ -23,7 +23,9 @@ import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.LSBRadixSorter;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.packed.PackedInts;
+import org.apache.solr.common.util.EnvUtils;
 
 /**
  * Adapted from DocIdSetBuilder to build DocSets
@@ -32,8 +34,19 @@ import org.apache.lucene.util.packed.PackedInts;
  */
 public final class DocSetBuilder {
 
+  /**
+   * If true, medium density sets that would otherwise be built as a {@link BitDocSet} are
+   * compressed to a {@link RoaringDocSet} when that saves memory. See {@link #compress(DocSet)}.
+   */
+  public static final boolean COMPRESS_DOCSETS =
+      EnvUtils.getPropertyAsBool("solr.search.compressDocSets", false);
+
+  /** Sets over fewer docs than this are never compressed; they are cheap as bitsets anyway. */
+  static final int MIN_COMPRESS_MAX_DOC = 1 << 20;
+
   private final int maxDoc;
   private final int threshold;
+  private final MemoryAccounting accounting = MemoryAccounting.current();
 
   private int[] buffer;
   private int pos;
@@ -46,14 +59,17 @@ public final class DocSetBuilder {
 
     if (costEst > threshold) {
       bitSet = new FixedBitSet(maxDoc);
+      accounting.add(MemoryAccounting.DOCSET, bitSet.ramBytesUsed());
     } else {
       this.buffer = new int[Math.max((int) costEst, 1)];
+      accounting.add(MemoryAccounting.DOCSET, RamUsageEstimator.sizeOf(buffer));
     }
   }
 
   private void upgradeToBitSet() {
     assert bitSet == null;
     bitSet = new FixedBitSet(maxDoc);
+    accounting.add(MemoryAccounting.DOCSET, bitSet.ramBytesUsed());
     for (int i = 0; i < pos; ++i) {
       bitSet.set(buffer[i]);
     }
@@ -71,6 +87,7 @@ public final class DocSetBuilder {
     newSize = Math.min(newSize, threshold);
 
     int[] newBuffer = new int[newSize];
+    accounting.add(MemoryAccounting.DOCSET, RamUsageEstimator.sizeOf(newBuffer));
     System.arraycopy(buffer, 0, newBuffer, 0, pos);
     buffer = newBuffer;
   }
@@ -172,9 +189,9 @@ public final class DocSetBuilder {
       if (filter != null) {
         bitSet.and(filter);
       }
-      return new BitDocSet(bitSet);
       // TODO - if this set will be cached, should we make it smaller if it's below
       // DocSetUtil.smallSetSize?
+      return maybeCompress(new BitDocSet(bitSet));
     } else {
       LSBRadixSorter sorter = new LSBRadixSorter();
       sorter.sort(PackedInts.bitsRequired(maxDoc - 1), buffer, pos);
@@ -191,7 +208,7 @@ public final class DocSetBuilder {
       if (filter != null) {
         bitSet.and(filter);
       }
-      return new BitDocSet(bitSet);
+      return maybeCompress(new BitDocSet(bitSet));
     } else {
       // don't need to sort, but still need to remove non accepted docs
       int l = pos;
@@ -202,4 +219,31 @@ public final class DocSetBuilder {
       return new SortedIntDocSet(buffer, l);
     }
   }
+
+  /** Returns {@link #compress(DocSet)} if {@link #COMPRESS_DOCSETS} is enabled, else the set. */
+  public static DocSet maybeCompress(DocSet set) {
+    return COMPRESS_DOCSETS ? compress(set) : set;
+  }
+
+  /**
+   * Returns a {@link RoaringDocSet} copy of the given set if that would use less than half of the
+   * memory, otherwise returns the set as-is. Only {@link BitDocSet}s over a large number of docs
+   * are considered; small sets are already compact as a {@link SortedIntDocSet}.
+   *
+   * <p>This is intended for sets that are long-lived (e.g. in the filterCache), since the copy
+   * costs about as much as a scan of the bits.
+   */
+  public static DocSet compress(DocSet set) {
+    if (!(set instanceof BitDocSet bitDocSet) || set instanceof MutableBitDocSet) {
+      return set;
+    }
+    final FixedBitSet bits = bitDocSet.getBits();
+    if (bits.length() < MIN_COMPRESS_MAX_DOC) {
+      return set;
+    }
+    if (RoaringDocSet.estimateRamBytesUsed(bits) * 2 > set.ramBytesUsed()) {
+      return set;
+    }
+    return RoaringDocSet.fromBitSet(bits);
+  }
 }
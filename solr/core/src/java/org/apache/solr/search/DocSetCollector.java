@@ -62,7 +62,10 @@ public class DocSetCollector extends SimpleCollector {
     } else {
       // this conditional could be removed if BitSet was preallocated, but that
       // would take up more memory, and add more GC time...
-      if (bits == null) bits = new FixedBitSet(maxDoc);
+      if (bits == null) {
+        bits = new FixedBitSet(maxDoc);
+        MemoryAccounting.current().add(MemoryAccounting.DOCSET, bits.ramBytesUsed());
+      }
       bits.set(doc);
     }
 
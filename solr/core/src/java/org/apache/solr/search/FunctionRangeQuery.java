@@ -61,6 +61,11 @@ public class FunctionRangeQuery extends ExtendedQueryBase implements PostFilter
       this.fcontext = fcontext;
     }
 
+    @Override
+    public boolean isSegmentLocal() {
+      return true;
+    }
+
     @Override
     public void collect(int doc) throws IOException {
       assert doc < maxdoc;
@@ -285,7 +285,8 @@ public class GraphTermsQParserPlugin extends QParserPlugin {
 
         @Override
         public boolean isCacheable(LeafReaderContext ctx) {
-          return true;
+          // terms are selected by their docFreq in the whole index
+          return false;
         }
       };
     }
@@ -615,7 +616,8 @@ abstract class PointSetQuery extends Query implements DocSetProducer, Accountabl
 
       @Override
       public boolean isCacheable(LeafReaderContext ctx) {
-        return true;
+        // points are selected by their docFreq in the whole index
+        return false;
       }
     };
   }
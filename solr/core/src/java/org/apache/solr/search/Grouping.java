@@ -30,6 +30,7 @@ import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.queries.function.ValueSource;
 import org.apache.lucene.search.CachingCollector;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.MatchNoDocsQuery;
 import org.apache.lucene.search.MultiCollector;
 import org.apache.lucene.search.Query;
@@ -52,6 +53,8 @@ import org.apache.lucene.search.grouping.TopGroups;
 import org.apache.lucene.search.grouping.TopGroupsCollector;
 import org.apache.lucene.search.grouping.ValueSourceGroupSelector;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.mutable.MutableValue;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrException.ErrorCode;
@@ -74,6 +77,15 @@ public class Grouping {
 
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  // a doc collected for a group, and its slot in the priority queue of the group
+  private static final long BYTES_PER_GROUPED_DOC =
+      RamUsageEstimator.shallowSizeOfInstance(FieldDoc.class)
+          + RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+  // roughly, the head doc of a group, and its entry in the map of the heads by group value
+  private static final long BYTES_PER_GROUP_HEAD =
+      RamUsageEstimator.shallowSizeOfInstance(ScoreDoc.class)
+          + 2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+
   private final SolrIndexSearcher searcher;
   private final QueryResult qr;
   private final QueryCommand cmd;
@@ -363,7 +375,13 @@ public class Grouping {
     }
 
     if (getGroupedDocSet && allGroupHeadsCollector != null) {
-      qr.setDocSet(new BitDocSet(allGroupHeadsCollector.retrieveGroupHeads(maxDoc)));
+      FixedBitSet groupHeads = allGroupHeadsCollector.retrieveGroupHeads(maxDoc);
+      MemoryAccounting.current()
+          .add(
+              MemoryAccounting.GROUPING,
+              allGroupHeadsCollector.groupHeadsSize() * BYTES_PER_GROUP_HEAD
+                  + groupHeads.ramBytesUsed());
+      qr.setDocSet(new BitDocSet(groupHeads));
     } else if (getDocSet) {
       qr.setDocSet(setCollector.getDocSet());
     }
@@ -541,6 +559,20 @@ public class Grouping {
       return null;
     }
 
+    /**
+     * Reports the top docs of the groups collected by the second pass search to the {@link
+     * MemoryAccounting} of the request.
+     *
+     * @param groups the number of groups
+     * @param groupedDocsToCollect the number of docs collected per group
+     */
+    protected void accountSecondPass(int groups, int groupedDocsToCollect) {
+      MemoryAccounting.current()
+          .add(
+              MemoryAccounting.GROUPING,
+              (long) groups * groupedDocsToCollect * BYTES_PER_GROUPED_DOC);
+    }
+
     /**
      * Performs any necessary post actions to prepare the response.
      *
@@ -763,6 +795,7 @@ public class Grouping {
               withinGroupSort,
               groupedDocsToCollect,
               needScores);
+      accountSecondPass(topGroups.size(), groupedDocsToCollect);
 
       if (totalCount == TotalCount.grouped) {
         allGroupsCollector = new AllGroupsCollector<>(new TermGroupSelector(groupBy));
@@ -1001,6 +1034,7 @@ public class Grouping {
               withinGroupSort,
               groupdDocsToCollect,
               needScores);
+      accountSecondPass(topGroups.size(), groupdDocsToCollect);
 
       if (totalCount == TotalCount.grouped) {
         allGroupsCollector = new AllGroupsCollector<>(newSelector());
@@ -0,0 +1,486 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreScorer;
+import org.apache.lucene.search.ConstantScoreWeight;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.ScorerSupplier;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopFieldCollectorManager;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.search.TwoPhaseIterator;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.Bits;
+import org.apache.solr.core.SolrConfig;
+import org.apache.solr.util.SolrDefaultScorerSupplier;
+
+/**
+ * A queryResultCache regenerator that only searches the segments that are new in the warmed
+ * searcher, merging the result with the cached documents of the segments it shares with the old
+ * searcher. Since a commit usually adds a few small segments to a large index, this makes
+ * autowarming the queryResultCache proportional to the change in the index rather than to its size.
+ *
+ * <p>A cached entry can be regenerated this way if it is sorted on field values (not on the score
+ * or functions) without scores, starts at the first document and has an exact hit count, and if its
+ * query and filters match the same documents in a segment regardless of the rest of the index (see
+ * {@link Weight#isCacheable(LeafReaderContext)}). Other entries are re-executed like the default
+ * regenerator does.
+ *
+ * <p>For an entry that contains all the matches of its query, the regenerated entry is complete as
+ * well. Otherwise documents of the shared segments beyond the cached ones are unknown, so only the
+ * prefix of the merged result that ranks before the last of the cached documents is cached; later
+ * requests beyond it re-execute the query.
+ */
+public class IncrementalQueryResultRegenerator implements CacheRegenerator {
+
+  private final Map<SolrIndexSearcher, Segments> segmentsBySearcher =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  @Override
+  @SuppressWarnings({"unchecked"})
+  public <K, V> boolean regenerateItem(
+      SolrIndexSearcher newSearcher,
+      SolrCache<K, V> newCache,
+      SolrCache<K, V> oldCache,
+      K oldKey,
+      V oldVal)
+      throws IOException {
+    final QueryResultKey key = (QueryResultKey) oldKey;
+    final DocList oldList = (DocList) oldVal;
+    final DocList newList = regenerate(newSearcher, key, oldList);
+    if (newList != null) {
+      newCache.put(oldKey, (V) newList);
+    } else {
+      newSearcher.regenerateQueryResult(key, oldList);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the DocList for the key in the new searcher, computed from the one of the searcher it
+   * is warmed from, or null if it can't be computed incrementally.
+   */
+  DocList regenerate(SolrIndexSearcher newSearcher, QueryResultKey key, DocList oldList)
+      throws IOException {
+    final SolrIndexSearcher oldSearcher = newSearcher.getWarmingFrom();
+    if (oldSearcher == null || !isEligible(key, oldList)) {
+      return null;
+    }
+    final Segments segments =
+        segmentsBySearcher.computeIfAbsent(newSearcher, s -> new Segments(oldSearcher, s));
+    if (!segments.orderPreserved) {
+      return null;
+    }
+
+    final List<LeafReaderContext> oldLeaves = oldSearcher.getTopReaderContext().leaves();
+    final List<LeafReaderContext> newLeaves = newSearcher.getTopReaderContext().leaves();
+    final Query query = getQuery(key);
+    final Weight weight =
+        newSearcher.createWeight(newSearcher.rewrite(query), ScoreMode.COMPLETE_NO_SCORES, 1f);
+    final String[] sortFields =
+        Arrays.stream(key.sort.getSort())
+            .map(SortField::getField)
+            .filter(Objects::nonNull)
+            .toArray(String[]::new);
+    for (LeafReaderContext leaf : newLeaves) {
+      if (!weight.isCacheable(leaf)) {
+        return null;
+      }
+      // doc values updates in an old segment may change the order of its documents
+      if (!segments.isNew[leaf.ord] && !DocValues.isCacheable(leaf, sortFields)) {
+        return null;
+      }
+    }
+
+    // the cached documents of segments that are still there, with their new ids
+    final int[] survivors = new int[oldList.size()];
+    int numSurvivors = 0;
+    for (DocIterator iter = oldList.iterator(); iter.hasNext(); ) {
+      final int doc = iter.nextDoc();
+      final int oldOrd = ReaderUtil.subIndex(doc, oldLeaves);
+      final int newOrd = segments.oldToNew[oldOrd];
+      if (newOrd < 0) {
+        continue;
+      }
+      final LeafReaderContext newLeaf = newLeaves.get(newOrd);
+      final int segDoc = doc - oldLeaves.get(oldOrd).docBase;
+      final Bits liveDocs = newLeaf.reader().getLiveDocs();
+      if (liveDocs == null || liveDocs.get(segDoc)) {
+        survivors[numSurvivors++] = newLeaf.docBase + segDoc;
+      }
+    }
+    Arrays.sort(survivors, 0, numSurvivors);
+
+    final boolean complete = oldList.matches() == oldList.size();
+    if (!complete && numSurvivors == 0) {
+      // nothing to merge with, the whole index has to be searched anyway
+      return null;
+    }
+
+    final SolrConfig solrConfig = newSearcher.getCore().getSolrConfig();
+    int nDocs = oldList.size();
+    if (complete) {
+      // there may be more matches now, so round up to the window size as searches do
+      final int windowSize = Math.max(solrConfig.queryResultWindowSize, 1);
+      nDocs = (Math.max(nDocs, 1) - 1) / windowSize * windowSize + windowSize;
+    }
+
+    final Query restricted =
+        new BooleanQuery.Builder()
+            .add(query, BooleanClause.Occur.FILTER)
+            .add(
+                new CandidatesQuery(segments.isNew, new SortedIntDocSet(survivors, numSurvivors)),
+                BooleanClause.Occur.FILTER)
+            .build();
+    final Sort sort = newSearcher.weightSort(key.sort);
+    final TopFieldDocs topDocs =
+        newSearcher.search(
+            restricted, new TopFieldCollectorManager(sort, nDocs, null, Integer.MAX_VALUE));
+    final long hits = topDocs.totalHits.value();
+
+    final int[] docs = new int[topDocs.scoreDocs.length];
+    int lastSurvivor = -1;
+    int survivorsInTop = 0;
+    for (int i = 0; i < docs.length; i++) {
+      docs[i] = topDocs.scoreDocs[i].doc;
+      if (!segments.isNew[ReaderUtil.subIndex(docs[i], newLeaves)]) {
+        lastSurvivor = i;
+        survivorsInTop++;
+      }
+    }
+
+    final int len;
+    final long matches;
+    if (complete) {
+      // the old segments have no other matches
+      len = docs.length;
+      matches = hits;
+    } else {
+      // a document of an old segment that wasn't cached ranks after all the cached ones, so the
+      // result is only known up to the last of them (or completely, if some of them didn't fit)
+      len = survivorsInTop < numSurvivors ? docs.length : lastSurvivor + 1;
+      matches =
+          oldList.matches()
+              - countRemovedMatches(oldSearcher, newSearcher, segments, query, weight)
+              + (hits - numSurvivors);
+    }
+    if (len == 0 || matches < len || len > solrConfig.queryResultMaxDocsCached) {
+      return null;
+    }
+    return new DocSlice(
+        0,
+        len,
+        ArrayUtil.copyOfSubArray(docs, 0, len),
+        null,
+        matches,
+        matches > 0 ? Float.NaN : 0f,
+        TotalHits.Relation.EQUAL_TO);
+  }
+
+  private static boolean isEligible(QueryResultKey key, DocList oldList) {
+    if (key.sort == null
+        || (key.nc_flags
+                & (SolrIndexSearcher.GET_SCORES
+                    | SolrIndexSearcher.TERMINATE_EARLY
+                    | SolrIndexSearcher.SEGMENT_TERMINATE_EARLY))
+            != 0
+        || oldList.hasScores()
+        || oldList.offset() != 0
+        || oldList.hitCountRelation() != TotalHits.Relation.EQUAL_TO) {
+      return false;
+    }
+    for (SortField sf : key.sort.getSort()) {
+      switch (sf.getType()) {
+        case STRING, INT, LONG, FLOAT, DOUBLE, DOC -> {}
+        default -> {
+          return false;
+        }
+      }
+    }
+    if (key.query instanceof RankQuery || !isSegmentLocal(key.query)) {
+      return false;
+    }
+    if (key.filters != null) {
+      for (Query filter : key.filters) {
+        if (!isSegmentLocal(filter)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /** Excludes queries that compute their matches for the whole searcher or after collection. */
+  private static boolean isSegmentLocal(Query query) {
+    return !(query instanceof PostFilter
+        || query instanceof SolrSearcherRequirer
+        || query instanceof DocSetProducer);
+  }
+
+  /** The query and filters of the key as a single, non-scoring query. */
+  private static Query getQuery(QueryResultKey key) {
+    final BooleanQuery.Builder builder = new BooleanQuery.Builder();
+    builder.add(QueryUtils.makeQueryable(key.query), BooleanClause.Occur.FILTER);
+    if (key.filters != null) {
+      for (Query filter : key.filters) {
+        builder.add(QueryUtils.makeQueryable(filter), BooleanClause.Occur.FILTER);
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Counts the matches of the old searcher that are gone from the segments it shares with the new
+   * one: those in segments that were merged away or dropped, and those deleted since.
+   */
+  private static long countRemovedMatches(
+      SolrIndexSearcher oldSearcher,
+      SolrIndexSearcher newSearcher,
+      Segments segments,
+      Query query,
+      Weight newWeight)
+      throws IOException {
+    long count = 0;
+    Weight oldWeight = null;
+    for (LeafReaderContext oldLeaf : oldSearcher.getTopReaderContext().leaves()) {
+      if (segments.oldToNew[oldLeaf.ord] < 0) {
+        if (oldWeight == null) {
+          oldWeight =
+              oldSearcher.createWeight(
+                  oldSearcher.rewrite(query), ScoreMode.COMPLETE_NO_SCORES, 1f);
+        }
+        count += countLiveMatches(oldWeight, oldLeaf);
+      }
+    }
+    for (LeafReaderContext newLeaf : newSearcher.getTopReaderContext().leaves()) {
+      final int[] deleted = segments.getNewlyDeleted(oldSearcher, newLeaf);
+      if (deleted.length > 0) {
+        count += countMatches(newWeight, newLeaf, deleted);
+      }
+    }
+    return count;
+  }
+
+  private static int countLiveMatches(Weight weight, LeafReaderContext leaf) throws IOException {
+    final int count = weight.count(leaf);
+    if (count >= 0) {
+      return count;
+    }
+    final ScorerSupplier supplier = weight.scorerSupplier(leaf);
+    if (supplier == null) {
+      return 0;
+    }
+    final Scorer scorer = supplier.get(Long.MAX_VALUE);
+    final TwoPhaseIterator twoPhase = scorer.twoPhaseIterator();
+    final DocIdSetIterator iter =
+        twoPhase == null ? scorer.iterator() : TwoPhaseIterator.asDocIdSetIterator(twoPhase);
+    final Bits liveDocs = leaf.reader().getLiveDocs();
+    int matches = 0;
+    for (int doc = iter.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iter.nextDoc()) {
+      if (liveDocs == null || liveDocs.get(doc)) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  /** Counts the sorted docs of the segment that match the weight, deleted or not. */
+  private static int countMatches(Weight weight, LeafReaderContext leaf, int[] docs)
+      throws IOException {
+    final ScorerSupplier supplier = weight.scorerSupplier(leaf);
+    if (supplier == null) {
+      return 0;
+    }
+    final Scorer scorer = supplier.get(docs.length);
+    final TwoPhaseIterator twoPhase = scorer.twoPhaseIterator();
+    final DocIdSetIterator approximation =
+        twoPhase == null ? scorer.iterator() : twoPhase.approximation();
+    int matches = 0;
+    for (int doc : docs) {
+      if (approximation.docID() < doc
+          && approximation.advance(doc) == DocIdSetIterator.NO_MORE_DOCS) {
+        break;
+      }
+      if (approximation.docID() == doc && (twoPhase == null || twoPhase.matches())) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  /** How the segments of a searcher relate to those of the searcher it is warmed from. */
+  private static final class Segments {
+    /** the ord of each old segment in the new searcher, or -1 if it is gone */
+    final int[] oldToNew;
+
+    /** the new segments by ord, i.e. those that weren't in the old searcher */
+    final boolean[] isNew;
+
+    /**
+     * whether the segments of both searchers are in the same order, which keeps the order of
+     * documents with equal sort values
+     */
+    final boolean orderPreserved;
+
+    private final Map<Integer, int[]> newlyDeleted = new HashMap<>();
+
+    Segments(SolrIndexSearcher oldSearcher, SolrIndexSearcher newSearcher) {
+      final List<LeafReaderContext> newLeaves = newSearcher.getTopReaderContext().leaves();
+      final Map<IndexReader.CacheKey, Integer> newOrds = new HashMap<>();
+      for (LeafReaderContext leaf : newLeaves) {
+        final IndexReader.CacheHelper helper = leaf.reader().getCoreCacheHelper();
+        if (helper != null) {
+          newOrds.put(helper.getKey(), leaf.ord);
+        }
+      }
+
+      final List<LeafReaderContext> oldLeaves = oldSearcher.getTopReaderContext().leaves();
+      oldToNew = new int[oldLeaves.size()];
+      isNew = new boolean[newLeaves.size()];
+      Arrays.fill(isNew, true);
+      boolean ordered = true;
+      int lastOrd = -1;
+      for (LeafReaderContext leaf : oldLeaves) {
+        final IndexReader.CacheHelper helper = leaf.reader().getCoreCacheHelper();
+        final Integer newOrd = helper == null ? null : newOrds.get(helper.getKey());
+        if (newOrd == null) {
+          oldToNew[leaf.ord] = -1;
+        } else {
+          oldToNew[leaf.ord] = newOrd;
+          isNew[newOrd] = false;
+          ordered &= newOrd > lastOrd;
+          lastOrd = newOrd;
+        }
+      }
+      orderPreserved = ordered;
+    }
+
+    /** Returns the sorted docs of the new segment that were deleted since the old searcher. */
+    synchronized int[] getNewlyDeleted(SolrIndexSearcher oldSearcher, LeafReaderContext newLeaf) {
+      if (isNew[newLeaf.ord]) {
+        return new int[0];
+      }
+      return newlyDeleted.computeIfAbsent(
+          newLeaf.ord,
+          ord -> {
+            final LeafReaderContext oldLeaf = getOldLeaf(oldSearcher, ord);
+            if (oldLeaf.reader().numDeletedDocs() == newLeaf.reader().numDeletedDocs()) {
+              return new int[0];
+            }
+            final Bits oldLiveDocs = oldLeaf.reader().getLiveDocs();
+            final Bits newLiveDocs = newLeaf.reader().getLiveDocs();
+            int[] deleted = new int[0];
+            int numDeleted = 0;
+            for (int doc = 0; doc < newLeaf.reader().maxDoc(); doc++) {
+              if ((oldLiveDocs == null || oldLiveDocs.get(doc)) && !newLiveDocs.get(doc)) {
+                deleted = ArrayUtil.grow(deleted, numDeleted + 1);
+                deleted[numDeleted++] = doc;
+              }
+            }
+            return ArrayUtil.copyOfSubArray(deleted, 0, numDeleted);
+          });
+    }
+
+    private LeafReaderContext getOldLeaf(SolrIndexSearcher oldSearcher, int newOrd) {
+      for (int oldOrd = 0; oldOrd < oldToNew.length; oldOrd++) {
+        if (oldToNew[oldOrd] == newOrd) {
+          return oldSearcher.getTopReaderContext().leaves().get(oldOrd);
+        }
+      }
+      throw new IllegalStateException("Not an old segment: " + newOrd);
+    }
+  }
+
+  /**
+   * Matches all the documents of new segments, and the given documents of old ones. Only valid for
+   * the searcher it was created for, so it is only equal to itself.
+   */
+  private static final class CandidatesQuery extends Query {
+    private final boolean[] isNew;
+    private final DocSet survivors;
+
+    CandidatesQuery(boolean[] isNew, DocSet survivors) {
+      this.isNew = isNew;
+      this.survivors = survivors;
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) {
+      return new ConstantScoreWeight(this, boost) {
+        @Override
+        public ScorerSupplier scorerSupplier(LeafReaderContext context) {
+          final DocIdSetIterator disi =
+              isNew[context.ord]
+                  ? DocIdSetIterator.all(context.reader().maxDoc())
+                  : survivors.iterator(context);
+          if (disi == null) {
+            return null;
+          }
+          return new SolrDefaultScorerSupplier(new ConstantScoreScorer(score(), scoreMode, disi));
+        }
+
+        @Override
+        public boolean isCacheable(LeafReaderContext ctx) {
+          return false;
+        }
+      };
+    }
+
+    @Override
+    public String toString(String field) {
+      return "CandidatesQuery(" + survivors.size() + ")";
+    }
+
+    @Override
+    public void visit(QueryVisitor visitor) {
+      visitor.visitLeaf(this);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return this == other;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this);
+    }
+  }
+}
@@ -391,8 +391,11 @@ class JoinQuery extends Query implements SolrSearcherRequirer {
               } else {
                 if (toTermSet instanceof BitDocSet) {
                   resultBits = ((BitDocSet) toTermSet).getBits().clone();
-                } else {
+                } else if (toTermSet instanceof SortedIntDocSet) {
                   resultList.add(toTermSet);
+                } else {
+                  resultBits = new FixedBitSet(toSearcher.maxDoc());
+                  toTermSet.addAllTo(resultBits);
                 }
               }
             } else {
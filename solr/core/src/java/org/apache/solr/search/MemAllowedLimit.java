@@ -21,6 +21,8 @@ import java.lang.invoke.MethodHandles;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.request.SolrQueryRequest;
@@ -31,11 +33,17 @@ import org.slf4j.LoggerFactory;
  * Enforces a memory-based limit on a given SolrQueryRequest, as specified by the {@code memAllowed}
  * query parameter.
  *
- * <p>This class tracks per-thread memory allocations during a request using its own ThreadLocal. It
- * records the current thread allocation when the instance was created (typically at the start of
- * SolrQueryRequest processing) as a starting point, and then on every call to {@link #shouldExit()}
- * it accumulates the amount of reported allocated memory since the previous call, and compares the
- * accumulated amount to the configured threshold, expressed in mebi-bytes.
+ * <p>This class tracks per-thread memory allocations during a request. It records the current
+ * thread allocation when the instance was created (typically at the start of SolrQueryRequest
+ * processing) as a starting point, and then on every call to {@link #shouldExit()} it accumulates
+ * the amount of reported allocated memory since the previous call on the same thread. The first
+ * call on any other thread working on the request, e.g. an executor thread searching segments in
+ * parallel, only records that thread's starting point.
+ *
+ * <p>The larger of the accumulated amount and the bytes reported to the {@link MemoryAccounting} of
+ * the request is compared to the configured threshold, expressed in mebi-bytes. The accounting
+ * covers the large allocations made on threads that were never checked, or before their first
+ * check.
  *
  * <p>NOTE: this class accesses {@code
  * com.sun.management.ThreadMXBean#getCurrentThreadAllocatedBytes} using reflection. On JVM-s where
@@ -75,14 +83,18 @@ public class MemAllowedLimit implements QueryLimit {
     GET_BYTES_METHOD = getBytesMethod;
   }
 
-  private static final ThreadLocal<AtomicLong> threadLocalMem =
-      ThreadLocal.withInitial(() -> new AtomicLong(-1L));
-
   private long limitBytes;
+  private final MemoryAccounting accounting;
+  // the allocated bytes of each thread at the previous check, by thread id
+  private final Map<Long, AtomicLong> threadMem = new ConcurrentHashMap<>();
   private final AtomicLong accumulatedMem = new AtomicLong();
-  private long exitedAt = 0;
+  private volatile long exitedAt = 0;
 
   public MemAllowedLimit(SolrQueryRequest req) {
+    this(req, MemoryAccounting.NONE);
+  }
+
+  public MemAllowedLimit(SolrQueryRequest req, MemoryAccounting accounting) {
     if (!supported) {
       throw new IllegalArgumentException(
           "Per-thread memory allocation monitoring not available in this JVM.");
@@ -93,30 +105,29 @@ public class MemAllowedLimit implements QueryLimit {
           "Check for limit with hasMemLimit(req) before creating a MemAllowedLimit!");
     }
     limitBytes = Math.round(reqMemLimit * MEBI);
-    // init the thread-local
+    this.accounting = accounting;
     init();
   }
 
   @VisibleForTesting
   MemAllowedLimit(float memLimit) {
+    this(memLimit, MemoryAccounting.NONE);
+  }
+
+  @VisibleForTesting
+  MemAllowedLimit(float memLimit, MemoryAccounting accounting) {
     if (!supported) {
       throw new IllegalArgumentException(
           "Per-thread memory allocation monitoring not available in this JVM.");
     }
     limitBytes = Math.round(memLimit * MEBI);
-    // init the thread-local
+    this.accounting = accounting;
     init();
   }
 
-  private final void init() {
-    long currentAllocatedBytes;
-    try {
-      currentAllocatedBytes = (Long) GET_BYTES_METHOD.invoke(threadBean);
-    } catch (Exception e) {
-      throw new IllegalArgumentException("Unexpected error checking thread allocation!", e);
-    }
-    AtomicLong threadMem = threadLocalMem.get();
-    threadMem.compareAndSet(-1L, currentAllocatedBytes);
+  private void init() {
+    threadMem.put(
+        Thread.currentThread().threadId(), new AtomicLong(getCurrentAllocatedBytes()));
   }
 
   private long getCurrentAllocatedBytes() {
@@ -144,18 +155,23 @@ public class MemAllowedLimit implements QueryLimit {
 
     try {
       long currentAllocatedBytes = getCurrentAllocatedBytes();
-      AtomicLong threadMem = threadLocalMem.get();
-      long lastAllocatedBytes = threadMem.get();
-      accumulatedMem.addAndGet(currentAllocatedBytes - lastAllocatedBytes);
-      threadMem.set(currentAllocatedBytes);
+      AtomicLong lastAllocatedBytes = threadMem.get(Thread.currentThread().threadId());
+      if (lastAllocatedBytes == null) {
+        // first check on this thread: what it allocated so far wasn't for this request
+        threadMem.put(Thread.currentThread().threadId(), new AtomicLong(currentAllocatedBytes));
+      } else {
+        accumulatedMem.addAndGet(currentAllocatedBytes - lastAllocatedBytes.get());
+        lastAllocatedBytes.set(currentAllocatedBytes);
+      }
+      long usedBytes = usedBytes();
       if (log.isDebugEnabled()) {
         log.debug(
             "mem limit thread {} remaining delta {}",
             Thread.currentThread().getName(),
-            (limitBytes - accumulatedMem.get()));
+            (limitBytes - usedBytes));
       }
-      if (limitBytes < accumulatedMem.get()) {
-        exitedAt = accumulatedMem.get();
+      if (limitBytes < usedBytes) {
+        exitedAt = usedBytes;
         return true;
       }
       return false;
@@ -164,8 +180,21 @@ public class MemAllowedLimit implements QueryLimit {
     }
   }
 
+  @Override
+  public boolean shouldExitBeforeAllocating(long bytes) {
+    if (shouldExit()) {
+      return true;
+    }
+    return limitBytes < usedBytes() + bytes;
+  }
+
+  // the accounting and the thread allocations largely measure the same allocations
+  private long usedBytes() {
+    return Math.max(accumulatedMem.get(), accounting.getBytes());
+  }
+
   @Override
   public Object currentValue() {
-    return exitedAt > 0 ? exitedAt : accumulatedMem.get();
+    return exitedAt > 0 ? exitedAt : usedBytes();
   }
 }
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.solr.common.util.SimpleOrderedMap;
+
+/**
+ * Accounts for the large data structures allocated on behalf of a request, e.g. doc sets, facet
+ * accumulators or collapse group heads, per component of the query pipeline.
+ *
+ * <p>Unlike the per-thread allocation measured by {@link MemAllowedLimit}, the accounted bytes
+ * include the allocations made on executor threads, e.g. when searching segments in parallel, so
+ * the {@code memAllowed} limit is enforced on whichever of the two is larger. The accounted bytes
+ * are estimates of the retained sizes, reported by the code making the allocations, and are never
+ * released during the request.
+ *
+ * <p>The accounting of the current request is available from {@link #current()}; it is shared by
+ * all the threads working on the request.
+ */
+public final class MemoryAccounting {
+  /** Accounting that ignores the reported allocations, when there's no current request. */
+  public static final MemoryAccounting NONE = new MemoryAccounting(false);
+
+  public static final String DOCSET = "docSet";
+  public static final String FACET = "facet";
+  public static final String GROUPING = "grouping";
+  public static final String COLLAPSE = "collapse";
+  public static final String EXPAND = "expand";
+
+  private final boolean enabled;
+  private final LongAdder total = new LongAdder();
+  private final Map<String, LongAdder> components = new ConcurrentHashMap<>();
+
+  MemoryAccounting() {
+    this(true);
+  }
+
+  private MemoryAccounting(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Returns the accounting of the current request, or {@link #NONE} if there's no current request.
+   */
+  public static MemoryAccounting current() {
+    return QueryLimits.getCurrentLimits().getMemoryAccounting();
+  }
+
+  /**
+   * Reports an allocation made on behalf of the request.
+   *
+   * @param component the part of the query pipeline making the allocation, e.g. {@link #FACET}
+   * @param bytes the estimated size of the allocation
+   */
+  public void add(String component, long bytes) {
+    if (!enabled || bytes <= 0) {
+      return;
+    }
+    total.add(bytes);
+    components.computeIfAbsent(component, k -> new LongAdder()).add(bytes);
+  }
+
+  /** Returns the total number of bytes reported so far. */
+  public long getBytes() {
+    return total.sum();
+  }
+
+  /** Returns the number of bytes reported so far by the given component. */
+  public long getBytes(String component) {
+    LongAdder bytes = components.get(component);
+    return bytes == null ? 0L : bytes.sum();
+  }
+
+  /** Returns true if no allocation has been reported. */
+  public boolean isEmpty() {
+    return components.isEmpty();
+  }
+
+  /** Returns the reported bytes, in total and per component, e.g. for the debug output. */
+  public SimpleOrderedMap<Object> toNamedList() {
+    SimpleOrderedMap<Object> result = new SimpleOrderedMap<>();
+    result.add("total", getBytes());
+    new TreeMap<>(components).forEach((component, bytes) -> result.add(component, bytes.sum()));
+    return result;
+  }
+}
@@ -50,6 +50,7 @@ public class MultiThreadedSearcher {
       int len,
       QueryCommand cmd,
       Query query,
+      SolrIndexSearcher.ProcessedFilter pf,
       boolean needTopDocs,
       boolean needMaxScore,
       boolean needDocSet,
@@ -94,7 +95,7 @@ public class MultiThreadedSearcher {
     final SolrMultiCollectorManager manager = new SolrMultiCollectorManager(cmd, colls);
     Object[] ret;
     try {
-      ret = searcher.search(query, manager);
+      ret = searcher.search(query, pf.wrap(manager));
     } catch (EarlyTerminatingCollectorException ex) {
       ret = manager.reduce();
       queryResult.setMaxHitsTerminatedEarly(true);
@@ -119,11 +120,15 @@ public class MultiThreadedSearcher {
     return new SearchResult(scoreMode, ret);
   }
 
-  static boolean allowMT(DelegatingCollector postFilter, QueryCommand cmd) {
+  static boolean allowMT(SolrIndexSearcher.ProcessedFilter pf, QueryCommand cmd) {
     // TODO: it's unclear if segmentTerminateEarly is truly incompatible but
     //  since it has to appropriately denote partial results this needs to be
     //  investigated/tested before we can remove this check (perhaps for 9.8).
-    return postFilter == null && !cmd.getSegmentTerminateEarly() && cmd.getMultiThreaded();
+    // Post filters that collect each segment on their own get a chain per slice, but the early
+    // termination of the search would skip their completion.
+    return (pf.postFilter == null || (pf.isConcurrent() && !cmd.shouldEarlyTerminateSearch()))
+        && !cmd.getSegmentTerminateEarly()
+        && cmd.getMultiThreaded();
   }
 
   static class MaxScoreResult {
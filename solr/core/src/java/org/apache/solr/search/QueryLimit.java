@@ -31,6 +31,19 @@ public interface QueryLimit extends QueryTimeout {
    */
   Object currentValue();
 
+  /**
+   * Checks whether the limit would be exceeded after allocating the specified number of bytes, so
+   * that callers can avoid large allocations rather than detect them afterwards. This must not
+   * change the state of the limit, since the allocation may not happen. Limits that don't account
+   * for memory just check {@link #shouldExit()}.
+   *
+   * @param bytes the number of bytes about to be allocated
+   * @return true if the caller should exit instead of allocating
+   */
+  default boolean shouldExitBeforeAllocating(long bytes) {
+    return shouldExit();
+  }
+
   /**
    * Allow limit to adjust shard request parameters if needed.
    *
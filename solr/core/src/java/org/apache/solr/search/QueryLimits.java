@@ -50,6 +50,7 @@ public final class QueryLimits implements QueryTimeout {
 
   private final SolrQueryResponse rsp;
   private final boolean allowPartialResults;
+  private final MemoryAccounting memoryAccounting;
 
   // short-circuit the checks if any limit has been tripped
   private volatile boolean limitsTripped = false;
@@ -68,6 +69,7 @@ public final class QueryLimits implements QueryTimeout {
   public QueryLimits(SolrQueryRequest req, SolrQueryResponse rsp) {
     this.rsp = rsp;
     this.allowPartialResults = req == null || SolrQueryRequest.allowPartialResults(req.getParams());
+    this.memoryAccounting = req == null ? MemoryAccounting.NONE : new MemoryAccounting();
     if (req != null) {
       if (hasTimeLimit(req)) {
         limits.add(new TimeAllowedLimit(req));
@@ -76,7 +78,7 @@ public final class QueryLimits implements QueryTimeout {
         limits.add(new CpuAllowedLimit(req));
       }
       if (hasMemLimit(req)) {
-        limits.add(new MemAllowedLimit(req));
+        limits.add(new MemAllowedLimit(req, memoryAccounting));
       }
     }
     // for testing
@@ -134,27 +136,31 @@ public final class QueryLimits implements QueryTimeout {
   public boolean maybeExitWithPartialResults(Supplier<String> label)
       throws QueryLimitsExceededException {
     if (isLimitsEnabled() && shouldExit()) {
-      if (rsp != null) {
-        SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
-        if (requestInfo == null) {
-          throw new SolrException(
-              SolrException.ErrorCode.SERVER_ERROR,
-              "No request active, but attempting to exit with partial results?");
-        }
-        rsp.setPartialResults(requestInfo.getReq());
-        if (rsp.getResponseHeader().get(RESPONSE_HEADER_PARTIAL_RESULTS_DETAILS_KEY) == null) {
-          // don't want to add duplicate keys. Although technically legal, there's a strong risk
-          // that clients won't anticipate it and break.
-          rsp.addPartialResponseDetail(formatExceptionMessage(label.get()));
-        }
+      return exitWithPartialResults(formatExceptionMessage(label.get()));
+    } else {
+      return false;
+    }
+  }
+
+  private boolean exitWithPartialResults(String message) throws QueryLimitsExceededException {
+    if (rsp != null) {
+      SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
+      if (requestInfo == null) {
+        throw new SolrException(
+            SolrException.ErrorCode.SERVER_ERROR,
+            "No request active, but attempting to exit with partial results?");
       }
-      if (allowPartialResults) {
-        return true;
-      } else {
-        throw new QueryLimitsExceededException(formatExceptionMessage(label.get()));
+      rsp.setPartialResults(requestInfo.getReq());
+      if (rsp.getResponseHeader().get(RESPONSE_HEADER_PARTIAL_RESULTS_DETAILS_KEY) == null) {
+        // don't want to add duplicate keys. Although technically legal, there's a strong risk
+        // that clients won't anticipate it and break.
+        rsp.addPartialResponseDetail(message);
       }
+    }
+    if (allowPartialResults) {
+      return true;
     } else {
-      return false;
+      throw new QueryLimitsExceededException(message);
     }
   }
 
@@ -162,6 +168,44 @@ public final class QueryLimits implements QueryTimeout {
     return maybeExitWithPartialResults(() -> label);
   }
 
+  /**
+   * Checks whether allocating the specified number of bytes would exceed a limit (see {@link
+   * QueryLimit#shouldExitBeforeAllocating(long)}), so that callers about to make a large allocation
+   * can degrade gracefully instead. Unlike {@link #maybeExitWithPartialResults(Supplier)} this
+   * doesn't trip the limits, since the allocation is not going to happen; the results are marked as
+   * partial though, as the caller won't produce complete results.
+   *
+   * @param bytes the number of bytes about to be allocated
+   * @param label optional label to indicate the caller.
+   * @return true if the caller should not allocate and return partial results, false otherwise.
+   * @throws QueryLimitsExceededException if {@link #allowPartialResults} is false and the
+   *     allocation would exceed a limit.
+   */
+  public boolean maybeExitBeforeAllocating(long bytes, Supplier<String> label)
+      throws QueryLimitsExceededException {
+    if (!isLimitsEnabled()) {
+      return false;
+    }
+    if (shouldExit()) {
+      return exitWithPartialResults(formatExceptionMessage(label.get()));
+    }
+    for (QueryLimit limit : limits) {
+      if (limit.shouldExitBeforeAllocating(bytes)) {
+        return exitWithPartialResults(
+            "Limit would be exceeded by allocating "
+                + bytes
+                + " bytes"
+                + (label != null ? " (" + label.get() + ")" : "")
+                + ": ["
+                + limit.getClass().getSimpleName()
+                + ": "
+                + limit.currentValue()
+                + "]");
+      }
+    }
+    return false;
+  }
+
   /**
    * Method to diagnose limit exceeded. Note that while this should always list the exceeded limit,
    * it may also nominate additional limits that have been exceeded since the actual check that
@@ -196,6 +240,14 @@ public final class QueryLimits implements QueryTimeout {
     return Optional.empty();
   }
 
+  /**
+   * Returns the accounting of the large allocations made for the request, which {@link
+   * MemAllowedLimit} enforces the {@code memAllowed} limit on.
+   */
+  public MemoryAccounting getMemoryAccounting() {
+    return memoryAccounting;
+  }
+
   /** Return true if there are any limits enabled for the current request. */
   public boolean isLimitsEnabled() {
     return !limits.isEmpty();
@@ -16,6 +16,8 @@
  */
 package org.apache.solr.search;
 
+import org.apache.lucene.search.TopFieldDocs;
+
 /** The result of a search. */
 public class QueryResult {
 
@@ -28,6 +30,8 @@ public class QueryResult {
   private CursorMark nextCursorMark;
   private Boolean maxHitsTerminatedEarly;
   private Long approximateTotalHits;
+  // the docs collected after a cursor, with their sort values, for the cursorMarkCache
+  private TopFieldDocs cursorTopDocs;
 
   public Object groupedResults; // TODO: currently for testing
 
@@ -121,4 +125,12 @@ public class QueryResult {
   public void setApproximateTotalHits(long approximateTotalHits) {
     this.approximateTotalHits = approximateTotalHits;
   }
+
+  TopFieldDocs getCursorTopDocs() {
+    return cursorTopDocs;
+  }
+
+  void setCursorTopDocs(TopFieldDocs cursorTopDocs) {
+    this.cursorTopDocs = cursorTopDocs;
+  }
 }
@@ -0,0 +1,1279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A compressed implementation of {@link DocSet} modeled after Roaring bitmaps. The doc id space is
+ * split into blocks of 2^16 docs, and each non-empty block is stored in whichever of three
+ * container types is smallest: a sorted array of the low 16 bits (sparse blocks), a 1024 word
+ * bitmap (dense blocks), or a list of runs (blocks made of long ranges of consecutive docs, which
+ * is typical for filters that correlate with index order such as date ranges).
+ *
+ * <p>Good for medium density sets on large indexes where a {@link BitDocSet} would waste a lot of
+ * memory. Instances are immutable; containers may be shared between sets.
+ *
+ * @see DocSetBuilder#compress(DocSet)
+ */
+public class RoaringDocSet extends DocSet {
+  private static final long BASE_RAM_BYTES_USED =
+      RamUsageEstimator.shallowSizeOfInstance(RoaringDocSet.class)
+          + 2 * RamUsageEstimator.NUM_BYTES_ARRAY_HEADER;
+
+  static final int BLOCK_SHIFT = 16;
+  static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+  static final int BLOCK_MASK = BLOCK_SIZE - 1;
+  static final int BLOCK_WORDS = BLOCK_SIZE >>> 6;
+
+  /** Beyond this cardinality an array container is never smaller than a bitmap container */
+  static final int MAX_ARRAY_SIZE = 4096;
+
+  private static final int BITMAP_BYTES = BLOCK_WORDS << 3;
+
+  private final char[] keys; // the high bits of each non-empty block, ascending
+  private final Container[] containers;
+  private final int size;
+  private final int numBits; // 1 greater than the largest possible doc, usually maxDoc
+
+  private RoaringDocSet(char[] keys, Container[] containers, int numBits) {
+    this.keys = keys;
+    this.containers = containers;
+    this.numBits = numBits;
+    int sz = 0;
+    for (Container c : containers) {
+      sz += c.cardinality();
+    }
+    this.size = sz;
+  }
+
+  private static RoaringDocSet create(char[] keys, Container[] containers, int n, int numBits) {
+    if (n != keys.length) {
+      keys = Arrays.copyOf(keys, n);
+      containers = Arrays.copyOf(containers, n);
+    }
+    return new RoaringDocSet(keys, containers, numBits);
+  }
+
+  /** Creates a compressed copy of the given bits. */
+  public static RoaringDocSet fromBitSet(FixedBitSet bits) {
+    final long[] words = bits.getBits();
+    final int numWords = FixedBitSet.bits2words(bits.length());
+    final int numBlocks = (numWords + BLOCK_WORDS - 1) / BLOCK_WORDS;
+    char[] keys = new char[numBlocks];
+    Container[] containers = new Container[numBlocks];
+    int n = 0;
+    for (int block = 0; block < numBlocks; block++) {
+      int from = block * BLOCK_WORDS;
+      Container c = fromWords(words, from, Math.min(from + BLOCK_WORDS, numWords));
+      if (c != null) {
+        keys[n] = (char) block;
+        containers[n++] = c;
+      }
+    }
+    return create(keys, containers, n, bits.length());
+  }
+
+  /**
+   * Creates a compressed set of the given docs.
+   *
+   * @param docs Sorted list of ids
+   * @param len Number of ids in the list
+   * @param numBits must be greater than the largest doc, usually maxDoc
+   */
+  public static RoaringDocSet fromSortedDocs(int[] docs, int len, int numBits) {
+    char[] keys = new char[0];
+    Container[] containers = new Container[0];
+    int n = 0;
+    int i = 0;
+    while (i < len) {
+      final int key = docs[i] >>> BLOCK_SHIFT;
+      int end = i + 1;
+      while (end < len && (docs[end] >>> BLOCK_SHIFT) == key) {
+        end++;
+      }
+      final Container c;
+      if (end - i > MAX_ARRAY_SIZE) {
+        long[] words = new long[BLOCK_WORDS];
+        for (int j = i; j < end; j++) {
+          final int v = docs[j] & BLOCK_MASK;
+          words[v >>> 6] |= 1L << v;
+        }
+        c = fromWords(words);
+      } else {
+        char[] values = new char[end - i];
+        for (int j = i; j < end; j++) {
+          values[j - i] = (char) (docs[j] & BLOCK_MASK);
+        }
+        c = fromArray(values, values.length);
+      }
+      if (n == keys.length) {
+        int newLen = Math.max(4, n << 1);
+        keys = Arrays.copyOf(keys, newLen);
+        containers = Arrays.copyOf(containers, newLen);
+      }
+      keys[n] = (char) key;
+      containers[n++] = c;
+      i = end;
+    }
+    return create(keys, containers, n, numBits);
+  }
+
+  /**
+   * Returns the number of bytes a {@link RoaringDocSet} created from these bits via {@link
+   * #fromBitSet(FixedBitSet)} would use, without creating it.
+   */
+  public static long estimateRamBytesUsed(FixedBitSet bits) {
+    final long[] words = bits.getBits();
+    final int numWords = FixedBitSet.bits2words(bits.length());
+    long bytes = BASE_RAM_BYTES_USED;
+    for (int from = 0; from < numWords; from += BLOCK_WORDS) {
+      final int to = Math.min(from + BLOCK_WORDS, numWords);
+      int card = 0;
+      int runs = 0;
+      long carry = 0;
+      for (int i = from; i < to; i++) {
+        final long w = words[i];
+        card += Long.bitCount(w);
+        runs += Long.bitCount(w & ~((w << 1) | carry));
+        carry = w >>> 63;
+      }
+      if (card != 0) {
+        bytes += Character.BYTES + RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+        bytes += containerBytes(card, runs) + Container.BASE_RAM_BYTES_USED;
+      }
+    }
+    return bytes;
+  }
+
+  private static long containerBytes(int card, int runs) {
+    final long runBytes = (long) runs << 2;
+    final long otherBytes = card <= MAX_ARRAY_SIZE ? (long) card << 1 : BITMAP_BYTES;
+    return Math.min(runBytes, otherBytes);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  private int indexOf(int key) {
+    return binarySearch(keys, 0, keys.length, key);
+  }
+
+  @Override
+  public boolean exists(int doc) {
+    final int idx = indexOf(doc >>> BLOCK_SHIFT);
+    return idx >= 0 && containers[idx].contains(doc & BLOCK_MASK);
+  }
+
+  @Override
+  public DocIterator iterator() {
+    return new DocIterator() {
+      private final Iter iter = new Iter();
+      private int pos = iter.nextDoc();
+
+      @Override
+      public boolean hasNext() {
+        return pos != DocIdSetIterator.NO_MORE_DOCS;
+      }
+
+      @Override
+      public Integer next() {
+        return nextDoc();
+      }
+
+      /** The remove operation is not supported by this Iterator. */
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException(
+            "The remove  operation is not supported by this Iterator.");
+      }
+
+      @Override
+      public int nextDoc() {
+        int old = pos;
+        pos = iter.nextDoc();
+        return old;
+      }
+
+      @Override
+      public float score() {
+        return 0.0f;
+      }
+    };
+  }
+
+  @Override
+  public DocIdSetIterator iterator(LeafReaderContext context) {
+    if (size == 0 || context.reader().maxDoc() < 1) {
+      // empty docset or entirely empty segment
+      return null;
+    }
+
+    if (context.isTopLevel) {
+      return new Iter();
+    }
+
+    final int base = context.docBase;
+    final int max = base + context.reader().maxDoc(); // one past the max doc in this segment.
+
+    // an upper bound of the docs in this segment: the cardinality of the overlapping containers
+    int startIdx = indexOf(base >>> BLOCK_SHIFT);
+    startIdx = startIdx < 0 ? ~startIdx : startIdx;
+    long estimate = 0;
+    for (int i = startIdx; i < keys.length && (keys[i] << BLOCK_SHIFT) < max; i++) {
+      estimate += containers[i].cardinality();
+    }
+    if (estimate == 0) {
+      return null;
+    }
+    final long cost = Math.min(estimate, max - base);
+
+    return new DocIdSetIterator() {
+      final Iter iter = new Iter();
+      int adjustedDoc = -1;
+
+      @Override
+      public int docID() {
+        return adjustedDoc;
+      }
+
+      @Override
+      public int nextDoc() {
+        final int doc = adjustedDoc == -1 ? iter.advance(base) : iter.nextDoc();
+        return adjustedDoc = doc < max ? doc - base : NO_MORE_DOCS;
+      }
+
+      @Override
+      public int advance(int target) {
+        if (target == NO_MORE_DOCS) return adjustedDoc = NO_MORE_DOCS;
+        final int adjusted = target + base;
+        if (adjusted >= max) return adjustedDoc = NO_MORE_DOCS;
+        final int doc = iter.advance(adjusted);
+        return adjustedDoc = doc < max ? doc - base : NO_MORE_DOCS;
+      }
+
+      @Override
+      public long cost() {
+        return cost;
+      }
+    };
+  }
+
+  /** Iterates over the top-level doc ids of this set. */
+  private final class Iter extends DocIdSetIterator {
+    private int blockIdx = -1;
+    private Cursor cursor;
+    private int base;
+    private int doc = -1;
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+      if (cursor != null) {
+        final int v = cursor.next();
+        if (v >= 0) return doc = base | v;
+      }
+      return firstInBlock(blockIdx + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+      if (target == NO_MORE_DOCS) return doc = NO_MORE_DOCS;
+      final int key = target >>> BLOCK_SHIFT;
+      if (cursor == null || keys[blockIdx] != key) {
+        final int idx = binarySearch(keys, blockIdx + 1, keys.length, key);
+        if (idx < 0) {
+          return firstInBlock(~idx);
+        }
+        setBlock(idx);
+      }
+      final int v = cursor.advance(target & BLOCK_MASK);
+      if (v >= 0) return doc = base | v;
+      return firstInBlock(blockIdx + 1);
+    }
+
+    private void setBlock(int idx) {
+      blockIdx = idx;
+      base = keys[idx] << BLOCK_SHIFT;
+      cursor = containers[idx].cursor();
+    }
+
+    private int firstInBlock(int idx) {
+      if (idx >= keys.length) {
+        blockIdx = keys.length;
+        cursor = null;
+        return doc = NO_MORE_DOCS;
+      }
+      setBlock(idx);
+      return doc = base | cursor.next(); // containers are never empty
+    }
+
+    @Override
+    public long cost() {
+      return size;
+    }
+  }
+
+  @Override
+  public DocSet intersection(DocSet other) {
+    if (other instanceof RoaringDocSet o) {
+      return intersection(o);
+    }
+    if (other instanceof SortedIntDocSet) {
+      // the smaller set is better at this
+      return other.intersection(this);
+    }
+    final FixedBitSet bits = other.getFixedBitSet();
+    char[] newKeys = new char[keys.length];
+    Container[] newContainers = new Container[keys.length];
+    int n = 0;
+    for (int i = 0; i < keys.length; i++) {
+      final long[] words = blockWords(bits, keys[i]);
+      if (words == null) break; // all higher blocks are past the end of the bits
+      final Container c = andWords(containers[i], words);
+      if (c != null) {
+        newKeys[n] = keys[i];
+        newContainers[n++] = c;
+      }
+    }
+    return create(newKeys, newContainers, n, numBits);
+  }
+
+  private RoaringDocSet intersection(RoaringDocSet other) {
+    final int len = Math.min(keys.length, other.keys.length);
+    char[] newKeys = new char[len];
+    Container[] newContainers = new Container[len];
+    int n = 0;
+    int i = 0, j = 0;
+    while (i < keys.length && j < other.keys.length) {
+      final char ka = keys[i], kb = other.keys[j];
+      if (ka < kb) {
+        i++;
+      } else if (ka > kb) {
+        j++;
+      } else {
+        final Container c = and(containers[i++], other.containers[j++]);
+        if (c != null) {
+          newKeys[n] = ka;
+          newContainers[n++] = c;
+        }
+      }
+    }
+    return create(newKeys, newContainers, n, Math.max(numBits, other.numBits));
+  }
+
+  @Override
+  public int intersectionSize(DocSet other) {
+    if (other instanceof RoaringDocSet o) {
+      int count = 0;
+      int i = 0, j = 0;
+      while (i < keys.length && j < o.keys.length) {
+        final char ka = keys[i], kb = o.keys[j];
+        if (ka < kb) {
+          i++;
+        } else if (ka > kb) {
+          j++;
+        } else {
+          count += andCardinality(containers[i++], o.containers[j++]);
+        }
+      }
+      return count;
+    }
+    if (other instanceof SortedIntDocSet) {
+      // they had better not call us back!
+      return other.intersectionSize(this);
+    }
+    final FixedBitSet bits = other.getFixedBitSet();
+    int count = 0;
+    for (int i = 0; i < keys.length; i++) {
+      final int c = andCardinality(containers[i], bits, keys[i]);
+      if (c < 0) break; // past the end of the bits
+      count += c;
+    }
+    return count;
+  }
+
+  @Override
+  public boolean intersects(DocSet other) {
+    if (other instanceof RoaringDocSet o) {
+      int i = 0, j = 0;
+      while (i < keys.length && j < o.keys.length) {
+        final char ka = keys[i], kb = o.keys[j];
+        if (ka < kb) {
+          i++;
+        } else if (ka > kb) {
+          j++;
+        } else if (andCardinality(containers[i++], o.containers[j++]) > 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+    if (other instanceof SortedIntDocSet) {
+      // they had better not call us back!
+      return other.intersects(this);
+    }
+    final FixedBitSet bits = other.getFixedBitSet();
+    for (int i = 0; i < keys.length; i++) {
+      final int c = andCardinality(containers[i], bits, keys[i]);
+      if (c < 0) break; // past the end of the bits
+      if (c > 0) return true;
+    }
+    return false;
+  }
+
+  @Override
+  public DocSet union(DocSet other) {
+    if (other instanceof RoaringDocSet o) {
+      return union(o);
+    }
+    if (other instanceof SortedIntDocSet o) {
+      final int[] docs = o.getDocs();
+      final int otherNumBits = docs.length == 0 ? 0 : docs[docs.length - 1] + 1;
+      return union(fromSortedDocs(docs, docs.length, Math.max(numBits, otherNumBits)));
+    }
+    // the result is at least as dense as the other set, so keep it as bits
+    FixedBitSet newbits = FixedBitSet.ensureCapacity(other.getFixedBitSetClone(), numBits);
+    addAllTo(newbits);
+    return new BitDocSet(newbits);
+  }
+
+  private RoaringDocSet union(RoaringDocSet other) {
+    final int len = keys.length + other.keys.length;
+    char[] newKeys = new char[len];
+    Container[] newContainers = new Container[len];
+    int n = 0;
+    int i = 0, j = 0;
+    while (i < keys.length || j < other.keys.length) {
+      final int ka = i < keys.length ? keys[i] : Integer.MAX_VALUE;
+      final int kb = j < other.keys.length ? other.keys[j] : Integer.MAX_VALUE;
+      if (ka < kb) {
+        newKeys[n] = (char) ka;
+        newContainers[n++] = containers[i++];
+      } else if (ka > kb) {
+        newKeys[n] = (char) kb;
+        newContainers[n++] = other.containers[j++];
+      } else {
+        newKeys[n] = (char) ka;
+        newContainers[n++] = or(containers[i++], other.containers[j++]);
+      }
+    }
+    return create(newKeys, newContainers, n, Math.max(numBits, other.numBits));
+  }
+
+  @Override
+  public DocSet andNot(DocSet other) {
+    if (other.size() == 0) return this;
+
+    char[] newKeys = new char[keys.length];
+    Container[] newContainers = new Container[keys.length];
+    int n = 0;
+
+    if (other instanceof RoaringDocSet || other instanceof SortedIntDocSet) {
+      final RoaringDocSet o;
+      if (other instanceof SortedIntDocSet s) {
+        o = fromSortedDocs(s.getDocs(), s.size(), numBits);
+      } else {
+        o = (RoaringDocSet) other;
+      }
+      int j = 0;
+      for (int i = 0; i < keys.length; i++) {
+        final char key = keys[i];
+        while (j < o.keys.length && o.keys[j] < key) {
+          j++;
+        }
+        final Container c =
+            j < o.keys.length && o.keys[j] == key
+                ? andNot(containers[i], o.containers[j])
+                : containers[i];
+        if (c != null) {
+          newKeys[n] = key;
+          newContainers[n++] = c;
+        }
+      }
+    } else {
+      final FixedBitSet bits = other.getFixedBitSet();
+      for (int i = 0; i < keys.length; i++) {
+        final long[] words = blockWords(bits, keys[i]);
+        final Container c = words == null ? containers[i] : andNotWords(containers[i], words);
+        if (c != null) {
+          newKeys[n] = keys[i];
+          newContainers[n++] = c;
+        }
+      }
+    }
+    return create(newKeys, newContainers, n, numBits);
+  }
+
+  @Override
+  public DocSetQuery makeQuery() {
+    return new DocSetQuery(this);
+  }
+
+  @Override
+  public void addAllTo(FixedBitSet target) {
+    for (int i = 0; i < keys.length; i++) {
+      containers[i].orInto(target, keys[i] << BLOCK_SHIFT);
+    }
+  }
+
+  @Override
+  public RoaringDocSet clone() {
+    // containers are immutable, so they can be shared
+    return new RoaringDocSet(keys.clone(), containers.clone(), numBits);
+  }
+
+  /** Returns a {@link Bits} backed by {@link #exists(int)}, which is fast for all containers. */
+  @Override
+  public Bits getBits() {
+    return new Bits() {
+      @Override
+      public boolean get(int index) {
+        return exists(index);
+      }
+
+      @Override
+      public int length() {
+        return numBits;
+      }
+    };
+  }
+
+  @Override
+  protected FixedBitSet getFixedBitSet() {
+    return getFixedBitSetClone();
+  }
+
+  @Override
+  protected FixedBitSet getFixedBitSetClone() {
+    FixedBitSet bitSet = new FixedBitSet(numBits);
+    addAllTo(bitSet);
+    return bitSet;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    long bytes =
+        BASE_RAM_BYTES_USED
+            + ((long) keys.length << 1)
+            + (long) containers.length * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+    for (Container c : containers) {
+      bytes += c.ramBytesUsed();
+    }
+    return bytes;
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return List.of();
+  }
+
+  @Override
+  public String toString() {
+    return "RoaringDocSet{"
+        + "size="
+        + size()
+        + ",containers="
+        + containers.length
+        + ",ramUsed="
+        + RamUsageEstimator.humanReadableUnits(ramBytesUsed())
+        + '}';
+  }
+
+  //
+  // Container implementations and the operations between them. Containers hold the low 16 bits of
+  // the docs of a block and are immutable once created. Operations return null for an empty result.
+  //
+
+  private static int binarySearch(char[] arr, int from, int to, int key) {
+    int low = from;
+    int high = to - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final int midVal = arr[mid];
+      if (midVal < key) {
+        low = mid + 1;
+      } else if (midVal > key) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  /** Returns a copy of the words of the given block, or null if the block is past the bits. */
+  private static long[] blockWords(FixedBitSet bits, int key) {
+    final long[] words = bits.getBits();
+    final int from = key * BLOCK_WORDS;
+    if (from >= FixedBitSet.bits2words(bits.length())) {
+      return null;
+    }
+    // bits past length() are always clear, and copyOfRange pads with zeros
+    return Arrays.copyOfRange(words, from, from + BLOCK_WORDS);
+  }
+
+  /** Creates the smallest container for a block from a range of at most BLOCK_WORDS words. */
+  private static Container fromWords(long[] words, int from, int to) {
+    int card = 0;
+    int runs = 0;
+    long carry = 0;
+    for (int i = from; i < to; i++) {
+      final long w = words[i];
+      card += Long.bitCount(w);
+      runs += Long.bitCount(w & ~((w << 1) | carry));
+      carry = w >>> 63;
+    }
+    if (card == 0) {
+      return null;
+    }
+    if (((long) runs << 2) < (card <= MAX_ARRAY_SIZE ? card << 1 : BITMAP_BYTES)) {
+      char[] r = new char[runs << 1];
+      int n = 0;
+      int last = -2;
+      for (int i = from; i < to; i++) {
+        long w = words[i];
+        final int wordBase = (i - from) << 6;
+        while (w != 0) {
+          final int v = wordBase + Long.numberOfTrailingZeros(w);
+          if (v == last + 1) {
+            r[(n << 1) - 1]++;
+          } else {
+            r[n << 1] = (char) v;
+            r[(n << 1) + 1] = 0;
+            n++;
+          }
+          last = v;
+          w &= w - 1;
+        }
+      }
+      assert n == runs;
+      return new RunContainer(r, runs, card);
+    } else if (card <= MAX_ARRAY_SIZE) {
+      char[] values = new char[card];
+      int n = 0;
+      for (int i = from; i < to; i++) {
+        long w = words[i];
+        final int wordBase = (i - from) << 6;
+        while (w != 0) {
+          values[n++] = (char) (wordBase + Long.numberOfTrailingZeros(w));
+          w &= w - 1;
+        }
+      }
+      return new ArrayContainer(values, card);
+    } else {
+      return new BitmapContainer(Arrays.copyOfRange(words, from, from + BLOCK_WORDS), card);
+    }
+  }
+
+  /** Like {@link #fromWords(long[], int, int)}, but may take ownership of the words. */
+  private static Container fromWords(long[] words) {
+    final Container c = fromWords(words, 0, BLOCK_WORDS);
+    if (c instanceof BitmapContainer b) {
+      return new BitmapContainer(words, b.cardinality); // avoid keeping the copy
+    }
+    return c;
+  }
+
+  /** Creates the smallest container from sorted values, at most MAX_ARRAY_SIZE of them. */
+  private static Container fromArray(char[] values, int n) {
+    if (n == 0) {
+      return null;
+    }
+    int runs = 1;
+    for (int i = 1; i < n; i++) {
+      if (values[i] != values[i - 1] + 1) runs++;
+    }
+    if (runs << 2 < n << 1) {
+      char[] r = new char[runs << 1];
+      int k = 0;
+      r[0] = values[0];
+      for (int i = 1; i < n; i++) {
+        if (values[i] == values[i - 1] + 1) {
+          r[(k << 1) + 1]++;
+        } else {
+          k++;
+          r[k << 1] = values[i];
+        }
+      }
+      return new RunContainer(r, runs, n);
+    }
+    return new ArrayContainer(n == values.length ? values : Arrays.copyOf(values, n), n);
+  }
+
+  /** Creates the smallest container from runs (start, length - 1 pairs). */
+  private static Container fromRuns(char[] runs, int nRuns) {
+    if (nRuns == 0) {
+      return null;
+    }
+    int card = 0;
+    for (int i = 0; i < nRuns; i++) {
+      card += runs[(i << 1) + 1] + 1;
+    }
+    final int runBytes = nRuns << 2;
+    if (card <= MAX_ARRAY_SIZE && card << 1 < runBytes) {
+      char[] values = new char[card];
+      int n = 0;
+      for (int i = 0; i < nRuns; i++) {
+        final int start = runs[i << 1];
+        final int end = start + runs[(i << 1) + 1];
+        for (int v = start; v <= end; v++) {
+          values[n++] = (char) v;
+        }
+      }
+      return new ArrayContainer(values, card);
+    } else if (BITMAP_BYTES < runBytes) {
+      long[] words = new long[BLOCK_WORDS];
+      for (int i = 0; i < nRuns; i++) {
+        final int start = runs[i << 1];
+        setRange(words, start, start + runs[(i << 1) + 1] + 1);
+      }
+      return new BitmapContainer(words, card);
+    }
+    return new RunContainer(Arrays.copyOf(runs, nRuns << 1), nRuns, card);
+  }
+
+  /** Sets the bits from start (inclusive) to end (exclusive), like {@link FixedBitSet#set} */
+  private static void setRange(long[] words, int start, int end) {
+    final int startWord = start >>> 6;
+    final int endWord = (end - 1) >>> 6;
+    final long startMask = -1L << start;
+    final long endMask = -1L >>> -end;
+    if (startWord == endWord) {
+      words[startWord] |= (startMask & endMask);
+      return;
+    }
+    words[startWord] |= startMask;
+    Arrays.fill(words, startWord + 1, endWord, -1L);
+    words[endWord] |= endMask;
+  }
+
+  /** Clears the bits from start (inclusive) to end (exclusive) */
+  private static void clearRange(long[] words, int start, int end) {
+    final int startWord = start >>> 6;
+    final int endWord = (end - 1) >>> 6;
+    final long startMask = -1L << start;
+    final long endMask = -1L >>> -end;
+    if (startWord == endWord) {
+      words[startWord] &= ~(startMask & endMask);
+      return;
+    }
+    words[startWord] &= ~startMask;
+    Arrays.fill(words, startWord + 1, endWord, 0L);
+    words[endWord] &= ~endMask;
+  }
+
+  private static Container and(Container a, Container b) {
+    if (a instanceof ArrayContainer aa) return aa.filter(b, true);
+    if (b instanceof ArrayContainer ba) return ba.filter(a, true);
+    if (a instanceof RunContainer ra && b instanceof RunContainer rb) return ra.and(rb);
+    return andWords(a, b.words());
+  }
+
+  private static Container andWords(Container a, long[] words) {
+    if (a instanceof ArrayContainer aa) return aa.filter(words, true);
+    final long[] aw = a.words();
+    long[] result = new long[BLOCK_WORDS];
+    for (int i = 0; i < BLOCK_WORDS; i++) {
+      result[i] = aw[i] & words[i];
+    }
+    return fromWords(result);
+  }
+
+  private static int andCardinality(Container a, Container b) {
+    if (a instanceof ArrayContainer aa) return aa.count(b);
+    if (b instanceof ArrayContainer ba) return ba.count(a);
+    final long[] aw = a.words();
+    final long[] bw = b.words();
+    int count = 0;
+    for (int i = 0; i < BLOCK_WORDS; i++) {
+      count += Long.bitCount(aw[i] & bw[i]);
+    }
+    return count;
+  }
+
+  /** Returns -1 if the block is past the end of the bits */
+  private static int andCardinality(Container a, FixedBitSet bits, int key) {
+    final int base = key << BLOCK_SHIFT;
+    final int length = bits.length();
+    if (base >= length) {
+      return -1;
+    }
+    if (a instanceof ArrayContainer aa) {
+      int count = 0;
+      for (int i = 0; i < aa.cardinality; i++) {
+        final int doc = base | aa.values[i];
+        if (doc >= length) break;
+        if (bits.get(doc)) count++;
+      }
+      return count;
+    }
+    final long[] aw = a.words();
+    final long[] bw = bits.getBits();
+    final int from = key * BLOCK_WORDS;
+    final int n = Math.min(BLOCK_WORDS, FixedBitSet.bits2words(length) - from);
+    int count = 0;
+    for (int i = 0; i < n; i++) {
+      count += Long.bitCount(aw[i] & bw[from + i]);
+    }
+    return count;
+  }
+
+  private static Container or(Container a, Container b) {
+    if (a instanceof ArrayContainer aa
+        && b instanceof ArrayContainer ba
+        && aa.cardinality + ba.cardinality <= MAX_ARRAY_SIZE) {
+      return aa.merge(ba);
+    }
+    if (a instanceof RunContainer ra && b instanceof RunContainer rb) return ra.or(rb);
+    long[] result = a.words().clone();
+    b.orInto(result);
+    return fromWords(result);
+  }
+
+  private static Container andNot(Container a, Container b) {
+    if (a instanceof ArrayContainer aa) return aa.filter(b, false);
+    long[] result = a.words().clone();
+    b.clearFrom(result);
+    return fromWords(result);
+  }
+
+  private static Container andNotWords(Container a, long[] words) {
+    if (a instanceof ArrayContainer aa) return aa.filter(words, false);
+    final long[] aw = a.words();
+    long[] result = new long[BLOCK_WORDS];
+    for (int i = 0; i < BLOCK_WORDS; i++) {
+      result[i] = aw[i] & ~words[i];
+    }
+    return fromWords(result);
+  }
+
+  /** Iterates over the values of a container */
+  private abstract static class Cursor {
+    /** Returns the next value, or -1 if exhausted */
+    abstract int next();
+
+    /** Returns the first value greater than or equal to target, or -1 if exhausted */
+    abstract int advance(int target);
+  }
+
+  private abstract static class Container implements Accountable {
+    // an upper bound for all container types
+    static final long BASE_RAM_BYTES_USED =
+        RamUsageEstimator.shallowSizeOfInstance(RunContainer.class)
+            + RamUsageEstimator.NUM_BYTES_ARRAY_HEADER;
+
+    final int cardinality;
+
+    Container(int cardinality) {
+      this.cardinality = cardinality;
+    }
+
+    int cardinality() {
+      return cardinality;
+    }
+
+    abstract boolean contains(int value);
+
+    abstract Cursor cursor();
+
+    /** Returns the contents as a bitmap; the returned words must not be modified */
+    abstract long[] words();
+
+    abstract void orInto(long[] words);
+
+    abstract void clearFrom(long[] words);
+
+    abstract void orInto(FixedBitSet target, int base);
+  }
+
+  private static final class ArrayContainer extends Container {
+    final char[] values;
+
+    ArrayContainer(char[] values, int cardinality) {
+      super(cardinality);
+      assert values.length == cardinality && cardinality <= MAX_ARRAY_SIZE;
+      this.values = values;
+    }
+
+    @Override
+    boolean contains(int value) {
+      return binarySearch(values, 0, cardinality, value) >= 0;
+    }
+
+    Container filter(Container other, boolean keep) {
+      char[] result = new char[cardinality];
+      int n = 0;
+      for (char v : values) {
+        if (other.contains(v) == keep) result[n++] = v;
+      }
+      return n == cardinality ? this : fromArray(result, n);
+    }
+
+    Container filter(long[] words, boolean keep) {
+      char[] result = new char[cardinality];
+      int n = 0;
+      for (char v : values) {
+        if (((words[v >>> 6] & (1L << v)) != 0) == keep) result[n++] = v;
+      }
+      return n == cardinality ? this : fromArray(result, n);
+    }
+
+    int count(Container other) {
+      int count = 0;
+      for (char v : values) {
+        if (other.contains(v)) count++;
+      }
+      return count;
+    }
+
+    Container merge(ArrayContainer other) {
+      final char[] a = values, b = other.values;
+      char[] result = new char[a.length + b.length];
+      int i = 0, j = 0, n = 0;
+      while (i < a.length && j < b.length) {
+        final char va = a[i], vb = b[j];
+        if (va < vb) {
+          result[n++] = va;
+          i++;
+        } else if (va > vb) {
+          result[n++] = vb;
+          j++;
+        } else {
+          result[n++] = va;
+          i++;
+          j++;
+        }
+      }
+      while (i < a.length) result[n++] = a[i++];
+      while (j < b.length) result[n++] = b[j++];
+      return fromArray(result, n);
+    }
+
+    @Override
+    Cursor cursor() {
+      return new Cursor() {
+        int pos = -1;
+
+        @Override
+        int next() {
+          return ++pos < cardinality ? values[pos] : -1;
+        }
+
+        @Override
+        int advance(int target) {
+          final int idx = binarySearch(values, pos + 1, cardinality, target);
+          pos = idx < 0 ? ~idx : idx;
+          return pos < cardinality ? values[pos] : -1;
+        }
+      };
+    }
+
+    @Override
+    long[] words() {
+      long[] words = new long[BLOCK_WORDS];
+      orInto(words);
+      return words;
+    }
+
+    @Override
+    void orInto(long[] words) {
+      for (char v : values) {
+        words[v >>> 6] |= 1L << v;
+      }
+    }
+
+    @Override
+    void clearFrom(long[] words) {
+      for (char v : values) {
+        words[v >>> 6] &= ~(1L << v);
+      }
+    }
+
+    @Override
+    void orInto(FixedBitSet target, int base) {
+      for (char v : values) {
+        target.set(base | v);
+      }
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + ((long) values.length << 1);
+    }
+  }
+
+  private static final class BitmapContainer extends Container {
+    final long[] words;
+
+    BitmapContainer(long[] words, int cardinality) {
+      super(cardinality);
+      assert words.length == BLOCK_WORDS;
+      this.words = words;
+    }
+
+    @Override
+    boolean contains(int value) {
+      return (words[value >>> 6] & (1L << value)) != 0;
+    }
+
+    /** Returns the index of the first set bit at or after index, or -1 */
+    int nextSetBit(int index) {
+      int i = index >>> 6;
+      long word = words[i] >> index; // skip all the bits to the right of index
+      if (word != 0) {
+        return index + Long.numberOfTrailingZeros(word);
+      }
+      while (++i < BLOCK_WORDS) {
+        word = words[i];
+        if (word != 0) {
+          return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    Cursor cursor() {
+      return new Cursor() {
+        int cur = -1;
+
+        @Override
+        int next() {
+          return advance(cur + 1);
+        }
+
+        @Override
+        int advance(int target) {
+          if (target >= BLOCK_SIZE) {
+            cur = BLOCK_SIZE;
+            return -1;
+          }
+          final int v = nextSetBit(target);
+          cur = v < 0 ? BLOCK_SIZE : v;
+          return v;
+        }
+      };
+    }
+
+    @Override
+    long[] words() {
+      return words;
+    }
+
+    @Override
+    void orInto(long[] target) {
+      for (int i = 0; i < BLOCK_WORDS; i++) {
+        target[i] |= words[i];
+      }
+    }
+
+    @Override
+    void clearFrom(long[] target) {
+      for (int i = 0; i < BLOCK_WORDS; i++) {
+        target[i] &= ~words[i];
+      }
+    }
+
+    @Override
+    void orInto(FixedBitSet target, int base) {
+      final long[] targetWords = target.getBits();
+      final int from = base >>> 6;
+      final int n = Math.min(BLOCK_WORDS, targetWords.length - from);
+      for (int i = 0; i < n; i++) {
+        targetWords[from + i] |= words[i];
+      }
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + BITMAP_BYTES;
+    }
+  }
+
+  private static final class RunContainer extends Container {
+    final char[] runs; // pairs of start, length - 1
+    final int nRuns;
+
+    RunContainer(char[] runs, int nRuns, int cardinality) {
+      super(cardinality);
+      assert runs.length == nRuns << 1;
+      this.runs = runs;
+      this.nRuns = nRuns;
+    }
+
+    int start(int run) {
+      return runs[run << 1];
+    }
+
+    /** inclusive */
+    int end(int run) {
+      return runs[run << 1] + runs[(run << 1) + 1];
+    }
+
+    /** Returns the index of the first run from the given one that ends at or after value */
+    int findRun(int from, int value) {
+      int low = from;
+      int high = nRuns - 1;
+      while (low <= high) {
+        final int mid = (low + high) >>> 1;
+        if (end(mid) < value) {
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+      return low;
+    }
+
+    @Override
+    boolean contains(int value) {
+      final int run = findRun(0, value);
+      return run < nRuns && start(run) <= value;
+    }
+
+    Container and(RunContainer other) {
+      char[] result = new char[(nRuns + other.nRuns) << 1];
+      int n = 0;
+      int i = 0, j = 0;
+      while (i < nRuns && j < other.nRuns) {
+        final int start = Math.max(start(i), other.start(j));
+        final int endA = end(i), endB = other.end(j);
+        final int end = Math.min(endA, endB);
+        if (start <= end) {
+          result[n << 1] = (char) start;
+          result[(n << 1) + 1] = (char) (end - start);
+          n++;
+        }
+        if (endA < endB) {
+          i++;
+        } else {
+          j++;
+        }
+      }
+      return fromRuns(result, n);
+    }
+
+    Container or(RunContainer other) {
+      char[] result = new char[(nRuns + other.nRuns) << 1];
+      int n = 0;
+      int i = 0, j = 0;
+      int curStart = -1, curEnd = -2;
+      while (i < nRuns || j < other.nRuns) {
+        final int start, end;
+        if (j >= other.nRuns || (i < nRuns && start(i) <= other.start(j))) {
+          start = start(i);
+          end = end(i++);
+        } else {
+          start = other.start(j);
+          end = other.end(j++);
+        }
+        if (start <= curEnd + 1) {
+          curEnd = Math.max(curEnd, end);
+        } else {
+          if (curStart >= 0) {
+            result[n << 1] = (char) curStart;
+            result[(n << 1) + 1] = (char) (curEnd - curStart);
+            n++;
+          }
+          curStart = start;
+          curEnd = end;
+        }
+      }
+      result[n << 1] = (char) curStart;
+      result[(n << 1) + 1] = (char) (curEnd - curStart);
+      n++;
+      return fromRuns(result, n);
+    }
+
+    @Override
+    Cursor cursor() {
+      return new Cursor() {
+        int run = 0;
+        int cur = -1;
+
+        @Override
+        int next() {
+          if (run >= nRuns) return -1;
+          if (cur < start(run)) {
+            cur = start(run);
+          } else if (cur < end(run)) {
+            cur++;
+          } else {
+            if (++run >= nRuns) return -1;
+            cur = start(run);
+          }
+          return cur;
+        }
+
+        @Override
+        int advance(int target) {
+          run = findRun(run, target);
+          if (run >= nRuns) return -1;
+          return cur = Math.max(target, start(run));
+        }
+      };
+    }
+
+    @Override
+    long[] words() {
+      long[] words = new long[BLOCK_WORDS];
+      orInto(words);
+      return words;
+    }
+
+    @Override
+    void orInto(long[] words) {
+      for (int i = 0; i < nRuns; i++) {
+        setRange(words, start(i), end(i) + 1);
+      }
+    }
+
+    @Override
+    void clearFrom(long[] words) {
+      for (int i = 0; i < nRuns; i++) {
+        clearRange(words, start(i), end(i) + 1);
+      }
+    }
+
+    @Override
+    void orInto(FixedBitSet target, int base) {
+      for (int i = 0; i < nRuns; i++) {
+        target.set(base + start(i), base + end(i) + 1);
+      }
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + ((long) runs.length << 1);
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.ScorerSupplier;
+import org.apache.lucene.search.TwoPhaseIterator;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A per-core cache of the documents matching a filter in each index segment, keyed by the segment's
+ * core cache key and the filter query. Unlike the filterCache, it outlives the searcher: when a new
+ * searcher computes a filter, only segments that are new since the last one (e.g. from flushes or
+ * merges) need to be searched. This makes filterCache autowarming proportional to the change in the
+ * index rather than to its size.
+ *
+ * <p>Cached segment sets include deleted documents; the live docs of the searcher are applied when
+ * the top-level set is assembled, so new deletions in an existing segment don't invalidate it. Only
+ * queries whose {@link Weight#isCacheable(LeafReaderContext)} is true for every segment are cached
+ * since other queries (e.g. joins) match depending on more than the segment itself, and neither are
+ * queries that compute their DocSet for the whole searcher ({@link DocSetProducer}).
+ *
+ * <p>Entries for segments that are no longer in use are not removed eagerly; they are never looked
+ * up again, so the underlying cache evicts them as it fills up.
+ *
+ * @see org.apache.solr.core.SolrConfig#segmentFilterCacheConfig
+ */
+public final class SegmentFilterCache implements Closeable {
+
+  private final SolrCache<Key, DocSet> cache;
+
+  public SegmentFilterCache(SolrCache<Key, DocSet> cache) {
+    this.cache = cache;
+  }
+
+  public SolrCache<Key, DocSet> getCache() {
+    return cache;
+  }
+
+  /**
+   * Returns the DocSet matching the (positive) query in the searcher, assembled from per-segment
+   * sets that are computed and cached as needed. Returns null if the query can't be cached per
+   * segment, in which case the caller should compute the DocSet by other means.
+   */
+  public DocSet getDocSet(SolrIndexSearcher searcher, Query query) throws IOException {
+    if (query instanceof SolrSearcherRequirer || query instanceof DocSetProducer) {
+      // these produce a DocSet for the whole searcher, possibly already while creating the Weight
+      return null;
+    }
+    final List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
+    if (leaves.isEmpty()) {
+      return null;
+    }
+
+    final Weight weight =
+        searcher.createWeight(searcher.rewrite(query), ScoreMode.COMPLETE_NO_SCORES, 1f);
+    for (LeafReaderContext leaf : leaves) {
+      if (leaf.reader().getCoreCacheHelper() == null || !weight.isCacheable(leaf)) {
+        return null;
+      }
+    }
+
+    final DocSet[] segSets = new DocSet[leaves.size()];
+    long maxSize = 0;
+    for (LeafReaderContext leaf : leaves) {
+      final Key key = new Key(leaf.reader().getCoreCacheHelper().getKey(), query);
+      final DocSet segSet = cache.computeIfAbsent(key, k -> getSegmentDocSet(weight, leaf));
+      segSets[leaf.ord] = segSet;
+      maxSize += segSet.size();
+    }
+
+    final DocSetBuilder builder = new DocSetBuilder(searcher.maxDoc(), maxSize);
+    for (LeafReaderContext leaf : leaves) {
+      final Bits liveDocs = leaf.reader().getLiveDocs();
+      final int base = leaf.docBase;
+      for (DocIterator iter = segSets[leaf.ord].iterator(); iter.hasNext(); ) {
+        final int doc = iter.nextDoc();
+        if (liveDocs == null || liveDocs.get(doc)) {
+          builder.add(doc + base);
+        }
+      }
+    }
+    return DocSetUtil.getDocSet(builder.buildUniqueInOrder(null), searcher);
+  }
+
+  /** Returns all docs matching the weight in the segment, including deleted ones. */
+  private static DocSet getSegmentDocSet(Weight weight, LeafReaderContext leaf) throws IOException {
+    final ScorerSupplier supplier = weight.scorerSupplier(leaf);
+    if (supplier == null) {
+      return DocSet.empty();
+    }
+    final Scorer scorer = supplier.get(Long.MAX_VALUE);
+    final TwoPhaseIterator twoPhase = scorer.twoPhaseIterator();
+    final DocIdSetIterator iter =
+        twoPhase == null ? scorer.iterator() : TwoPhaseIterator.asDocIdSetIterator(twoPhase);
+    final DocSetBuilder builder = new DocSetBuilder(leaf.reader().maxDoc(), iter.cost());
+    builder.add(iter, 0);
+    return builder.buildUniqueInOrder(null);
+  }
+
+  @Override
+  public void close() throws IOException {
+    cache.close();
+  }
+
+  /** Key of a segment's entry in the cache. */
+  public record Key(IndexReader.CacheKey coreKey, Query query) implements Accountable {
+    private static final long BASE_RAM_BYTES_USED =
+        RamUsageEstimator.shallowSizeOfInstance(Key.class);
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED
+          + RamUsageEstimator.sizeOfObject(query, RamUsageEstimator.QUERY_DEFAULT_RAM_BYTES_USED);
+    }
+  }
+}
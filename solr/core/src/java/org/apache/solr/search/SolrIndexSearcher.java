@@ -24,13 +24,18 @@ import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -55,6 +60,7 @@ import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.CollectionStatistics;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.FieldDoc;
@@ -153,18 +159,24 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
   private final long openNanoTime = System.nanoTime();
   private Date registerTime;
   private long warmupTime = 0;
+  // the searcher this one is autowarmed from, while warming
+  private volatile SolrIndexSearcher warmingFrom;
+  private volatile boolean warmingCancelled;
   private final DirectoryReader reader;
   private final boolean closeReader;
 
   private final int queryResultWindowSize;
   private final int queryResultMaxDocsCached;
+  private final int cursorMarkWindowSize;
   private final boolean useFilterForSortedQuery;
 
   private final boolean cachingEnabled;
   private final SolrCache<Query, DocSet> filterCache;
+  private final SegmentFilterCache segmentFilterCache;
   private final SolrCache<QueryResultKey, DocList> queryResultCache;
   private final SolrCache<String, UnInvertedField> fieldValueCache;
   private final SolrCache<Integer, float[]> featureVectorCache;
+  private final SolrCache<QueryResultKey, CursorWindow> cursorMarkCache;
   private final LongAdder fullSortCount = new LongAdder();
   private final LongAdder skipSortCount = new LongAdder();
   private final LongAdder liveDocsNaiveCacheHitCount = new LongAdder();
@@ -428,6 +440,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     final SolrConfig solrConfig = core.getSolrConfig();
     this.queryResultWindowSize = solrConfig.queryResultWindowSize;
     this.queryResultMaxDocsCached = solrConfig.queryResultMaxDocsCached;
+    this.cursorMarkWindowSize = solrConfig.cursorMarkWindowSize;
     this.useFilterForSortedQuery = solrConfig.useFilterForSortedQuery;
 
     this.docFetcher = new SolrDocumentFetcher(this, solrConfig, enableCache);
@@ -443,6 +456,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       filterCache =
           solrConfig.filterCacheConfig == null ? null : solrConfig.filterCacheConfig.newInstance();
       if (filterCache != null) clist.add(filterCache);
+      // shared across searchers, so owned by the core rather than in our cacheList
+      segmentFilterCache = filterCache == null ? null : core.getSegmentFilterCache();
       queryResultCache =
           solrConfig.queryResultCacheConfig == null
               ? null
@@ -453,6 +468,11 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
               ? null
               : solrConfig.featureVectorCacheConfig.newInstance();
       if (featureVectorCache != null) clist.add(featureVectorCache);
+      cursorMarkCache =
+          solrConfig.cursorMarkCacheConfig == null
+              ? null
+              : solrConfig.cursorMarkCacheConfig.newInstance();
+      if (cursorMarkCache != null) clist.add(cursorMarkCache);
       SolrCache<Integer, Document> documentCache = docFetcher.getDocumentCache();
       if (documentCache != null) clist.add(documentCache);
 
@@ -472,9 +492,11 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       cacheList = clist.toArray(new SolrCache[0]);
     } else {
       this.filterCache = null;
+      this.segmentFilterCache = null;
       this.queryResultCache = null;
       this.fieldValueCache = null;
       this.featureVectorCache = null;
+      this.cursorMarkCache = null;
       this.cacheMap = NO_GENERIC_CACHES;
       this.cacheList = NO_CACHES;
     }
@@ -696,6 +718,10 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     return filterCache;
   }
 
+  public SolrCache<QueryResultKey, DocList> getQueryResultCache() {
+    return queryResultCache;
+  }
+
   public SolrCache<Integer, float[]> getFeatureVectorCache() {
     return featureVectorCache;
   }
@@ -744,7 +770,6 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
 
     if (solrConfig.queryResultCacheConfig != null
         && solrConfig.queryResultCacheConfig.getRegenerator() == null) {
-      final int queryResultWindowSize = solrConfig.queryResultWindowSize;
       solrConfig.queryResultCacheConfig.setRegenerator(
           new CacheRegenerator() {
             @Override
@@ -755,37 +780,43 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
                 K oldKey,
                 V oldVal)
                 throws IOException {
-              QueryResultKey key = (QueryResultKey) oldKey;
-              int nDocs = 1;
-              // request 1 doc and let caching round up to the next window size...
-              // unless the window size is <=1, in which case we will pick
-              // the minimum of the number of documents requested last time and
-              // a reasonable number such as 40.
-              // TODO: make more configurable later...
-
-              if (queryResultWindowSize <= 1) {
-                DocList oldList = (DocList) oldVal;
-                int oldnDocs = oldList.offset() + oldList.size();
-                // 40 has factors of 2,4,5,10,20
-                nDocs = Math.min(oldnDocs, 40);
-              }
-
-              int flags = NO_CHECK_QCACHE | key.nc_flags;
-              QueryCommand qc = new QueryCommand();
-              qc.setQuery(key.query)
-                  .setFilterList(key.filters)
-                  .setSort(key.sort)
-                  .setLen(nDocs)
-                  .setSupersetMaxDoc(nDocs)
-                  .setFlags(flags);
-              QueryResult qr = new QueryResult();
-              newSearcher.getDocListC(qr, qc);
+              newSearcher.regenerateQueryResult((QueryResultKey) oldKey, (DocList) oldVal);
               return true;
             }
           });
     }
   }
 
+  /**
+   * Re-executes the query of a queryResultCache entry of an old searcher on this one, caching the
+   * result. This is what the default queryResultCache regenerator does.
+   */
+  void regenerateQueryResult(QueryResultKey key, DocList oldList) throws IOException {
+    int nDocs = 1;
+    // request 1 doc and let caching round up to the next window size...
+    // unless the window size is <=1, in which case we will pick
+    // the minimum of the number of documents requested last time and
+    // a reasonable number such as 40.
+    // TODO: make more configurable later...
+
+    if (queryResultWindowSize <= 1) {
+      int oldnDocs = oldList.offset() + oldList.size();
+      // 40 has factors of 2,4,5,10,20
+      nDocs = Math.min(oldnDocs, 40);
+    }
+
+    int flags = NO_CHECK_QCACHE | key.nc_flags;
+    QueryCommand qc = new QueryCommand();
+    qc.setQuery(key.query)
+        .setFilterList(key.filters)
+        .setSort(key.sort)
+        .setLen(nDocs)
+        .setSupersetMaxDoc(nDocs)
+        .setFlags(flags);
+    QueryResult qr = new QueryResult();
+    getDocListC(qr, qc);
+  }
+
   /** Primary entrypoint for searching, using a {@link QueryCommand}. */
   public QueryResult search(QueryCommand cmd) throws IOException {
     return search(new QueryResult(), cmd);
@@ -1075,17 +1106,43 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
 
       // Not found in the cache so compute and put in the cache
       if (answer == null) {
-        answer = getDocSetNC(query, null);
+        answer = getDocSetForCache(query);
         filterCache.put(query, answer);
       }
     } else {
-      answer = filterCache.computeIfAbsent(query, q -> getDocSetNC(q, null));
+      answer = filterCache.computeIfAbsent(query, this::getDocSetForCache);
     }
 
     assert !(answer instanceof MutableBitDocSet) : "should not be mutable";
     return answer;
   }
 
+  /**
+   * Computes the DocSet of a positive query that is about to be put in the filterCache. If a {@link
+   * SegmentFilterCache} is configured, the set is assembled from cached per-segment sets when the
+   * query allows for it.
+   */
+  private DocSet getDocSetForCache(Query query) throws IOException {
+    DocSet answer = null;
+    if (segmentFilterCache != null) {
+      answer = segmentFilterCache.getDocSet(this, query);
+    }
+    if (answer == null) {
+      answer = getDocSetNC(query, null);
+    }
+    return compressForCache(answer);
+  }
+
+  /**
+   * Compresses a DocSet that is about to be put in the filterCache, if enabled.
+   *
+   * @see DocSetBuilder#maybeCompress(DocSet)
+   */
+  private DocSet compressForCache(DocSet answer) {
+    // liveDocs is shared with the searcher, so there would be no point in a compressed copy
+    return answer == liveDocs ? answer : DocSetBuilder.maybeCompress(answer);
+  }
+
   private static final MatchAllDocsQuery MATCH_ALL_DOCS_QUERY = new MatchAllDocsQuery();
 
   /** Used as a synchronization point to handle the lazy-init of {@link #liveDocs}. */
@@ -1244,6 +1301,69 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     public DocSet answer;
     public Query filter; // maybe null.  Scoring is irrelevant / unspecified.
     public DelegatingCollector postFilter; // maybe null
+
+    // the post filters of postFilter, to build a chain per slice of a concurrent search
+    private List<PostFilter> postFilters;
+    private IndexSearcher searcher;
+
+    /**
+     * Returns true if the documents can be collected concurrently: if there's no post filter, or if
+     * they all collect each segment on their own, so that each slice of the index can be collected
+     * through its own chain of post filters, see {@link #wrap(CollectorManager)}.
+     *
+     * @see DelegatingCollector#isSegmentLocal()
+     */
+    public boolean isConcurrent() {
+      for (Collector c = postFilter; c instanceof DelegatingCollector; ) {
+        DelegatingCollector dc = (DelegatingCollector) c;
+        if (!dc.isSegmentLocal()) {
+          return false;
+        }
+        c = dc.getDelegate();
+      }
+      return true;
+    }
+
+    /**
+     * Wraps the collector manager of a concurrent search, so that each slice of the index is
+     * collected through a new chain of the post filters, if any, which is completed before the
+     * collectors are reduced. The post filters must be {@link #isConcurrent()}.
+     */
+    public <C extends Collector, T> CollectorManager<? extends Collector, T> wrap(
+        CollectorManager<C, T> manager) {
+      if (postFilter == null) {
+        return manager;
+      }
+      assert isConcurrent();
+      return new CollectorManager<DelegatingCollector, T>() {
+        private final Map<DelegatingCollector, C> collectors =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+
+        @Override
+        public DelegatingCollector newCollector() throws IOException {
+          DelegatingCollector chain = null;
+          for (int i = postFilters.size() - 1; i >= 0; i--) {
+            DelegatingCollector prev = chain;
+            chain = postFilters.get(i).getFilterCollector(searcher);
+            if (prev != null) chain.setDelegate(prev);
+          }
+          C collector = manager.newCollector();
+          chain.setLastDelegate(collector);
+          collectors.put(chain, collector);
+          return chain;
+        }
+
+        @Override
+        public T reduce(Collection<DelegatingCollector> chains) throws IOException {
+          List<C> reduced = new ArrayList<>(chains.size());
+          for (DelegatingCollector chain : chains) {
+            chain.complete();
+            reduced.add(collectors.get(chain));
+          }
+          return manager.reduce(reduced);
+        }
+      };
+    }
   }
 
   /**
@@ -1379,6 +1499,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     // Set pf.postFilter
     if (postFilters != null) {
       postFilters.sort(sortByCost);
+      pf.postFilters = postFilters;
+      pf.searcher = this;
       for (int i = postFilters.size() - 1; i >= 0; i--) {
         DelegatingCollector prev = pf.postFilter;
         pf.postFilter = postFilters.get(i).getFilterCollector(this);
@@ -1400,7 +1522,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       TermQuery key = new TermQuery(new Term(deState.fieldName, deState.termsEnum.term()));
       return filterCache.computeIfAbsent(
           key,
-          (IOFunction<? super Query, ? extends DocSet>) k -> getResult(deState, largestPossible));
+          (IOFunction<? super Query, ? extends DocSet>)
+              k -> compressForCache(getResult(deState, largestPossible)));
     }
 
     return getResult(deState, largestPossible);
@@ -1652,6 +1775,17 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       }
     }
 
+    if (cursorMarkCache != null
+        && cmd.getCursorMark() != null
+        && cmd.getLen() > 0
+        // cursors always skip the queryResultCache, so check the query itself
+        && !(q instanceof ExtendedQuery eq && !eq.getCache())
+        && !cmd.getSegmentTerminateEarly()
+        && !(q instanceof RankQuery)) {
+      getCursorDocListC(qr, cmd, flags);
+      return qr;
+    }
+
     // we can try and look up the complete query in the cache.
     if (queryResultCache != null
         && (flags & (NO_CHECK_QCACHE | NO_SET_QCACHE)) != ((NO_CHECK_QCACHE | NO_SET_QCACHE))) {
@@ -1681,14 +1815,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
           // OPT: possible future optimization - if the doclist contains all the matches,
           // use it to make the docset instead of rerunning the query.
           if (out.docSet == null && ((flags & GET_DOCSET) != 0)) {
-            if (cmd.getFilterList() == null) {
-              out.docSet = getDocSet(cmd.getQuery());
-            } else {
-              List<Query> newList = new ArrayList<>(cmd.getFilterList().size() + 1);
-              newList.add(cmd.getQuery());
-              newList.addAll(cmd.getFilterList());
-              out.docSet = getDocSet(newList);
-            }
+            out.docSet = getDocSetForCommand(cmd);
           }
           return qr;
         }
@@ -1830,6 +1957,85 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     return qr;
   }
 
+  /** Returns the docs matching the query and the filters of the command */
+  private DocSet getDocSetForCommand(QueryCommand cmd) throws IOException {
+    if (cmd.getFilterList() == null) {
+      return getDocSet(cmd.getQuery());
+    } else {
+      List<Query> newList = new ArrayList<>(cmd.getFilterList().size() + 1);
+      newList.add(cmd.getQuery());
+      newList.addAll(cmd.getFilterList());
+      return getDocSet(newList);
+    }
+  }
+
+  /**
+   * getDocList version for a {@link CursorMark} that uses+populates the cursorMarkCache. Rather
+   * than a single page, a window of {@code cursorMarkWindowSize} docs following the cursor is
+   * collected and cached, so that the pages following it are returned from the cache instead of
+   * executing the query again. The cache is per searcher, so after a commit the query is executed
+   * again as usual.
+   */
+  private void getCursorDocListC(QueryResult qr, QueryCommand cmd, int flags) throws IOException {
+    final DocListAndSet out = qr.getDocListAndSet();
+    final CursorMark cursor = cmd.getCursorMark();
+    final FieldDoc after = cursor.getSearchAfterFieldDoc();
+    final int len = cmd.getLen();
+    final QueryResultKey key =
+        new QueryResultKey(
+            cmd.getQuery(),
+            cmd.getFilterList(),
+            cmd.getSort(),
+            flags,
+            cmd.getMinExactCount(),
+            cmd.isDistribStatsDisabled());
+
+    CursorWindow window = cursorMarkCache.get(key);
+    int start = window == null ? -1 : window.pageStart(after, len, (flags & GET_SCORES) != 0);
+    if (start >= 0) {
+      out.docList = window.page(start, len);
+      if ((flags & GET_DOCSET) != 0) {
+        out.docSet = getDocSetForCommand(cmd);
+      }
+    } else {
+      // collect a whole number of pages
+      int windowSize = Math.max(1, cursorMarkWindowSize / len) * len;
+      if (windowSize > maxDoc()) windowSize = maxDoc();
+      cmd.setSupersetMaxDoc(windowSize);
+      fullSortCount.increment();
+      if ((flags & GET_DOCSET) != 0) {
+        DocSet qDocSet = getDocListAndSetNC(qr, cmd);
+        // cache the docSet matching the query w/o filtering
+        if (qDocSet != null && filterCache != null && !qr.isPartialResults())
+          filterCache.put(cmd.getQuery(), qDocSet);
+      } else {
+        getDocListNC(qr, cmd);
+      }
+      final TopFieldDocs topDocs = qr.getCursorTopDocs();
+      qr.setCursorTopDocs(null);
+      if (topDocs == null) {
+        // nothing was collected, e.g. for an empty index
+        return;
+      }
+      final boolean complete =
+          topDocs.scoreDocs.length < windowSize || windowSize == maxDoc() || qr.isPartialResults();
+      window = new CursorWindow(weightSort(cmd.getSort()), after, topDocs, complete, out.docList);
+      if (!qr.isPartialResults()) {
+        cursorMarkCache.put(key, window);
+      }
+      start = 0;
+      out.docList = window.page(start, len);
+    }
+
+    final int size = out.docList.size();
+    if (0 == size) {
+      // no docs on this page, re-use existing cursor mark
+      qr.setNextCursorMark(cursor);
+    } else {
+      qr.setNextCursorMark(cursor.createNext(Arrays.asList(window.sortValues(start + size - 1))));
+    }
+  }
+
   private Relation populateScoresIfNeeded(
       QueryCommand cmd, boolean needScores, TopDocs topDocs, Query query, ScoreMode scoreModeUsed)
       throws IOException {
@@ -1870,6 +2076,9 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     assert topDocs instanceof TopFieldDocs : "TopFieldDocs cursor constraint violated";
     final TopFieldDocs topFieldDocs = (TopFieldDocs) topDocs;
     final ScoreDoc[] scoreDocs = topFieldDocs.scoreDocs;
+    if (cursorMarkCache != null) {
+      qr.setCursorTopDocs(topFieldDocs);
+    }
 
     if (0 == scoreDocs.length) {
       // no docs on this page, re-use existing cursor mark
@@ -1982,7 +2191,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       }
       final TopDocs topDocs;
       final ScoreMode scoreModeUsed;
-      if (!MultiThreadedSearcher.allowMT(pf.postFilter, cmd)) {
+      if (!MultiThreadedSearcher.allowMT(pf, cmd)) {
         log.trace("SINGLE THREADED search, skipping collector manager in getDocListNC");
         final TopDocsCollector<?> topCollector = buildTopDocsCollector(len, cmd);
         MaxScoreCollector maxScoreCollector = null;
@@ -2005,7 +2214,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
         log.trace("MULTI-THREADED search, using CollectorManager int getDocListNC");
         final MultiThreadedSearcher.SearchResult searchResult =
             new MultiThreadedSearcher(this)
-                .searchCollectorManagers(len, cmd, query, true, needScores, false, qr);
+                .searchCollectorManagers(len, cmd, query, pf, true, needScores, false, qr);
         scoreModeUsed = searchResult.scoreMode;
 
         MultiThreadedSearcher.TopDocsResult topDocsResult = searchResult.getTopDocsResult();
@@ -2093,7 +2302,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       qr.setNextCursorMark(cmd.getCursorMark());
     } else {
       final TopDocs topDocs;
-      if (!MultiThreadedSearcher.allowMT(pf.postFilter, cmd)) {
+      if (!MultiThreadedSearcher.allowMT(pf, cmd)) {
         log.trace("SINGLE THREADED search, skipping collector manager in getDocListAndSetNC");
 
         @SuppressWarnings({"rawtypes"})
@@ -2126,7 +2335,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
 
         MultiThreadedSearcher.SearchResult searchResult =
             new MultiThreadedSearcher(this)
-                .searchCollectorManagers(len, cmd, query, true, needScores, true, qr);
+                .searchCollectorManagers(len, cmd, query, pf, true, needScores, true, qr);
         MultiThreadedSearcher.TopDocsResult topDocsResult = searchResult.getTopDocsResult();
         totalHits = topDocsResult.totalHits;
         topDocs = topDocsResult.topDocs;
@@ -2515,38 +2724,115 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
   }
 
   /** Warm this searcher based on an old one (primarily for auto-cache warming). */
-  @SuppressWarnings({"unchecked"})
   public void warm(SolrIndexSearcher old) {
+    warm(old, null);
+  }
+
+  /**
+   * Warm this searcher based on an old one (primarily for auto-cache warming). If an executor is
+   * given, the caches other than the filterCache are warmed concurrently with it, after the
+   * filterCache.
+   */
+  public void warm(SolrIndexSearcher old, ExecutorService executor) {
     // Make sure this is first! filters can help queryResults execute!
     long warmingStartTime = System.nanoTime();
     // warm the caches in order...
     ModifiableSolrParams params = new ModifiableSolrParams();
     params.add("warming", "true");
-    for (int i = 0; i < cacheList.length; i++) {
-      if (log.isDebugEnabled()) {
-        log.debug("autowarming [{}] from [{}]\n\t{}", this, old, old.cacheList[i]);
+    warmingFrom = old;
+    try {
+      if (executor == null) {
+        for (int i = 0; i < cacheList.length && !warmingCancelled; i++) {
+          warmCache(old, i, params);
+        }
+      } else {
+        final List<Future<?>> futures = new ArrayList<>(cacheList.length);
+        for (int i = 0; i < cacheList.length; i++) {
+          if (cacheList[i] == filterCache) {
+            warmCache(old, i, params);
+          }
+        }
+        for (int i = 0; i < cacheList.length; i++) {
+          if (cacheList[i] != filterCache) {
+            final int cacheIdx = i;
+            futures.add(executor.submit(() -> warmCache(old, cacheIdx, params)));
+          }
+        }
+        boolean interrupted = false;
+        for (int i = 0; i < futures.size(); ) {
+          try {
+            futures.get(i).get();
+            i++;
+          } catch (InterruptedException e) {
+            // the caches being warmed still use warmingFrom: cancel them, which makes them stop
+            // at their next entry (and the others return right away), and wait until they are
+            // done before clearing it. Future.cancel() wouldn't wait for the running ones.
+            interrupted = true;
+            warmingCancelled = true;
+          } catch (ExecutionException e) {
+            log.error("Exception autowarming a cache of {}", this, e.getCause());
+            i++;
+          }
+        }
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
       }
+    } finally {
+      warmingFrom = null;
+    }
+    this.warmupTime =
+        TimeUnit.MILLISECONDS.convert(System.nanoTime() - warmingStartTime, TimeUnit.NANOSECONDS);
+    if (warmupTimer != null) warmupTimer.record(warmupTime);
+  }
 
-      final SolrQueryRequest req = SolrQueryRequest.wrapSearcher(SolrIndexSearcher.this, params);
-      final SolrQueryResponse rsp = new SolrQueryResponse();
-      SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+  @SuppressWarnings({"unchecked"})
+  private void warmCache(SolrIndexSearcher old, int i, ModifiableSolrParams params) {
+    if (warmingCancelled) {
+      return;
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("autowarming [{}] from [{}]\n\t{}", this, old, old.cacheList[i]);
+    }
+
+    final SolrQueryRequest req = SolrQueryRequest.wrapSearcher(SolrIndexSearcher.this, params);
+    final SolrQueryResponse rsp = new SolrQueryResponse();
+    SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+    try {
+      cacheList[i].warm(this, old.cacheList[i]);
+    } finally {
       try {
-        cacheList[i].warm(this, old.cacheList[i]);
+        req.close();
       } finally {
-        try {
-          req.close();
-        } finally {
-          SolrRequestInfo.clearRequestInfo();
-        }
+        SolrRequestInfo.clearRequestInfo();
       }
+    }
 
-      if (log.isDebugEnabled()) {
-        log.debug("autowarming result for [{}]\n\t{}", this, cacheList[i]);
-      }
+    if (log.isDebugEnabled()) {
+      log.debug("autowarming result for [{}]\n\t{}", this, cacheList[i]);
     }
-    this.warmupTime =
-        TimeUnit.MILLISECONDS.convert(System.nanoTime() - warmingStartTime, TimeUnit.NANOSECONDS);
-    if (warmupTimer != null) warmupTimer.record(warmupTime);
+  }
+
+  /**
+   * Stops autowarming this searcher, e.g. because a newer searcher will replace it anyway. Caches
+   * stop regenerating entries as soon as they notice, leaving the remaining ones cold.
+   */
+  public void cancelWarming() {
+    warmingCancelled = true;
+  }
+
+  /**
+   * Whether autowarming was cancelled. Caches should check it between regenerating entries.
+   *
+   * @see #cancelWarming()
+   */
+  public boolean isWarmingCancelled() {
+    return warmingCancelled;
+  }
+
+  /** Returns the caches of this searcher, in the order they are autowarmed. */
+  public List<SolrCache<?, ?>> getCaches() {
+    return List.<SolrCache<?, ?>>of(cacheList);
   }
 
   /** return the named generic cache */
@@ -2707,6 +2993,14 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     return warmupTime;
   }
 
+  /**
+   * Returns the searcher this one is being autowarmed from, or null if it isn't warming. Cache
+   * regenerators may use it to reuse work done for entries of the old searcher.
+   */
+  SolrIndexSearcher getWarmingFrom() {
+    return warmingFrom;
+  }
+
   private static final Scorable CONSTANT_SCORABLE =
       new Scorable() {
         @Override
@@ -95,7 +95,7 @@ public class AvgAgg extends SimpleAggValueSource {
     public AvgSortedNumericAcc(FacetContext fcontext, SchemaField sf, int numSlots)
         throws IOException {
       super(fcontext, sf, numSlots, 0);
-      this.counts = new int[numSlots];
+      this.counts = accounted(new int[numSlots]);
     }
 
     @Override
@@ -145,7 +145,7 @@ public class AvgAgg extends SimpleAggValueSource {
 
     public AvgSortedSetAcc(FacetContext fcontext, SchemaField sf, int numSlots) throws IOException {
       super(fcontext, sf, numSlots, 0);
-      this.counts = new int[numSlots];
+      this.counts = accounted(new int[numSlots]);
     }
 
     @Override
@@ -201,7 +201,7 @@ public class AvgAgg extends SimpleAggValueSource {
     public AvgUnInvertedFieldAcc(FacetContext fcontext, SchemaField sf, int numSlots)
         throws IOException {
       super(fcontext, sf, numSlots, 0);
-      this.counts = new int[numSlots];
+      this.counts = accounted(new int[numSlots]);
     }
 
     @Override
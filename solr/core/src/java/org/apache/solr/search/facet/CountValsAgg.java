@@ -115,7 +115,7 @@ public class CountValsAgg extends SimpleAggValueSource {
     public CountMultiValuedAcc(FacetContext fcontext, SchemaField sf, int numSlots)
         throws IOException {
       super(fcontext, sf, numSlots);
-      result = new long[numSlots];
+      result = accounted(new long[numSlots]);
     }
 
     @Override
@@ -107,7 +107,7 @@ public abstract class DocValuesAcc extends SlotAcc {
     public LongSortedNumericDVAcc(
         FacetContext fcontext, SchemaField sf, int numSlots, long initialValue) throws IOException {
       super(fcontext, sf, numSlots);
-      this.result = new long[numSlots];
+      this.result = accounted(new long[numSlots]);
       this.initialValue = initialValue;
       if (initialValue != 0) {
         Arrays.fill(result, initialValue);
@@ -143,7 +143,7 @@ public abstract class DocValuesAcc extends SlotAcc {
         FacetContext fcontext, SchemaField sf, int numSlots, double initialValue)
         throws IOException {
       super(fcontext, sf, numSlots);
-      this.result = new double[numSlots];
+      this.result = accounted(new double[numSlots]);
       this.initialValue = initialValue;
       if (initialValue != 0) {
         Arrays.fill(result, initialValue);
@@ -199,8 +199,8 @@ public abstract class DocValuesAcc extends SlotAcc {
     public SDVSortedNumericAcc(FacetContext fcontext, SchemaField sf, int numSlots)
         throws IOException {
       super(fcontext, sf, numSlots, 0);
-      this.counts = new int[numSlots];
-      this.sum = new double[numSlots];
+      this.counts = accounted(new int[numSlots]);
+      this.sum = accounted(new double[numSlots]);
     }
 
     @Override
@@ -295,7 +295,7 @@ public abstract class DocValuesAcc extends SlotAcc {
     public LongSortedSetDVAcc(
         FacetContext fcontext, SchemaField sf, int numSlots, long initialValue) throws IOException {
       super(fcontext, sf, numSlots);
-      result = new long[numSlots];
+      result = accounted(new long[numSlots]);
       this.initialValue = initialValue;
       if (initialValue != 0) {
         Arrays.fill(result, initialValue);
@@ -331,7 +331,7 @@ public abstract class DocValuesAcc extends SlotAcc {
         FacetContext fcontext, SchemaField sf, int numSlots, double initialValue)
         throws IOException {
       super(fcontext, sf, numSlots);
-      result = new double[numSlots];
+      result = accounted(new double[numSlots]);
       this.initialValue = initialValue;
       if (initialValue != 0) {
         Arrays.fill(result, initialValue);
@@ -369,8 +369,8 @@ public abstract class DocValuesAcc extends SlotAcc {
 
     public SDVSortedSetAcc(FacetContext fcontext, SchemaField sf, int numSlots) throws IOException {
       super(fcontext, sf, numSlots, 0);
-      this.counts = new int[numSlots];
-      this.sum = new double[numSlots];
+      this.counts = accounted(new int[numSlots]);
+      this.sum = accounted(new double[numSlots]);
     }
 
     @Override
@@ -39,6 +39,10 @@ public class FacetField extends FacetRequestSorted {
   // only.
   Boolean perSeg;
 
+  // count the segments of the searcher concurrently (when counting per segment with the dv method);
+  // defaults to the multiThreaded request param
+  Boolean multiThreaded;
+
   {
     // defaults for FacetRequestSorted
     mincount = 1;
@@ -36,6 +36,7 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.PriorityQueue;
 import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.schema.FieldType;
 import org.apache.solr.schema.SchemaField;
@@ -780,6 +781,18 @@ abstract class FacetFieldProcessor extends FacetProcessor<FacetField> {
     super.setNextReader(ctx);
   }
 
+  /**
+   * Whether the segments may be collected concurrently, per the multiThreaded option of the facet
+   * or else of the request
+   */
+  boolean isMultiThreaded() {
+    if (freq.multiThreaded != null) {
+      return freq.multiThreaded;
+    }
+    return fcontext.req != null
+        && fcontext.req.getParams().getBool(CommonParams.MULTI_THREADED, false);
+  }
+
   void setNextReaderFirstPhase(LeafReaderContext ctx) throws IOException {
     if (collectAcc != null) {
       collectAcc.setNextReader(ctx);
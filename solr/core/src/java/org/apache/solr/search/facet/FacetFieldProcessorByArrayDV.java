@@ -17,8 +17,10 @@
 package org.apache.solr.search.facet;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
 import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiDocValues;
@@ -26,6 +28,7 @@ import org.apache.lucene.index.OrdinalMap;
 import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LongValues;
 import org.apache.lucene.util.UnicodeUtil;
@@ -132,6 +135,14 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
 
     final int maxSize = others.size() + 1; // others + base
     final List<LeafReaderContext> leaves = fcontext.searcher.getIndexReader().leaves();
+
+    // per-seg counting doesn't depend on the order of the docs, so segments can be counted
+    // concurrently as long as there are no per-doc accumulators (which are stateful per segment)
+    if (canDoPerSeg && otherAccs == null && leaves.size() > 1 && isMultiThreaded()) {
+      collectPerSegConcurrently(base, others, leaves);
+      return;
+    }
+
     final DocIdSetIterator[] subIterators = new DocIdSetIterator[maxSize];
     final CountSlotAcc[] activeCountAccs = new CountSlotAcc[maxSize];
 
@@ -205,6 +216,113 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
     Arrays.fill(reuse, null); // better GC
   }
 
+  /**
+   * Counts the segments of each slice of the searcher concurrently, using the searcher's {@link
+   * IndexSearcher#getTaskExecutor()}. Each slice counts into its own segment-local count arrays,
+   * and the counts of a segment are merged into the (shared) global counts once it's done, so all
+   * counts are complete before the top slots are found.
+   */
+  private void collectPerSegConcurrently(
+      SweepCountAccStruct base, List<SweepCountAccStruct> others, List<LeafReaderContext> leaves)
+      throws IOException {
+    final boolean[] claimed = new boolean[leaves.size()];
+    final List<Callable<Void>> tasks = new ArrayList<>();
+    for (IndexSearcher.LeafSlice slice : fcontext.searcher.getSlices()) {
+      final List<LeafReaderContext> sliceLeaves = new ArrayList<>(slice.partitions.length);
+      for (IndexSearcher.LeafReaderContextPartition partition : slice.partitions) {
+        // a segment may be split into several partitions; count it only once
+        if (!claimed[partition.ctx.ord]) {
+          claimed[partition.ctx.ord] = true;
+          sliceLeaves.add(partition.ctx);
+        }
+      }
+      if (!sliceLeaves.isEmpty()) {
+        final SliceCounter counter = new SliceCounter(others.size() + 1);
+        tasks.add(
+            () -> {
+              for (LeafReaderContext subCtx : sliceLeaves) {
+                counter.collect(base, others, subCtx);
+              }
+              return null;
+            });
+      }
+    }
+    fcontext.searcher.getTaskExecutor().invokeAll(tasks);
+  }
+
+  /** Per-seg counting state of a slice of the searcher; the count arrays are reused by segment. */
+  private class SliceCounter {
+    final DocIdSetIterator[] subIterators;
+    final CountSlotAcc[] activeCountAccs;
+    final int[][] segCounts;
+    boolean[] seen;
+
+    SliceCounter(int maxSize) {
+      subIterators = new DocIdSetIterator[maxSize];
+      activeCountAccs = new CountSlotAcc[maxSize];
+      segCounts = new int[maxSize][];
+    }
+
+    void collect(
+        SweepCountAccStruct base, List<SweepCountAccStruct> others, LeafReaderContext subCtx)
+        throws IOException {
+      final SweepDISI disi =
+          SweepDISI.newInstance(base, others, subIterators, activeCountAccs, subCtx);
+      if (disi == null) {
+        return;
+      }
+
+      final SortedDocValues singleDv;
+      final SortedSetDocValues multiDv;
+      final int segMax;
+      if (multiValuedField) {
+        multiDv = subCtx.reader().getSortedSetDocValues(sf.getName());
+        if (multiDv == null || multiDv.getValueCount() < 1) {
+          return;
+        }
+        singleDv = unwrap_singleValued_multiDv ? DocValues.unwrapSingleton(multiDv) : null;
+        segMax = (int) multiDv.getValueCount();
+      } else {
+        multiDv = null;
+        singleDv = subCtx.reader().getSortedDocValues(sf.getName());
+        if (singleDv == null || singleDv.getValueCount() < 1) {
+          return;
+        }
+        segMax = singleDv.getValueCount();
+      }
+
+      final SegCountPerSeg segCounter = getSegCountPerSeg(disi.size, segMax);
+      if (singleDv != null) {
+        countPerSeg(singleDv, disi, segCounter);
+      } else {
+        countPerSeg(multiDv, disi, segCounter);
+      }
+
+      final LongValues toGlobal = ordinalMap == null ? null : ordinalMap.getGlobalOrds(subCtx.ord);
+      synchronized (FacetFieldProcessorByArrayDV.this) {
+        segCounter.register(disi.countAccs, toGlobal, segMax - 1);
+      }
+    }
+
+    private SegCountPerSeg getSegCountPerSeg(int size, int segMax) {
+      final int[][] ret = new int[size][];
+      for (int i = 0; i < size; i++) {
+        if (segCounts[i] == null || segCounts[i].length < segMax) {
+          segCounts[i] = new int[segMax];
+        } else {
+          Arrays.fill(segCounts[i], 0, segMax, 0);
+        }
+        ret[i] = segCounts[i];
+      }
+      if (seen == null || seen.length < segMax) {
+        seen = new boolean[segMax];
+      } else {
+        Arrays.fill(seen, 0, segMax, false);
+      }
+      return new SegCountPerSeg(ret, seen, segMax, size);
+    }
+  }
+
   @Override
   protected BytesRef lookupOrd(int ord) throws IOException {
     return si.lookupOrd(ord);
@@ -214,7 +332,14 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
       throws IOException {
     int segMax = singleDv.getValueCount();
     final SegCountPerSeg segCounter = getSegCountPerSeg(disi, segMax);
+    countPerSeg(singleDv, disi, segCounter);
+    // convert segment-local counts to global counts
+    segCounter.register(disi.countAccs, toGlobal, segMax - 1);
+  }
 
+  /** Calculates segment-local counts */
+  private static void countPerSeg(
+      SortedDocValues singleDv, SweepDISI disi, SegCountPerSeg segCounter) throws IOException {
     /*
      * alternate trial implementations // ord // FieldUtil.visitOrds(singleDv, disi,
      * (doc,ord)->{counts[ord+1]++;} );
@@ -222,8 +347,6 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
      * <p>FieldUtil.OrdValues ordValues = FieldUtil.getOrdValues(singleDv, disi); while
      * (ordValues.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) { counts[ ordValues.getOrd() + 1]++; }
      */
-
-    // calculate segment-local counts
     int doc;
     if (singleDv instanceof FieldCacheImpl.SortedDocValuesImpl.Iter fc) {
       while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
@@ -244,9 +367,6 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
         }
       }
     }
-
-    // convert segment-local counts to global counts
-    segCounter.register(disi.countAccs, toGlobal, segMax - 1);
   }
 
   private SegCountPerSeg getSegCountPerSeg(SweepDISI disi, int segMax) {
@@ -267,7 +387,12 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
       throws IOException {
     int segMax = (int) multiDv.getValueCount();
     final SegCountPerSeg segCounter = getSegCountPerSeg(disi, segMax);
+    countPerSeg(multiDv, disi, segCounter);
+    segCounter.register(disi.countAccs, toGlobal, segMax - 1);
+  }
 
+  private static void countPerSeg(
+      SortedSetDocValues multiDv, SweepDISI disi, SegCountPerSeg segCounter) throws IOException {
     int doc;
     while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
       if (multiDv.advanceExact(doc)) {
@@ -278,8 +403,6 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
         }
       }
     }
-
-    segCounter.register(disi.countAccs, toGlobal, segMax - 1);
   }
 
   private boolean[] reuseBool;
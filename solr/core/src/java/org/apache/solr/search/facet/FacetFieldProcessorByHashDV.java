@@ -18,6 +18,9 @@ package org.apache.solr.search.facet;
 
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.function.IntFunction;
 import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.DocValuesType;
@@ -27,6 +30,8 @@ import org.apache.lucene.index.MultiDocValues;
 import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.util.BitUtil;
@@ -36,6 +41,8 @@ import org.apache.solr.common.SolrException;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.DocSetUtil;
+import org.apache.solr.search.MemoryAccounting;
+import org.apache.solr.search.QueryLimits;
 import org.apache.solr.search.facet.SlotAcc.SlotContext;
 
 /**
@@ -51,24 +58,33 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
   // must be a power of two, non-final to support setting by tests
   static int MAXIMUM_STARTING_TABLE_SIZE = 1024;
 
-  /** a hash table with long keys (what we're counting) and integer values (counts) */
-  private static class LongCounts {
+  /**
+   * a hash table with long keys (what we're counting) and integer values (counts). Before growing,
+   * it asks {@link #canGrow(int)}; if that refuses, the table stops accepting new keys but keeps
+   * counting the keys it already has.
+   */
+  static class LongCounts {
 
     static final float LOAD_FACTOR = 0.7f;
 
+    /** bytes used by the table per slot */
+    static final int BYTES_PER_SLOT = Long.BYTES + Integer.BYTES;
+
     long[] vals;
     // maintain the counts here since we need them to tell if there was actually a value anyway
-    long[] counts;
-    long[] oldToNewMapping;
+    int[] counts;
+    int[] oldToNewMapping;
 
     int cardinality;
     int threshold;
+    boolean full;
 
     /** sz must be a power of two */
     LongCounts(int sz) {
       vals = new long[sz];
-      counts = new long[sz];
+      counts = new int[sz];
       threshold = (int) (sz * LOAD_FACTOR);
+      MemoryAccounting.current().add(MemoryAccounting.FACET, ramBytesUsed());
     }
 
     /** Current number of slots in the hash table */
@@ -76,6 +92,25 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
       return vals.length;
     }
 
+    /** Approximate number of bytes used by the table */
+    long ramBytesUsed() {
+      return (long) vals.length * BYTES_PER_SLOT;
+    }
+
+    /** Whether the table wasn't allowed to grow, so that new keys are dropped */
+    boolean isFull() {
+      return full;
+    }
+
+    /**
+     * Called before the table grows to the specified number of slots.
+     *
+     * @return false to stop growing, in which case keys that aren't in the table yet are dropped
+     */
+    protected boolean canGrow(int newNumSlots) {
+      return true;
+    }
+
     private int hash(long val) {
       // For floats: exponent bits start at bit 23 for single precision, and bit 52 for double
       // precision. Many values will only have significant bits just to the right of that, and the
@@ -87,23 +122,39 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
       return h;
     }
 
-    /** returns the slot */
+    /** returns the slot, or -1 if the value was dropped since the table is full */
     int add(long val) {
-      if (cardinality >= threshold) {
-        rehash();
+      return add(val, 1);
+    }
+
+    /**
+     * Adds a count to a value, e.g. the count of a value counted elsewhere.
+     *
+     * @return the slot, or -1 if the value was dropped since the table is full
+     */
+    int add(long val, int count) {
+      if (cardinality >= threshold && !full) {
+        if (canGrow(vals.length << 1)) {
+          rehash();
+        } else {
+          full = true;
+        }
       }
 
       int h = hash(val);
       for (int slot = h & (vals.length - 1); ; slot = (slot + ((h >> 7) | 1)) & (vals.length - 1)) {
-        long count = counts[slot];
-        if (count == 0) {
-          counts[slot] = 1;
+        int slotCount = counts[slot];
+        if (slotCount == 0) {
+          if (full && cardinality >= threshold) {
+            return -1;
+          }
+          counts[slot] = count;
           vals[slot] = val;
           cardinality++;
           return slot;
         } else if (vals[slot] == val) {
           // val is already in the set
-          counts[slot] = count + 1;
+          counts[slot] = slotCount + count;
           return slot;
         }
       }
@@ -112,14 +163,15 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
     protected void rehash() {
       long[] oldVals = vals;
       // after retrieving the count, this array is reused as a mapping to new array
-      long[] oldCounts = counts;
+      int[] oldCounts = counts;
       int newCapacity = vals.length << 1;
       vals = new long[newCapacity];
-      counts = new long[newCapacity];
+      counts = new int[newCapacity];
       threshold = (int) (newCapacity * LOAD_FACTOR);
+      MemoryAccounting.current().add(MemoryAccounting.FACET, ramBytesUsed());
 
       for (int i = 0; i < oldVals.length; i++) {
-        long count = oldCounts[i];
+        int count = oldCounts[i];
         if (count == 0) {
           oldCounts[i] = -1;
           continue;
@@ -246,6 +298,14 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
             doRehash(this);
             oldToNewMapping = null; // allow for gc
           }
+
+          @Override
+          protected boolean canGrow(int newNumSlots) {
+            // the slot accs grow along with the table
+            final long bytes = (long) newNumSlots * (BYTES_PER_SLOT + accBytesPerSlot());
+            return !QueryLimits.getCurrentLimits()
+                .maybeExitBeforeAllocating(bytes, () -> "facet on " + sf.getName());
+          }
         };
 
     // note: these methods/phases align with FacetFieldProcessorByArray's
@@ -254,6 +314,12 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
 
     collectDocs();
 
+    FacetDebugInfo fdebug = fcontext.getDebugInfo();
+    if (fdebug != null) {
+      fdebug.putInfoItem("hashTableBytes", table.ramBytesUsed());
+      fdebug.putInfoItem("hashTableFull", table.isFull());
+    }
+
     return super.findTopSlots(
         table.numSlots(),
         table.cardinality(),
@@ -341,10 +407,12 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
   }
 
   private void collectDocs() throws IOException {
-    if (calc instanceof TermOrdCalc) { // Strings
-
-      // TODO support SortedSetDocValues
-      SortedDocValues globalDocValues = FieldUtil.getSortedDocValues(fcontext.qcontext, sf, null);
+    // TODO support SortedSetDocValues
+    final SortedDocValues globalDocValues =
+        calc instanceof TermOrdCalc
+            ? FieldUtil.getSortedDocValues(fcontext.qcontext, sf, null)
+            : null;
+    if (globalDocValues != null) { // Strings
       ((TermOrdCalc) calc).lookupOrdFunction =
           ord -> {
             try {
@@ -353,7 +421,20 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
               throw new RuntimeException(e);
             }
           };
+    }
 
+    // the values are counted in any order, so the slices of the searcher can be counted
+    // concurrently, as long as there are no per-doc accumulators (which are stateful per segment)
+    if (collectAcc == null
+        && allBucketsAcc == null
+        && otherAccs == null
+        && fcontext.searcher.getIndexReader().leaves().size() > 1
+        && isMultiThreaded()) {
+      collectDocsConcurrently(globalDocValues);
+      return;
+    }
+
+    if (globalDocValues != null) { // Strings
       DocSetUtil.collectSortedDocSet(
           fcontext.base,
           fcontext.searcher.getIndexReader(),
@@ -450,8 +531,106 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
     }
   }
 
+  /**
+   * Counts the slices of the searcher concurrently, using the searcher's {@link
+   * IndexSearcher#getTaskExecutor()}. Each slice counts the values of its segments into its own
+   * table, which is then added to the table of the facet.
+   */
+  private void collectDocsConcurrently(SortedDocValues globalDocValues) throws IOException {
+    final QueryLimits limits = QueryLimits.getCurrentLimits();
+    final int numSlots = table.numSlots();
+    final List<LeafReaderContext> leaves = fcontext.searcher.getIndexReader().leaves();
+    final boolean[] claimed = new boolean[leaves.size()];
+    final List<Callable<LongCounts>> tasks = new ArrayList<>();
+    for (IndexSearcher.LeafSlice slice : fcontext.searcher.getSlices()) {
+      final List<LeafReaderContext> sliceLeaves = new ArrayList<>(slice.partitions.length);
+      for (IndexSearcher.LeafReaderContextPartition partition : slice.partitions) {
+        // a segment may be split into several partitions; count it only once
+        if (!claimed[partition.ctx.ord]) {
+          claimed[partition.ctx.ord] = true;
+          sliceLeaves.add(partition.ctx);
+        }
+      }
+      if (!sliceLeaves.isEmpty()) {
+        tasks.add(
+            () -> {
+              final LongCounts counts =
+                  new LongCounts(numSlots) {
+                    @Override
+                    protected boolean canGrow(int newNumSlots) {
+                      final long bytes = (long) newNumSlots * BYTES_PER_SLOT;
+                      return !limits.maybeExitBeforeAllocating(
+                          bytes, () -> "facet on " + sf.getName());
+                    }
+                  };
+              for (LeafReaderContext ctx : sliceLeaves) {
+                countSegment(ctx, globalDocValues, counts);
+              }
+              return counts;
+            });
+      }
+    }
+
+    for (LongCounts counts : fcontext.searcher.getTaskExecutor().invokeAll(tasks)) {
+      for (int slot = 0; slot < counts.numSlots(); slot++) {
+        if (counts.counts[slot] > 0) {
+          table.add(counts.vals[slot], counts.counts[slot]);
+        }
+      }
+    }
+  }
+
+  /** Counts the values of the docs of a segment, for {@link #collectDocsConcurrently}. */
+  private void countSegment(
+      LeafReaderContext ctx, SortedDocValues globalDocValues, LongCounts counts)
+      throws IOException {
+    final DocIdSetIterator docs = fcontext.base.iterator(ctx);
+    if (docs == null) {
+      return;
+    }
+    if (globalDocValues != null) { // Strings
+      SortedDocValues docValues = globalDocValues;
+      LongValues toGlobal = LongValues.IDENTITY;
+      if (globalDocValues instanceof MultiDocValues.MultiSortedDocValues multiDocValues) {
+        docValues = multiDocValues.values[ctx.ord];
+        toGlobal = multiDocValues.mapping.getGlobalOrds(ctx.ord);
+      }
+      for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc()) {
+        if (docValues.advanceExact(doc)) {
+          counts.add(toGlobal.get(docValues.ordValue()));
+        }
+      }
+    } else if (sf.multiValued()) {
+      final SortedNumericDocValues values = DocValues.getSortedNumeric(ctx.reader(), sf.getName());
+      for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc()) {
+        if (values.advanceExact(doc)) {
+          long l = values.nextValue();
+          counts.add(l);
+          for (int i = 1, count = values.docValueCount(); i < count; i++) {
+            long lnew = values.nextValue();
+            // don't double-count a value of the doc
+            if (lnew != l) {
+              counts.add(lnew);
+            }
+            l = lnew;
+          }
+        }
+      }
+    } else {
+      final NumericDocValues values = DocValues.getNumeric(ctx.reader(), sf.getName());
+      for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc()) {
+        if (values.advanceExact(doc)) {
+          counts.add(values.longValue());
+        }
+      }
+    }
+  }
+
   private void collectValFirstPhase(int segDoc, long val) throws IOException {
     int slot = table.add(val); // this can trigger a rehash
+    if (slot < 0) {
+      return; // the table is full, see LongCounts.canGrow
+    }
 
     // Our countAcc is virtual, so this is not needed:
     // countAcc.incrementCount(slot, 1);
@@ -472,6 +651,18 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
         return new SlotContext(sf.getType().getFieldTermQuery(null, sf, calc.formatValue(value)));
       };
 
+  /** Rough estimate of the bytes per slot of the accs that are resized along with the table */
+  private int accBytesPerSlot() {
+    int numAccs = 0;
+    if (collectAcc instanceof MultiAcc multiAcc) {
+      numAccs += multiAcc.subAccs.length;
+    } else if (collectAcc != null) {
+      numAccs++;
+    }
+    // most accs use a long or double per slot
+    return numAccs * Long.BYTES;
+  }
+
   private void doRehash(LongCounts table) {
     if (collectAcc == null && allBucketsAcc == null) return;
 
@@ -486,7 +677,7 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
     }
 
     final int finalNumSlots = numSlots;
-    final long[] mapping = table.oldToNewMapping;
+    final int[] mapping = table.oldToNewMapping;
 
     SlotAcc.Resizer resizer =
         new SlotAcc.Resizer() {
@@ -498,7 +689,7 @@ class FacetFieldProcessorByHashDV extends FacetFieldProcessor {
           @Override
           public int getNewSlot(int oldSlot) {
             if (oldSlot < mapping.length) {
-              return (int) mapping[oldSlot];
+              return mapping[oldSlot];
             }
             if (oldSlot == oldAllBucketsSlot) {
               return allBucketsSlot;
@@ -567,6 +567,7 @@ abstract class FacetParser<T extends FacetRequest> {
         facet.refine = FacetRequest.RefineMethod.fromObj(m.get("refine"));
 
         facet.perSeg = getBooleanOrNull(m, "perSeg");
+        facet.multiThreaded = getBooleanOrNull(m, "multiThreaded");
 
         // facet.sort may depend on a facet stat...
         // should we be parsing / validating this here, or in the execution environment?
@@ -178,7 +178,7 @@ public class MinMaxAgg extends SimpleAggValueSource {
     public MinMaxUnInvertedFieldAcc(FacetContext fcontext, SchemaField sf, int numSlots)
         throws IOException {
       super(fcontext, sf, numSlots);
-      result = new int[numSlots];
+      result = accounted(new int[numSlots]);
       Arrays.fill(result, MISSING);
     }
 
@@ -376,7 +376,7 @@ public class MinMaxAgg extends SimpleAggValueSource {
     public OrdAcc(FacetContext fcontext, SchemaField field, int numSlots) throws IOException {
       super(fcontext);
       this.field = field;
-      slotOrd = new int[numSlots];
+      slotOrd = accounted(new int[numSlots]);
       if (MISSING != 0) Arrays.fill(slotOrd, MISSING);
     }
 
@@ -478,7 +478,7 @@ public class MinMaxAgg extends SimpleAggValueSource {
     public MinMaxSortedSetDVAcc(FacetContext fcontext, SchemaField field, int numSlots)
         throws IOException {
       super(fcontext, field);
-      this.slotOrd = new long[numSlots];
+      this.slotOrd = accounted(new long[numSlots]);
       Arrays.fill(slotOrd, MISSING);
     }
 
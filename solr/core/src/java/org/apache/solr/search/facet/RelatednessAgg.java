@@ -214,7 +214,7 @@ public class RelatednessAgg extends AggValueSource {
       this.bgSize = bgSize;
       this.fgCount = fgCount;
       this.bgCount = bgCount;
-      relatedness = new double[numSlots];
+      relatedness = accounted(new double[numSlots]);
       Arrays.fill(relatedness, 0, numSlots, Double.NaN);
 
       // any processor that can (currently) result in the use of SweepSKGSlotAcc *should* be a
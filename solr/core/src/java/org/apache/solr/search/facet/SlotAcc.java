@@ -30,9 +30,11 @@ import org.apache.lucene.queries.function.ValueSource;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.search.DocIterator;
 import org.apache.solr.search.DocSet;
+import org.apache.solr.search.MemoryAccounting;
 import org.apache.solr.search.SolrIndexSearcher;
 
 /**
@@ -152,6 +154,13 @@ public abstract class SlotAcc implements Closeable {
 
   public abstract void resize(Resizer resizer);
 
+  /** Reports the allocation of a per-slot array to the {@link MemoryAccounting} of the request. */
+  static <T> T accounted(T slotArray) {
+    MemoryAccounting.current()
+        .add(MemoryAccounting.FACET, RamUsageEstimator.shallowSizeOf(slotArray));
+    return slotArray;
+  }
+
   @Override
   public void close() throws IOException {}
 
@@ -161,7 +170,7 @@ public abstract class SlotAcc implements Closeable {
     public abstract int getNewSlot(int oldSlot);
 
     public double[] resize(double[] old, double defaultValue) {
-      double[] values = new double[getNewSize()];
+      double[] values = accounted(new double[getNewSize()]);
       if (defaultValue != 0) {
         Arrays.fill(values, 0, values.length, defaultValue);
       }
@@ -178,7 +187,7 @@ public abstract class SlotAcc implements Closeable {
     }
 
     public int[] resize(int[] old, int defaultValue) {
-      int[] values = new int[getNewSize()];
+      int[] values = accounted(new int[getNewSize()]);
       if (defaultValue != 0) {
         Arrays.fill(values, 0, values.length, defaultValue);
       }
@@ -195,7 +204,7 @@ public abstract class SlotAcc implements Closeable {
     }
 
     public long[] resize(long[] old, long defaultValue) {
-      long[] values = new long[getNewSize()];
+      long[] values = accounted(new long[getNewSize()]);
       if (defaultValue != 0) {
         Arrays.fill(values, 0, values.length, defaultValue);
       }
@@ -213,6 +222,7 @@ public abstract class SlotAcc implements Closeable {
 
     public FixedBitSet resize(FixedBitSet old) {
       FixedBitSet values = new FixedBitSet(getNewSize());
+      MemoryAccounting.current().add(MemoryAccounting.FACET, values.ramBytesUsed());
       int oldSize = old.length();
 
       for (int oldSlot = 0; ; ) {
@@ -228,7 +238,8 @@ public abstract class SlotAcc implements Closeable {
 
     public <T> T[] resize(T[] old, T defaultValue) {
       @SuppressWarnings({"unchecked"})
-      T[] values = (T[]) Array.newInstance(old.getClass().getComponentType(), getNewSize());
+      T[] values =
+          accounted((T[]) Array.newInstance(old.getClass().getComponentType(), getNewSize()));
       if (defaultValue != null) {
         Arrays.fill(values, 0, values.length, defaultValue);
       }
@@ -307,7 +318,7 @@ public abstract class SlotAcc implements Closeable {
         ValueSource values, FacetContext fcontext, int numSlots, double initialValue) {
       super(values, fcontext, numSlots);
       this.initialValue = initialValue;
-      result = new double[numSlots];
+      result = accounted(new double[numSlots]);
       if (initialValue != 0) {
         reset();
       }
@@ -342,7 +353,7 @@ public abstract class SlotAcc implements Closeable {
         ValueSource values, FacetContext fcontext, int numSlots, long initialValue) {
       super(values, fcontext, numSlots);
       this.initialValue = initialValue;
-      result = new long[numSlots];
+      result = accounted(new long[numSlots]);
       if (initialValue != 0) {
         reset();
       }
@@ -376,7 +387,7 @@ public abstract class SlotAcc implements Closeable {
     public IntSlotAcc(FacetContext fcontext, int numSlots, int initialValue) {
       super(fcontext);
       this.initialValue = initialValue;
-      result = new int[numSlots];
+      result = accounted(new int[numSlots]);
       if (initialValue != 0) {
         reset();
       }
@@ -436,7 +447,7 @@ public abstract class SlotAcc implements Closeable {
 
     public AvgSlotAcc(ValueSource values, FacetContext fcontext, int numSlots) {
       super(values, fcontext, numSlots);
-      counts = new int[numSlots];
+      counts = accounted(new int[numSlots]);
     }
 
     @Override
@@ -491,8 +502,8 @@ public abstract class SlotAcc implements Closeable {
 
     public VarianceSlotAcc(ValueSource values, FacetContext fcontext, int numSlots) {
       super(values, fcontext, numSlots);
-      counts = new int[numSlots];
-      sum = new double[numSlots];
+      counts = accounted(new int[numSlots]);
+      sum = accounted(new double[numSlots]);
     }
 
     @Override
@@ -550,8 +561,8 @@ public abstract class SlotAcc implements Closeable {
 
     public StddevSlotAcc(ValueSource values, FacetContext fcontext, int numSlots) {
       super(values, fcontext, numSlots);
-      counts = new int[numSlots];
-      sum = new double[numSlots];
+      counts = accounted(new int[numSlots]);
+      sum = accounted(new double[numSlots]);
     }
 
     @Override
@@ -849,7 +860,7 @@ public abstract class SlotAcc implements Closeable {
 
     public CountSlotArrAcc(FacetContext fcontext, int numSlots) {
       super(fcontext);
-      result = new long[numSlots];
+      result = accounted(new long[numSlots]);
     }
 
     @Override
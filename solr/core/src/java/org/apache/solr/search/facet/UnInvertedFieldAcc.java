@@ -59,7 +59,7 @@ public abstract class UnInvertedFieldAcc extends SlotAcc implements UnInvertedFi
         FacetContext fcontext, SchemaField sf, int numSlots, double initialValue)
         throws IOException {
       super(fcontext, sf, numSlots);
-      result = new double[numSlots];
+      result = accounted(new double[numSlots]);
       if (initialValue != 0) {
         this.initialValue = initialValue;
         Arrays.fill(result, initialValue);
@@ -103,8 +103,8 @@ public abstract class UnInvertedFieldAcc extends SlotAcc implements UnInvertedFi
     public SDVUnInvertedFieldAcc(FacetContext fcontext, SchemaField sf, int numSlots)
         throws IOException {
       super(fcontext, sf, numSlots, 0);
-      this.counts = new int[numSlots];
-      this.sum = new double[numSlots];
+      this.counts = accounted(new int[numSlots]);
+      this.sum = accounted(new double[numSlots]);
     }
 
     @Override
@@ -29,8 +29,8 @@ public abstract class UniqueBlockAgg extends UniqueAgg {
     protected UniqueBlockSlotAcc(FacetContext fcontext, SchemaField field, int numSlots)
         throws IOException { //
       super(fcontext, field, /*numSlots suppressing inherited accumulator */ 0, null);
-      counts = new int[numSlots];
-      lastSeenValuesPerSlot = new int[numSlots];
+      counts = accounted(new int[numSlots]);
+      lastSeenValuesPerSlot = accounted(new int[numSlots]);
       Arrays.fill(lastSeenValuesPerSlot, Integer.MIN_VALUE);
     }
 
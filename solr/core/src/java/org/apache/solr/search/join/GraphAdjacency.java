@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.join;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.TaskExecutor;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.schema.StrField;
+import org.apache.solr.search.SolrIndexSearcher;
+
+/**
+ * The edges of a graph of documents, for {@link GraphQuery}, built once per searcher. The edge
+ * values of the "to" field are numbered by their (top level) ordinal, and two arrays map each live
+ * document to the ordinals of its edge values, and each ordinal to the live documents having that
+ * value in the "from" field. A hop of the traversal is then two lookups in memory, from a {@link
+ * FixedBitSet} of documents to a bit set of ordinals and back, instead of collecting the edge
+ * values through the doc values and searching them in the terms of the "from" field.
+ *
+ * <p>Only string fields are supported, with docValues for the "to" field.
+ *
+ * @lucene.internal
+ */
+class GraphAdjacency implements Accountable {
+
+  private static final long BASE_RAM_BYTES_USED =
+      RamUsageEstimator.shallowSizeOfInstance(GraphAdjacency.class);
+
+  /**
+   * The fewest set bits a task of a concurrent hop is given. Each task fills a bit set as long as
+   * the result, there is no point splitting smaller frontiers.
+   */
+  static final int MIN_BITS_PER_TASK = 4096;
+
+  /** The key of the adjacency of two fields in the cache of the searcher. */
+  record Key(String fromField, String toField) {}
+
+  private final int maxDoc;
+  private final int numOrds;
+
+  /**
+   * The edges of doc {@code d} are {@code edges[edgeStarts[d]]} to {@code edges[edgeStarts[d+1]]}
+   */
+  private final int[] edgeStarts;
+
+  private final int[] edges;
+
+  /** The docs with the value of ord {@code o} are {@code nodes[nodeStarts[o]]} and so on */
+  private final int[] nodeStarts;
+
+  private final int[] nodes;
+
+  private GraphAdjacency(
+      int maxDoc, int numOrds, int[] edgeStarts, int[] edges, int[] nodeStarts, int[] nodes) {
+    this.maxDoc = maxDoc;
+    this.numOrds = numOrds;
+    this.edgeStarts = edgeStarts;
+    this.edges = edges;
+    this.nodeStarts = nodeStarts;
+    this.nodes = nodes;
+  }
+
+  /** Returns true if the graph of these fields can be traversed with an adjacency. */
+  static boolean supports(SchemaField fromField, SchemaField toField) {
+    return fromField.getType() instanceof StrField
+        && toField.getType() instanceof StrField
+        && (fromField.indexed() || fromField.hasDocValues())
+        && toField.hasDocValues();
+  }
+
+  /** Builds the adjacency of the documents of a searcher. */
+  static GraphAdjacency build(
+      SolrIndexSearcher searcher, SchemaField fromField, SchemaField toField) throws IOException {
+    final int maxDoc = searcher.maxDoc();
+    final SortedSetDocValues toValues =
+        DocValues.getSortedSet(searcher.getSlowAtomicReader(), toField.getName());
+    if (toValues.getValueCount() >= ArrayUtil.MAX_ARRAY_LENGTH) {
+      throw new SolrException(
+          SolrException.ErrorCode.BAD_REQUEST,
+          "Too many values in " + toField.getName() + " to build the adjacency of the graph");
+    }
+    final int numOrds = (int) toValues.getValueCount();
+    // a single valued field has SORTED doc values, wrapped as a singleton by getSortedSet
+    final OrdinalMap ordinalMap;
+    if (toValues instanceof MultiDocValues.MultiSortedSetDocValues multiValues) {
+      ordinalMap = multiValues.mapping;
+    } else if (DocValues.unwrapSingleton(toValues)
+        instanceof MultiDocValues.MultiSortedDocValues multiValues) {
+      ordinalMap = multiValues.mapping;
+    } else {
+      ordinalMap = null; // a single segment, its ords are the global ones
+    }
+
+    // the edges of each doc, in doc order
+    final int[] edgeStarts = new int[maxDoc + 1];
+    int[] edges = new int[0];
+    int numEdges = 0;
+    int nextDoc = 0;
+    for (LeafReaderContext leaf : searcher.getTopReaderContext().leaves()) {
+      final SortedSetDocValues values = DocValues.getSortedSet(leaf.reader(), toField.getName());
+      final LongValues toGlobal =
+          ordinalMap == null ? LongValues.IDENTITY : ordinalMap.getGlobalOrds(leaf.ord);
+      final Bits liveDocs = leaf.reader().getLiveDocs();
+      for (int doc = values.nextDoc();
+          doc != DocIdSetIterator.NO_MORE_DOCS;
+          doc = values.nextDoc()) {
+        if (liveDocs != null && !liveDocs.get(doc)) {
+          continue;
+        }
+        final int globalDoc = leaf.docBase + doc;
+        for (; nextDoc <= globalDoc; nextDoc++) {
+          edgeStarts[nextDoc] = numEdges;
+        }
+        final int count = values.docValueCount();
+        if (numEdges + count >= ArrayUtil.MAX_ARRAY_LENGTH) {
+          throw new SolrException(
+              SolrException.ErrorCode.BAD_REQUEST,
+              "Too many edges in " + toField.getName() + " to build the adjacency of the graph");
+        }
+        edges = ArrayUtil.grow(edges, numEdges + count);
+        for (int i = 0; i < count; i++) {
+          edges[numEdges++] = (int) toGlobal.get(values.nextOrd());
+        }
+      }
+    }
+    for (; nextDoc <= maxDoc; nextDoc++) {
+      edgeStarts[nextDoc] = numEdges;
+    }
+
+    // the docs with each value, found as (ord, doc) pairs which are then sorted by ord
+    int[] pairOrds = new int[0];
+    int[] pairDocs = new int[0];
+    int numPairs = 0;
+    PostingsEnum postings = null;
+    for (LeafReaderContext leaf : searcher.getTopReaderContext().leaves()) {
+      final LeafReader reader = leaf.reader();
+      final Bits liveDocs = reader.getLiveDocs();
+      final SortedSetDocValues fromValues =
+          fromField.indexed() ? null : DocValues.getSortedSet(reader, fromField.getName());
+      final Terms terms = fromField.indexed() ? reader.terms(fromField.getName()) : null;
+      final TermsEnum termsEnum =
+          fromValues != null
+              ? fromValues.termsEnum()
+              : terms == null ? TermsEnum.EMPTY : terms.iterator();
+
+      // maps the ords of the values of this segment to the ords of the edges
+      final int[] segToOrd = fromValues != null ? new int[(int) fromValues.getValueCount()] : null;
+      for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+        final int ord = numOrds == 0 ? -1 : (int) toValues.lookupTerm(term);
+        if (segToOrd != null) {
+          segToOrd[(int) termsEnum.ord()] = ord;
+        } else if (ord >= 0) {
+          postings = termsEnum.postings(postings, PostingsEnum.NONE);
+          for (int doc = postings.nextDoc();
+              doc != DocIdSetIterator.NO_MORE_DOCS;
+              doc = postings.nextDoc()) {
+            if (liveDocs == null || liveDocs.get(doc)) {
+              pairOrds = ArrayUtil.grow(pairOrds, numPairs + 1);
+              pairDocs = ArrayUtil.grow(pairDocs, numPairs + 1);
+              pairOrds[numPairs] = ord;
+              pairDocs[numPairs++] = leaf.docBase + doc;
+            }
+          }
+        }
+      }
+      if (segToOrd != null) {
+        for (int doc = fromValues.nextDoc();
+            doc != DocIdSetIterator.NO_MORE_DOCS;
+            doc = fromValues.nextDoc()) {
+          if (liveDocs != null && !liveDocs.get(doc)) {
+            continue;
+          }
+          for (int i = 0, count = fromValues.docValueCount(); i < count; i++) {
+            final int ord = segToOrd[(int) fromValues.nextOrd()];
+            if (ord >= 0) {
+              pairOrds = ArrayUtil.grow(pairOrds, numPairs + 1);
+              pairDocs = ArrayUtil.grow(pairDocs, numPairs + 1);
+              pairOrds[numPairs] = ord;
+              pairDocs[numPairs++] = leaf.docBase + doc;
+            }
+          }
+        }
+      }
+    }
+
+    final int[] nodeStarts = new int[numOrds + 1];
+    for (int i = 0; i < numPairs; i++) {
+      nodeStarts[pairOrds[i] + 1]++;
+    }
+    for (int ord = 0; ord < numOrds; ord++) {
+      nodeStarts[ord + 1] += nodeStarts[ord];
+    }
+    final int[] nodes = new int[numPairs];
+    final int[] nextNode = ArrayUtil.copyOfSubArray(nodeStarts, 0, numOrds);
+    for (int i = 0; i < numPairs; i++) {
+      nodes[nextNode[pairOrds[i]]++] = pairDocs[i];
+    }
+
+    return new GraphAdjacency(
+        maxDoc,
+        numOrds,
+        edgeStarts,
+        ArrayUtil.copyOfSubArray(edges, 0, numEdges),
+        nodeStarts,
+        nodes);
+  }
+
+  /** Returns the number of distinct edge values */
+  int getNumOrds() {
+    return numOrds;
+  }
+
+  /**
+   * Returns the ordinals of the edges of some docs which aren't visited yet, or null if there are
+   * none.
+   */
+  FixedBitSet edges(FixedBitSet docs, FixedBitSet visitedOrds, TaskExecutor executor, int numTasks)
+      throws IOException {
+    if (numOrds == 0) {
+      return null;
+    }
+    final FixedBitSet ords =
+        forEachRange(
+            docs,
+            numOrds,
+            executor,
+            numTasks,
+            (doc, target) -> {
+              for (int i = edgeStarts[doc], end = edgeStarts[doc + 1]; i < end; i++) {
+                if (visitedOrds.get(edges[i]) == false) {
+                  target.set(edges[i]);
+                }
+              }
+            });
+    return ords.scanIsEmpty() ? null : ords;
+  }
+
+  /** Returns the docs having one of these ordinals as their node id. */
+  FixedBitSet nodes(FixedBitSet ords, TaskExecutor executor, int numTasks) throws IOException {
+    return forEachRange(
+        ords,
+        maxDoc,
+        executor,
+        numTasks,
+        (ord, target) -> {
+          for (int i = nodeStarts[ord], end = nodeStarts[ord + 1]; i < end; i++) {
+            target.set(nodes[i]);
+          }
+        });
+  }
+
+  /** Marks the bits a set bit of the source links to in the target. */
+  private interface BitVisitor {
+    void visit(int bit, FixedBitSet target);
+  }
+
+  /**
+   * Visits the set bits of the source into a new bit set of the given length. The source is split
+   * into ranges visited concurrently by the executor, each into its own bit set, if it has enough
+   * set bits.
+   */
+  private static FixedBitSet forEachRange(
+      FixedBitSet source, int length, TaskExecutor executor, int numTasks, BitVisitor visitor)
+      throws IOException {
+    final int numBits = source.length();
+    if (numTasks > 1) {
+      numTasks = Math.min(numTasks, source.cardinality() / MIN_BITS_PER_TASK);
+    }
+    if (numTasks <= 1) {
+      final FixedBitSet target = new FixedBitSet(length);
+      visitRange(source, 0, numBits, target, visitor);
+      return target;
+    }
+
+    final int rangeSize = (numBits + numTasks - 1) / numTasks;
+    final List<Callable<FixedBitSet>> tasks = new ArrayList<>(numTasks);
+    for (int from = 0; from < numBits; from += rangeSize) {
+      final int start = from;
+      final int end = Math.min(numBits, from + rangeSize);
+      tasks.add(
+          () -> {
+            final FixedBitSet target = new FixedBitSet(length);
+            visitRange(source, start, end, target, visitor);
+            return target;
+          });
+    }
+    final List<FixedBitSet> targets = executor.invokeAll(tasks);
+    final FixedBitSet target = targets.get(0);
+    for (int i = 1; i < targets.size(); i++) {
+      target.or(targets.get(i));
+    }
+    return target;
+  }
+
+  private static void visitRange(
+      FixedBitSet source, int from, int to, FixedBitSet target, BitVisitor visitor) {
+    if (from >= to) {
+      return;
+    }
+    for (int bit = source.nextSetBit(from, to);
+        bit != DocIdSetIterator.NO_MORE_DOCS;
+        bit = bit + 1 < to ? source.nextSetBit(bit + 1, to) : DocIdSetIterator.NO_MORE_DOCS) {
+      visitor.visit(bit, target);
+    }
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED
+        + RamUsageEstimator.sizeOf(edgeStarts)
+        + RamUsageEstimator.sizeOf(edges)
+        + RamUsageEstimator.sizeOf(nodeStarts)
+        + RamUsageEstimator.sizeOf(nodes);
+  }
+}
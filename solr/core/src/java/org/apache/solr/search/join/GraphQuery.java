@@ -36,6 +36,7 @@ import org.apache.lucene.search.QueryVisitor;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.ScorerSupplier;
+import org.apache.lucene.search.TaskExecutor;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.search.WildcardQuery;
 import org.apache.lucene.util.BytesRef;
@@ -46,6 +47,7 @@ import org.apache.lucene.util.automaton.Automaton;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.BitDocSet;
 import org.apache.solr.search.DocSet;
+import org.apache.solr.search.SolrCache;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.SolrSearcherRequirer;
 import org.apache.solr.util.SolrDefaultScorerSupplier;
@@ -63,6 +65,13 @@ import org.apache.solr.util.SolrDefaultScorerSupplier;
  */
 public class GraphQuery extends Query implements SolrSearcherRequirer {
 
+  /**
+   * The name of the optional user cache of the searcher holding the adjacency of the graphs. When
+   * it's configured, graphs between string fields are traversed in memory, see {@link
+   * GraphAdjacency}.
+   */
+  public static final String CACHE_NAME = "graphAdjacency";
+
   /** The inital node matching query */
   private Query q;
 
@@ -93,6 +102,12 @@ public class GraphQuery extends Query implements SolrSearcherRequirer {
    */
   private boolean returnRoot = true;
 
+  /**
+   * If the hops of a traversal with a cached adjacency may be split across the threads of the
+   * searcher's executor. It doesn't change what matches, so it isn't part of equals/hashCode.
+   */
+  private boolean multiThreaded = false;
+
   /**
    * Create a graph query q - the starting node query fromField - the field containing the node id
    * toField - the field containing the edge ids
@@ -181,6 +196,10 @@ public class GraphQuery extends Query implements SolrSearcherRequirer {
      * @throws IOException - if a sub search fails... maybe other cases too! :)
      */
     private DocSet getDocSet() throws IOException {
+      GraphAdjacency adjacency = getAdjacency();
+      if (adjacency != null) {
+        return getDocSet(adjacency);
+      }
       // Size that the bit set needs to be.
       int capacity = fromSearcher.getRawReader().maxDoc();
       // The bit set to contain the results that match the query.
@@ -254,6 +273,56 @@ public class GraphQuery extends Query implements SolrSearcherRequirer {
       }
     }
 
+    /** Returns the cached adjacency of the graph, or null if there's no adjacency cache. */
+    private GraphAdjacency getAdjacency() throws IOException {
+      @SuppressWarnings("unchecked")
+      SolrCache<GraphAdjacency.Key, GraphAdjacency> cache = fromSearcher.getCache(CACHE_NAME);
+      if (cache == null || !GraphAdjacency.supports(matchSchemaField, collectSchemaField)) {
+        return null;
+      }
+      return cache.computeIfAbsent(
+          new GraphAdjacency.Key(fromField, toField),
+          key -> GraphAdjacency.build(fromSearcher, matchSchemaField, collectSchemaField));
+    }
+
+    /**
+     * Traverses the graph with its adjacency, each hop from the bit set of the docs found by the
+     * previous one to the bit set of the ordinals of their edges not seen yet, and back to the
+     * docs.
+     */
+    private DocSet getDocSet(GraphAdjacency adjacency) throws IOException {
+      final TaskExecutor executor = fromSearcher.getTaskExecutor();
+      final int numTasks = multiThreaded ? SolrIndexSearcher.EXECUTOR_MAX_CPU_THREADS : 1;
+      final FixedBitSet resultBits = new FixedBitSet(fromSearcher.maxDoc());
+      fromSearcher.getDocSet(q).addAllTo(resultBits);
+      final FixedBitSet rootBits = returnRoot ? null : resultBits.clone();
+      final FixedBitSet filterBits =
+          traversalFilter == null ? null : fromSearcher.getDocSetBits(traversalFilter).getBits();
+      final FixedBitSet visitedOrds = new FixedBitSet(adjacency.getNumOrds());
+
+      FixedBitSet frontier = resultBits.clone();
+      for (int depth = 0; maxDepth == -1 || depth < maxDepth; depth++) {
+        final FixedBitSet ords = adjacency.edges(frontier, visitedOrds, executor, numTasks);
+        if (ords == null) {
+          break;
+        }
+        // the docs of an ordinal already visited are all in the result already
+        visitedOrds.or(ords);
+        frontier = adjacency.nodes(ords, executor, numTasks);
+        if (filterBits != null) {
+          frontier.and(filterBits);
+        }
+        frontier.andNot(resultBits);
+        resultBits.or(frontier);
+      }
+
+      if (rootBits != null) {
+        resultBits.andNot(rootBits);
+      }
+      BitDocSet resultSet = new BitDocSet(resultBits);
+      return onlyLeafNodes ? resultSet.intersection(resolveLeafNodes()) : resultSet;
+    }
+
     private DocSet resolveLeafNodes() throws IOException {
       String field = collectSchemaField.getName();
       BooleanQuery.Builder leafNodeQuery = new BooleanQuery.Builder();
@@ -293,7 +362,8 @@ public class GraphQuery extends Query implements SolrSearcherRequirer {
 
     @Override
     public boolean isCacheable(LeafReaderContext ctx) {
-      return true;
+      // the traversal may cross segments, so what matches in one depends on the others
+      return false;
     }
   }
 
@@ -419,6 +489,17 @@ public class GraphQuery extends Query implements SolrSearcherRequirer {
     this.returnRoot = returnRoot;
   }
 
+  /**
+   * @return if true the hops of a traversal with a cached adjacency may use several threads.
+   */
+  public boolean isMultiThreaded() {
+    return multiThreaded;
+  }
+
+  public void setMultiThreaded(boolean multiThreaded) {
+    this.multiThreaded = multiThreaded;
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
@@ -17,6 +17,7 @@
 package org.apache.solr.search.join;
 
 import org.apache.lucene.search.Query;
+import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.schema.StrField;
@@ -58,6 +59,10 @@ public class GraphQueryParser extends QParser {
     // if true, an automaton will be compiled to issue the next graph hop
     // this avoid having a large number of boolean clauses. (and it's faster too!)
     boolean useAutn = localParams.getBool("useAutn", false);
+    // if the hops of a traversal with a cached adjacency may be split across several threads
+    boolean multiThreaded =
+        localParams.getBool(
+            CommonParams.MULTI_THREADED, params.getBool(CommonParams.MULTI_THREADED, false));
 
     // Construct a graph query object based on parameters passed in.
     GraphQuery gq = new GraphQuery(rootNodeQuery, fromField, toField, traversalFilter);
@@ -66,6 +71,7 @@ public class GraphQueryParser extends QParser {
     gq.setOnlyLeafNodes(onlyLeafNodes);
     gq.setReturnRoot(returnRootNodes);
     gq.setUseAutn(useAutn);
+    gq.setMultiThreaded(multiThreaded);
     // return the parsed graph query.
     return gq;
   }
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.request.JavaBinRequestWriter;
+import org.apache.solr.client.solrj.request.JavaBinUpdateRequestCodec;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+
+/**
+ * An {@link UpdateRequest} distributed to several nodes, e.g. an update sent by a leader to its
+ * replicas. The requests to each node share the javabin encoding of the update: it is marshalled by
+ * the first one written by {@link Writer}, and copied as is by the others, instead of encoding the
+ * same documents once per replica.
+ *
+ * <p>The requests must have the same content and params, which must not change once one of them is
+ * sent.
+ */
+public class SharedUpdateRequest extends UpdateRequest {
+
+  private final Encoding encoding;
+
+  /** Creates a request with its own encoding. */
+  public SharedUpdateRequest() {
+    this.encoding = new Encoding();
+  }
+
+  /**
+   * Creates a request sharing the encoding of another one, which must be given the same content and
+   * params.
+   */
+  public SharedUpdateRequest(SharedUpdateRequest other) {
+    this.encoding = other.encoding;
+  }
+
+  /** Returns the javabin encoding of this request, marshalling it if it's the first one. */
+  byte[] getBytes() throws IOException {
+    return encoding.get(this);
+  }
+
+  private static class Encoding {
+    private volatile byte[] bytes;
+
+    byte[] get(UpdateRequest req) throws IOException {
+      byte[] result = bytes;
+      if (result == null) {
+        synchronized (this) {
+          result = bytes;
+          if (result == null) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            new JavaBinUpdateRequestCodec().marshal(req, os);
+            bytes = result = os.toByteArray();
+          }
+        }
+      }
+      return result;
+    }
+  }
+
+  /**
+   * A {@link JavaBinRequestWriter} writing the shared encoding of {@link SharedUpdateRequest}s,
+   * used by the clients sending updates to other nodes.
+   */
+  public static class Writer extends JavaBinRequestWriter {
+
+    @Override
+    public ContentWriter getContentWriter(SolrRequest<?> req) {
+      if (req instanceof SharedUpdateRequest sharedRequest && !isEmpty(sharedRequest)) {
+        return new ContentWriter() {
+          @Override
+          public void write(OutputStream os) throws IOException {
+            os.write(sharedRequest.getBytes());
+          }
+
+          @Override
+          public String getContentType() {
+            return getUpdateContentType();
+          }
+        };
+      }
+      return super.getContentWriter(req);
+    }
+
+    @Override
+    public void write(SolrRequest<?> request, OutputStream os) throws IOException {
+      if (request instanceof SharedUpdateRequest sharedRequest) {
+        os.write(sharedRequest.getBytes());
+      } else {
+        super.write(request, os);
+      }
+    }
+  }
+}
@@ -212,8 +212,9 @@ public class SolrCmdDistributor implements Closeable {
       blockAndDoRetries(); // For DBQ, flush all writes before submitting
     }
 
+    UpdateRequest uReq = null;
     for (Node node : nodes) {
-      UpdateRequest uReq = new UpdateRequest();
+      uReq = newUpdateRequest(nodes, uReq);
       uReq.setParams(params);
       uReq.setCommitWithin(cmd.commitWithin);
       if (cmd.isDeleteById()) {
@@ -244,8 +245,9 @@ public class SolrCmdDistributor implements Closeable {
       RollupRequestReplicationTracker rollupTracker,
       LeaderRequestReplicationTracker leaderTracker)
       throws IOException {
+    UpdateRequest uReq = null;
     for (Node node : nodes) {
-      UpdateRequest uReq = new UpdateRequest();
+      uReq = newUpdateRequest(nodes, uReq);
       if (cmd.isLastDocInBatch) uReq.lastDocInBatch();
       uReq.setParams(params);
       uReq.add(cmd.solrDoc, cmd.commitWithin, cmd.overwrite);
@@ -258,6 +260,19 @@ public class SolrCmdDistributor implements Closeable {
     }
   }
 
+  /**
+   * Returns the request for the next of the nodes. When the same update is sent to several nodes,
+   * the requests share their javabin encoding, see {@link SharedUpdateRequest}.
+   */
+  private static UpdateRequest newUpdateRequest(List<Node> nodes, UpdateRequest previous) {
+    if (nodes.size() < 2) {
+      return new UpdateRequest();
+    }
+    return previous == null
+        ? new SharedUpdateRequest()
+        : new SharedUpdateRequest((SharedUpdateRequest) previous);
+  }
+
   public void distribCommit(CommitUpdateCommand cmd, List<Node> nodes, ModifiableSolrParams params)
       throws IOException {
 
@@ -41,6 +41,8 @@ public class StreamingSolrClients {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   private final int runnerCount = Integer.getInteger("solr.cloud.replication.runners", 1);
+  // the number of updates queued for a node before the distributing thread blocks
+  private final int queueSize = Integer.getInteger("solr.cloud.replication.queueSize", 100);
   // should be less than solr.jetty.http.idleTimeout
   private final int pollQueueTimeMillis =
       Integer.getInteger("solr.cloud.client.pollQueueTime", 10000);
@@ -78,7 +80,7 @@ public class StreamingSolrClients {
           new ErrorReportingConcurrentUpdateSolrClient.Builder(
                   req.node.getBaseUrl(), httpClient, req, errors)
               .withDefaultCollection(defaultCore)
-              .withQueueSize(100)
+              .withQueueSize(queueSize)
               .withThreadCount(runnerCount)
               .withExecutorService(updateExecutor)
               .alwaysStreamDeletes()
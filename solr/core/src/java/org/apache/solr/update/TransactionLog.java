@@ -22,6 +22,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.invoke.MethodHandles;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
@@ -86,6 +87,21 @@ public class TransactionLog implements Closeable {
   protected volatile boolean deleteOnClose = true;
 
   protected AtomicInteger refcount = new AtomicInteger(1);
+
+  // group commit state, see groupSync(). Guarded by syncLock.
+  final Object syncLock = new Object(); // package-private for tests
+  private long syncedPosition; // the log is known to be fsynced up to here
+  private boolean syncing; // whether a caller of groupSync is currently syncing
+  int syncWaiters; // callers of groupSync waiting for the current sync
+
+  // read-only mapping of the flushed prefix of the log, see openInputStream()
+  private volatile boolean mmapReads;
+  private volatile MappedByteBuffer mapped;
+  private final Object mapLock = new Object();
+
+  /** The mapping of a log that is still being written is only replaced after this much growth */
+  static final long MIN_REMAP_BYTES = 1 << 20;
+
   protected Map<String, Integer> globalStringMap = new HashMap<>();
   protected List<String> globalStringList = new ArrayList<>();
 
@@ -283,6 +299,68 @@ public class TransactionLog implements Closeable {
     }
   }
 
+  /**
+   * Whether reads of this log should go through a read-only memory mapping of the already flushed
+   * part of the file instead of positional channel reads. Only applies when this log uses the
+   * default {@link ChannelInputStreamOpener}, since custom openers may transform the stored bytes.
+   */
+  public void setMmapReads(boolean mmapReads) {
+    this.mmapReads = mmapReads;
+  }
+
+  /**
+   * Opens a stream positioned at {@code pos}. The flushed part of the log is append-only and hence
+   * immutable, so when {@link #setMmapReads(boolean) enabled} it is served from a shared read-only
+   * mapping; anything past the mapping is read from the channel.
+   */
+  protected ChannelFastInputStream openInputStream(long pos) throws IOException {
+    if (mmapReads && channelInputStreamOpener == CHANNEL_INPUT_STREAM_OPENER) {
+      MappedByteBuffer m = mapFor(pos);
+      if (m != null) {
+        return new MappedFastInputStream(channel, pos, m);
+      }
+    }
+    return channelInputStreamOpener.open(channel, pos);
+  }
+
+  /**
+   * Returns a mapping covering {@code pos} if there is one, mapping the flushed part of the log
+   * first if needed. A log that is still growing is only remapped once it has at least doubled (and
+   * grown by {@link #MIN_REMAP_BYTES}), so the number of mappings stays logarithmic in the log
+   * size. Superseded mappings are released once garbage collected.
+   */
+  private MappedByteBuffer mapFor(long pos) throws IOException {
+    MappedByteBuffer m = mapped;
+    if (m != null && pos < m.capacity()) {
+      return m;
+    }
+    synchronized (mapLock) {
+      m = mapped;
+      if (m != null && pos < m.capacity()) {
+        return m;
+      }
+      long mappedSize = m == null ? 0 : m.capacity();
+      long size;
+      synchronized (this) {
+        fos.flush();
+        size = Math.min(fos.size(), Integer.MAX_VALUE);
+      }
+      if (pos >= size || (m != null && size - mappedSize < Math.max(mappedSize, MIN_REMAP_BYTES))) {
+        // not (sufficiently) flushed past the current mapping yet, read from the channel
+        return m;
+      }
+      m = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      mapped = m;
+      return m;
+    }
+  }
+
+  /** Returns the number of bytes of this log currently served from a memory mapping */
+  public long getMappedSize() {
+    MappedByteBuffer m = mapped;
+    return m == null ? 0 : m.capacity();
+  }
+
   public boolean endsWithCommit() throws IOException {
     long size;
     synchronized (this) {
@@ -295,7 +373,7 @@ public class TransactionLog implements Closeable {
     long pos = size - END_MESSAGE.length() - 4;
     if (pos < 0) return false;
     @SuppressWarnings("resource")
-    final InputStream is = channelInputStreamOpener.open(channel, pos);
+    final InputStream is = openInputStream(pos);
     int n = is.read(buf);
     if (n != buf.length) {
       return false;
@@ -573,7 +651,7 @@ public class TransactionLog implements Closeable {
         */
       }
 
-      DataInputInputStream is = channelInputStreamOpener.open(channel, pos);
+      DataInputInputStream is = openInputStream(pos);
       try (LogCodec codec = new LogCodec(resolver)) {
         return codec.readVal(is);
       }
@@ -590,8 +668,17 @@ public class TransactionLog implements Closeable {
     }
   }
 
+  /** Increments the reference count, unless the log was closed. */
   public boolean try_incref() {
-    return refcount.incrementAndGet() > 1;
+    // don't resurrect a closed log: a failed attempt must leave the count at 0
+    int count;
+    do {
+      count = refcount.get();
+      if (count <= 0) {
+        return false;
+      }
+    } while (!refcount.compareAndSet(count, count + 1));
+    return true;
   }
 
   public void decref() {
@@ -632,6 +719,77 @@ public class TransactionLog implements Closeable {
     }
   }
 
+  /**
+   * Makes all records written so far durable, like {@link #finish(UpdateLog.SyncLevel)} with {@link
+   * UpdateLog.SyncLevel#FSYNC}, but shares the fsync between concurrent callers (group commit).
+   * While an fsync is in progress, callers wait for it; once it is done, those whose records it
+   * covered return, and one of the others performs a single fsync on behalf of all of them.
+   *
+   * @param maxWaitMs how long the caller performing the fsync delays it when other callers are
+   *     already waiting, so that records that are being written concurrently can be covered too; 0
+   *     to not delay
+   * @return true if this caller performed an fsync, false if the fsync of another caller covered
+   *     its records
+   */
+  public boolean groupSync(long maxWaitMs) {
+    try {
+      final long position;
+      synchronized (this) {
+        fos.flush();
+        position = fos.size();
+      }
+
+      synchronized (syncLock) {
+        syncWaiters++;
+        try {
+          while (syncing && syncedPosition < position) {
+            syncLock.wait();
+          }
+        } finally {
+          syncWaiters--;
+        }
+        if (syncedPosition >= position) {
+          return false;
+        }
+        syncing = true;
+      }
+
+      long syncPosition = position;
+      boolean success = false;
+      try {
+        if (maxWaitMs > 0) {
+          synchronized (syncLock) {
+            if (syncWaiters > 0) {
+              // others are syncing concurrently; give updates that are being written a chance to
+              // join. If interrupted, the finally block below still lets the others sync.
+              syncLock.wait(maxWaitMs);
+            }
+          }
+        }
+        synchronized (this) {
+          fos.flush();
+          syncPosition = fos.size();
+        }
+        channel.force(true);
+        success = true;
+      } finally {
+        synchronized (syncLock) {
+          if (success) {
+            syncedPosition = Math.max(syncedPosition, syncPosition);
+          }
+          syncing = false;
+          syncLock.notifyAll();
+        }
+      }
+      return true;
+    } catch (IOException e) {
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
+    }
+  }
+
   @Override
   public void close() {
     try {
@@ -643,6 +801,7 @@ public class TransactionLog implements Closeable {
         fos.flush();
         fos.close();
       }
+      mapped = null;
 
       if (deleteOnClose) {
         try {
@@ -713,7 +872,7 @@ public class TransactionLog implements Closeable {
 
     public LogReader(long startingPos) throws IOException {
       incref();
-      fis = channelInputStreamOpener.open(channel, startingPos);
+      fis = openInputStream(startingPos);
     }
 
     // for classes that extend
@@ -883,7 +1042,7 @@ public class TransactionLog implements Closeable {
         assert sz == getLogFileSize();
       }
 
-      fis = channelInputStreamOpener.open(channel, 0);
+      fis = openInputStream(0);
       if (sz >= 4) {
         // readHeader(fis);  // should not be needed
         prevPos = sz - 4;
@@ -1025,6 +1184,31 @@ public class TransactionLog implements Closeable {
     }
   }
 
+  /**
+   * A {@link ChannelFastInputStream} that copies bytes from a read-only mapping of the log instead
+   * of issuing a positional read per buffer fill, falling back to the channel past the mapping.
+   */
+  public static class MappedFastInputStream extends ChannelFastInputStream {
+    private final MappedByteBuffer mapped;
+
+    public MappedFastInputStream(FileChannel ch, long chPosition, MappedByteBuffer mapped) {
+      super(ch, chPosition);
+      this.mapped = mapped;
+    }
+
+    @Override
+    public int readWrappedStream(byte[] target, int offset, int len) throws IOException {
+      int limit = mapped.capacity();
+      if (readFromStream >= limit) {
+        return super.readWrappedStream(target, offset, len);
+      }
+      int n = (int) Math.min(len, limit - readFromStream);
+      // absolute bulk get, so the shared buffer's position is never touched
+      mapped.get((int) readFromStream, target, offset, n);
+      return n;
+    }
+  }
+
   /** Opens {@link OutputStream} from {@link FileChannel}. */
   protected interface OutputStreamOpener {
 
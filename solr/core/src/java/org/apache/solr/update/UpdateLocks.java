@@ -47,21 +47,19 @@ public class UpdateLocks {
   // Here we have a Map keyed by hash and a pool of locks to re-use.  Synchronization is needed 2x.
   //   Note:  ConcurrentHashMap was also explored but HPPC came out on top, probably because
   //          we can use a hashcode directly as the key, and it's GC friendly (zero-allocation).
+  // The maps are striped by the high bits of the hash, so that concurrent updates rarely
+  //   synchronize on the same one; the map of a stripe then uses the low bits.
 
-  /** Maps a ID hashcode to a lock. Synchronize to manipulate. */
-  private final IntObjectHashMap<LockAndCondition> hashToLock =
-      new IntObjectHashMap<>(32) {
-        @Override
-        protected int hashKey(int key) {
-          return key; // our keys are themselves hash-codes
-        }
-      };
+  private static final int STRIPE_BITS = 4;
 
-  /** A pool of locks to avoid creating & GC'ing them too much. Must synchronize on hashToLock. */
-  private final ArrayDeque<LockAndCondition> lockPool = new ArrayDeque<>(16);
+  /** The stripes of ID hashcodes to locks, indexed by the high bits of the hashcode. */
+  private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
 
   public UpdateLocks(long docLockTimeoutMs) {
     this.docLockTimeoutMs = docLockTimeoutMs;
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe();
+    }
   }
 
   /**
@@ -78,20 +76,21 @@ public class UpdateLocks {
       //   OrderedExecutor.SparseStripedLock over here, which is also a mechanism invented for
       //   per-doc locking.
 
-      // hashToLock isn't concurrent, but we synchronize on it briefly twice to do cheap work
+      // a stripe isn't concurrent, but we synchronize on it briefly twice to do cheap work
 
       final int hash = id.hashCode();
+      final Stripe stripe = stripes[hash >>> (Integer.SIZE - STRIPE_BITS)];
       final LockAndCondition lock;
       // get or insert lock, increment refcount
-      synchronized (hashToLock) {
-        final int idx = hashToLock.indexOf(hash);
-        if (hashToLock.indexExists(idx)) {
-          lock = hashToLock.indexGet(idx);
+      synchronized (stripe) {
+        final int idx = stripe.hashToLock.indexOf(hash);
+        if (stripe.hashToLock.indexExists(idx)) {
+          lock = stripe.hashToLock.indexGet(idx);
           assert lock.refCount >= 1;
           lock.refCount++;
         } else {
-          lock = borrowLock();
-          hashToLock.indexInsert(idx, hash, lock);
+          lock = stripe.borrowLock();
+          stripe.hashToLock.indexInsert(idx, hash, lock);
         }
       }
 
@@ -100,11 +99,11 @@ public class UpdateLocks {
         return runWithLockInternal(id, function, lock, startTimeNanos);
       } finally {
         // decrement refcount, remove lock if unreferenced
-        synchronized (hashToLock) {
+        synchronized (stripe) {
           assert lock.refCount > 0; // because we incremented it
           if (--lock.refCount == 0) { // typical
-            hashToLock.remove(hash);
-            returnLock(lock);
+            stripe.hashToLock.remove(hash);
+            stripe.returnLock(lock);
           }
         }
       }
@@ -114,20 +113,34 @@ public class UpdateLocks {
     }
   }
 
-  private LockAndCondition borrowLock() {
-    assert Thread.holdsLock(hashToLock);
-    if (lockPool.isEmpty()) {
-      return new LockAndCondition();
-    } else {
-      return lockPool.removeLast();
+  /** A map of ID hashcodes to locks, and a pool of locks to re-use. Synchronize to manipulate. */
+  private static class Stripe {
+    private final IntObjectHashMap<LockAndCondition> hashToLock =
+        new IntObjectHashMap<>(8) {
+          @Override
+          protected int hashKey(int key) {
+            return key; // our keys are themselves hash-codes
+          }
+        };
+
+    /** A pool of locks to avoid creating & GC'ing them too much. */
+    private final ArrayDeque<LockAndCondition> lockPool = new ArrayDeque<>(4);
+
+    private LockAndCondition borrowLock() {
+      assert Thread.holdsLock(this);
+      if (lockPool.isEmpty()) {
+        return new LockAndCondition();
+      } else {
+        return lockPool.removeLast();
+      }
     }
-  }
 
-  private void returnLock(LockAndCondition lock) {
-    assert Thread.holdsLock(hashToLock);
-    if (lockPool.size() < 16) {
-      lockPool.add(lock);
-      lock.refCount = 1; // ready for next use
+    private void returnLock(LockAndCondition lock) {
+      assert Thread.holdsLock(this);
+      if (lockPool.size() < 4) {
+        lockPool.add(lock);
+        lock.refCount = 1; // ready for next use
+      }
     }
   }
 
@@ -165,7 +178,7 @@ public class UpdateLocks {
   private static class LockAndCondition {
     final Lock lock;
     final Condition condition;
-    int refCount; // only access when synchronized on hashToLock
+    int refCount; // only access when synchronized on its Stripe
 
     LockAndCondition() {
       lock = new ReentrantLock(true); // fair
@@ -44,12 +44,12 @@ import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -70,7 +70,7 @@ import org.apache.solr.common.util.ExecutorUtil;
 import org.apache.solr.common.util.IOUtils;
 import org.apache.solr.common.util.SolrNamedThreadFactory;
 import org.apache.solr.common.util.SuppressForbidden;
-import org.apache.solr.common.util.TimeSource;
+import org.apache.solr.core.CoreContainer;
 import org.apache.solr.core.DirectoryFactory;
 import org.apache.solr.core.PluginInfo;
 import org.apache.solr.core.SolrCore;
@@ -88,10 +88,9 @@ import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.update.processor.DistributedUpdateProcessor;
 import org.apache.solr.update.processor.UpdateRequestProcessor;
 import org.apache.solr.update.processor.UpdateRequestProcessorChain;
-import org.apache.solr.util.OrderedExecutor;
+import org.apache.solr.util.PartitionedExecutor;
 import org.apache.solr.util.RefCounted;
 import org.apache.solr.util.TestInjection;
-import org.apache.solr.util.TimeOut;
 import org.apache.solr.util.plugin.PluginInfoInitialized;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -104,6 +103,8 @@ import org.slf4j.LoggerFactory;
  */
 public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
   private static final long STATUS_TIME = TimeUnit.NANOSECONDS.convert(60, TimeUnit.SECONDS);
+  // bounds the number of parsed updates a replay holds in memory ahead of the replay threads
+  private static final int REPLAY_QUEUE_SIZE_PER_THREAD = 64;
   public static String LOG_FILENAME_PATTERN = "%s.%019d";
   public static String TLOG_NAME = "tlog";
   public static String BUFFER_TLOG_NAME = "buffer.tlog";
@@ -213,13 +214,16 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
   protected Deque<TransactionLog> newestLogsOnStartup = new ArrayDeque<>();
   protected int numOldRecords; // number of records in the recent logs
 
-  protected Map<BytesRef, LogPtr> map = new HashMap<>();
+  // the maps are concurrent so that lookups can read them without synchronizing, see LookupMaps
+  protected Map<BytesRef, LogPtr> map = new ConcurrentHashMap<>();
   protected Map<BytesRef, LogPtr> prevMap; // used while committing/reopening is happening
   protected Map<BytesRef, LogPtr> prevMap2; // used while committing/reopening is happening
   // the transaction log used to look up entries found in prevMap
   protected TransactionLog prevMapLog;
   // the transaction log used to look up entries found in prevMap2
   protected TransactionLog prevMapLog2;
+  // the maps above and their logs, as of the last time any of them was replaced
+  private volatile LookupMaps lookupMaps = new LookupMaps(map, null, null, null, null, null);
 
   protected final int numDeletesToKeep = 1000;
   protected final int numDeletesByQueryToKeep = 100;
@@ -259,6 +263,14 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
 
   protected SyncLevel defaultSyncLevel = SyncLevel.FLUSH;
 
+  /** Whether concurrent updates share fsyncs, see {@link TransactionLog#groupSync(long)} */
+  protected boolean groupCommit = false;
+
+  protected int groupCommitMaxWaitMs = 0;
+
+  /** Whether transaction logs are read through memory mapping, see {@link TransactionLog} */
+  protected boolean mmapReads = false;
+
   protected volatile UpdateHandler uhandler; // a core reload can change this reference!
   protected volatile boolean cancelApplyBufferUpdate;
   protected List<Long> startingVersions;
@@ -267,6 +279,7 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
   protected AttributedLongCounter applyingBufferedOpsCounter;
   protected AttributedLongCounter replayOpsCounter;
   protected AttributedLongCounter copyOverOldUpdatesCounter;
+  protected AttributedLongCounter fsyncsCounter;
   protected SolrMetricsContext solrMetricsContext;
 
   public static class LogPtr {
@@ -379,6 +392,9 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
   public void init(PluginInfo info) {
     dataDir = (String) info.initArgs.get("dir");
     defaultSyncLevel = SyncLevel.getSyncLevel((String) info.initArgs.get("syncLevel"));
+    groupCommit = Boolean.TRUE.equals(info.initArgs.getBooleanArg("groupCommit"));
+    groupCommitMaxWaitMs = objToInt(info.initArgs.get("groupCommitMaxWaitMs"), 0);
+    mmapReads = Boolean.TRUE.equals(info.initArgs.getBooleanArg("mmapReads"));
 
     numRecordsToKeep = objToInt(info.initArgs.get("numRecordsToKeep"), 100);
     maxNumLogsToKeep = objToInt(info.initArgs.get("maxNumLogsToKeep"), 10);
@@ -397,9 +413,11 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     updateLocks = new UpdateLocks(timeoutMs);
 
     log.info(
-        "Initializing UpdateLog: dataDir={} defaultSyncLevel={} numRecordsToKeep={} maxNumLogsToKeep={}",
+        "Initializing UpdateLog: dataDir={} defaultSyncLevel={} groupCommit={} mmapReads={} numRecordsToKeep={} maxNumLogsToKeep={}",
         dataDir,
         defaultSyncLevel,
+        groupCommit,
+        mmapReads,
         numRecordsToKeep,
         maxNumLogsToKeep);
   }
@@ -681,6 +699,12 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
                 "solr.core.update_log.old_updates_copied",
                 "Total number of updates copied from previous tlog or last tlog to a new tlog"),
             baseAttributes);
+
+    fsyncsCounter =
+        new AttributedLongCounter(
+            solrMetricsContext.longCounter(
+                "solr.core.update_log.fsyncs", "Total number of fsyncs of the transaction log"),
+            baseAttributes);
   }
 
   @Override
@@ -712,7 +736,9 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
    */
   public TransactionLog newTransactionLog(
       Path tlogFile, Collection<String> globalStrings, boolean openExisting) {
-    return new TransactionLog(tlogFile, globalStrings, openExisting);
+    TransactionLog tlog = new TransactionLog(tlogFile, globalStrings, openExisting);
+    tlog.setMmapReads(mmapReads);
+    return tlog;
   }
 
   public String getTlogDir() {
@@ -1030,14 +1056,39 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     prevMap = map;
     prevMapLog = tlog;
 
-    map = new HashMap<>();
+    map = new ConcurrentHashMap<>();
+    publishLookupMaps();
   }
 
   private void clearOldMaps() {
     prevMap = null;
     prevMap2 = null;
+    publishLookupMaps();
   }
 
+  /**
+   * Publishes the current maps and their logs to the lookups. Must be called with the
+   * synchronization monitor on this {@link UpdateLog}, whenever any of them is replaced.
+   */
+  protected void publishLookupMaps() {
+    assert Thread.holdsLock(this);
+    lookupMaps = new LookupMaps(map, tlog, prevMap, prevMapLog, prevMap2, prevMapLog2);
+  }
+
+  /**
+   * A consistent view of the maps of ids to log pointers, and of the logs the pointers are into,
+   * so that lookups don't need to synchronize on the {@link UpdateLog}. Since something found in
+   * "map" will always be in "tlog", the view is replaced whenever any of the maps or logs is, but
+   * not when entries are added to the (concurrent) maps.
+   */
+  private record LookupMaps(
+      Map<BytesRef, LogPtr> map,
+      TransactionLog mapLog,
+      Map<BytesRef, LogPtr> prevMap,
+      TransactionLog prevMapLog,
+      Map<BytesRef, LogPtr> prevMap2,
+      TransactionLog prevMapLog2) {}
+
   public boolean hasUncommittedChanges() {
     return tlog != null;
   }
@@ -1074,6 +1125,7 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
       }
       prevTlog = tlog;
       tlog = null;
+      publishLookupMaps();
       id++;
     }
   }
@@ -1109,7 +1161,8 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
       // any added documents will make it into this commit or not.
       // But we do know that any updates already added will definitely
       // show up in the latest reader after the commit succeeds.
-      map = new HashMap<>();
+      map = new ConcurrentHashMap<>();
+      publishLookupMaps();
 
       if (debug) {
         log.debug(
@@ -1284,32 +1337,36 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     LogPtr entry;
     TransactionLog lookupLog;
 
-    synchronized (this) {
-      entry = map.get(indexedId);
-      lookupLog = tlog; // something found in "map" will always be in "tlog"
-      // SolrCore.verbose("TLOG: lookup: for id ",indexedId.utf8ToString(),"in
-      // map",System.identityHashCode(map),"got",entry,"lookupLog=",lookupLog);
-      if (entry == null && prevMap != null) {
-        entry = prevMap.get(indexedId);
+    // read the maps without synchronizing, retrying in the rare case that the log the entry was
+    // found in was replaced or closed since the maps were published
+    while (true) {
+      LookupMaps maps = lookupMaps;
+      entry = maps.map().get(indexedId);
+      lookupLog = maps.mapLog(); // something found in "map" will always be in "tlog"
+      if (entry == null && maps.prevMap() != null) {
+        entry = maps.prevMap().get(indexedId);
         // something found in prevMap will always be found in prevMapLog (which could be tlog or
         // prevTlog)
-        lookupLog = prevMapLog;
-        // SolrCore.verbose("TLOG: lookup: for id ",indexedId.utf8ToString(),"in
-        // prevMap",System.identityHashCode(map),"got",entry,"lookupLog=",lookupLog);
+        lookupLog = maps.prevMapLog();
       }
-      if (entry == null && prevMap2 != null) {
-        entry = prevMap2.get(indexedId);
+      if (entry == null && maps.prevMap2() != null) {
+        entry = maps.prevMap2().get(indexedId);
         // something found in prevMap2 will always be found in prevMapLog2 (which could be tlog or
         // prevTlog)
-        lookupLog = prevMapLog2;
-        // SolrCore.verbose("TLOG: lookup: for id ",indexedId.utf8ToString(),"in
-        // prevMap2",System.identityHashCode(map),"got",entry,"lookupLog=",lookupLog);
+        lookupLog = maps.prevMapLog2();
       }
 
       if (entry == null) {
         return null;
       }
-      lookupLog.incref();
+      if (lookupLog != null && lookupLog.try_incref()) {
+        break;
+      }
+      if (maps == lookupMaps) {
+        // not a stale view: the log must have been closed with entries pointing into it
+        throw new SolrException(
+            SolrException.ErrorCode.SERVER_ERROR, "lookup in a closed log: " + lookupLog);
+      }
     }
 
     try {
@@ -1325,30 +1382,14 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
   // that have already grabbed higher version numbers.  Higher level coordination or
   // synchronization is needed for stronger guarantees (as VersionUpdateProcessor does).
   public Long lookupVersion(BytesRef indexedId) {
-    LogPtr entry;
-    TransactionLog lookupLog;
-
-    synchronized (this) {
-      entry = map.get(indexedId);
-      lookupLog = tlog; // something found in "map" will always be in "tlog"
-      // SolrCore.verbose("TLOG: lookup ver: for id ",indexedId.utf8ToString(),"in
-      // map",System.identityHashCode(map),"got",entry,"lookupLog=",lookupLog);
-      if (entry == null && prevMap != null) {
-        entry = prevMap.get(indexedId);
-        // something found in prevMap will always be found in prevMapLog (which could be tlog or
-        // prevTlog)
-        lookupLog = prevMapLog;
-        // SolrCore.verbose("TLOG: lookup ver: for id ",indexedId.utf8ToString(),"in
-        // prevMap",System.identityHashCode(map),"got",entry,"lookupLog=",lookupLog);
-      }
-      if (entry == null && prevMap2 != null) {
-        entry = prevMap2.get(indexedId);
-        // something found in prevMap2 will always be found in prevMapLog2 (which could be tlog or
-        // prevTlog)
-        lookupLog = prevMapLog2;
-        // SolrCore.verbose("TLOG: lookup ver: for id ",indexedId.utf8ToString(),"in
-        // prevMap2",System.identityHashCode(map),"got",entry,"lookupLog=",lookupLog);
-      }
+    // only the versions of the entries are needed, so the logs don't matter here
+    LookupMaps maps = lookupMaps;
+    LogPtr entry = maps.map().get(indexedId);
+    if (entry == null && maps.prevMap() != null) {
+      entry = maps.prevMap().get(indexedId);
+    }
+    if (entry == null && maps.prevMap2() != null) {
+      entry = maps.prevMap2().get(indexedId);
     }
 
     if (entry != null) {
@@ -1392,7 +1433,14 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     }
 
     try {
-      currLog.finish(syncLevel);
+      if (syncLevel != SyncLevel.FSYNC) {
+        currLog.finish(syncLevel);
+      } else if (!groupCommit) {
+        currLog.finish(syncLevel);
+        fsyncsCounter.inc();
+      } else if (currLog.groupSync(groupCommitMaxWaitMs)) {
+        fsyncsCounter.inc();
+      }
     } finally {
       currLog.decref();
     }
@@ -1603,8 +1651,11 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
         }
       }
       // Prev tlog will be closed, so nullify prevMap
-      if (prevTlog == oldTlog) {
-        prevMap = null;
+      synchronized (this) {
+        if (prevTlog == oldTlog) {
+          prevMap = null;
+          publishLookupMaps();
+        }
       }
     } catch (IOException e) {
       log.error("Exception reading versions from log", e);
@@ -1675,6 +1726,7 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
         id = scanLastLogId(tlogFiles) + 1; // add 1 since we create a new log
       }
       tlog = newTransactionLog(newLogPath, globalStrings, false);
+      publishLookupMaps();
     }
   }
 
@@ -2198,9 +2250,9 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
                   return proc;
                 });
 
-        OrderedExecutor<BytesRef> executor =
-            inSortedOrder ? null : req.getCoreContainer().getReplayUpdatesExecutor();
-        AtomicInteger pendingTasks = new AtomicInteger(0);
+        // Updates are partitioned by id so that updates of the same document are applied in log
+        // order, while a document that is updated repeatedly doesn't hold up the others
+        PartitionedExecutor<BytesRef> executor = inSortedOrder ? null : newReplayExecutor();
         AtomicReference<SolrException> exceptionOnExecuteUpdate = new AtomicReference<>();
 
         long commitVersion = 0;
@@ -2237,7 +2289,7 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
               if (!finishing) {
                 // about to block all the updates including the tasks in the executor
                 // therefore we must wait for them to be finished
-                waitForAllUpdatesGetExecuted(pendingTasks);
+                waitForAllUpdatesGetExecuted(executor);
                 // from this point, remain updates will be executed in a single thread
                 executor = null;
                 // block to prevent new adds, but don't immediately unlock since
@@ -2284,7 +2336,7 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
                       convertTlogEntryToAddUpdateCommand(req, entry, oper, version);
                   cmd.setFlags(UpdateCommand.REPLAY | UpdateCommand.IGNORE_AUTOCOMMIT);
                   if (debug) log.debug("{} {}", oper == ADD ? "add" : "update", cmd);
-                  execute(cmd, executor, pendingTasks, procThreadLocal, exceptionOnExecuteUpdate);
+                  execute(cmd, executor, procThreadLocal, exceptionOnExecuteUpdate);
                   break;
                 }
               case UpdateLog.DELETE:
@@ -2296,7 +2348,7 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
                   cmd.setVersion(version);
                   cmd.setFlags(UpdateCommand.REPLAY | UpdateCommand.IGNORE_AUTOCOMMIT);
                   if (debug) log.debug("delete {}", cmd);
-                  execute(cmd, executor, pendingTasks, procThreadLocal, exceptionOnExecuteUpdate);
+                  execute(cmd, executor, procThreadLocal, exceptionOnExecuteUpdate);
                   break;
                 }
 
@@ -2309,9 +2361,9 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
                   cmd.setVersion(version);
                   cmd.setFlags(UpdateCommand.REPLAY | UpdateCommand.IGNORE_AUTOCOMMIT);
                   if (debug) log.debug("deleteByQuery {}", cmd);
-                  waitForAllUpdatesGetExecuted(pendingTasks);
+                  waitForAllUpdatesGetExecuted(executor);
                   // DBQ will be executed in the same thread
-                  execute(cmd, null, pendingTasks, procThreadLocal, exceptionOnExecuteUpdate);
+                  execute(cmd, null, procThreadLocal, exceptionOnExecuteUpdate);
                   break;
                 }
               case UpdateLog.COMMIT:
@@ -2348,7 +2400,7 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
           assert TestInjection.injectUpdateLogReplayRandomPause();
         }
 
-        waitForAllUpdatesGetExecuted(pendingTasks);
+        waitForAllUpdatesGetExecuted(executor);
         if (exceptionOnExecuteUpdate.get() != null) throw exceptionOnExecuteUpdate.get();
 
         CommitUpdateCommand cmd = new CommitUpdateCommand(req, false);
@@ -2389,18 +2441,18 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
       }
     }
 
-    private void waitForAllUpdatesGetExecuted(AtomicInteger pendingTasks) {
-      TimeOut timeOut =
-          new TimeOut(Integer.MAX_VALUE, TimeUnit.MILLISECONDS, TimeSource.CURRENT_TIME);
+    private PartitionedExecutor<BytesRef> newReplayExecutor() {
+      CoreContainer cc = req.getCoreContainer();
+      int numThreads = Math.max(1, cc.getConfig().getReplayUpdatesThreads());
+      return new PartitionedExecutor<>(
+          numThreads, cc.getReplayUpdatesExecutor(), numThreads * REPLAY_QUEUE_SIZE_PER_THREAD);
+    }
+
+    private void waitForAllUpdatesGetExecuted(PartitionedExecutor<BytesRef> executor) {
+      if (executor == null) return;
       try {
-        timeOut.waitFor(
-            "Timeout waiting for replay updates finish",
-            () -> {
-              // TODO handle the case when there are no progress after a long time
-              return pendingTasks.get() == 0;
-            });
-      } catch (TimeoutException e) {
-        throw new SolrException(ErrorCode.SERVER_ERROR, e);
+        // TODO handle the case when there are no progress after a long time
+        executor.awaitIdle();
       } catch (InterruptedException e) {
         Thread.currentThread().interrupt();
         throw new SolrException(ErrorCode.SERVER_ERROR, e);
@@ -2419,36 +2471,18 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
 
     private void execute(
         UpdateCommand cmd,
-        OrderedExecutor<BytesRef> executor,
-        AtomicInteger pendingTasks,
+        PartitionedExecutor<BytesRef> executor,
         ThreadLocal<UpdateRequestProcessor> procTl,
         AtomicReference<SolrException> exceptionHolder) {
       assert cmd instanceof AddUpdateCommand || cmd instanceof DeleteUpdateCommand;
 
       if (executor != null) {
-        executor.execute(
-            getIndexedId(cmd),
-            () -> {
-              try {
-                // fail fast
-                if (exceptionHolder.get() != null) return;
-                invokeCmdOnProc(cmd, procTl.get());
-              } catch (IOException e) {
-                recoveryInfo.errors.incrementAndGet();
-                loglog.warn("REPLAY_ERR: IOException reading log", e);
-                // could be caused by an incomplete flush if recovering from log
-              } catch (SolrException e) {
-                if (e.code() == ErrorCode.SERVICE_UNAVAILABLE.code) {
-                  exceptionHolder.compareAndSet(null, e);
-                  return;
-                }
-                recoveryInfo.errors.incrementAndGet();
-                loglog.warn("REPLAY_ERR: SolrException reading log", e);
-              } finally {
-                pendingTasks.decrementAndGet();
-              }
-            });
-        pendingTasks.incrementAndGet();
+        try {
+          executor.execute(getIndexedId(cmd), () -> runReplayTask(cmd, procTl, exceptionHolder));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SolrException(ErrorCode.SERVER_ERROR, e);
+        }
       } else {
         try {
           invokeCmdOnProc(cmd, procTl.get());
@@ -2466,6 +2500,29 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
       }
     }
 
+    /** Applies an update on a replay executor thread, see {@link #execute} */
+    private void runReplayTask(
+        UpdateCommand cmd,
+        ThreadLocal<UpdateRequestProcessor> procTl,
+        AtomicReference<SolrException> exceptionHolder) {
+      try {
+        // fail fast
+        if (exceptionHolder.get() != null) return;
+        invokeCmdOnProc(cmd, procTl.get());
+      } catch (IOException e) {
+        recoveryInfo.errors.incrementAndGet();
+        loglog.warn("REPLAY_ERR: IOException reading log", e);
+        // could be caused by an incomplete flush if recovering from log
+      } catch (SolrException e) {
+        if (e.code() == ErrorCode.SERVICE_UNAVAILABLE.code) {
+          exceptionHolder.compareAndSet(null, e);
+          return;
+        }
+        recoveryInfo.errors.incrementAndGet();
+        loglog.warn("REPLAY_ERR: SolrException reading log", e);
+      }
+    }
+
     private void invokeCmdOnProc(UpdateCommand cmd, UpdateRequestProcessor proc)
         throws IOException {
       if (cmd instanceof AddUpdateCommand) {
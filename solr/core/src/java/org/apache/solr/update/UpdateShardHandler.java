@@ -115,7 +115,9 @@ public class UpdateShardHandler implements SolrInfoBean {
           .withMaxConnectionsPerHost(cfg.getMaxUpdateConnectionsPerHost());
     }
 
-    updateOnlyClientBuilder.withTheseParamNamesInTheUrl(urlParamNames);
+    updateOnlyClientBuilder
+        .withTheseParamNamesInTheUrl(urlParamNames)
+        .withRequestWriter(new SharedUpdateRequest.Writer());
     updateOnlyClient = updateOnlyClientBuilder.build();
 
     recoveryOnlyClient = recoveryOnlyClientBuilder.build();
@@ -17,13 +17,28 @@
 
 package org.apache.solr.util;
 
+import org.apache.lucene.util.Accountable;
+
 /**
  * An efficient map for storing keys as integer in range from 0..n with n can be estimated up-front.
  * By automatically switching from a hashMap (which is memory efficient) to an array (which is
  * faster) on increasing number of keys. So it SHOULD not be used for other cases where key can be
  * any arbitrary integer.
+ *
+ * <p>The array is paged, and each page of {@link #PAGE_SIZE} keys starts as a small hash map of its
+ * keys, which is only replaced with an array of the page once it holds {@link #DENSE_PAGE_KEYS}
+ * keys. So keys spread over a large range, e.g. the ordinals of the groups found by a query
+ * collapsing on a field with many unique values, don't cost an array of n values unless enough of
+ * them are put.
  */
-public interface DynamicMap {
+public interface DynamicMap extends Accountable {
+
+  int PAGE_SHIFT = 12;
+  int PAGE_SIZE = 1 << PAGE_SHIFT;
+  int PAGE_MASK = PAGE_SIZE - 1;
+
+  /** The number of keys from which a page is an array rather than a hash map */
+  int DENSE_PAGE_KEYS = PAGE_SIZE >>> 3;
 
   default boolean useArrayBased(int expectedKeyMax) {
     boolean assertsEnabled = false;
@@ -37,6 +52,11 @@ public interface DynamicMap {
     return expectedKeyMax < (1 << 12);
   }
 
+  /** Compute the number of pages holding the keys from 0 to {@code maxKey} excluded */
+  default int numPages(int maxKey) {
+    return (int) (((long) maxKey + PAGE_MASK) >>> PAGE_SHIFT);
+  }
+
   /** Compute threshold for switching from hashMap based to array */
   default int threshold(int expectedKeyMax) {
     return expectedKeyMax >>> 6;
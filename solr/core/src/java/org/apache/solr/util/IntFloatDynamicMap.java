@@ -22,11 +22,14 @@ import com.carrotsearch.hppc.cursors.FloatCursor;
 import com.carrotsearch.hppc.procedures.IntFloatProcedure;
 import java.util.Arrays;
 import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
 
 public class IntFloatDynamicMap implements DynamicMap {
   private int maxSize;
   private IntFloatHashMap hashMap;
-  private float[] keyValues;
+  // once switched from the hash map, a page is either absent, sparse or dense, see DynamicMap
+  private IntFloatHashMap[] sparsePages;
+  private float[][] pages;
   private float emptyValue;
   private int threshold;
 
@@ -41,42 +44,60 @@ public class IntFloatDynamicMap implements DynamicMap {
     this.emptyValue = emptyValue;
     if (useArrayBased(expectedKeyMax)) {
       upgradeToArray();
+      for (int i = 0; i < pages.length; i++) {
+        pages[i] = newPage();
+      }
     } else {
       this.hashMap = new IntFloatHashMap(mapExpectedElements(expectedKeyMax));
     }
   }
 
   private void upgradeToArray() {
-    keyValues = new float[maxSize];
-    if (emptyValue != 0.0f) {
-      Arrays.fill(keyValues, emptyValue);
-    }
+    pages = new float[numPages(maxSize)][];
+    sparsePages = new IntFloatHashMap[pages.length];
     if (hashMap != null) {
-      hashMap.forEach((IntFloatProcedure) (key, value) -> keyValues[key] = value);
+      hashMap.forEach((IntFloatProcedure) this::putPaged);
       hashMap = null;
     }
   }
 
-  private void growBuffer(int minSize) {
-    assert keyValues != null;
-    int size = keyValues.length;
-    keyValues = ArrayUtil.grow(keyValues, minSize);
+  private float[] newPage() {
+    float[] page = new float[PAGE_SIZE];
     if (emptyValue != 0.0f) {
-      for (int i = size; i < keyValues.length; i++) {
-        keyValues[i] = emptyValue;
-      }
+      Arrays.fill(page, emptyValue);
+    }
+    return page;
+  }
+
+  private void putPaged(int key, float value) {
+    int index = key >>> PAGE_SHIFT;
+    if (index >= pages.length) {
+      int newLength = ArrayUtil.oversize(index + 1, RamUsageEstimator.NUM_BYTES_OBJECT_REF);
+      pages = ArrayUtil.growExact(pages, newLength);
+      sparsePages = ArrayUtil.growExact(sparsePages, newLength);
+    }
+    if (pages[index] != null) {
+      pages[index][key & PAGE_MASK] = value;
+      return;
+    }
+    IntFloatHashMap sparsePage = sparsePages[index];
+    if (sparsePage == null) {
+      sparsePage = sparsePages[index] = new IntFloatHashMap();
+    }
+    sparsePage.put(key & PAGE_MASK, value);
+    if (sparsePage.size() >= DENSE_PAGE_KEYS) {
+      final float[] page = pages[index] = newPage();
+      sparsePage.forEach((IntFloatProcedure) (offset, v) -> page[offset] = v);
+      sparsePages[index] = null;
     }
   }
 
   public void put(int key, float value) {
-    if (keyValues != null) {
-      if (key >= keyValues.length) {
-        growBuffer(key + 1);
-      }
-      keyValues[key] = value;
+    if (pages != null) {
+      putPaged(key, value);
     } else {
-      this.hashMap.put(key, value);
       this.maxSize = Math.max(key + 1, maxSize);
+      this.hashMap.put(key, value);
       if (this.hashMap.size() >= threshold) {
         upgradeToArray();
       }
@@ -84,20 +105,33 @@ public class IntFloatDynamicMap implements DynamicMap {
   }
 
   public float get(int key) {
-    if (keyValues != null) {
-      if (key >= keyValues.length) {
+    if (pages != null) {
+      int index = key >>> PAGE_SHIFT;
+      if (index >= pages.length) {
         return emptyValue;
       }
-      return keyValues[key];
+      if (pages[index] != null) {
+        return pages[index][key & PAGE_MASK];
+      }
+      IntFloatHashMap sparsePage = sparsePages[index];
+      return sparsePage == null ? emptyValue : sparsePage.getOrDefault(key & PAGE_MASK, emptyValue);
     } else {
       return this.hashMap.getOrDefault(key, emptyValue);
     }
   }
 
   public void forEachValue(FloatConsumer consumer) {
-    if (keyValues != null) {
-      for (float val : keyValues) {
-        if (val != emptyValue) consumer.accept(val);
+    if (pages != null) {
+      for (int i = 0; i < pages.length; i++) {
+        if (pages[i] != null) {
+          for (float val : pages[i]) {
+            if (val != emptyValue) consumer.accept(val);
+          }
+        } else if (sparsePages[i] != null) {
+          for (FloatCursor ord : sparsePages[i].values()) {
+            consumer.accept(ord.value);
+          }
+        }
       }
     } else {
       for (FloatCursor ord : hashMap.values()) {
@@ -107,10 +141,35 @@ public class IntFloatDynamicMap implements DynamicMap {
   }
 
   public void remove(int key) {
-    if (keyValues != null) {
-      if (key < keyValues.length) keyValues[key] = emptyValue;
+    if (pages != null) {
+      int index = key >>> PAGE_SHIFT;
+      if (index >= pages.length) {
+        return;
+      }
+      if (pages[index] != null) {
+        pages[index][key & PAGE_MASK] = emptyValue;
+      } else if (sparsePages[index] != null) {
+        sparsePages[index].remove(key & PAGE_MASK);
+      }
     } else {
       hashMap.remove(key);
     }
   }
+
+  @Override
+  public long ramBytesUsed() {
+    if (pages == null) {
+      return hashMap.ramBytesAllocated();
+    }
+    long bytes =
+        RamUsageEstimator.shallowSizeOf(pages) + RamUsageEstimator.shallowSizeOf(sparsePages);
+    for (int i = 0; i < pages.length; i++) {
+      if (pages[i] != null) {
+        bytes += RamUsageEstimator.sizeOf(pages[i]);
+      } else if (sparsePages[i] != null) {
+        bytes += sparsePages[i].ramBytesAllocated();
+      }
+    }
+    return bytes;
+  }
 }
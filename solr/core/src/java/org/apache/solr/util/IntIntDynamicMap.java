@@ -23,11 +23,14 @@ import com.carrotsearch.hppc.procedures.IntIntProcedure;
 import java.util.Arrays;
 import java.util.function.IntConsumer;
 import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
 
 public class IntIntDynamicMap implements DynamicMap {
   private int maxSize;
   private IntIntHashMap hashMap;
-  private int[] keyValues;
+  // once switched from the hash map, a page is either absent, sparse or dense, see DynamicMap
+  private IntIntHashMap[] sparsePages;
+  private int[][] pages;
   private int emptyValue;
   private int threshold;
 
@@ -42,39 +45,57 @@ public class IntIntDynamicMap implements DynamicMap {
     this.emptyValue = emptyValue;
     if (useArrayBased(expectedKeyMax)) {
       upgradeToArray();
+      for (int i = 0; i < pages.length; i++) {
+        pages[i] = newPage();
+      }
     } else {
       this.hashMap = new IntIntHashMap(mapExpectedElements(expectedKeyMax));
     }
   }
 
   private void upgradeToArray() {
-    keyValues = new int[maxSize];
-    if (emptyValue != 0) {
-      Arrays.fill(keyValues, emptyValue);
-    }
+    pages = new int[numPages(maxSize)][];
+    sparsePages = new IntIntHashMap[pages.length];
     if (hashMap != null) {
-      hashMap.forEach((IntIntProcedure) (key, value) -> keyValues[key] = value);
+      hashMap.forEach((IntIntProcedure) this::putPaged);
       hashMap = null;
     }
   }
 
-  private void growBuffer(int minSize) {
-    assert keyValues != null;
-    int size = keyValues.length;
-    keyValues = ArrayUtil.grow(keyValues, minSize);
+  private int[] newPage() {
+    int[] page = new int[PAGE_SIZE];
     if (emptyValue != 0) {
-      for (int i = size; i < keyValues.length; i++) {
-        keyValues[i] = emptyValue;
-      }
+      Arrays.fill(page, emptyValue);
+    }
+    return page;
+  }
+
+  private void putPaged(int key, int value) {
+    int index = key >>> PAGE_SHIFT;
+    if (index >= pages.length) {
+      int newLength = ArrayUtil.oversize(index + 1, RamUsageEstimator.NUM_BYTES_OBJECT_REF);
+      pages = ArrayUtil.growExact(pages, newLength);
+      sparsePages = ArrayUtil.growExact(sparsePages, newLength);
+    }
+    if (pages[index] != null) {
+      pages[index][key & PAGE_MASK] = value;
+      return;
+    }
+    IntIntHashMap sparsePage = sparsePages[index];
+    if (sparsePage == null) {
+      sparsePage = sparsePages[index] = new IntIntHashMap();
+    }
+    sparsePage.put(key & PAGE_MASK, value);
+    if (sparsePage.size() >= DENSE_PAGE_KEYS) {
+      final int[] page = pages[index] = newPage();
+      sparsePage.forEach((IntIntProcedure) (offset, v) -> page[offset] = v);
+      sparsePages[index] = null;
     }
   }
 
   public void put(int key, int value) {
-    if (keyValues != null) {
-      if (key >= keyValues.length) {
-        growBuffer(key + 1);
-      }
-      keyValues[key] = value;
+    if (pages != null) {
+      putPaged(key, value);
     } else {
       this.maxSize = Math.max(key + 1, maxSize);
       this.hashMap.put(key, value);
@@ -85,20 +106,33 @@ public class IntIntDynamicMap implements DynamicMap {
   }
 
   public int get(int key) {
-    if (keyValues != null) {
-      if (key >= keyValues.length) {
+    if (pages != null) {
+      int index = key >>> PAGE_SHIFT;
+      if (index >= pages.length) {
         return emptyValue;
       }
-      return keyValues[key];
+      if (pages[index] != null) {
+        return pages[index][key & PAGE_MASK];
+      }
+      IntIntHashMap sparsePage = sparsePages[index];
+      return sparsePage == null ? emptyValue : sparsePage.getOrDefault(key & PAGE_MASK, emptyValue);
     } else {
       return this.hashMap.getOrDefault(key, emptyValue);
     }
   }
 
   public void forEachValue(IntConsumer consumer) {
-    if (keyValues != null) {
-      for (int val : keyValues) {
-        if (val != emptyValue) consumer.accept(val);
+    if (pages != null) {
+      for (int i = 0; i < pages.length; i++) {
+        if (pages[i] != null) {
+          for (int val : pages[i]) {
+            if (val != emptyValue) consumer.accept(val);
+          }
+        } else if (sparsePages[i] != null) {
+          for (IntCursor ord : sparsePages[i].values()) {
+            consumer.accept(ord.value);
+          }
+        }
       }
     } else {
       for (IntCursor ord : hashMap.values()) {
@@ -108,10 +142,35 @@ public class IntIntDynamicMap implements DynamicMap {
   }
 
   public void remove(int key) {
-    if (keyValues != null) {
-      if (key < keyValues.length) keyValues[key] = emptyValue;
+    if (pages != null) {
+      int index = key >>> PAGE_SHIFT;
+      if (index >= pages.length) {
+        return;
+      }
+      if (pages[index] != null) {
+        pages[index][key & PAGE_MASK] = emptyValue;
+      } else if (sparsePages[index] != null) {
+        sparsePages[index].remove(key & PAGE_MASK);
+      }
     } else {
       hashMap.remove(key);
     }
   }
+
+  @Override
+  public long ramBytesUsed() {
+    if (pages == null) {
+      return hashMap.ramBytesAllocated();
+    }
+    long bytes =
+        RamUsageEstimator.shallowSizeOf(pages) + RamUsageEstimator.shallowSizeOf(sparsePages);
+    for (int i = 0; i < pages.length; i++) {
+      if (pages[i] != null) {
+        bytes += RamUsageEstimator.sizeOf(pages[i]);
+      } else if (sparsePages[i] != null) {
+        bytes += sparsePages[i].ramBytesAllocated();
+      }
+    }
+    return bytes;
+  }
 }
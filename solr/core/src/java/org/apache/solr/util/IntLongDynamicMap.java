@@ -23,17 +23,20 @@ import com.carrotsearch.hppc.procedures.IntLongProcedure;
 import java.util.Arrays;
 import java.util.function.LongConsumer;
 import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
 
 public class IntLongDynamicMap implements DynamicMap {
   private int maxSize;
   private IntLongHashMap hashMap;
-  private long[] keyValues;
+  // once switched from the hash map, a page is either absent, sparse or dense, see DynamicMap
+  private IntLongHashMap[] sparsePages;
+  private long[][] pages;
   private long emptyValue;
   private int threshold;
 
   /**
    * Create map with expected max value of key. Although the map will automatically do resizing to
-   * be able to hold key {@code >=g expectedKeyMax}. But putting key much larger than {@code
+   * be able to hold key {@code >= expectedKeyMax}. But putting key much larger than {@code
    * expectedKeyMax} is discourage since it can leads to use LOT OF memory.
    */
   public IntLongDynamicMap(int expectedKeyMax, long emptyValue) {
@@ -42,39 +45,57 @@ public class IntLongDynamicMap implements DynamicMap {
     this.emptyValue = emptyValue;
     if (useArrayBased(expectedKeyMax)) {
       upgradeToArray();
+      for (int i = 0; i < pages.length; i++) {
+        pages[i] = newPage();
+      }
     } else {
       this.hashMap = new IntLongHashMap(mapExpectedElements(expectedKeyMax));
     }
   }
 
   private void upgradeToArray() {
-    keyValues = new long[maxSize];
-    if (emptyValue != 0) {
-      Arrays.fill(keyValues, emptyValue);
-    }
+    pages = new long[numPages(maxSize)][];
+    sparsePages = new IntLongHashMap[pages.length];
     if (hashMap != null) {
-      hashMap.forEach((IntLongProcedure) (key, value) -> keyValues[key] = value);
+      hashMap.forEach((IntLongProcedure) this::putPaged);
       hashMap = null;
     }
   }
 
-  private void growBuffer(int minSize) {
-    assert keyValues != null;
-    int size = keyValues.length;
-    keyValues = ArrayUtil.grow(keyValues, minSize);
+  private long[] newPage() {
+    long[] page = new long[PAGE_SIZE];
     if (emptyValue != 0) {
-      for (int i = size; i < keyValues.length; i++) {
-        keyValues[i] = emptyValue;
-      }
+      Arrays.fill(page, emptyValue);
+    }
+    return page;
+  }
+
+  private void putPaged(int key, long value) {
+    int index = key >>> PAGE_SHIFT;
+    if (index >= pages.length) {
+      int newLength = ArrayUtil.oversize(index + 1, RamUsageEstimator.NUM_BYTES_OBJECT_REF);
+      pages = ArrayUtil.growExact(pages, newLength);
+      sparsePages = ArrayUtil.growExact(sparsePages, newLength);
+    }
+    if (pages[index] != null) {
+      pages[index][key & PAGE_MASK] = value;
+      return;
+    }
+    IntLongHashMap sparsePage = sparsePages[index];
+    if (sparsePage == null) {
+      sparsePage = sparsePages[index] = new IntLongHashMap();
+    }
+    sparsePage.put(key & PAGE_MASK, value);
+    if (sparsePage.size() >= DENSE_PAGE_KEYS) {
+      final long[] page = pages[index] = newPage();
+      sparsePage.forEach((IntLongProcedure) (offset, v) -> page[offset] = v);
+      sparsePages[index] = null;
     }
   }
 
   public void put(int key, long value) {
-    if (keyValues != null) {
-      if (key >= keyValues.length) {
-        growBuffer(key + 1);
-      }
-      keyValues[key] = value;
+    if (pages != null) {
+      putPaged(key, value);
     } else {
       this.maxSize = Math.max(key + 1, maxSize);
       this.hashMap.put(key, value);
@@ -85,20 +106,33 @@ public class IntLongDynamicMap implements DynamicMap {
   }
 
   public long get(int key) {
-    if (keyValues != null) {
-      if (key >= keyValues.length) {
+    if (pages != null) {
+      int index = key >>> PAGE_SHIFT;
+      if (index >= pages.length) {
         return emptyValue;
       }
-      return keyValues[key];
+      if (pages[index] != null) {
+        return pages[index][key & PAGE_MASK];
+      }
+      IntLongHashMap sparsePage = sparsePages[index];
+      return sparsePage == null ? emptyValue : sparsePage.getOrDefault(key & PAGE_MASK, emptyValue);
     } else {
       return this.hashMap.getOrDefault(key, emptyValue);
     }
   }
 
   public void forEachValue(LongConsumer consumer) {
-    if (keyValues != null) {
-      for (long val : keyValues) {
-        if (val != emptyValue) consumer.accept(val);
+    if (pages != null) {
+      for (int i = 0; i < pages.length; i++) {
+        if (pages[i] != null) {
+          for (long val : pages[i]) {
+            if (val != emptyValue) consumer.accept(val);
+          }
+        } else if (sparsePages[i] != null) {
+          for (LongCursor ord : sparsePages[i].values()) {
+            consumer.accept(ord.value);
+          }
+        }
       }
     } else {
       for (LongCursor ord : hashMap.values()) {
@@ -108,10 +142,35 @@ public class IntLongDynamicMap implements DynamicMap {
   }
 
   public void remove(int key) {
-    if (keyValues != null) {
-      if (key < keyValues.length) keyValues[key] = emptyValue;
+    if (pages != null) {
+      int index = key >>> PAGE_SHIFT;
+      if (index >= pages.length) {
+        return;
+      }
+      if (pages[index] != null) {
+        pages[index][key & PAGE_MASK] = emptyValue;
+      } else if (sparsePages[index] != null) {
+        sparsePages[index].remove(key & PAGE_MASK);
+      }
     } else {
       hashMap.remove(key);
     }
   }
+
+  @Override
+  public long ramBytesUsed() {
+    if (pages == null) {
+      return hashMap.ramBytesAllocated();
+    }
+    long bytes =
+        RamUsageEstimator.shallowSizeOf(pages) + RamUsageEstimator.shallowSizeOf(sparsePages);
+    for (int i = 0; i < pages.length; i++) {
+      if (pages[i] != null) {
+        bytes += RamUsageEstimator.sizeOf(pages[i]);
+      } else if (sparsePages[i] != null) {
+        bytes += sparsePages[i].ramBytesAllocated();
+      }
+    }
+    return bytes;
+  }
 }
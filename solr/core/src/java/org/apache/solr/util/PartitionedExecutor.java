@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.util;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs tasks on a delegate {@link Executor}, partitioned by the hash of a key. Tasks of a partition
+ * run one at a time in submission order, so tasks with the same key never run concurrently or out
+ * of order. Unlike {@link OrderedExecutor}, submitting a task whose key is busy does not block the
+ * caller; it is queued behind the tasks of its partition instead. At most {@code maxPending} tasks
+ * may be queued or running, beyond which {@link #execute(Object, Runnable)} blocks.
+ *
+ * <p>{@link #awaitIdle()} waits for all submitted tasks to finish, which allows using it as a
+ * barrier for tasks that must not overlap with any other.
+ */
+public class PartitionedExecutor<T> {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private final Executor delegate;
+  private final Partition[] partitions;
+  private final int maxPending;
+  private int pending; // guarded by this
+
+  public PartitionedExecutor(int numPartitions, Executor delegate, int maxPending) {
+    if (numPartitions < 1 || maxPending < 1) {
+      throw new IllegalArgumentException(
+          "numPartitions and maxPending must be positive: " + numPartitions + ", " + maxPending);
+    }
+    this.delegate = delegate;
+    this.maxPending = maxPending;
+    this.partitions = new Partition[numPartitions];
+    for (int i = 0; i < numPartitions; i++) {
+      partitions[i] = new Partition(this);
+    }
+  }
+
+  /**
+   * Queues the task on the partition of {@code key}, blocking while {@code maxPending} tasks are
+   * pending.
+   *
+   * @throws RejectedExecutionException if the delegate rejects the task
+   * @throws InterruptedException if interrupted while blocked or while scheduling the partition of
+   *     the task, in which case the tasks queued on that partition are discarded
+   */
+  public void execute(T key, Runnable command) throws InterruptedException {
+    synchronized (this) {
+      while (pending >= maxPending) {
+        wait();
+      }
+      pending++;
+    }
+    Partition partition =
+        partitions[Math.floorMod(key == null ? 0 : key.hashCode(), partitions.length)];
+    boolean schedule;
+    synchronized (partition) {
+      partition.tasks.add(command);
+      schedule = !partition.scheduled;
+      partition.scheduled = true;
+    }
+    // scheduling happens outside the partition lock since the delegate may block
+    if (schedule) {
+      // claimed by whichever comes first of the delegate running it and the rollback below
+      final AtomicBoolean claimed = new AtomicBoolean();
+      try {
+        delegate.execute(
+            () -> {
+              if (claimed.compareAndSet(false, true)) {
+                partition.run();
+              }
+            });
+      } catch (RejectedExecutionException e) {
+        partition.drop();
+        throw e;
+      }
+      if (Thread.currentThread().isInterrupted() && claimed.compareAndSet(false, true)) {
+        // the delegate may have dropped the partition without telling, like OrderedExecutor does
+        // when interrupted. Either way it won't run it now, so it isn't scheduled anymore
+        partition.drop();
+        Thread.interrupted();
+        throw new InterruptedException();
+      }
+    }
+  }
+
+  /** Waits until all submitted tasks have finished */
+  public synchronized void awaitIdle() throws InterruptedException {
+    while (pending > 0) {
+      wait();
+    }
+  }
+
+  private synchronized void completed(int count) {
+    pending -= count;
+    notifyAll();
+  }
+
+  private static class Partition implements Runnable {
+    final PartitionedExecutor<?> executor;
+    final ArrayDeque<Runnable> tasks = new ArrayDeque<>(); // guarded by this
+    boolean scheduled; // guarded by this
+
+    Partition(PartitionedExecutor<?> executor) {
+      this.executor = executor;
+    }
+
+    @Override
+    public void run() {
+      for (; ; ) {
+        Runnable task;
+        synchronized (this) {
+          task = tasks.poll();
+          if (task == null) {
+            scheduled = false;
+            return;
+          }
+        }
+        boolean completed = false;
+        try {
+          task.run();
+          completed = true;
+        } catch (RuntimeException e) {
+          log.error("Task failed", e);
+          completed = true;
+        } finally {
+          executor.completed(1);
+          if (!completed) {
+            // an Error escaped, don't leave the remaining tasks of this partition stranded
+            drop();
+          }
+        }
+      }
+    }
+
+    /** Discards the queued tasks, so that they no longer count as pending */
+    void drop() {
+      int dropped;
+      synchronized (this) {
+        dropped = tasks.size();
+        tasks.clear();
+        scheduled = false;
+      }
+      executor.completed(dropped);
+    }
+  }
+}
@@ -18,8 +18,10 @@ package org.apache.solr.util;
 
 import com.google.common.util.concurrent.AtomicDouble;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
+import java.net.ConnectException;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
@@ -155,6 +157,15 @@ public class TestInjection {
 
   public static volatile Integer delayBeforeFollowerCommitRefresh = null;
 
+  /** The number of index file downloads of IndexFetcher to break in the middle of the file */
+  public static volatile AtomicInteger breakIndexFetchStreams = null;
+
+  /**
+   * The number of reconnections to resume a broken index file download to fail, as if the
+   * connection was refused
+   */
+  public static volatile AtomicInteger failIndexFetchReconnects = null;
+
   public static volatile Integer delayInExecutePlanAction = null;
 
   public static volatile Integer delayBeforeCreatingNewDocSet = null;
@@ -219,6 +230,8 @@ public class TestInjection {
     failIndexFingerprintRequests = null;
     wrongIndexFingerprint = null;
     delayBeforeFollowerCommitRefresh = null;
+    breakIndexFetchStreams = null;
+    failIndexFetchReconnects = null;
     delayInExecutePlanAction = null;
     delayBeforeCreatingNewDocSet = null;
     countDocSetDelays.set(0);
@@ -657,6 +670,27 @@ public class TestInjection {
     return true;
   }
 
+  public static boolean injectBreakIndexFetchStream(long bytesDownloaded, long size) {
+    AtomicInteger breaks = breakIndexFetchStreams;
+    if (breaks != null
+        && bytesDownloaded < size
+        && breaks.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+      throw new SolrException(ErrorCode.SERVER_ERROR, "Broken index fetch stream (injected)");
+    }
+    return true;
+  }
+
+  public static boolean injectFailIndexFetchReconnect(long bytesDownloaded) {
+    AtomicInteger failures = failIndexFetchReconnects;
+    if (failures != null
+        && bytesDownloaded > 0
+        && failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+      throw new UncheckedIOException(
+          new ConnectException("Failed index fetch reconnect (injected)"));
+    }
+    return true;
+  }
+
   public static boolean injectUIFOutOfMemoryError() {
     if (uifOutOfMemoryError) {
       throw new OutOfMemoryError("Test Injection");
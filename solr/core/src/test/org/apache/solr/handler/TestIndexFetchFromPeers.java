@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler;
+
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.client.solrj.request.SolrQuery;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.cloud.SolrCloudTestCase;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.embedded.JettySolrRunner;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests recovering replicas downloading index files from the other replicas of their shard. */
+public class TestIndexFetchFromPeers extends SolrCloudTestCase {
+
+  @BeforeClass
+  public static void setupCluster() throws Exception {
+    System.setProperty("solr.directoryFactory", "solr.StandardDirectoryFactory");
+    System.setProperty("solr.index.replication.fetchFromPeers", "true");
+
+    configureCluster(3)
+        .addConfig(
+            "config", TEST_PATH().resolve("configsets").resolve("cloud-minimal").resolve("conf"))
+        .configure();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    System.clearProperty("solr.index.replication.fetchFromPeers");
+  }
+
+  @After
+  public void resetHook() {
+    IndexFetcher.testGetFileStream = (name, source) -> {};
+  }
+
+  /**
+   * Creates a collection with a leader on the first node and a replica on the second one, which
+   * downloads all the index files from the leader, so that it has identical copies of them.
+   *
+   * @return the number of docs
+   */
+  private int createCollection(String collection) throws Exception {
+    CollectionAdminRequest.createCollection(collection, "config", 1, 1)
+        .setCreateNodeSet(cluster.getJettySolrRunner(0).getNodeName())
+        .process(cluster.getSolrClient());
+    waitForState("", collection, clusterShape(1, 1));
+
+    // several segments, so that there are several files to download
+    int numDocs = 0;
+    for (int commit = 0; commit < 5; commit++) {
+      UpdateRequest req = new UpdateRequest();
+      for (int i = 0; i < 20; i++, numDocs++) {
+        req.add("id", Integer.toString(numDocs));
+      }
+      req.commit(cluster.getSolrClient(), collection);
+    }
+
+    CollectionAdminRequest.addReplicaToShard(collection, "shard1")
+        .setNode(cluster.getJettySolrRunner(1).getNodeName())
+        .process(cluster.getSolrClient());
+    waitForState("", collection, clusterShape(1, 2));
+    return numDocs;
+  }
+
+  /** Adds a replica on the third node, which recovers by downloading the index files */
+  private Replica addRecoveringReplica(String collection) throws Exception {
+    JettySolrRunner node = cluster.getJettySolrRunner(2);
+    CollectionAdminRequest.addReplicaToShard(collection, "shard1")
+        .setNode(node.getNodeName())
+        .process(cluster.getSolrClient());
+    waitForState("", collection, clusterShape(1, 3));
+    return replicaOnNode(getCollectionState(collection), node);
+  }
+
+  @Test
+  public void testFetchFromPeer() throws Exception {
+    final String collection = "fetchFromPeer";
+    int numDocs = createCollection(collection);
+    DocCollection state = getCollectionState(collection);
+    Replica leader = state.getLeader("shard1");
+    Replica peer = replicaOnNode(state, cluster.getJettySolrRunner(1));
+
+    List<Map.Entry<String, String>> fetched = Collections.synchronizedList(new ArrayList<>());
+    IndexFetcher.testGetFileStream =
+        (name, source) -> {
+          if (source.coreName().startsWith(collection)) {
+            fetched.add(Map.entry(name, source.coreName()));
+          }
+        };
+    Replica recovered = addRecoveringReplica(collection);
+
+    Set<String> names = new HashSet<>();
+    int fromPeer = 0;
+    for (Map.Entry<String, String> file : fetched) {
+      // none failed and was downloaded again
+      assertTrue("downloaded twice: " + file.getKey(), names.add(file.getKey()));
+      if (file.getValue().equals(peer.getCoreName())) {
+        fromPeer++;
+      } else {
+        assertEquals(leader.getCoreName(), file.getValue());
+      }
+    }
+    assertTrue("no file downloaded from the peer: " + fetched, fromPeer > 0);
+    assertSameIndex(leader, recovered, numDocs);
+  }
+
+  @Test
+  public void testFallbackToLeader() throws Exception {
+    final String collection = "fallbackToLeader";
+    int numDocs = createCollection(collection);
+    DocCollection state = getCollectionState(collection);
+    Replica leader = state.getLeader("shard1");
+    Replica peer = replicaOnNode(state, cluster.getJettySolrRunner(1));
+
+    // the peer fails to serve any file, e.g. it went down in the meantime
+    List<Map.Entry<String, String>> fetched = Collections.synchronizedList(new ArrayList<>());
+    IndexFetcher.testGetFileStream =
+        (name, source) -> {
+          if (source.coreName().startsWith(collection)) {
+            fetched.add(Map.entry(name, source.coreName()));
+            if (source.coreName().equals(peer.getCoreName())) {
+              throw new UncheckedIOException(new ConnectException("Peer unavailable (test)"));
+            }
+          }
+        };
+    Replica recovered = addRecoveringReplica(collection);
+
+    Set<String> failed = new HashSet<>();
+    Set<String> fromLeader = new HashSet<>();
+    for (Map.Entry<String, String> file : fetched) {
+      if (file.getValue().equals(peer.getCoreName())) {
+        // the peer is not retried, the file is fetched from the leader right away
+        assertTrue("attempted twice from the peer: " + file.getKey(), failed.add(file.getKey()));
+        assertFalse(
+            "attempted from the peer after the leader: " + file.getKey(),
+            fromLeader.contains(file.getKey()));
+      } else {
+        assertEquals(leader.getCoreName(), file.getValue());
+        fromLeader.add(file.getKey());
+      }
+    }
+    assertFalse("no file attempted from the peer: " + fetched, failed.isEmpty());
+    assertTrue(fromLeader.containsAll(failed));
+    assertSameIndex(leader, recovered, numDocs);
+  }
+
+  private static Replica replicaOnNode(DocCollection state, JettySolrRunner node) {
+    for (Replica replica : state.getReplicas()) {
+      if (replica.getNodeName().equals(node.getNodeName())) {
+        return replica;
+      }
+    }
+    throw new AssertionError("No replica on " + node.getNodeName() + ": " + state);
+  }
+
+  private static void assertSameIndex(Replica expected, Replica actual, int numDocs)
+      throws Exception {
+    assertEquals(numDocs, numDocs(actual));
+    assertEquals(numDocs(expected), numDocs(actual));
+    assertEquals(indexVersion(expected), indexVersion(actual));
+  }
+
+  private static long numDocs(Replica replica) throws Exception {
+    try (SolrClient client = getHttpSolrClient(replica)) {
+      return client.query(new SolrQuery("q", "*:*", "distrib", "false")).getResults().getNumFound();
+    }
+  }
+
+  private static Object indexVersion(Replica replica) throws Exception {
+    try (SolrClient client = getHttpSolrClient(replica)) {
+      SolrQuery query = new SolrQuery();
+      query.set(CommonParams.QT, ReplicationHandler.PATH);
+      query.set(ReplicationHandler.COMMAND, ReplicationHandler.CMD_INDEX_VERSION);
+      NamedList<Object> response = client.query(query).getResponse();
+      return response.get(ReplicationHandler.CMD_INDEX_VERSION);
+    }
+  }
+}
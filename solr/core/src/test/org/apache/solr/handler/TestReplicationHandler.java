@@ -35,7 +35,10 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
@@ -66,7 +69,9 @@ import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.ExecutorUtil;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
 import org.apache.solr.common.util.TimeSource;
 import org.apache.solr.core.CachingDirectoryFactory;
 import org.apache.solr.core.CoreContainer;
@@ -879,6 +884,222 @@ public class TestReplicationHandler extends SolrTestCaseJ4 {
     checkForSingleIndex(followerJetty);
   }
 
+  @Test
+  public void doTestConcurrentIndexFetch() throws Exception {
+    // change solrconfig on follower
+    // this has no entry for pollinginterval
+    follower.setTestPort(leaderJetty.getLocalPort());
+    follower.copyConfigFile(CONF_DIR + "solrconfig-follower1.xml", "solrconfig.xml");
+    followerJetty.stop();
+    followerJetty = createAndStartJetty(follower);
+    followerClient.close();
+    followerClient =
+        ReplicationTestHelper.createNewSolrClient(
+            buildUrl(followerJetty.getLocalPort()), DEFAULT_TEST_CORENAME);
+
+    leaderClient.deleteByQuery("*:*");
+    // several segments, so that there are several files to download concurrently
+    for (int i = 0; i < nDocs; i++) {
+      index(leaderClient, "id", i, "name", TestUtil.randomSimpleString(random(), 1000, 2000));
+      if (i % 50 == 0) {
+        leaderClient.commit();
+      }
+    }
+    leaderClient.commit();
+    NamedList<Object> leaderQueryRsp = rQuery(nDocs, "*:*", leaderClient);
+    SolrDocumentList leaderQueryResult = (SolrDocumentList) leaderQueryRsp.get("response");
+    assertEquals(nDocs, leaderQueryResult.getNumFound());
+    long totalBytes = 0;
+    try (Directory dir = FSDirectory.open(Path.of(leader.getDataDir()).resolve("index"))) {
+      for (String file : dir.listAll()) {
+        totalBytes += dir.fileLength(file);
+      }
+    }
+
+    final double maxFetchMBPerSec = 0.5;
+    String fetchUrl =
+        buildUrl(followerJetty.getLocalPort())
+            + "/"
+            + DEFAULT_TEST_CORENAME
+            + ReplicationHandler.PATH
+            + "?wait=true&command=fetchindex&"
+            + ReplicationHandler.FETCH_THREADS
+            + "=4&"
+            + ReplicationHandler.MAX_FETCH_PER_SECOND
+            + "="
+            + maxFetchMBPerSec
+            + "&leaderUrl="
+            + buildUrl(leaderJetty.getLocalPort())
+            + "/"
+            + DEFAULT_TEST_CORENAME
+            + ReplicationHandler.PATH;
+    ExecutorService executor =
+        ExecutorUtil.newMDCAwareSingleThreadExecutor(
+            new SolrNamedThreadFactory("doTestConcurrentIndexFetch"));
+    try {
+      long startTime = System.nanoTime();
+      Future<?> fetch =
+          executor.submit(
+              () -> {
+                new URI(fetchUrl).toURL().openStream().close();
+                return null;
+              });
+      // the details list the files being downloaded
+      int maxFilesInProgress = 0;
+      while (!fetch.isDone()) {
+        // no follower section until the fetch starts
+        NamedList<Object> followerDetails = getFollowerDetails();
+        if (followerDetails != null
+            && followerDetails.get("filesInProgress") instanceof List<?> filesInProgress) {
+          maxFilesInProgress = Math.max(maxFilesInProgress, filesInProgress.size());
+        }
+        Thread.sleep(20);
+      }
+      fetch.get();
+      long timeTakenMs =
+          TimeUnit.MILLISECONDS.convert(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+
+      assertTrue("max files in progress: " + maxFilesInProgress, maxFilesInProgress > 1);
+      assertTrue("max files in progress: " + maxFilesInProgress, maxFilesInProgress <= 4);
+      // the downloads share the rate limit, with some slack for the files that are skipped
+      long minTimeMs = (long) (totalBytes / (maxFetchMBPerSec * 1024 * 1024) * 1000 / 2);
+      assertTrue(
+          "time taken: " + timeTakenMs + "ms, expected at least " + minTimeMs + "ms",
+          timeTakenMs >= minTimeMs);
+    } finally {
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+    }
+
+    NamedList<Object> followerQueryRsp = rQuery(nDocs, "*:*", followerClient);
+    SolrDocumentList followerQueryResult = (SolrDocumentList) followerQueryRsp.get("response");
+    assertEquals(nDocs, followerQueryResult.getNumFound());
+    String cmp =
+        BaseDistributedSearchTestCase.compare(leaderQueryResult, followerQueryResult, 0, null);
+    assertNull(cmp);
+    assertVersions(leaderClient, followerClient);
+  }
+
+  @Test
+  public void doTestIndexFetchResumesAfterFailedReconnect() throws Exception {
+    // change solrconfig on follower
+    // this has no entry for pollinginterval
+    follower.setTestPort(leaderJetty.getLocalPort());
+    follower.copyConfigFile(CONF_DIR + "solrconfig-follower1.xml", "solrconfig.xml");
+    followerJetty.stop();
+    followerJetty = createAndStartJetty(follower);
+    followerClient.close();
+    followerClient =
+        ReplicationTestHelper.createNewSolrClient(
+            buildUrl(followerJetty.getLocalPort()), DEFAULT_TEST_CORENAME);
+
+    leaderClient.deleteByQuery("*:*");
+    // large enough stored fields to be downloaded in several packets
+    final int totalDocs = 300;
+    for (int i = 0; i < totalDocs; i++) {
+      index(leaderClient, "id", i, "name", TestUtil.randomSimpleString(random(), 8000, 10000));
+    }
+    leaderClient.commit();
+    NamedList<Object> leaderQueryRsp = rQuery(totalDocs, "*:*", leaderClient);
+    SolrDocumentList leaderQueryResult = (SolrDocumentList) leaderQueryRsp.get("response");
+    assertEquals(totalDocs, leaderQueryResult.getNumFound());
+
+    // a download breaks in the middle of a file, then reconnecting fails twice, e.g. while the
+    // leader restarts. It must resume from where it broke rather than fail the whole fetch
+    AtomicInteger breaks = new AtomicInteger(1);
+    AtomicInteger reconnectFailures = new AtomicInteger(2);
+    TestInjection.breakIndexFetchStreams = breaks;
+    TestInjection.failIndexFetchReconnects = reconnectFailures;
+    try {
+      String fetchUrl =
+          buildUrl(followerJetty.getLocalPort())
+              + "/"
+              + DEFAULT_TEST_CORENAME
+              + ReplicationHandler.PATH
+              + "?wait=true&command=fetchindex&leaderUrl="
+              + buildUrl(leaderJetty.getLocalPort())
+              + "/"
+              + DEFAULT_TEST_CORENAME
+              + ReplicationHandler.PATH;
+      InputStream stream = new URI(fetchUrl).toURL().openStream();
+      stream.close();
+    } finally {
+      TestInjection.reset();
+    }
+    assertEquals(0, breaks.get());
+    assertEquals(0, reconnectFailures.get());
+
+    NamedList<Object> followerQueryRsp = rQuery(totalDocs, "*:*", followerClient);
+    SolrDocumentList followerQueryResult = (SolrDocumentList) followerQueryRsp.get("response");
+    assertEquals(totalDocs, followerQueryResult.getNumFound());
+    // this follower never failed a fetch
+    assertNull(getFollowerDetails(IndexFetcher.TIMES_FAILED));
+    assertVersions(leaderClient, followerClient);
+  }
+
+  @Test
+  public void doTestAbortIndexFetchDuringReconnects() throws Exception {
+    // change solrconfig on follower
+    // this has no entry for pollinginterval
+    follower.setTestPort(leaderJetty.getLocalPort());
+    follower.copyConfigFile(CONF_DIR + "solrconfig-follower1.xml", "solrconfig.xml");
+    followerJetty.stop();
+    followerJetty = createAndStartJetty(follower);
+    followerClient.close();
+    followerClient =
+        ReplicationTestHelper.createNewSolrClient(
+            buildUrl(followerJetty.getLocalPort()), DEFAULT_TEST_CORENAME);
+
+    leaderClient.deleteByQuery("*:*");
+    // large enough stored fields to be downloaded in several packets
+    final int totalDocs = 300;
+    for (int i = 0; i < totalDocs; i++) {
+      index(leaderClient, "id", i, "name", TestUtil.randomSimpleString(random(), 8000, 10000));
+    }
+    leaderClient.commit();
+
+    // a download breaks in the middle of a file, then the leader stays unreachable
+    final int maxReconnectFailures = 1000;
+    AtomicInteger reconnectFailures = new AtomicInteger(maxReconnectFailures);
+    TestInjection.breakIndexFetchStreams = new AtomicInteger(1);
+    TestInjection.failIndexFetchReconnects = reconnectFailures;
+    String followerUrl = buildUrl(followerJetty.getLocalPort()) + "/" + DEFAULT_TEST_CORENAME;
+    String fetchUrl =
+        followerUrl
+            + ReplicationHandler.PATH
+            + "?wait=true&command=fetchindex&leaderUrl="
+            + buildUrl(leaderJetty.getLocalPort())
+            + "/"
+            + DEFAULT_TEST_CORENAME
+            + ReplicationHandler.PATH;
+    ExecutorService executor =
+        ExecutorUtil.newMDCAwareSingleThreadExecutor(
+            new SolrNamedThreadFactory("doTestAbortIndexFetchDuringReconnects"));
+    try {
+      Future<?> fetch =
+          executor.submit(
+              () -> {
+                new URI(fetchUrl).toURL().openStream().close();
+                return null;
+              });
+      TimeOut timeOut = new TimeOut(30, TimeUnit.SECONDS, TimeSource.NANO_TIME);
+      timeOut.waitFor(
+          "no reconnect attempted", () -> reconnectFailures.get() < maxReconnectFailures);
+
+      invokeReplicationCommand(followerUrl, ReplicationHandler.CMD_ABORT_FETCH);
+      int failuresAtAbort = reconnectFailures.get();
+      fetch.get(30, TimeUnit.SECONDS);
+      // the fetch stops at the latest after the reconnect attempt in progress
+      assertTrue(
+          "reconnect attempts after the abort: " + (failuresAtAbort - reconnectFailures.get()),
+          failuresAtAbort - reconnectFailures.get() <= 1);
+    } finally {
+      TestInjection.reset();
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+    }
+    // nothing of the aborted fetch was installed
+    assertEquals(0, numFound(query("*:*", followerClient)));
+  }
+
   @Test
   public void doTestStressReplication() throws Exception {
     // change solrconfig on follower
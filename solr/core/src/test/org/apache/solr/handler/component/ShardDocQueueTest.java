@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.util.Map;
+import org.apache.lucene.search.SortField;
+import org.apache.solr.SolrTestCase;
+import org.junit.Test;
+
+public class ShardDocQueueTest extends SolrTestCase {
+
+  private static ShardDoc doc(String id, String shard, int orderInShard, float score) {
+    ShardDoc doc = new ShardDoc();
+    doc.id = id;
+    doc.shard = shard;
+    doc.orderInShard = orderInShard;
+    doc.score = score;
+    return doc;
+  }
+
+  private static QueryComponent.ShardDocQueue newQueue(int size) {
+    return new QueryComponent()
+        .newShardDocQueue(null, new SortField[] {SortField.FIELD_SCORE}, size);
+  }
+
+  @Test
+  public void testIsCompetitive() {
+    QueryComponent.ShardDocQueue queue = newQueue(2);
+    ShardDoc a1 = doc("a1", "shardA", 0, 3f);
+    assertTrue(queue.isCompetitive(a1));
+    assertTrue(queue.push(a1));
+    ShardDoc a2 = doc("a2", "shardA", 1, 2f);
+    assertTrue(queue.isCompetitive(a2));
+    assertTrue(queue.push(a2));
+
+    // the queue is full
+    assertFalse(queue.isCompetitive(doc("b1", "shardB", 0, 1f)));
+    ShardDoc c1 = doc("c1", "shardC", 0, 2.5f);
+    assertTrue(queue.isCompetitive(c1));
+    assertTrue(queue.push(c1));
+    assertFalse(queue.isCompetitive(doc("c2", "shardC", 1, 2f)));
+
+    Map<Object, ShardDoc> resultIds = queue.resultIds(0);
+    assertEquals(2, resultIds.size());
+    assertEquals(0, resultIds.get("a1").positionInResponse);
+    assertEquals(1, resultIds.get("c1").positionInResponse);
+  }
+
+  @Test
+  public void testNoRows() {
+    QueryComponent.ShardDocQueue queue = newQueue(0);
+    assertFalse(queue.isCompetitive(doc("a1", "shardA", 0, 3f)));
+  }
+}
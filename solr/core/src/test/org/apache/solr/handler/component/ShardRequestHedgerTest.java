@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.client.solrj.impl.LBSolrClient;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardRequestHedgerTest extends SolrTestCase {
+
+  private static final String REPLICA1 = "http://host1:8983/solr/c1_s1_r1";
+  private static final String REPLICA2 = "http://host2:8983/solr/c1_s1_r2";
+
+  private ShardRequestHedger hedger;
+  private ExecutorService executor;
+  private final LinkedBlockingQueue<LBSolrClient.Req> hedges = new LinkedBlockingQueue<>();
+  private final LinkedBlockingQueue<CompletableFuture<LBSolrClient.Rsp>> hedgeFutures =
+      new LinkedBlockingQueue<>();
+
+  @Before
+  public void createHedger() {
+    // every request earns a hedge
+    hedger = new ShardRequestHedger(true, 95, 1, 100);
+    executor = ExecutorUtil.newMDCAwareCachedThreadPool(new SolrNamedThreadFactory("hedgeSender"));
+  }
+
+  @After
+  public void closeHedger() {
+    hedger.close();
+    ExecutorUtil.shutdownAndAwaitTermination(executor);
+  }
+
+  private static LBSolrClient.Req newReq(String... urls) {
+    return new LBSolrClient.Req(
+        new QueryRequest(new ModifiableSolrParams()),
+        List.of(urls).stream().map(LBSolrClient.Endpoint::new).toList());
+  }
+
+  private CompletableFuture<LBSolrClient.Rsp> send(LBSolrClient.Req req) {
+    CompletableFuture<LBSolrClient.Rsp> future = new CompletableFuture<>();
+    hedges.add(req);
+    hedgeFutures.add(future);
+    return future;
+  }
+
+  private CompletableFuture<LBSolrClient.Rsp> hedge(CompletableFuture<LBSolrClient.Rsp> primary) {
+    return hedger.hedge(
+        primary, newReq(REPLICA1, REPLICA2), System.nanoTime(), this::send, executor);
+  }
+
+  /** The hedge may get canceled by the thread sending it, after the test got hold of it */
+  private static void assertCanceled(CompletableFuture<LBSolrClient.Rsp> hedge) {
+    expectThrows(CancellationException.class, () -> hedge.get(10, TimeUnit.SECONDS));
+  }
+
+  private void warmUp() {
+    for (int i = 0;
+        i < ShardRequestHedger.MIN_SAMPLES + ShardRequestHedger.RECOMPUTE_INTERVAL;
+        i++) {
+      hedger.recordLatency(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1), hedger.getDelayNs());
+  }
+
+  @Test
+  public void testNoHedgeWithoutEnoughSamples() throws Exception {
+    for (int i = 0; i < ShardRequestHedger.MIN_SAMPLES - 1; i++) {
+      hedger.recordLatency(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    assertEquals(-1, hedger.getDelayNs());
+    CompletableFuture<LBSolrClient.Rsp> primary = new CompletableFuture<>();
+    assertSame(primary, hedge(primary));
+
+    // nor with a single replica
+    warmUp();
+    CompletableFuture<LBSolrClient.Rsp> single = new CompletableFuture<>();
+    assertSame(
+        single, hedger.hedge(single, newReq(REPLICA1), System.nanoTime(), this::send, executor));
+  }
+
+  @Test
+  public void testDelayFromPercentile() {
+    for (int i = 1;
+        i <= ShardRequestHedger.MIN_SAMPLES + ShardRequestHedger.RECOMPUTE_INTERVAL;
+        i++) {
+      hedger.recordLatency(TimeUnit.MILLISECONDS.toNanos(i % 100 + 1));
+    }
+    long delayMs = TimeUnit.NANOSECONDS.toMillis(hedger.getDelayNs());
+    assertTrue("delay: " + delayMs, delayMs >= 90 && delayMs <= 100);
+  }
+
+  @Test
+  public void testHedgeWins() throws Exception {
+    warmUp();
+    CompletableFuture<LBSolrClient.Rsp> primary = new CompletableFuture<>();
+    CompletableFuture<LBSolrClient.Rsp> result = hedge(primary);
+
+    LBSolrClient.Req hedge = hedges.poll(10, TimeUnit.SECONDS);
+    assertNotNull("request not hedged", hedge);
+    assertEquals(REPLICA2, hedge.getEndpoints().get(0).toString());
+    assertEquals(REPLICA1, hedge.getEndpoints().get(1).toString());
+
+    LBSolrClient.Rsp rsp = new LBSolrClient.Rsp();
+    hedgeFutures.take().complete(rsp);
+    assertSame(rsp, result.get(10, TimeUnit.SECONDS));
+    assertTrue("primary not canceled", primary.isCancelled());
+  }
+
+  @Test
+  public void testPrimaryWins() throws Exception {
+    warmUp();
+    CompletableFuture<LBSolrClient.Rsp> primary = new CompletableFuture<>();
+    CompletableFuture<LBSolrClient.Rsp> result = hedge(primary);
+    assertNotNull("request not hedged", hedges.poll(10, TimeUnit.SECONDS));
+
+    LBSolrClient.Rsp rsp = new LBSolrClient.Rsp();
+    primary.complete(rsp);
+    assertSame(rsp, result.get(10, TimeUnit.SECONDS));
+    assertCanceled(hedgeFutures.take());
+  }
+
+  @Test
+  public void testFailsOnlyWhenBothFail() throws Exception {
+    warmUp();
+    CompletableFuture<LBSolrClient.Rsp> primary = new CompletableFuture<>();
+    CompletableFuture<LBSolrClient.Rsp> result = hedge(primary);
+    assertNotNull("request not hedged", hedges.poll(10, TimeUnit.SECONDS));
+
+    RuntimeException primaryError = new RuntimeException("primary");
+    primary.completeExceptionally(primaryError);
+    assertFalse(result.isDone());
+    hedgeFutures.take().completeExceptionally(new RuntimeException("hedge"));
+    ExecutionException e =
+        expectThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+    assertSame(primaryError, e.getCause());
+  }
+
+  @Test
+  public void testBudgetLimitsHedges() throws Exception {
+    hedger.close();
+    // one in 50 requests may be hedged
+    hedger = new ShardRequestHedger(true, 95, 1, 2);
+    warmUp();
+    int numHedged = 0;
+    for (int i = 0; i < 100; i++) {
+      CompletableFuture<LBSolrClient.Rsp> primary = new CompletableFuture<>();
+      CompletableFuture<LBSolrClient.Rsp> result = hedge(primary);
+      // give the hedge time to be sent, then answer
+      if (hedges.poll(20, TimeUnit.MILLISECONDS) != null) {
+        numHedged++;
+      }
+      primary.complete(new LBSolrClient.Rsp());
+      result.get(10, TimeUnit.SECONDS);
+    }
+    assertTrue("hedged: " + numHedged, numHedged >= 1 && numHedged <= 2);
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    warmUp();
+    CompletableFuture<LBSolrClient.Rsp> primary = new CompletableFuture<>();
+    CompletableFuture<LBSolrClient.Rsp> result = hedge(primary);
+    assertNotNull("request not hedged", hedges.poll(10, TimeUnit.SECONDS));
+    result.cancel(true);
+    assertTrue(primary.isCancelled());
+    assertCanceled(hedgeFutures.take());
+  }
+
+  @Test
+  public void testBlockedSendDoesNotDelayOtherHedges() throws Exception {
+    warmUp();
+    CountDownLatch unblock = new CountDownLatch(1);
+    CompletableFuture<LBSolrClient.Rsp> blockedPrimary = new CompletableFuture<>();
+    CompletableFuture<LBSolrClient.Rsp> blocked =
+        hedger.hedge(
+            blockedPrimary,
+            newReq(REPLICA1, REPLICA2),
+            System.nanoTime(),
+            req -> {
+              hedges.add(req);
+              try {
+                // e.g. waiting for a connection
+                unblock.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              return new CompletableFuture<>();
+            },
+            executor);
+    try {
+      assertNotNull("request not hedged", hedges.poll(10, TimeUnit.SECONDS));
+
+      CompletableFuture<LBSolrClient.Rsp> primary = new CompletableFuture<>();
+      CompletableFuture<LBSolrClient.Rsp> result = hedge(primary);
+      assertNotNull("hedge delayed by a blocked one", hedges.poll(10, TimeUnit.SECONDS));
+      LBSolrClient.Rsp rsp = new LBSolrClient.Rsp();
+      hedgeFutures.take().complete(rsp);
+      assertSame(rsp, result.get(10, TimeUnit.SECONDS));
+    } finally {
+      unblock.countDown();
+      blocked.cancel(true);
+    }
+  }
+}
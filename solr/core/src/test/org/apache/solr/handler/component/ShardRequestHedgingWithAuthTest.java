@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import io.prometheus.metrics.model.snapshots.CounterSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricSnapshot;
+import java.util.function.Predicate;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.cloud.MiniSolrCloudCluster;
+import org.apache.solr.cloud.SolrCloudTestCase;
+import org.apache.solr.embedded.JettySolrRunner;
+import org.apache.solr.util.SecurityJson;
+import org.apache.solr.util.SolrMetricTestUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests that hedged shard requests are authenticated like the requests they duplicate. */
+public class ShardRequestHedgingWithAuthTest extends SolrCloudTestCase {
+
+  private static final String COLLECTION = "hedged";
+  private static final int NUM_DOCS = 10;
+
+  @BeforeClass
+  public static void setupCluster() throws Exception {
+    // nearly every shard request is hedged once the hedgers have enough latencies
+    String solrXml =
+        MiniSolrCloudCluster.DEFAULT_CLOUD_SOLR_XML
+            .replace("${metricsEnabled:false}", "true")
+            .replace(
+                "<int name=\"connTimeout\">${connTimeout:15000}</int>",
+                "<int name=\"connTimeout\">${connTimeout:15000}</int>\n"
+                    + "    <bool name=\"hedgeRequests\">true</bool>\n"
+                    + "    <double name=\"hedgePercentile\">1</double>\n"
+                    + "    <int name=\"hedgeMinDelayMs\">0</int>\n"
+                    + "    <double name=\"hedgeMaxExtraLoadPercent\">100</double>");
+    configureCluster(2)
+        .addConfig("conf", configset("cloud-minimal"))
+        .withSolrXml(solrXml)
+        .withSecurityJson(SecurityJson.SIMPLE)
+        .configure();
+
+    // each node has a replica of both shards, which it may hedge to
+    CollectionAdminRequest.createCollection(COLLECTION, "conf", 2, 2)
+        .setBasicAuthCredentials(SecurityJson.USER, SecurityJson.PASS)
+        .process(cluster.getSolrClient());
+    cluster.waitForActiveCollection(COLLECTION, 2, 4);
+
+    UpdateRequest req = new UpdateRequest();
+    for (int i = 0; i < NUM_DOCS; i++) {
+      req.add("id", Integer.toString(i));
+    }
+    req.setBasicAuthCredentials(SecurityJson.USER, SecurityJson.PASS);
+    req.commit(cluster.getSolrClient(), COLLECTION);
+  }
+
+  @Test
+  public void testHedgesAreAuthenticated() throws Exception {
+    long missingCredentials =
+        sumNodeCounters("solr_authentication_failures", "missing_credentials");
+    // enough shard requests for the hedgers to compute a delay, then to hedge
+    for (int i = 0; i < 3 * ShardRequestHedger.MIN_SAMPLES; i++) {
+      QueryRequest req = new QueryRequest(params("q", "*:*"));
+      req.setBasicAuthCredentials(SecurityJson.USER, SecurityJson.PASS);
+      assertEquals(
+          NUM_DOCS, req.process(cluster.getSolrClient(), COLLECTION).getResults().getNumFound());
+    }
+
+    assertTrue("no request hedged", sumNodeCounters("solr_client_request_hedges", null) > 0);
+    // a hedge sent without the PKI header of the request is rejected by the receiving node
+    assertEquals(
+        missingCredentials, sumNodeCounters("solr_authentication_failures", "missing_credentials"));
+  }
+
+  /** Sums the values of a counter of all the nodes, only of the given type if not null */
+  private static long sumNodeCounters(String name, String type) {
+    Predicate<CounterSnapshot.CounterDataPointSnapshot> filter =
+        dp -> type == null || type.equals(dp.getLabels().get("type"));
+    long sum = 0;
+    for (JettySolrRunner jetty : cluster.getJettySolrRunners()) {
+      for (MetricSnapshot metric :
+          SolrMetricTestUtils.getPrometheusMetricReader(jetty.getCoreContainer(), "solr.node")
+              .collect()) {
+        if (metric instanceof CounterSnapshot counter
+            && counter.getMetadata().getPrometheusName().equals(name)) {
+          sum +=
+              (long)
+                  counter.getDataPoints().stream()
+                      .filter(filter)
+                      .mapToDouble(CounterSnapshot.CounterDataPointSnapshot::getValue)
+                      .sum();
+        }
+      }
+    }
+    return sum;
+  }
+}
@@ -17,7 +17,10 @@
 package org.apache.solr.handler.export;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -28,15 +31,32 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.tests.util.TestUtil;
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.client.solrj.io.stream.ColumnarTupleBatch;
+import org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser;
+import org.apache.solr.client.solrj.io.stream.JavabinTupleStreamParser;
+import org.apache.solr.client.solrj.io.stream.TupleStreamParser;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.MapSolrParams;
+import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.params.StreamParams;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
 import org.apache.solr.common.util.SuppressForbidden;
 import org.apache.solr.common.util.Utils;
 import org.apache.solr.index.LogDocMergePolicyFactory;
 import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.SolrIndexSearcher;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -1296,6 +1316,169 @@ public class TestExportWriter extends SolrTestCaseJ4 {
         doc.get(StreamParams.EXCEPTION).toString().contains("includeStoredFields=true"));
   }
 
+  @Test
+  public void testColumnar() throws Exception {
+    assertU(delQ("*:*"));
+    assertU(commit());
+    int numDocs = ColumnarTupleBatch.DEFAULT_MAX_ROWS * 2 + random().nextInt(100);
+    for (int i = 0; i < numDocs; i++) {
+      SolrInputDocument doc = new SolrInputDocument();
+      doc.addField("id", String.valueOf(i));
+      // leave out some values, more often in some docs so that whole batches may lack a field
+      int missing = i % 3 == 0 ? 2 : 20;
+      if (random().nextInt(missing) != 0) doc.addField("intdv", random().nextInt());
+      if (random().nextInt(missing) != 0) doc.addField("longdv", random().nextLong());
+      if (random().nextInt(missing) != 0) doc.addField("floatdv", random().nextFloat());
+      if (random().nextInt(missing) != 0) doc.addField("doubledv", random().nextDouble());
+      if (random().nextInt(missing) != 0) doc.addField("datedv", new Date(random().nextInt()));
+      if (random().nextInt(missing) != 0) doc.addField("stringdv", "s" + random().nextInt(10));
+      if (random().nextInt(missing) != 0) doc.addField("booleandv", random().nextBoolean());
+      for (int j = random().nextInt(3); j > 0; j--) {
+        doc.addField("intdv_m", random().nextInt());
+        doc.addField("stringdv_m", TestUtil.randomSimpleString(random()));
+      }
+      assertU(adoc(doc));
+      if (random().nextInt(500) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    String fl = "id,intdv,longdv,floatdv,doubledv,datedv,stringdv,booleandv,intdv_m,stringdv_m";
+    for (boolean onlyJsonTypes : new boolean[] {true, false}) {
+      List<Map<String, Object>> expected =
+          exportTuples(
+              CommonParams.JAVABIN, onlyJsonTypes, "q", "*:*", "fl", fl, "sort", "stringdv asc");
+      assertEquals(numDocs, expected.size());
+      assertEquals(
+          expected,
+          exportTuples(
+              ColumnarTupleBatch.WT, onlyJsonTypes, "q", "*:*", "fl", fl, "sort", "stringdv asc"));
+    }
+
+    String expr = "rollup(input(),over=\"stringdv\",sum(intdv),max(floatdv),count(*))";
+    List<Map<String, Object>> expected =
+        exportTuples(
+            CommonParams.JAVABIN,
+            true,
+            "q",
+            "*:*",
+            "fl",
+            "stringdv,intdv,floatdv",
+            "sort",
+            "stringdv asc",
+            "expr",
+            expr);
+    assertFalse(expected.isEmpty());
+    assertEquals(
+        expected,
+        exportTuples(
+            ColumnarTupleBatch.WT,
+            true,
+            "q",
+            "*:*",
+            "fl",
+            "stringdv,intdv,floatdv",
+            "sort",
+            "stringdv asc",
+            "expr",
+            expr));
+
+    // errors are written as tuples
+    List<Map<String, Object>> error =
+        exportTuples(ColumnarTupleBatch.WT, true, "q", "*:*", "fl", fl, "sort", "score desc");
+    assertEquals(1, error.size());
+    assertTrue(error.get(0).containsKey(StreamParams.EXCEPTION));
+  }
+
+  private List<Map<String, Object>> exportTuples(String wt, boolean onlyJsonTypes, String... params)
+      throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    SolrQueryRequest req = req(params);
+    req.setParams(
+        SolrParams.wrapDefaults(new MapSolrParams(Map.of(CommonParams.WT, wt)), req.getParams()));
+    try {
+      SolrQueryResponse rsp = new SolrQueryResponse();
+      SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+      h.getCore().execute(h.getCore().getRequestHandler("/export"), req, rsp);
+      req.getResponseWriter().write(out, req, rsp);
+    } finally {
+      req.close();
+      SolrRequestInfo.clearRequestInfo();
+    }
+    List<Map<String, Object>> tuples = new ArrayList<>();
+    InputStream in = new ByteArrayInputStream(out.toByteArray());
+    try (TupleStreamParser parser =
+        ColumnarTupleBatch.WT.equals(wt)
+            ? new ColumnarTupleStreamParser(in, onlyJsonTypes)
+            : new JavabinTupleStreamParser(in, onlyJsonTypes)) {
+      for (Map<String, Object> tuple = parser.next(); tuple != null; tuple = parser.next()) {
+        tuples.add(tuple);
+      }
+    }
+    return tuples;
+  }
+
+  @Test
+  public void testMergeIteratorWithExecutor() throws Exception {
+    assertU(delQ("*:*"));
+    assertU(commit());
+    int numDocs = 1000;
+    for (int i = 0; i < numDocs; i++) {
+      assertU(
+          adoc(
+              "id", String.valueOf(i),
+              "intdv", String.valueOf(random().nextInt(100)),
+              "stringdv", "s" + random().nextInt(100)));
+      if (random().nextInt(200) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    ExecutorService executor =
+        ExecutorUtil.newMDCAwareFixedThreadPool(4, new SolrNamedThreadFactory("testExport"));
+    // small segment queues, so that each segment is sorted in several passes
+    try (SolrQueryRequest req = req("q", "*:*", "queueSize", "50")) {
+      ExportWriter exportWriter =
+          new ExportWriter(req, new SolrQueryResponse(), "json", null, null, null);
+      exportWriter.totalHits = numDocs;
+      SolrIndexSearcher searcher = req.getSearcher();
+      SortDoc sortDoc =
+          exportWriter.getSortDoc(
+              searcher,
+              new SortField[] {
+                new SortField("stringdv", SortField.Type.STRING),
+                new SortField("intdv", SortField.Type.INT, true)
+              });
+      List<String> expected = mergedDocs(exportWriter, searcher, sortDoc, null);
+      assertEquals(numDocs, expected.size());
+      assertEquals(expected, mergedDocs(exportWriter, searcher, sortDoc, executor));
+    } finally {
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+    }
+  }
+
+  private static List<String> mergedDocs(
+      ExportWriter exportWriter, SolrIndexSearcher searcher, SortDoc sortDoc, Executor executor)
+      throws IOException {
+    List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
+    FixedBitSet[] sets = new FixedBitSet[leaves.size()];
+    for (int i = 0; i < sets.length; i++) {
+      int maxDoc = leaves.get(i).reader().maxDoc();
+      sets[i] = new FixedBitSet(maxDoc);
+      sets[i].set(0, maxDoc);
+    }
+    ExportWriter.MergeIterator mergeIterator =
+        exportWriter.getMergeIterator(leaves, sets, sortDoc, executor);
+    List<String> docs = new ArrayList<>();
+    for (SortDoc doc = mergeIterator.next(); doc != null; doc = mergeIterator.next()) {
+      docs.add(doc.ord + ":" + doc.docId);
+    }
+    mergeIterator.close();
+    return docs;
+  }
+
   @Test
   public void testGlobFields() throws Exception {
     assertU(delQ("*:*"));
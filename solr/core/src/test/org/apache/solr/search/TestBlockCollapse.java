@@ -73,7 +73,8 @@ public class TestBlockCollapse extends SolrTestCaseJ4 {
                 " nullPolicy=expand",
                 " nullPolicy=collapse",
                 // when policy is 'collapse' hint should be ignored...
-                " nullPolicy=collapse hint=block")) {
+                " nullPolicy=collapse hint=block",
+                " nullPolicy=collapse hint=segment")) {
           assertThat(
               parseAndBuildCollector("{!collapse field=foo_s1" + np + "}", req),
               instanceOf(CollapsingQParserPlugin.OrdScoreCollector.class));
@@ -127,6 +128,19 @@ public class TestBlockCollapse extends SolrTestCaseJ4 {
           assertThat(
               parseAndBuildCollector("{!collapse field=foo_i hint=block" + np + "}", req),
               instanceOf(CollapsingQParserPlugin.BlockIntScoreCollector.class));
+          assertThat(
+              parseAndBuildCollector("{!collapse field=foo_s1 hint=segment" + np + "}", req),
+              instanceOf(CollapsingQParserPlugin.SegmentOrdScoreCollector.class));
+          // segment collapse is only used for ords with score based group head selection
+          assertThat(
+              parseAndBuildCollector("{!collapse field=foo_i hint=segment" + np + "}", req),
+              instanceOf(CollapsingQParserPlugin.IntScoreCollector.class));
+          for (String selector : fieldValueSelectors) {
+            assertThat(
+                parseAndBuildCollector(
+                    "{!collapse field=foo_s1 hint=segment " + selector + np + "}", req),
+                instanceOf(CollapsingQParserPlugin.OrdFieldValueCollector.class));
+          }
           for (String selector : fieldValueSelectors) {
             assertThat(
                 parseAndBuildCollector(
@@ -245,6 +259,8 @@ public class TestBlockCollapse extends SolrTestCaseJ4 {
             // block collapse used explicitly (ord)
             "field=_root_ hint=block",
             "field=block_s1 hint=block",
+            // segment collapse used explicitly (ord, score only)
+            "field=block_s1 hint=segment",
             // block collapse used explicitly (int)
             "field=block_i  hint=block")) {
       for (String nullPolicy :
@@ -313,6 +329,8 @@ public class TestBlockCollapse extends SolrTestCaseJ4 {
             // block collapse used explicitly (ord)
             "field=_root_ hint=block",
             "field=block_s1 hint=block",
+            // segment collapse used explicitly (ord, score only)
+            "field=block_s1 hint=segment",
             // block collapse used explicitly (int)
             "field=block_i  hint=block")) {
 
@@ -635,6 +653,8 @@ public class TestBlockCollapse extends SolrTestCaseJ4 {
             "field=block_i",
             // block collapse used explicitly (ord)
             "field=block_s1 hint=block",
+            // segment collapse used explicitly (ord, score only)
+            "field=block_s1 hint=segment",
             // block collapse used explicitly (int)
             "field=block_i  hint=block")) {
 
@@ -987,7 +1007,10 @@ public class TestBlockCollapse extends SolrTestCaseJ4 {
             "field=block_i  hint=block",
 
             // block collapse used explicitly (ord)
-            "field=block_s1 hint=block")) {
+            "field=block_s1 hint=block",
+
+            // segment collapse used explicitly (ord, score only)
+            "field=block_s1 hint=segment")) {
 
       // these permutations should all give the same results, since the queries don't match any docs
       // in 'null' groups
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import static org.apache.solr.common.util.Utils.fromJSONString;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.index.NoMergePolicyFactory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that collapsing and expanding groups which never span segments concurrently, one slice of
+ * the index at a time, gives the same results as collapsing serially
+ */
+public class TestCollapseMultiThreaded extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    // we want enough segments for several slices
+    systemSetPropertySolrTestsMergePolicyFactory(NoMergePolicyFactory.class.getName());
+    initCore("solrconfig-collapseqparser.xml", "schema11.xml");
+
+    int id = 0;
+    int group = 0;
+    final int numSegments = atLeast(12);
+    for (int seg = 0; seg < numSegments; seg++) {
+      // all the docs of a group are in the same segment, next to each other
+      final int numGroups = atLeast(3);
+      for (int g = 0; g < numGroups; g++, group++) {
+        final int numDocs = random().nextInt(5) + 1;
+        for (int i = 0; i < numDocs; i++) {
+          assertU(
+              adoc(
+                  "id", Integer.toString(id++),
+                  "group_s", "g" + group,
+                  "group_i", Integer.toString(group),
+                  "term_s", random().nextBoolean() ? "YYYY" : "NNNN",
+                  "num_i", Integer.toString(random().nextInt(1000))));
+        }
+      }
+      // and some docs without a group
+      if (random().nextBoolean()) {
+        assertU(
+            adoc("id", Integer.toString(id++), "num_i", Integer.toString(random().nextInt(1000))));
+      }
+      assertU(commit());
+    }
+  }
+
+  @Test
+  public void testSameAsSerial() throws Exception {
+    final String[] collapses = {
+      "{!collapse field=group_s hint=segment}",
+      "{!collapse field=group_s hint=segment nullPolicy=expand}",
+      "{!collapse field=group_s hint=block}",
+      "{!collapse field=group_i hint=block nullPolicy=expand}",
+      "{!collapse field=group_s hint=block max=num_i}",
+      // not segment local, always collected serially
+      "{!collapse field=group_s}",
+    };
+    for (String collapse : collapses) {
+      // not cached, so that both searches run
+      for (String q :
+          new String[] {
+            "{!lucene cache=false}*:*",
+            "{!func cache=false}num_i",
+            "{!lucene cache=false}term_s:YYYY"
+          }) {
+        for (String expand : new String[] {"false", "true"}) {
+          final ModifiableSolrParams params =
+              params(
+                  "q", q,
+                  "fq", collapse,
+                  "fl", "id,score",
+                  "sort", "score desc, id asc",
+                  "rows", "20",
+                  "expand", expand,
+                  "expand.rows", "3",
+                  "omitHeader", "true");
+          // compared as maps, since the order of the expanded groups isn't deterministic
+          assertEquals(
+              collapse + " " + q,
+              fromJSONString(h.query(req(params))),
+              fromJSONString(h.query(req(params, "multiThreaded", "true"))));
+
+          // with an elevated doc, and a post filter that is segment local too
+          params.add(
+              params(
+                  "qt", "/elevate",
+                  "elevateIds", "3",
+                  "fq", "{!frange l=100 cost=200}num_i",
+                  "expand.field", collapse.contains("group_i") ? "group_i" : "group_s"));
+          assertEquals(
+              collapse + " " + q,
+              fromJSONString(h.query(req(params))),
+              fromJSONString(h.query(req(params, "multiThreaded", "true"))));
+        }
+      }
+    }
+  }
+}
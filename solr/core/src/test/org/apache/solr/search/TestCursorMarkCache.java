@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import static org.apache.solr.common.params.CursorMarkParams.CURSOR_MARK_NEXT;
+import static org.apache.solr.common.params.CursorMarkParams.CURSOR_MARK_PARAM;
+import static org.apache.solr.common.params.CursorMarkParams.CURSOR_MARK_START;
+import static org.apache.solr.common.params.SolrParams.wrapDefaults;
+import static org.apache.solr.common.util.Utils.fromJSONString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.solr.CursorPagingTest;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.util.SolrMetricTestUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests paging with a {@link CursorMark} served from the cursorMarkCache */
+public class TestCursorMarkCache extends SolrTestCaseJ4 {
+  private static final String CURSOR_MARK_CACHE = "cursorMarkCache";
+  private static final int NUM_DOCS = 25;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    System.setProperty(
+        "solr.test.useFilterForSortedQuery", Boolean.toString(random().nextBoolean()));
+    System.setProperty("solr.test.cursorMarkCache", "true");
+    // with rows=3, windows of 9 docs
+    System.setProperty("solr.test.cursorMarkWindowSize", "10");
+    initCore(CursorPagingTest.TEST_SOLRCONFIG_NAME, CursorPagingTest.TEST_SCHEMAXML_NAME);
+  }
+
+  @AfterClass
+  public static void afterTests() {
+    System.clearProperty("solr.test.cursorMarkCache");
+    System.clearProperty("solr.test.cursorMarkWindowSize");
+  }
+
+  private static void indexDocs(int from, int to) {
+    for (int i = from; i < to; i++) {
+      // few distinct values, so the uniqueKey breaks the ties
+      assertU(adoc("id", Integer.toString(i), "int", Integer.toString(i % 4)));
+    }
+    assertU(commit());
+  }
+
+  private static double inserts() {
+    return SolrMetricTestUtils.getCacheSearcherOpsInserts(h.getCore(), CURSOR_MARK_CACHE)
+        .getValue();
+  }
+
+  private static double hits() {
+    return SolrMetricTestUtils.getCacheSearcherOpsHits(h.getCore(), CURSOR_MARK_CACHE).getValue();
+  }
+
+  /** Returns the ids of the docs on the page, and the next cursor mark as the last element */
+  private static List<String> page(SolrParams params, String cursorMark) throws Exception {
+    String json = JQ(req(params, CURSOR_MARK_PARAM, cursorMark));
+    Map<?, ?> rsp = (Map<?, ?>) fromJSONString(json);
+    List<String> ids = new ArrayList<>();
+    for (Object doc : (List<?>) ((Map<?, ?>) rsp.get("response")).get("docs")) {
+      ids.add(((Map<?, ?>) doc).get("id").toString());
+    }
+    ids.add((String) rsp.get(CURSOR_MARK_NEXT));
+    return ids;
+  }
+
+  /** Returns the ids of all the docs, walking the pages from the cursor mark */
+  private static List<String> walk(SolrParams params, String cursorMark) throws Exception {
+    List<String> ids = new ArrayList<>();
+    while (true) {
+      List<String> page = page(params, cursorMark);
+      String next = page.remove(page.size() - 1);
+      if (page.isEmpty()) {
+        assertEquals(cursorMark, next);
+        return ids;
+      }
+      ids.addAll(page);
+      cursorMark = next;
+    }
+  }
+
+  /** Returns the ids of all the docs, in a single page without a cursor */
+  private static List<String> allIds(SolrParams params) throws Exception {
+    String json = JQ(req(params, "rows", "1000"));
+    List<String> ids = new ArrayList<>();
+    for (Object doc :
+        (List<?>) ((Map<?, ?>) ((Map<?, ?>) fromJSONString(json)).get("response")).get("docs")) {
+      ids.add(((Map<?, ?>) doc).get("id").toString());
+    }
+    return ids;
+  }
+
+  @Test
+  public void testPaging() throws Exception {
+    indexDocs(0, NUM_DOCS);
+    for (SolrParams params :
+        List.of(
+            params("q", "*:*", "fl", "id", "sort", "int asc, id asc"),
+            params("q", "{!func}int", "fl", "id,score", "sort", "score desc, id desc"))) {
+      double insertsBefore = inserts();
+      double hitsBefore = hits();
+      List<String> ids = walk(wrapDefaults(params("rows", "3"), params), CURSOR_MARK_START);
+      assertEquals(allIds(params), ids);
+      // 9 pages of docs and an empty one, from 3 executions for windows of 9 docs; every
+      // lookup but the first finds a window, though not always one with the next page
+      assertEquals(9, hits() - hitsBefore, 0.0);
+      assertEquals(3, inserts() - insertsBefore, 0.0);
+    }
+
+    SolrParams params = params("q", "*:*", "fl", "id", "sort", "int desc, id asc");
+    double insertsBefore = inserts();
+    double hitsBefore = hits();
+    assertEquals(
+        allIds(params), walk(wrapDefaults(params("rows", "11"), params), CURSOR_MARK_START));
+    // each window is a single page, but the empty one following the last page is cached
+    assertEquals(3, hits() - hitsBefore, 0.0);
+    assertEquals(3, inserts() - insertsBefore, 0.0);
+
+    // last, since the metrics of the new searcher aren't checked
+    params = params("q", "*:*", "fl", "id", "sort", "id asc", "rows", "3");
+    List<String> first = page(params, CURSOR_MARK_START);
+    List<String> second = page(params, first.get(first.size() - 1));
+    assertEquals(List.of("0", "1", "10"), first.subList(0, 3));
+    assertEquals(List.of("11", "12", "13"), second.subList(0, 3));
+
+    // the windows of the old searcher aren't used, so the new docs show up
+    indexDocs(NUM_DOCS, NUM_DOCS + 5);
+    List<String> third = page(params, second.get(second.size() - 1));
+    assertEquals(List.of("14", "15", "16"), third.subList(0, 3));
+    List<String> rest = walk(params, third.get(third.size() - 1));
+    assertEquals(NUM_DOCS + 5 - 9, rest.size());
+    assertTrue(rest.toString(), rest.containsAll(List.of("25", "26", "27", "28", "29")));
+  }
+}
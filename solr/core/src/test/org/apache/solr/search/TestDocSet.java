@@ -107,6 +107,14 @@ public class TestDocSet extends SolrTestCase {
     return new BitDocSet(bs);
   }
 
+  public DocSet getRoaringDocSet(FixedBitSet bs) {
+    if (rand.nextBoolean()) {
+      return RoaringDocSet.fromBitSet(bs);
+    }
+    int[] docs = ((SortedIntDocSet) getIntDocSet(bs)).getDocs();
+    return RoaringDocSet.fromSortedDocs(docs, docs.length, bs.length());
+  }
+
   public DocSlice getDocSlice(FixedBitSet bs) {
     int len = bs.cardinality();
     int[] arr = new int[len + 5];
@@ -128,7 +136,7 @@ public class TestDocSet extends SolrTestCase {
   }
 
   public DocSet getDocSet(FixedBitSet bs) {
-    switch (rand.nextInt(9)) {
+    switch (rand.nextInt(11)) {
       case 0:
       case 1:
       case 2:
@@ -145,6 +153,9 @@ public class TestDocSet extends SolrTestCase {
         return getIntDocSet(bs);
       case 8:
         return getIntDocSet(bs);
+      case 9:
+      case 10:
+        return getRoaringDocSet(bs);
     }
     return null;
   }
@@ -224,6 +235,92 @@ public class TestDocSet extends SolrTestCase {
     // doMany(130, 1000000);
   }
 
+  /** Random sets where ranges of docs are set, producing run containers in RoaringDocSet. */
+  public FixedBitSet getRandomRangesSet(int sz, int ranges) {
+    FixedBitSet bs = new FixedBitSet(sz);
+    for (int i = 0; i < ranges; i++) {
+      int start = rand.nextInt(sz);
+      int end = Math.min(sz, start + 1 + rand.nextInt(3 * RoaringDocSet.BLOCK_SIZE / ranges + 1));
+      bs.set(start, end);
+    }
+    return bs;
+  }
+
+  public void testRoaringDocSets() {
+    // span several blocks, with a mix of sparse, dense and run based blocks
+    for (int i = 0; i < 100; i++) {
+      int sz = rand.nextInt(4 * RoaringDocSet.BLOCK_SIZE) + 1;
+      FixedBitSet bs1 = randomRoaringSet(sz);
+      FixedBitSet bs2 = randomRoaringSet(sz);
+
+      DocSet r1 = getRoaringDocSet(bs1);
+      DocSet r2 = getRoaringDocSet(bs2);
+      checkEqual(bs1, r1);
+      checkEqual(bs2, r2);
+      iter(new BitDocSet(bs1), r1);
+
+      for (DocSet other : new DocSet[] {r2, new BitDocSet(bs2), getIntDocSet(bs2)}) {
+        FixedBitSet a_and = bs1.clone();
+        a_and.and(bs2);
+        FixedBitSet a_or = bs1.clone();
+        a_or.or(bs2);
+        FixedBitSet a_andn = bs1.clone();
+        a_andn.andNot(bs2);
+
+        checkEqual(a_and, r1.intersection(other));
+        checkEqual(a_and, other.intersection(r1));
+        checkEqual(a_or, r1.union(other));
+        checkEqual(a_andn, r1.andNot(other));
+        checkEqual(a_andn, new BitDocSet(bs1).andNot(r2));
+
+        assertEquals(a_and.cardinality(), r1.intersectionSize(other));
+        assertEquals(a_and.cardinality(), other.intersectionSize(r1));
+        assertEquals(a_and.cardinality() > 0, r1.intersects(other));
+        assertEquals(a_or.cardinality(), r1.unionSize(other));
+        assertEquals(a_andn.cardinality(), r1.andNotSize(other));
+      }
+
+      FixedBitSet target = new FixedBitSet(sz);
+      r1.addAllTo(target);
+      assertEquals(bs1, target);
+      assertEquals(bs1, r1.getFixedBitSetClone());
+    }
+  }
+
+  private FixedBitSet randomRoaringSet(int sz) {
+    switch (rand.nextInt(3)) {
+      case 0:
+        return getRandomSet(sz, rand.nextInt(sz / 8 + 1)); // mostly array containers
+      case 1:
+        return getRandomSet(sz, rand.nextInt(sz + 1)); // mostly bitmap containers
+      default:
+        return getRandomRangesSet(sz, rand.nextInt(200) + 1); // mostly run containers
+    }
+  }
+
+  public void testCompress() {
+    int maxDoc = DocSetBuilder.MIN_COMPRESS_MAX_DOC;
+    FixedBitSet bs = new FixedBitSet(maxDoc);
+    bs.set(1000, maxDoc / 3);
+    bs.set(maxDoc / 2);
+    DocSet compressed = DocSetBuilder.compress(new BitDocSet(bs));
+    assertTrue(compressed instanceof RoaringDocSet);
+    assertTrue(compressed.ramBytesUsed() * 2 < new BitDocSet(bs).ramBytesUsed());
+    iter(new BitDocSet(bs), compressed);
+
+    // random bits at 50% density can't be compressed
+    FixedBitSet dense = new FixedBitSet(maxDoc);
+    for (int i = 0; i < maxDoc; i += 1 + rand.nextInt(3)) {
+      dense.set(i);
+    }
+    DocSet notCompressed = new BitDocSet(dense);
+    assertSame(notCompressed, DocSetBuilder.compress(notCompressed));
+
+    // small indexes aren't worth it
+    DocSet small = new BitDocSet(new FixedBitSet(maxDoc - 1));
+    assertSame(small, DocSetBuilder.compress(small));
+  }
+
   public DocSet getRandomDocSet(int n, int maxDoc) {
     FixedBitSet obs = new FixedBitSet(maxDoc);
     int[] a = new int[n];
@@ -580,6 +677,7 @@ public class TestDocSet extends SolrTestCase {
     FixedBitSet bs = getRandomSet(reader.maxDoc(), rand.nextInt(reader.maxDoc() + 1));
     DocSet a = new BitDocSet(bs);
     DocSet b = getIntDocSet(bs);
+    DocSet c = getRoaringDocSet(bs);
 
     //    Query fa = a.makeQuery();
     //    Query fb = b.makeQuery();
@@ -599,7 +697,8 @@ public class TestDocSet extends SolrTestCase {
       doTestIteratorEqual(
           getExpectedBits(a, readerContext),
           () -> a.iterator(readerContext),
-          () -> b.iterator(readerContext));
+          () -> b.iterator(readerContext),
+          () -> c.iterator(readerContext));
     }
 
     int nReaders = leaves.size();
@@ -609,7 +708,8 @@ public class TestDocSet extends SolrTestCase {
       doTestIteratorEqual(
           getExpectedBits(a, readerContext),
           () -> a.iterator(readerContext),
-          () -> b.iterator(readerContext));
+          () -> b.iterator(readerContext),
+          () -> c.iterator(readerContext));
     }
   }
 
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.index.NoMergePolicyFactory;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests that IncrementalQueryResultRegenerator warms entries equal to re-executed ones */
+public class TestIncrementalQueryResultRegenerator extends SolrTestCaseJ4 {
+
+  private static final List<Regenerated> regenerated = new CopyOnWriteArrayList<>();
+
+  /** Records the entries that were regenerated incrementally. */
+  public static class RecordingRegenerator extends IncrementalQueryResultRegenerator {
+    @Override
+    DocList regenerate(SolrIndexSearcher newSearcher, QueryResultKey key, DocList oldList)
+        throws IOException {
+      final DocList newList = super.regenerate(newSearcher, key, oldList);
+      if (newList != null) {
+        regenerated.add(new Regenerated(newSearcher, key, newList));
+      }
+      return newList;
+    }
+  }
+
+  private record Regenerated(SolrIndexSearcher searcher, QueryResultKey key, DocList docList) {}
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    // we want to control the segments
+    systemSetPropertySolrTestsMergePolicyFactory(NoMergePolicyFactory.class.getName());
+    initCore("solrconfig-incrementalregen.xml", "schema.xml");
+  }
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    assertU(delQ("*:*"));
+    assertU(commit());
+    // so that entries of other tests aren't autowarmed
+    h.getCore()
+        .withSearcher(
+            searcher -> {
+              searcher.getQueryResultCache().clear();
+              return null;
+            });
+    regenerated.clear();
+  }
+
+  @Test
+  public void testNewSegment() throws Exception {
+    for (int i = 0; i < 20; i++) {
+      assertU(adoc("id", Integer.toString(i), "num_i1", Integer.toString(i)));
+    }
+    assertU(commit());
+    assertJQ(
+        req("q", "*:*", "sort", "num_i1 desc", "rows", "5", "fl", "id"),
+        "/response/docs==[{'id':'19'},{'id':'18'},{'id':'17'},{'id':'16'},{'id':'15'}]");
+
+    assertU(adoc("id", "20", "num_i1", "17"));
+    assertU(delI("18"));
+    assertU(commit());
+
+    assertEquals(1, regenerated.size());
+    final DocList docList = regenerated.get(0).docList();
+    // the cached window without 18, with 20 merged in after 17
+    assertEquals(20, docList.matches());
+    assertEquals(10, docList.size());
+    assertRegeneratedCorrectly();
+    assertJQ(
+        req("q", "*:*", "sort", "num_i1 desc", "rows", "4", "fl", "id"),
+        "/response/docs==[{'id':'19'},{'id':'17'},{'id':'20'},{'id':'16'}]",
+        "/response/numFound==20");
+  }
+
+  @Test
+  public void testNotEligible() throws Exception {
+    for (int i = 0; i < 20; i++) {
+      assertU(adoc("id", Integer.toString(i), "num_i1", Integer.toString(i)));
+    }
+    assertU(commit());
+    assertJQ(req("q", "*:*", "rows", "5"), "/response/numFound==20");
+    assertJQ(req("q", "*:*", "sort", "num_i1 desc", "fl", "id,score"), "/response/numFound==20");
+
+    assertU(adoc("id", "20", "num_i1", "17"));
+    assertU(commit());
+    assertEquals(0, regenerated.size());
+  }
+
+  @Test
+  public void testRandomUpdates() throws Exception {
+    final int numRounds = atLeast(5);
+    int id = 0;
+    int numRegenerated = 0;
+    for (int round = 0; round < numRounds; round++) {
+      final int numDocs = random().nextInt(50);
+      for (int i = 0; i < numDocs; i++) {
+        assertU(
+            adoc(
+                "id",
+                Integer.toString(id++),
+                "round_i1",
+                Integer.toString(round),
+                "val_s1",
+                Integer.toString(random().nextInt(5)),
+                "num_i1",
+                Integer.toString(random().nextInt(20))));
+      }
+      final int numDeletes = random().nextInt(5);
+      for (int i = 0; i < numDeletes && id > 0; i++) {
+        assertU(delI(Integer.toString(random().nextInt(id))));
+      }
+      if (round > 0 && random().nextInt(4) == 0) {
+        // drops the segments of a round
+        assertU(delQ("round_i1:" + random().nextInt(round)));
+      }
+      assertU(commit());
+
+      numRegenerated += regenerated.size();
+      assertRegeneratedCorrectly();
+      regenerated.clear();
+
+      for (String q : new String[] {"*:*", "val_s1:1", "num_i1:[5 TO 12]", "-val_s1:3"}) {
+        for (String sort : new String[] {"num_i1 asc", "val_s1 desc, num_i1 asc", "id asc"}) {
+          final String rows = Integer.toString(random().nextInt(30));
+          final String fq = random().nextBoolean() ? "val_s1:[1 TO 3]" : "";
+          assertJQ(req("q", q, "fq", fq, "sort", sort, "rows", rows), "/responseHeader/status==0");
+        }
+      }
+    }
+    assertTrue(numRegenerated > 0);
+  }
+
+  /** Compares the regenerated entries with the result of executing them on their searcher. */
+  private static void assertRegeneratedCorrectly() throws Exception {
+    final List<Regenerated> toCheck = new ArrayList<>(regenerated);
+    h.getCore()
+        .withSearcher(
+            searcher -> {
+              for (Regenerated entry : toCheck) {
+                assertSame(searcher, entry.searcher());
+                final QueryResultKey key = entry.key();
+                final DocList actual = entry.docList();
+                final QueryCommand cmd = new QueryCommand();
+                cmd.setQuery(key.query)
+                    .setFilterList(key.filters)
+                    .setSort(key.sort)
+                    .setLen(actual.size())
+                    .setFlags(SolrIndexSearcher.NO_CHECK_QCACHE | SolrIndexSearcher.NO_SET_QCACHE);
+                final DocList expected = searcher.search(cmd).getDocList();
+                final String message = key.query + " " + key.filters + " " + key.sort;
+                assertEquals(message, expected.matches(), actual.matches());
+                assertEquals(message, expected.size(), actual.size());
+                for (DocIterator e = expected.iterator(), a = actual.iterator(); e.hasNext(); ) {
+                  assertEquals(message, e.nextDoc(), a.nextDoc());
+                }
+              }
+              return null;
+            });
+  }
+}
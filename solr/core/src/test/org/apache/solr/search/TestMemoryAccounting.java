@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import static org.apache.solr.common.util.Utils.fromJSONString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.solr.SolrTestCaseJ4;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestMemoryAccounting extends SolrTestCaseJ4 {
+  private static final float ONE_MIB = 1f;
+  private static final int MIB = 1024 * 1024;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig-collapseqparser.xml", "schema11.xml");
+    for (int i = 0; i < 200; i++) {
+      assertU(
+          adoc(
+              "id",
+              Integer.toString(i),
+              "group_s",
+              "g" + (i % 10),
+              "test_i",
+              Integer.toString(i),
+              "term_s",
+              "t" + (i % 3)));
+      if (i % 50 == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+  }
+
+  @Test
+  public void testAccounting() {
+    MemoryAccounting accounting = new MemoryAccounting();
+    assertTrue(accounting.isEmpty());
+    accounting.add(MemoryAccounting.FACET, 100);
+    accounting.add(MemoryAccounting.DOCSET, 10);
+    accounting.add(MemoryAccounting.FACET, 20);
+    accounting.add(MemoryAccounting.EXPAND, 0);
+    assertEquals(130, accounting.getBytes());
+    assertEquals(120, accounting.getBytes(MemoryAccounting.FACET));
+    assertEquals(0, accounting.getBytes(MemoryAccounting.EXPAND));
+    assertEquals("{total=130, docSet=10, facet=120}", accounting.toNamedList().toString());
+
+    MemoryAccounting.NONE.add(MemoryAccounting.FACET, 100);
+    assertEquals(0, MemoryAccounting.NONE.getBytes());
+    assertTrue(MemoryAccounting.NONE.isEmpty());
+  }
+
+  @Test
+  public void testDebugBreakdown() throws Exception {
+    String json =
+        JQ(
+            req(
+                "q", "*:*",
+                "fq", "{!collapse field=group_s}",
+                "expand", "true",
+                "facet", "true",
+                "facet.field", "term_s",
+                "json.facet", "{terms:{type:terms, field:term_s, facet:{avg:'avg(test_i)'}}}",
+                "debug", "timing"));
+    Map<?, ?> memory =
+        (Map<?, ?>) ((Map<?, ?>) ((Map<?, ?>) fromJSONString(json)).get("debug")).get("memory");
+    assertNotNull(json, memory);
+    for (String component :
+        List.of(MemoryAccounting.COLLAPSE, MemoryAccounting.EXPAND, MemoryAccounting.FACET)) {
+      assertTrue(json, ((Number) memory.get(component)).longValue() > 0);
+    }
+    long sum = 0;
+    for (Map.Entry<?, ?> entry : memory.entrySet()) {
+      if (!"total".equals(entry.getKey())) {
+        sum += ((Number) entry.getValue()).longValue();
+      }
+    }
+    assertEquals(json, sum, ((Number) memory.get("total")).longValue());
+
+    // no breakdown without debug timings
+    json = JQ(req("q", "*:*", "fq", "{!collapse field=group_s}", "debug", "query"));
+    assertNull(json, ((Map<?, ?>) ((Map<?, ?>) fromJSONString(json)).get("debug")).get("memory"));
+  }
+
+  @Test
+  public void testLimitEnforcesAccountedBytes() {
+    Assume.assumeTrue("Thread memory monitoring is not available", MemAllowedLimit.isSupported());
+    MemoryAccounting accounting = new MemoryAccounting();
+    MemAllowedLimit limit = new MemAllowedLimit(ONE_MIB, accounting);
+    assertFalse(limit.shouldExit());
+    assertTrue(limit.shouldExitBeforeAllocating(2 * MIB));
+
+    // e.g. allocated on executor threads that never checked the limit
+    accounting.add(MemoryAccounting.DOCSET, 2 * MIB);
+    assertTrue(limit.shouldExit());
+    assertEquals(2L * MIB, limit.currentValue());
+  }
+
+  @Test
+  public void testLimitOnOtherThreads() throws Exception {
+    Assume.assumeTrue("Thread memory monitoring is not available", MemAllowedLimit.isSupported());
+    MemAllowedLimit limit = new MemAllowedLimit(ONE_MIB, new MemoryAccounting());
+    AtomicBoolean exitedBefore = new AtomicBoolean(true);
+    AtomicBoolean exitedAfter = new AtomicBoolean(false);
+    List<byte[]> data = new ArrayList<>();
+    Thread thread =
+        new Thread(
+            () -> {
+              // allocated before the thread worked on the request
+              for (int i = 0; i < 4; i++) {
+                data.add(new byte[MIB]);
+              }
+              exitedBefore.set(limit.shouldExit());
+              for (int i = 0; i < 4; i++) {
+                data.add(new byte[MIB]);
+              }
+              exitedAfter.set(limit.shouldExit());
+            });
+    thread.start();
+    thread.join();
+    assertEquals(8, data.size());
+    assertFalse("counted the allocations before the first check", exitedBefore.get());
+    assertTrue("missed the allocations after the first check", exitedAfter.get());
+  }
+}
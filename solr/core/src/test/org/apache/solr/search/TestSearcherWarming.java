@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.util.TimeSource;
+import org.apache.solr.util.RefCounted;
+import org.apache.solr.util.TimeOut;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests cancelling superseded autowarming and warming caches concurrently */
+public class TestSearcherWarming extends SolrTestCaseJ4 {
+
+  private static final int NUM_ENTRIES = 10;
+
+  private static final Map<SolrIndexSearcher, Integer> regenerated =
+      Collections.synchronizedMap(new LinkedHashMap<>());
+  private static volatile CountDownLatch started;
+  private static volatile CountDownLatch gate;
+
+  /** Counts regenerated entries by searcher, and blocks on the gate if there is one. */
+  public static class BlockingRegenerator implements CacheRegenerator {
+    @Override
+    public <K, V> boolean regenerateItem(
+        SolrIndexSearcher newSearcher,
+        SolrCache<K, V> newCache,
+        SolrCache<K, V> oldCache,
+        K oldKey,
+        V oldVal)
+        throws IOException {
+      newCache.put(oldKey, oldVal);
+      regenerated.merge(newSearcher, 1, Integer::sum);
+      final CountDownLatch gate = TestSearcherWarming.gate;
+      if (gate != null) {
+        started.countDown();
+        try {
+          assertTrue(gate.await(30, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig-warming.xml", "schema-minimal.xml");
+  }
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    assertU(delQ("*:*"));
+    assertU(commit());
+    started = null;
+    gate = null;
+    regenerated.clear();
+    h.getCore()
+        .withSearcher(
+            searcher -> {
+              @SuppressWarnings("unchecked")
+              final SolrCache<Object, Object> cache = searcher.getCache("blockingCache");
+              cache.clear();
+              for (int i = 0; i < NUM_ENTRIES; i++) {
+                cache.put(i, i);
+              }
+              return null;
+            });
+  }
+
+  @Test
+  public void testCancelSuperseded() throws Exception {
+    started = new CountDownLatch(1);
+    gate = new CountDownLatch(1);
+
+    assertU(adoc("id", "1"));
+    assertU(commit("waitSearcher", "false"));
+    // the first new searcher is regenerating an entry
+    assertTrue(started.await(30, TimeUnit.SECONDS));
+
+    assertU(adoc("id", "2"));
+    assertU(commit("waitSearcher", "false"));
+    gate.countDown();
+
+    final TimeOut timeOut = new TimeOut(30, TimeUnit.SECONDS, TimeSource.NANO_TIME);
+    timeOut.waitFor(
+        "the second searcher wasn't registered",
+        () -> {
+          final RefCounted<SolrIndexSearcher> holder = h.getCore().getSearcher();
+          try {
+            return holder.get().numDocs() == 2;
+          } finally {
+            holder.decref();
+          }
+        });
+
+    final List<SolrIndexSearcher> searchers;
+    final List<Integer> counts;
+    synchronized (regenerated) {
+      searchers = new ArrayList<>(regenerated.keySet());
+      counts = new ArrayList<>(regenerated.values());
+    }
+    assertEquals(2, searchers.size());
+    // the first one stopped after the entry it was regenerating when the second one was opened
+    assertTrue(searchers.get(0).isWarmingCancelled());
+    assertEquals(1, (int) counts.get(0));
+    assertFalse(searchers.get(1).isWarmingCancelled());
+    assertEquals(NUM_ENTRIES, (int) counts.get(1));
+    h.getCore()
+        .withSearcher(
+            searcher -> {
+              assertSame(searchers.get(1), searcher);
+              assertEquals(NUM_ENTRIES, searcher.getCache("blockingCache").size());
+              return null;
+            });
+  }
+
+  @Test
+  public void testConcurrentWarming() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      assertU(adoc("id", Integer.toString(i)));
+    }
+    assertU(commit());
+    assertJQ(req("q", "id:[0 TO 5]", "fq", "id:[3 TO 9]"), "/response/numFound==3");
+
+    assertU(adoc("id", "10"));
+    assertU(commit());
+
+    h.getCore()
+        .withSearcher(
+            searcher -> {
+              assertEquals(1, searcher.getFilterCache().size());
+              assertEquals(1, searcher.getQueryResultCache().size());
+              final CaffeineCache<?, ?> cache =
+                  (CaffeineCache<?, ?>) searcher.getCache("blockingCache");
+              assertEquals(NUM_ENTRIES, cache.size());
+              assertEquals(NUM_ENTRIES, cache.getWarmupEntries());
+              assertEquals(NUM_ENTRIES, cache.getWarmedEntries());
+              assertEquals(NUM_ENTRIES, (int) regenerated.get(searcher));
+              return null;
+            });
+  }
+}
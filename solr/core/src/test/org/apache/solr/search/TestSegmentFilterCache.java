@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.index.NoMergePolicyFactory;
+import org.apache.solr.request.SolrQueryRequest;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestSegmentFilterCache extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    // we want to control the segments
+    systemSetPropertySolrTestsMergePolicyFactory(NoMergePolicyFactory.class.getName());
+    System.setProperty("solr.segmentFilterCache.enabled", "true");
+    initCore("solrconfig.xml", "schema.xml");
+  }
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    assertU(delQ("*:*"));
+    assertU(commit());
+    // so that filters of other tests aren't autowarmed
+    h.getCore()
+        .withSearcher(
+            searcher -> {
+              searcher.getFilterCache().clear();
+              return null;
+            });
+    segmentCache().clear();
+  }
+
+  private static SolrCache<SegmentFilterCache.Key, DocSet> segmentCache() {
+    return h.getCore().getSegmentFilterCache().getCache();
+  }
+
+  @Test
+  public void testOnlyNewSegmentsComputed() throws Exception {
+    for (int i = 0; i < 20; i++) {
+      assertU(adoc("id", Integer.toString(i), "val_s", i % 2 == 0 ? "even" : "odd"));
+    }
+    assertU(commit());
+    assertJQ(req("q", "*:*", "fq", "val_s:even"), "/response/numFound==10");
+    final int sizeBefore = segmentCache().size();
+
+    // one new segment, and a delete in the existing one
+    assertU(adoc("id", "20", "val_s", "even"));
+    assertU(delI("0"));
+    assertU(commit());
+
+    // the filterCache autowarms the filter using the per segment set of the old segment
+    assertEquals(sizeBefore + 1, segmentCache().size());
+    assertJQ(req("q", "*:*", "fq", "val_s:even"), "/response/numFound==10");
+    assertJQ(req("q", "*:*", "fq", "-val_s:even"), "/response/numFound==10");
+    assertEquals(sizeBefore + 1, segmentCache().size());
+  }
+
+  @Test
+  public void testMatchesUncached() throws Exception {
+    final int numSegments = atLeast(3);
+    int id = 0;
+    for (int seg = 0; seg < numSegments; seg++) {
+      final int numDocs = atLeast(20);
+      for (int i = 0; i < numDocs; i++) {
+        assertU(
+            adoc(
+                "id",
+                Integer.toString(id++),
+                "val_s",
+                Integer.toString(random().nextInt(5)),
+                "num_i",
+                Integer.toString(random().nextInt(100))));
+      }
+      if (random().nextBoolean()) {
+        assertU(delI(Integer.toString(random().nextInt(id))));
+      }
+      assertU(commit());
+    }
+
+    final List<Query> queries = queries();
+    h.getCore()
+        .withSearcher(
+            searcher -> {
+              final SegmentFilterCache segmentFilterCache = h.getCore().getSegmentFilterCache();
+              for (Query q : queries) {
+                // twice, so the second one is assembled from the cached segment sets
+                for (int i = 0; i < 2; i++) {
+                  final DocSet expected = DocSetUtil.createDocSetGeneric(searcher, q);
+                  final DocSet actual = segmentFilterCache.getDocSet(searcher, q);
+                  assertNotNull(q.toString(), actual);
+                  assertTrue(q.toString(), DocSetUtil.equals(expected, actual));
+                }
+              }
+              return null;
+            });
+  }
+
+  @Test
+  public void testNotCacheablePerSegment() throws Exception {
+    assertU(adoc("id", "0", "val_s", "0"));
+    assertU(commit());
+    assertU(adoc("id", "1", "val_s", "1"));
+    assertU(commit());
+
+    try (SolrQueryRequest req = req()) {
+      final Query join = QParser.getParser("{!join from=id to=val_s}val_s:0", req).getQuery();
+      final Query nestedJoin =
+          new BooleanQuery.Builder()
+              .add(new TermQuery(new Term("val_s", "1")), Occur.SHOULD)
+              .add(join, Occur.SHOULD)
+              .build();
+      // computes the set for the whole index itself
+      final Query range = QParser.getParser("val_s:[0 TO 1]", req).getQuery();
+      final SegmentFilterCache segmentFilterCache = h.getCore().getSegmentFilterCache();
+      final int sizeBefore = segmentFilterCache.getCache().size();
+      assertNull(segmentFilterCache.getDocSet(req.getSearcher(), join));
+      assertNull(segmentFilterCache.getDocSet(req.getSearcher(), nestedJoin));
+      assertNull(segmentFilterCache.getDocSet(req.getSearcher(), range));
+      assertEquals(sizeBefore, segmentFilterCache.getCache().size());
+    }
+  }
+
+  private static List<Query> queries() throws Exception {
+    final List<Query> queries = new ArrayList<>();
+    try (SolrQueryRequest req = req()) {
+      for (String q :
+          new String[] {
+            "val_s:1",
+            "num_i:[10 TO 60]",
+            "val_s:2 OR num_i:[90 TO *]",
+            "val_s:[1 TO 3] AND -num_i:[20 TO 40]",
+            "*:*"
+          }) {
+        queries.add(QParser.getParser(q, req).getQuery());
+      }
+    }
+    return queries;
+  }
+}
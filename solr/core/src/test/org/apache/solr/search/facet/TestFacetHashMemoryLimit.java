@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.search.QueryLimit;
+import org.apache.solr.util.TestInjection;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests that the hash table of {@link FacetFieldProcessorByHashDV} doesn't outgrow the limits */
+public class TestFacetHashMemoryLimit extends SolrTestCaseJ4 {
+
+  private static final int NUM_DOCS = 2000;
+
+  /** Only trips on allocations of more than maxBytes */
+  private static class AllocationLimit implements QueryLimit {
+    final long maxBytes;
+    final List<Long> requested = new ArrayList<>();
+
+    AllocationLimit(long maxBytes) {
+      this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public boolean shouldExit() {
+      return false;
+    }
+
+    @Override
+    public boolean shouldExitBeforeAllocating(long bytes) {
+      requested.add(bytes);
+      return bytes > maxBytes;
+    }
+
+    @Override
+    public Object currentValue() {
+      return requested;
+    }
+  }
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig-tlog.xml", "schema_latest.xml");
+    for (int i = 0; i < NUM_DOCS; i++) {
+      assertU(adoc("id", Integer.toString(i), "num_ld", Integer.toString(i % (NUM_DOCS / 2))));
+    }
+    assertU(commit());
+  }
+
+  @After
+  public void resetInjection() {
+    TestInjection.reset();
+  }
+
+  @Test
+  public void testTableFull() {
+    final FacetFieldProcessorByHashDV.LongCounts table =
+        new FacetFieldProcessorByHashDV.LongCounts(4) {
+          @Override
+          protected boolean canGrow(int newNumSlots) {
+            return false;
+          }
+        };
+    final int slot1 = table.add(1);
+    final int slot2 = table.add(2);
+    assertTrue(slot1 >= 0 && slot2 >= 0);
+    assertFalse(table.isFull());
+    assertEquals(-1, table.add(3));
+    assertTrue(table.isFull());
+    // keys in the table are still counted
+    assertEquals(slot1, table.add(1));
+    assertEquals(2, table.counts[slot1]);
+    assertEquals(-1, table.add(4));
+    assertEquals(2, table.cardinality());
+    assertEquals(4, table.numSlots());
+  }
+
+  @Test
+  public void testTableGrows() {
+    final FacetFieldProcessorByHashDV.LongCounts table =
+        new FacetFieldProcessorByHashDV.LongCounts(2);
+    for (long i = 0; i < 1000; i++) {
+      table.add(i * 31);
+      table.add(i * 31);
+    }
+    assertFalse(table.isFull());
+    assertEquals(1000, table.cardinality());
+    assertEquals(2048, table.numSlots());
+    assertEquals(
+        2048L * FacetFieldProcessorByHashDV.LongCounts.BYTES_PER_SLOT, table.ramBytesUsed());
+    for (int slot = 0; slot < table.numSlots(); slot++) {
+      assertTrue(table.counts[slot] == 0 || table.counts[slot] == 2);
+    }
+  }
+
+  @Test
+  public void testPartialResults() throws Exception {
+    final String facet = "{x:{type:terms, method:dvhash, field:num_ld, limit:2, numBuckets:true}}";
+    assertJQ(
+        req("q", "*:*", "rows", "0", "json.facet", facet),
+        "/facets/x/numBuckets==" + (NUM_DOCS / 2),
+        "/facets/x/buckets/[0]/count==2");
+
+    // the table starts with 1024 slots, but may not grow to 2048
+    final AllocationLimit limit =
+        new AllocationLimit(2048L * FacetFieldProcessorByHashDV.LongCounts.BYTES_PER_SLOT - 1);
+    TestInjection.queryTimeout = limit;
+    // only the values that fit into the table without growing are counted
+    assertJQ(
+        req("q", "*:*", "rows", "0", "json.facet", facet, "debugQuery", "true"),
+        "/responseHeader/partialResults==true",
+        "/facets/x/numBuckets==716",
+        "/facets/x/buckets/[0]/count==2",
+        "/debug/facet-trace/sub-facet/[0]/hashTableBytes==" + 1024 * 12,
+        "/debug/facet-trace/sub-facet/[0]/hashTableFull==true");
+    assertEquals(List.of(2048L * 12), limit.requested);
+  }
+
+  @Test
+  public void testLimitExceeded() throws Exception {
+    final String facet = "{x:{type:terms, method:dvhash, field:num_ld}}";
+    TestInjection.queryTimeout = new AllocationLimit(0);
+    // the request is terminated rather than returning the partial facet
+    final String response =
+        JQ(req("q", "*:*", "rows", "0", "json.facet", facet, "partialResults", "false"));
+    assertFalse(response, response.contains("\"facets\""));
+    assertTrue(response, response.contains("facet on num_ld"));
+  }
+}
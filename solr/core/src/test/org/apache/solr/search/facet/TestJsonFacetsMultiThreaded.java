@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.index.NoMergePolicyFactory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests that counting the segments concurrently gives the same facets as counting serially */
+public class TestJsonFacetsMultiThreaded extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    // we want several segments
+    systemSetPropertySolrTestsMergePolicyFactory(NoMergePolicyFactory.class.getName());
+    initCore("solrconfig-tlog.xml", "schema_latest.xml");
+
+    int id = 0;
+    final int numSegments = atLeast(3);
+    for (int seg = 0; seg < numSegments; seg++) {
+      final int numDocs = atLeast(20);
+      for (int i = 0; i < numDocs; i++) {
+        final String[] fields = {
+          "id", Integer.toString(id++),
+          "cat_sd", "c" + random().nextInt(10 * (seg + 1)),
+          "tags_sds", "t" + random().nextInt(15),
+          "tags_sds", "t" + random().nextInt(30),
+          "num_i", Integer.toString(random().nextInt(100)),
+          "nums_is", Integer.toString(random().nextInt(20)),
+          "nums_is", Integer.toString(random().nextInt(20))
+        };
+        // some docs without a value for the facet field in some segments
+        assertU(adoc(random().nextInt(10) == 0 ? new String[] {"id", fields[1]} : fields));
+      }
+      if (random().nextInt(4) == 0) {
+        assertU(delI(Integer.toString(random().nextInt(id))));
+      }
+      assertU(commit());
+    }
+  }
+
+  @Test
+  public void testSameAsSerial() throws Exception {
+    final String[] facets = {
+      "{x:{type:terms, field:cat_sd, limit:-1}}",
+      "{x:{type:terms, field:tags_sds, limit:5, mincount:2}}",
+      "{x:{type:terms, field:tags_sds, limit:3, facet:{y:{type:terms, field:cat_sd}}}}",
+      "{x:{type:terms, field:cat_sd, limit:5, sort:'s desc', facet:{s:'sum(num_i)'}}}",
+      "{x:{type:terms, field:cat_sd, numBuckets:true, missing:true}}",
+      "{x:{type:terms, field:cat_sd, allBuckets:true}}",
+      "{x:{type:terms, field:tags_sds, prefix:t1}}",
+      "{x:{type:terms, field:cat_sd, method:dvhash, limit:-1}}",
+      "{x:{type:terms, field:cat_sd, method:dvhash, limit:3, numBuckets:true}}",
+      "{x:{type:terms, field:num_i, method:dvhash, limit:5}}",
+      "{x:{type:terms, field:nums_is, method:dvhash, limit:-1}}",
+      "{x:{type:terms, field:num_i, method:dvhash, facet:{s:'sum(num_i)'}}}",
+    };
+    for (String facet : facets) {
+      for (String q : new String[] {"*:*", "num_i:[0 TO 50]", "tags_sds:t1"}) {
+        for (String perSeg : new String[] {"true", "false"}) {
+          final String serial = facet.replace("{type:", "{perSeg:" + perSeg + ", type:");
+          final String expected =
+              h.query(req("q", q, "rows", "0", "omitHeader", "true", "json.facet", serial));
+          // per-request param
+          assertEquals(
+              facet,
+              expected,
+              h.query(
+                  req(
+                      "q", q,
+                      "rows", "0",
+                      "omitHeader", "true",
+                      "multiThreaded", "true",
+                      "json.facet", serial)));
+          // per-facet option
+          final String parallel = serial.replace("{perSeg:", "{multiThreaded:true, perSeg:");
+          assertEquals(
+              facet,
+              expected,
+              h.query(req("q", q, "rows", "0", "omitHeader", "true", "json.facet", parallel)));
+        }
+      }
+    }
+  }
+}
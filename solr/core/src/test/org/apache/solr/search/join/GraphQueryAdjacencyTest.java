@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.join;
+
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.search.SolrCache;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Runs the graph tests again, traversing the graphs between string fields with an adjacency. */
+public class GraphQueryAdjacencyTest extends GraphQueryTest {
+
+  @BeforeClass
+  public static void beforeAdjacencyTests() throws Exception {
+    // the core of GraphQueryTest is started first, start it again with the adjacency cache
+    deleteCore();
+    System.setProperty("solr.graphAdjacencyCache.enabled", "true");
+    initCore("solrconfig.xml", "schema_latest.xml");
+  }
+
+  private static GraphAdjacency cachedAdjacency(String fromField, String toField) throws Exception {
+    return h.getCore()
+        .withSearcher(
+            searcher -> {
+              @SuppressWarnings("unchecked")
+              SolrCache<GraphAdjacency.Key, GraphAdjacency> cache =
+                  searcher.getCache(GraphQuery.CACHE_NAME);
+              return cache.get(new GraphAdjacency.Key(fromField, toField));
+            });
+  }
+
+  @Test
+  public void testAdjacencyCached() throws Exception {
+    assertU(delQ("*:*"));
+    assertU(adoc("id", "doc_1", "node_s", "1", "edge_ss", "2"));
+    assertU(adoc("id", "doc_2", "node_s", "2", "edge_ss", "3"));
+    assertU(adoc("id", "doc_3", "node_s", "3"));
+    assertU(commit());
+
+    assertJQ(req("q", "{!graph from=node_s to=edge_ss}id:doc_1"), "/response/numFound==3");
+    final GraphAdjacency adjacency = cachedAdjacency("node_s", "edge_ss");
+    assertNotNull(adjacency);
+    assertEquals(2, adjacency.getNumOrds());
+    assertJQ(req("q", "{!graph from=node_s to=edge_ss}id:doc_2"), "/response/numFound==2");
+    assertSame(adjacency, cachedAdjacency("node_s", "edge_ss"));
+
+    // the adjacency of a new searcher is built again
+    assertU(adoc("id", "doc_3", "node_s", "3", "edge_ss", "4"));
+    assertU(adoc("id", "doc_4", "node_s", "4"));
+    assertU(commit());
+    assertJQ(req("q", "{!graph from=node_s to=edge_ss}id:doc_2"), "/response/numFound==3");
+    assertNotSame(adjacency, cachedAdjacency("node_s", "edge_ss"));
+  }
+
+  @Test
+  public void testRandomGraph() throws Exception {
+    checkRandomGraph("edge_ss", 3);
+  }
+
+  @Test
+  public void testRandomGraphSingleValuedEdges() throws Exception {
+    // SORTED doc values, whose segment ords must be mapped to the global ones as well
+    checkRandomGraph("edge_s", 1);
+  }
+
+  /**
+   * Indexes a random graph over several segments, each node having up to {@code maxEdges} edges in
+   * the given field, and checks the traversals from random roots.
+   */
+  private void checkRandomGraph(String edgeField, int maxEdges) throws Exception {
+    assertU(delQ("*:*"));
+    // enough nodes for the largest hops to be split between several tasks
+    final int numNodes = GraphAdjacency.MIN_BITS_PER_TASK * 2 + random().nextInt(1000);
+    final List<List<Integer>> edges = new ArrayList<>(numNodes);
+    // the docs are added by batches, it's much faster than one by one
+    StringWriter batch = new StringWriter().append("<add>");
+    for (int i = 0; i < numNodes; i++) {
+      final List<Integer> nodeEdges = new ArrayList<>();
+      for (int e = random().nextInt(maxEdges + 1); e > 0; e--) {
+        nodeEdges.add(random().nextInt(numNodes));
+      }
+      edges.add(nodeEdges);
+
+      SolrInputDocument doc = sdoc("id", Integer.toString(i), "node_s", "n" + i);
+      for (int edge : nodeEdges) {
+        doc.addField(edgeField, "n" + edge);
+      }
+      ClientUtils.writeXML(doc, batch);
+      if (i % 1000 == 999 || i == numNodes - 1) {
+        assertU(batch.append("</add>").toString());
+        batch = new StringWriter().append("<add>");
+        // a segment per batch, so that the ords of the segments differ from the global ones
+        assertU(commit());
+      }
+    }
+
+    // a frontier of all the nodes, with enough set bits to be split
+    assertJQ(
+        req(
+            "q",
+            "{!graph from=node_s to=" + edgeField + " maxDepth=1}*:*",
+            "rows",
+            "0",
+            "multiThreaded",
+            "true"),
+        "/response/numFound==" + numNodes);
+
+    for (int iter = 0; iter < 5; iter++) {
+      final int root = random().nextInt(numNodes);
+      final int maxDepth = random().nextBoolean() ? -1 : random().nextInt(5);
+      final String graph =
+          "{!graph from=node_s to=" + edgeField + " maxDepth=" + maxDepth + "}id:" + root;
+      final int expected = traverse(edges, root, maxDepth);
+      assertJQ(req("q", graph, "rows", "0"), "/response/numFound==" + expected);
+      assertJQ(
+          req("q", graph, "rows", "0", "multiThreaded", "true"), "/response/numFound==" + expected);
+    }
+  }
+
+  /** Returns the number of nodes reachable from the root in at most maxDepth hops */
+  private static int traverse(List<List<Integer>> edges, int root, int maxDepth) {
+    final BitSet visited = new BitSet();
+    visited.set(root);
+    Deque<Integer> frontier = new ArrayDeque<>(List.of(root));
+    for (int depth = 0; (maxDepth == -1 || depth < maxDepth) && !frontier.isEmpty(); depth++) {
+      final Deque<Integer> next = new ArrayDeque<>();
+      for (int node : frontier) {
+        for (int edge : edges.get(node)) {
+          if (!visited.get(edge)) {
+            visited.set(edge);
+            next.add(edge);
+          }
+        }
+      }
+      frontier = next;
+    }
+    return visited.cardinality();
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.request.JavaBinRequestWriter;
+import org.apache.solr.client.solrj.request.JavaBinUpdateRequestCodec;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.junit.Test;
+
+public class SharedUpdateRequestTest extends SolrTestCase {
+
+  private static final SharedUpdateRequest.Writer WRITER = new SharedUpdateRequest.Writer();
+
+  @Test
+  public void testSameEncodingAsJavaBin() throws Exception {
+    UpdateRequest expected = add(new UpdateRequest(), doc("1"));
+    SharedUpdateRequest request = add(new SharedUpdateRequest(), doc("1"));
+    assertArrayEquals(write(new JavaBinRequestWriter(), expected), write(WRITER, request));
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    WRITER.getContentWriter(request).write(os);
+    assertArrayEquals(write(new JavaBinRequestWriter(), expected), os.toByteArray());
+
+    List<SolrInputDocument> docs = new ArrayList<>();
+    UpdateRequest read =
+        new JavaBinUpdateRequestCodec()
+            .unmarshal(
+                new ByteArrayInputStream(write(WRITER, request)),
+                (doc, req, commitWithin, overwrite) -> docs.add(doc));
+    assertEquals("leader", read.getParams().get("distrib.from"));
+    assertEquals(1, docs.size());
+    assertEquals("1", docs.get(0).getFieldValue("id"));
+  }
+
+  @Test
+  public void testEncodedOnce() throws Exception {
+    SolrInputDocument doc = doc("1");
+    SharedUpdateRequest first = add(new SharedUpdateRequest(), doc);
+    SharedUpdateRequest second = add(new SharedUpdateRequest(first), doc);
+    byte[] bytes = write(WRITER, first);
+
+    // shares the encoding, even though the document changed in the meantime
+    doc.setField("name_s", "changed");
+    assertArrayEquals(bytes, write(WRITER, second));
+    assertSame(first.getBytes(), second.getBytes());
+
+    SharedUpdateRequest other = add(new SharedUpdateRequest(), doc);
+    assertFalse(Arrays.equals(bytes, write(WRITER, other)));
+  }
+
+  @Test
+  public void testOtherRequests() throws Exception {
+    UpdateRequest request = add(new UpdateRequest(), doc("1"));
+    assertArrayEquals(write(new JavaBinRequestWriter(), request), write(WRITER, request));
+  }
+
+  private static <T extends UpdateRequest> T add(T request, SolrInputDocument doc) {
+    ModifiableSolrParams params = new ModifiableSolrParams();
+    params.set("distrib.from", "leader");
+    request.setParams(params);
+    request.add(doc, -1, true);
+    return request;
+  }
+
+  private static SolrInputDocument doc(String id) {
+    SolrInputDocument doc = new SolrInputDocument();
+    doc.addField("id", id);
+    doc.addField("name_s", "name" + id);
+    return doc;
+  }
+
+  private static byte[] write(JavaBinRequestWriter writer, SolrRequest<?> request)
+      throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    writer.write(request, os);
+    return os.toByteArray();
+  }
+}
@@ -18,12 +18,24 @@
 package org.apache.solr.update;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.solr.SolrTestCase;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
 import org.apache.solr.update.TransactionLog.LogReader;
 import org.junit.Test;
 
@@ -71,4 +83,205 @@ public class TransactionLogTest extends SolrTestCase {
       assertEquals(uuid, (UUID) doc.getFieldValue("uuid"));
     }
   }
+
+  @Test
+  public void testGroupSync() throws Exception {
+    String tlogFileName =
+        String.format(
+            Locale.ROOT, UpdateLog.LOG_FILENAME_PATTERN, UpdateLog.TLOG_NAME, Long.MAX_VALUE);
+    Path logFile = createTempDir().resolve(tlogFileName);
+    final int numThreads = 4;
+    final int numDocsPerThread = atLeast(20);
+    ExecutorService executor =
+        ExecutorUtil.newMDCAwareFixedThreadPool(
+            numThreads, new SolrNamedThreadFactory("testGroupSync"));
+    try (TransactionLog tlog = new TransactionLog(logFile, null)) {
+      tlog.deleteOnClose = false;
+      tlog.write(newAddCommand("0"));
+      assertTrue(tlog.groupSync(0));
+      // nothing was written since
+      assertFalse(tlog.groupSync(0));
+
+      final AtomicInteger numSyncs = new AtomicInteger();
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < numThreads; t++) {
+        final int thread = t;
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < numDocsPerThread; i++) {
+                    tlog.write(newAddCommand(thread + "_" + i));
+                    if (tlog.groupSync(random().nextBoolean() ? 0 : 1)) {
+                      numSyncs.incrementAndGet();
+                    }
+                  }
+                  return null;
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      assertTrue(numSyncs.get() > 0);
+      assertTrue(numSyncs.get() <= numThreads * numDocsPerThread);
+      assertFalse(tlog.groupSync(0));
+    } finally {
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+    }
+
+    try (TransactionLog tlog = new TransactionLog(logFile, null, true)) {
+      LogReader reader = tlog.getReader(0);
+      int numRecords = 0;
+      while (reader.next() != null) {
+        numRecords++;
+      }
+      assertEquals(1 + numThreads * numDocsPerThread, numRecords);
+    }
+  }
+
+  @Test
+  public void testGroupSyncInterrupted() throws Exception {
+    String tlogFileName =
+        String.format(
+            Locale.ROOT, UpdateLog.LOG_FILENAME_PATTERN, UpdateLog.TLOG_NAME, Long.MAX_VALUE);
+    Path logFile = createTempDir().resolve(tlogFileName);
+    ExecutorService executor =
+        ExecutorUtil.newMDCAwareCachedThreadPool(
+            new SolrNamedThreadFactory("testGroupSyncInterrupted"));
+    try (TransactionLog tlog = new TransactionLog(logFile, null)) {
+      tlog.write(newAddCommand("0"));
+      // pretend another caller waits, so that the one syncing delays its fsync
+      synchronized (tlog.syncLock) {
+        tlog.syncWaiters++;
+      }
+      final AtomicReference<Thread> syncingThread = new AtomicReference<>();
+      Future<Boolean> interrupted =
+          executor.submit(
+              () -> {
+                syncingThread.set(Thread.currentThread());
+                return tlog.groupSync(TimeUnit.MINUTES.toMillis(10));
+              });
+      while (syncingThread.get() == null
+          || syncingThread.get().getState() != Thread.State.TIMED_WAITING) {
+        Thread.sleep(10);
+      }
+      syncingThread.get().interrupt();
+      ExecutionException e = expectThrows(ExecutionException.class, interrupted::get);
+      assertTrue(e.getCause() instanceof SolrException);
+      synchronized (tlog.syncLock) {
+        tlog.syncWaiters--;
+      }
+
+      // the next caller doesn't wait for the interrupted one
+      tlog.write(newAddCommand("1"));
+      assertTrue(executor.submit(() -> tlog.groupSync(0)).get(30, TimeUnit.SECONDS));
+    } finally {
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+    }
+  }
+
+  @Test
+  public void testTryIncrefRacingLastDecref() throws Exception {
+    Path tlogDir = createTempDir();
+    ExecutorService executor =
+        ExecutorUtil.newMDCAwareSingleThreadExecutor(
+            new SolrNamedThreadFactory("testTryIncrefRacingLastDecref"));
+    try {
+      for (int i = 0, numIters = atLeast(100); i < numIters; i++) {
+        Path logFile =
+            tlogDir.resolve(
+                String.format(
+                    Locale.ROOT, UpdateLog.LOG_FILENAME_PATTERN, UpdateLog.TLOG_NAME, (long) i));
+        TransactionLog tlog = new TransactionLog(logFile, null);
+        tlog.write(newAddCommand(Integer.toString(i)));
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Future<Boolean> incref =
+            executor.submit(
+                () -> {
+                  barrier.await();
+                  return tlog.try_incref();
+                });
+        barrier.await();
+        tlog.decref();
+        if (incref.get()) {
+          // the decref wasn't the last one, the log must still be open
+          assertEquals(1, tlog.refcount.get());
+          assertTrue(Files.exists(logFile));
+          tlog.decref();
+        }
+        assertEquals(0, tlog.refcount.get());
+        assertFalse(Files.exists(logFile));
+        // a closed log isn't resurrected
+        assertFalse(tlog.try_incref());
+        assertEquals(0, tlog.refcount.get());
+      }
+    } finally {
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+    }
+  }
+
+  @Test
+  public void testMmapReads() throws Exception {
+    String tlogFileName =
+        String.format(
+            Locale.ROOT, UpdateLog.LOG_FILENAME_PATTERN, UpdateLog.TLOG_NAME, Long.MAX_VALUE);
+    Path logFile = createTempDir().resolve(tlogFileName);
+    final int numDocs = atLeast(50);
+    final List<Long> positions = new ArrayList<>();
+    try (TransactionLog tlog = new TransactionLog(logFile, null)) {
+      tlog.deleteOnClose = false;
+      tlog.setMmapReads(true);
+      for (int i = 0; i < numDocs; i++) {
+        positions.add(tlog.write(newAddCommand(Integer.toString(i))));
+      }
+      assertEquals(0, tlog.getMappedSize());
+      assertLookup(tlog, positions);
+      long mappedSize = tlog.getMappedSize();
+      assertTrue(mappedSize > positions.get(numDocs - 1));
+
+      // records written after the log was mapped are read from the channel
+      for (int i = numDocs; i < 2 * numDocs; i++) {
+        positions.add(tlog.write(newAddCommand(Integer.toString(i))));
+      }
+      assertLookup(tlog, positions);
+      assertEquals(mappedSize, tlog.getMappedSize());
+
+      // the reverse reader skips document data
+      TransactionLog.ReverseReader reverseReader = tlog.getReverseReader();
+      for (int i = 0; i < 2 * numDocs; i++) {
+        assertNotNull(reverseReader.next());
+      }
+      assertNull(reverseReader.next());
+      reverseReader.close();
+    }
+
+    try (TransactionLog tlog = new TransactionLog(logFile, null, true)) {
+      tlog.setMmapReads(true);
+      LogReader reader = tlog.getReader(0);
+      for (int i = 0; i < 2 * numDocs; i++) {
+        assertEquals(Integer.toString(i), getId(reader.next()));
+      }
+      assertNull(reader.next());
+      reader.close();
+      assertEquals(tlog.getLogSize(), tlog.getMappedSize());
+      assertLookup(tlog, positions);
+    }
+  }
+
+  private static void assertLookup(TransactionLog tlog, List<Long> positions) {
+    for (int i = 0; i < positions.size(); i++) {
+      assertEquals(Integer.toString(i), getId(tlog.lookup(positions.get(i))));
+    }
+  }
+
+  private static String getId(Object entry) {
+    assertNotNull(entry);
+    SolrInputDocument doc = (SolrInputDocument) ((List<?>) entry).get(2);
+    return (String) doc.getFieldValue("id");
+  }
+
+  private static AddUpdateCommand newAddCommand(String id) {
+    AddUpdateCommand updateCommand = new AddUpdateCommand(null);
+    updateCommand.solrDoc = new SolrInputDocument("id", id);
+    return updateCommand;
+  }
 }
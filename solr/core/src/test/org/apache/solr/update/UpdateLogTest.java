@@ -23,14 +23,22 @@ import java.io.IOException;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.util.BytesRef;
 import org.apache.solr.SolrTestCaseJ4;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
 import org.apache.solr.handler.component.RealTimeGetComponent;
 import org.apache.solr.request.SolrQueryRequest;
 import org.junit.AfterClass;
@@ -240,6 +248,59 @@ public class UpdateLogTest extends SolrTestCaseJ4 {
         ulog, null, sdoc("id", "1", "title_s", "title1", "val1_i_dvo", "1", "_version_", "100"));
   }
 
+  @Test
+  public void testLookupDuringRollover() throws Exception {
+    final int numDocs = atLeast(500);
+    final AtomicInteger numAdded = new AtomicInteger();
+    final AtomicBoolean done = new AtomicBoolean();
+    ExecutorService executor =
+        ExecutorUtil.newMDCAwareCachedThreadPool(
+            new SolrNamedThreadFactory("testLookupDuringRollover"));
+    try {
+      List<Future<?>> lookups = new ArrayList<>();
+      for (int t = 0; t < 2; t++) {
+        final Random r = new Random(random().nextLong());
+        lookups.add(
+            executor.submit(
+                () -> {
+                  while (!done.get()) {
+                    int n = numAdded.get();
+                    if (n == 0) {
+                      Thread.yield();
+                      continue;
+                    }
+                    // either still in one of the maps, or rolled out of them after some commits
+                    String id = "roll_" + r.nextInt(n);
+                    Object entry = ulog.lookup(new BytesRef(id));
+                    if (entry != null) {
+                      List<?> record = (List<?>) entry;
+                      SolrInputDocument doc = (SolrInputDocument) record.get(record.size() - 1);
+                      assertEquals(id, doc.getFieldValue("id"));
+                    }
+                  }
+                  return null;
+                }));
+      }
+
+      // the commits roll the maps over, and close the oldest logs
+      for (int i = 0; i < numDocs; i++) {
+        ulogAdd(ulog, null, sdoc("id", "roll_" + i, "_version_", Long.toString(1000 + i)));
+        numAdded.incrementAndGet();
+        if (random().nextInt(10) == 0) {
+          ulogCommit(ulog);
+        }
+      }
+      done.set(true);
+      for (Future<?> lookup : lookups) {
+        lookup.get();
+      }
+      assertNotNull(ulog.lookup(new BytesRef("roll_" + (numDocs - 1))));
+    } finally {
+      done.set(true);
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+    }
+  }
+
   /** Simulate a commit on a given updateLog */
   private static void ulogCommit(UpdateLog ulog) {
     try (SolrQueryRequest req = req()) {
@@ -20,6 +20,7 @@ package org.apache.solr.util;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.solr.SolrTestCase;
 
 public class DynamicMapsTest extends SolrTestCase {
@@ -66,6 +67,78 @@ public class DynamicMapsTest extends SolrTestCase {
     assertEquals(-1, map.get(0));
   }
 
+  public void testPagedMap() {
+    int maxKey = DynamicMap.PAGE_SIZE * 200;
+    // switches from the hash map to the pages after a few keys
+    IntIntDynamicMap map = new IntIntDynamicMap(640, -1);
+    Map<Integer, Integer> standard = new HashMap<>();
+    for (int i = 0; i < 100; i++) {
+      int key = random().nextInt(maxKey);
+      int val = random().nextInt(Integer.MAX_VALUE);
+      standard.put(key, val);
+      map.put(key, val);
+    }
+    // only the pages of the keys are allocated
+    long ramBytesUsed = map.ramBytesUsed();
+    assertTrue(ramBytesUsed < (long) Integer.BYTES * maxKey * 3 / 4);
+
+    for (Map.Entry<Integer, Integer> entry : standard.entrySet()) {
+      assertEquals((int) entry.getValue(), map.get(entry.getKey()));
+    }
+    AtomicInteger size = new AtomicInteger(0);
+    map.forEachValue(i -> size.incrementAndGet());
+    assertEquals(standard.size(), size.get());
+
+    for (int key : standard.keySet()) {
+      map.remove(key);
+      assertEquals(-1, map.get(key));
+    }
+    map.forEachValue(i -> fail());
+    assertEquals(-1, map.get(maxKey * 2));
+    assertEquals(ramBytesUsed, map.ramBytesUsed());
+  }
+
+  public void testPagesAllocatedByDensity() {
+    int expectedKeyMax = DynamicMap.PAGE_SIZE * 64;
+    IntIntDynamicMap map = new IntIntDynamicMap(expectedKeyMax, -1);
+    Map<Integer, Integer> standard = new HashMap<>();
+    // keys spread evenly below expectedKeyMax, until the map switches from the hash map to pages
+    int numKeys = expectedKeyMax >>> 6;
+    int step = expectedKeyMax / numKeys;
+    for (int i = 0; i < numKeys; i++) {
+      standard.put(i * step, i);
+      map.put(i * step, i);
+    }
+    // every page holds a few keys, which don't cost an array of the page
+    long flatBytes = (long) Integer.BYTES * expectedKeyMax;
+    long ramBytesUsed = map.ramBytesUsed();
+    assertTrue(ramBytesUsed + " >= " + flatBytes / 4, ramBytesUsed < flatBytes / 4);
+
+    // filling the first page makes it an array
+    for (int key = 0; key < DynamicMap.DENSE_PAGE_KEYS; key++) {
+      standard.put(key, -key - 2);
+      map.put(key, -key - 2);
+    }
+    long pageBytes = RamUsageEstimator.sizeOf(new int[DynamicMap.PAGE_SIZE]);
+    long denseBytesUsed = map.ramBytesUsed();
+    assertTrue(denseBytesUsed > ramBytesUsed + pageBytes / 2);
+    assertTrue(denseBytesUsed <= ramBytesUsed + pageBytes);
+
+    for (Map.Entry<Integer, Integer> entry : standard.entrySet()) {
+      assertEquals((int) entry.getValue(), map.get(entry.getKey()));
+    }
+    assertEquals(-1, map.get(step * (numKeys - 1) + 1));
+    assertEquals(-1, map.get(DynamicMap.DENSE_PAGE_KEYS + 1));
+    AtomicInteger size = new AtomicInteger(0);
+    map.forEachValue(i -> size.incrementAndGet());
+    assertEquals(standard.size(), size.get());
+
+    map.remove(0);
+    map.remove(step * (numKeys - 1));
+    assertEquals(-1, map.get(0));
+    assertEquals(-1, map.get(step * (numKeys - 1)));
+  }
+
   public void testIntIntMap() {
     IntIntDynamicMap map = new IntIntDynamicMap(10, -1);
     Map<Integer, Integer> standard = new HashMap<>();
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
+import org.junit.Test;
+
+public class PartitionedExecutorTest extends SolrTestCase {
+
+  private static OrderedExecutor<Object> newOrderedExecutor(int numThreads) {
+    // the replay executor in CoreContainer
+    return new OrderedExecutor<>(
+        numThreads,
+        ExecutorUtil.newMDCAwareCachedThreadPool(
+            numThreads, numThreads, new SolrNamedThreadFactory("testPartitionedExecutor")));
+  }
+
+  @Test
+  public void testOrderPerKey() throws Exception {
+    final int numThreads = 4;
+    final int numKeys = atLeast(10);
+    final int numTasks = atLeast(1000);
+    OrderedExecutor<Object> delegate = newOrderedExecutor(numThreads);
+    try {
+      PartitionedExecutor<Integer> executor =
+          new PartitionedExecutor<>(numThreads, delegate, random().nextInt(20) + 1);
+      List<List<Integer>> seen = new ArrayList<>();
+      for (int k = 0; k < numKeys; k++) {
+        seen.add(Collections.synchronizedList(new ArrayList<>()));
+      }
+      for (int i = 0; i < numTasks; i++) {
+        final int key = random().nextInt(numKeys);
+        final int seq = i;
+        executor.execute(key, () -> seen.get(key).add(seq));
+      }
+      executor.awaitIdle();
+
+      int total = 0;
+      for (List<Integer> perKey : seen) {
+        List<Integer> sorted = new ArrayList<>(perKey);
+        Collections.sort(sorted);
+        assertEquals(sorted, perKey);
+        total += perKey.size();
+      }
+      assertEquals(numTasks, total);
+    } finally {
+      delegate.shutdownAndAwaitTermination();
+    }
+  }
+
+  @Test
+  public void testBusyKeyDoesNotBlockOthers() throws Exception {
+    OrderedExecutor<Object> delegate = newOrderedExecutor(2);
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      PartitionedExecutor<Integer> executor = new PartitionedExecutor<>(2, delegate, 10);
+      AtomicInteger done = new AtomicInteger();
+      executor.execute(
+          0,
+          () -> {
+            try {
+              assertTrue(release.await(60, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            done.incrementAndGet();
+          });
+      // queued behind the blocked task rather than blocking the caller
+      executor.execute(0, () -> assertEquals(2, done.incrementAndGet()));
+
+      CountDownLatch otherRan = new CountDownLatch(1);
+      executor.execute(1, otherRan::countDown);
+      assertTrue(otherRan.await(60, TimeUnit.SECONDS));
+      assertEquals(0, done.get());
+
+      release.countDown();
+      executor.awaitIdle();
+      assertEquals(2, done.get());
+    } finally {
+      release.countDown();
+      delegate.shutdownAndAwaitTermination();
+    }
+  }
+
+  @Test
+  public void testMaxPending() throws Exception {
+    OrderedExecutor<Object> delegate = newOrderedExecutor(1);
+    ExecutorService controlExecutor =
+        ExecutorUtil.newMDCAwareCachedThreadPool("testMaxPending_control");
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      PartitionedExecutor<Integer> executor = new PartitionedExecutor<>(1, delegate, 2);
+      Runnable blocked =
+          () -> {
+            try {
+              release.await(60, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          };
+      executor.execute(0, blocked);
+      executor.execute(0, blocked);
+
+      CountDownLatch submitted = new CountDownLatch(1);
+      controlExecutor.execute(
+          () -> {
+            try {
+              executor.execute(0, () -> {});
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            submitted.countDown();
+          });
+      assertFalse(submitted.await(100, TimeUnit.MILLISECONDS));
+
+      release.countDown();
+      assertTrue(submitted.await(60, TimeUnit.SECONDS));
+      executor.awaitIdle();
+    } finally {
+      release.countDown();
+      ExecutorUtil.shutdownAndAwaitTermination(controlExecutor);
+      delegate.shutdownAndAwaitTermination();
+    }
+  }
+
+  @Test
+  public void testInterruptedWhileScheduling() throws Exception {
+    OrderedExecutor<Object> delegate = newOrderedExecutor(1);
+    try {
+      PartitionedExecutor<Integer> executor = new PartitionedExecutor<>(1, delegate, 10);
+      AtomicInteger ran = new AtomicInteger();
+      // OrderedExecutor silently drops the tasks submitted by an interrupted thread
+      Thread.currentThread().interrupt();
+      expectThrows(InterruptedException.class, () -> executor.execute(0, ran::incrementAndGet));
+      assertFalse(Thread.currentThread().isInterrupted());
+
+      // neither pending nor stuck as scheduled
+      executor.awaitIdle();
+      executor.execute(0, ran::incrementAndGet);
+      executor.awaitIdle();
+      assertEquals(1, ran.get());
+    } finally {
+      delegate.shutdownAndAwaitTermination();
+    }
+  }
+}
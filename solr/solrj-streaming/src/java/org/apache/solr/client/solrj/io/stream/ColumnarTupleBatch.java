@@ -0,0 +1,667 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.client.solrj.io.stream;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.solr.common.IteratorWriter;
+import org.apache.solr.common.MapWriter;
+
+/**
+ * A batch of tuples written column by column: the values of each field are written together, as a
+ * primitive array when they all have the same numeric, boolean or date type, and strings are
+ * dictionary encoded. This is what the /export handler writes instead of individual tuples when
+ * {@code wt=javabin-columnar}, and what {@link ColumnarTupleStreamParser} reads.
+ *
+ * <p>A batch is written as a map with the number of tuples under {@value #ROWS} and the list of
+ * columns under {@value #COLUMNS}. A column has a {@value #NAME}, a {@value #TYPE}, the {@value
+ * #VALUES} of the tuples that have the field, in order, and, unless all of them have it, a bitset
+ * of the tuples that do, as a {@code long[]} under {@value #PRESENT}. The values of a {@value
+ * #STRING} column are indexes into the {@code List} of distinct strings under {@value #DICTIONARY}.
+ * Values of fields that don't have a single type are written as a {@code List}, in a column of type
+ * {@value #OBJECT}.
+ */
+public class ColumnarTupleBatch implements MapWriter {
+
+  /** The value of the {@code wt} parameter to request columnar batches from the /export handler */
+  public static final String WT = "javabin-columnar";
+
+  /** The maximum number of tuples in a batch written by the /export handler */
+  public static final int DEFAULT_MAX_ROWS = 1024;
+
+  static final String ROWS = "_ROWS_";
+  static final String COLUMNS = "_COLUMNS_";
+  static final String NAME = "name";
+  static final String TYPE = "type";
+  static final String PRESENT = "present";
+  static final String VALUES = "values";
+  static final String DICTIONARY = "dict";
+
+  static final String INT = "int";
+  static final String LONG = "long";
+  static final String FLOAT = "float";
+  static final String DOUBLE = "double";
+  static final String BOOLEAN = "boolean";
+  static final String DATE = "date";
+  static final String STRING = "string";
+  static final String OBJECT = "object";
+
+  private final Map<String, Column> columns = new LinkedHashMap<>();
+  private final RowWriter rowWriter = new RowWriter();
+  private int numRows;
+
+  /** Adds the entries of {@code row} as the next tuple of the batch */
+  public void addRow(MapWriter row) throws IOException {
+    row.writeMap(rowWriter);
+    numRows++;
+  }
+
+  /** The number of tuples in the batch */
+  public int size() {
+    return numRows;
+  }
+
+  /** Removes all the tuples from the batch */
+  public void clear() {
+    columns.clear();
+    numRows = 0;
+  }
+
+  @Override
+  public void writeMap(EntryWriter ew) throws IOException {
+    ew.put(ROWS, numRows);
+    ew.put(
+        COLUMNS,
+        (IteratorWriter)
+            iw -> {
+              for (Column column : columns.values()) {
+                iw.add(column);
+              }
+            });
+  }
+
+  /** Whether an item read from the response is a batch, rather than e.g. an exception tuple */
+  static boolean isBatch(Map<?, ?> item) {
+    return item.containsKey(COLUMNS);
+  }
+
+  /**
+   * Decodes a batch, as read by {@link JavabinTupleStreamParser}, into its tuples.
+   *
+   * @param onlyJsonTypes whether to convert values to the types they'd have in a JSON response,
+   *     like {@link JavabinTupleStreamParser} does
+   */
+  static List<Map<String, Object>> decode(Map<?, ?> batch, boolean onlyJsonTypes) {
+    int numRows = ((Number) batch.get(ROWS)).intValue();
+    List<?> columns = (List<?>) batch.get(COLUMNS);
+    List<Map<String, Object>> rows = new ArrayList<>(numRows);
+    for (int row = 0; row < numRows; row++) {
+      rows.add(new LinkedHashMap<>(columns.size() * 2));
+    }
+    for (Object o : columns) {
+      Map<?, ?> column = (Map<?, ?>) o;
+      String name = column.get(NAME).toString();
+      String type = column.get(TYPE).toString();
+      long[] present = (long[]) column.get(PRESENT);
+      Object values = column.get(VALUES);
+      List<?> dictionary = (List<?>) column.get(DICTIONARY);
+      int i = 0;
+      for (int row = 0; row < numRows; row++) {
+        if (present != null && (present[row >>> 6] & (1L << row)) == 0) {
+          continue;
+        }
+        rows.get(row).put(name, decodeValue(type, values, dictionary, i++, onlyJsonTypes));
+      }
+    }
+    return rows;
+  }
+
+  private static Object decodeValue(
+      String type, Object values, List<?> dictionary, int i, boolean onlyJsonTypes) {
+    switch (type) {
+      case INT:
+        int intValue = ((int[]) values)[i];
+        return onlyJsonTypes ? (Object) (long) intValue : (Object) intValue;
+      case LONG:
+        return ((long[]) values)[i];
+      case FLOAT:
+        float floatValue = ((float[]) values)[i];
+        return onlyJsonTypes ? (Object) (double) floatValue : (Object) floatValue;
+      case DOUBLE:
+        return ((double[]) values)[i];
+      case BOOLEAN:
+        return ((boolean[]) values)[i];
+      case DATE:
+        long time = ((long[]) values)[i];
+        return onlyJsonTypes ? Instant.ofEpochMilli(time).toString() : new Date(time);
+      case STRING:
+        return dictionary.get(((int[]) values)[i]).toString();
+      case OBJECT:
+        return ((List<?>) values).get(i);
+      default:
+        throw new IllegalArgumentException("Unknown column type: " + type);
+    }
+  }
+
+  /** Adds the entries of a tuple to their columns */
+  private class RowWriter implements EntryWriter {
+
+    @Override
+    public EntryWriter put(CharSequence k, Object v) throws IOException {
+      if (v == null) {
+        return this;
+      } else if (v instanceof Integer i) {
+        return put(k, i.intValue());
+      } else if (v instanceof Long l) {
+        return put(k, l.longValue());
+      } else if (v instanceof Float f) {
+        return put(k, f.floatValue());
+      } else if (v instanceof Double d) {
+        return put(k, d.doubleValue());
+      } else if (v instanceof Boolean b) {
+        return put(k, b.booleanValue());
+      } else if (v instanceof Date d) {
+        String name = k.toString();
+        Column column = columns.get(name);
+        if (column == null) {
+          columns.put(name, column = new DateColumn(name));
+        }
+        if (!column.addDate(numRows, d.getTime())) {
+          toObjectColumn(column).addObject(numRows, v);
+        }
+        return this;
+      } else if (v instanceof CharSequence s) {
+        String name = k.toString();
+        Column column = columns.get(name);
+        if (column == null) {
+          columns.put(name, column = new StringColumn(name));
+        }
+        // the value may be a reused buffer
+        String str = s.toString();
+        if (!column.addString(numRows, str)) {
+          toObjectColumn(column).addObject(numRows, str);
+        }
+        return this;
+      }
+      // the value may be backed by e.g. doc values iterators, which move on to the next tuple
+      if (v instanceof IteratorWriter iw) {
+        v = iw.toList(new ArrayList<>());
+      } else if (v instanceof MapWriter mw) {
+        v = mw.toMap(new LinkedHashMap<>());
+      }
+      String name = k.toString();
+      Column column = columns.get(name);
+      if (column == null) {
+        columns.put(name, column = new ObjectColumn(name));
+      }
+      toObjectColumn(column).addObject(numRows, v);
+      return this;
+    }
+
+    @Override
+    public EntryWriter put(CharSequence k, int v) throws IOException {
+      String name = k.toString();
+      Column column = columns.get(name);
+      if (column == null) {
+        columns.put(name, column = new IntColumn(name));
+      }
+      if (!column.addInt(numRows, v)) {
+        toObjectColumn(column).addObject(numRows, v);
+      }
+      return this;
+    }
+
+    @Override
+    public EntryWriter put(CharSequence k, long v) throws IOException {
+      String name = k.toString();
+      Column column = columns.get(name);
+      if (column == null) {
+        columns.put(name, column = new LongColumn(name));
+      }
+      if (!column.addLong(numRows, v)) {
+        toObjectColumn(column).addObject(numRows, v);
+      }
+      return this;
+    }
+
+    @Override
+    public EntryWriter put(CharSequence k, float v) throws IOException {
+      String name = k.toString();
+      Column column = columns.get(name);
+      if (column == null) {
+        columns.put(name, column = new FloatColumn(name));
+      }
+      if (!column.addFloat(numRows, v)) {
+        toObjectColumn(column).addObject(numRows, v);
+      }
+      return this;
+    }
+
+    @Override
+    public EntryWriter put(CharSequence k, double v) throws IOException {
+      String name = k.toString();
+      Column column = columns.get(name);
+      if (column == null) {
+        columns.put(name, column = new DoubleColumn(name));
+      }
+      if (!column.addDouble(numRows, v)) {
+        toObjectColumn(column).addObject(numRows, v);
+      }
+      return this;
+    }
+
+    @Override
+    public EntryWriter put(CharSequence k, boolean v) throws IOException {
+      String name = k.toString();
+      Column column = columns.get(name);
+      if (column == null) {
+        columns.put(name, column = new BooleanColumn(name));
+      }
+      if (!column.addBoolean(numRows, v)) {
+        toObjectColumn(column).addObject(numRows, v);
+      }
+      return this;
+    }
+  }
+
+  /** Turns a column into one that can hold values of any type, once it gets one it can't hold */
+  private ObjectColumn toObjectColumn(Column column) {
+    if (column instanceof ObjectColumn objectColumn) {
+      return objectColumn;
+    }
+    ObjectColumn objectColumn = new ObjectColumn(column.name);
+    objectColumn.present = column.present;
+    objectColumn.numValues = column.numValues;
+    objectColumn.lastRow = column.lastRow;
+    for (int i = 0; i < column.numValues; i++) {
+      objectColumn.values.add(column.get(i));
+    }
+    columns.put(column.name, objectColumn);
+    return objectColumn;
+  }
+
+  /**
+   * The values of a field in the batch. The {@code add} methods return false if the column can't
+   * hold the value, or when the field is repeated in a tuple.
+   */
+  private abstract class Column implements MapWriter {
+    final String name;
+    long[] present = new long[1];
+    int numValues;
+    int lastRow = -1;
+
+    Column(String name) {
+      this.name = name;
+    }
+
+    abstract String type();
+
+    /** The values of the tuples that have the field, as written */
+    abstract Object values();
+
+    /** The value of the i-th tuple having the field, boxed the same way as it was added */
+    abstract Object get(int i);
+
+    /** Records that the tuple has a value, returns the index of the value */
+    int markPresent(int row) {
+      int word = row >>> 6;
+      if (word >= present.length) {
+        present = Arrays.copyOf(present, Math.max(word + 1, present.length * 2));
+      }
+      present[word] |= 1L << row;
+      lastRow = row;
+      return numValues++;
+    }
+
+    boolean addInt(int row, int v) {
+      return false;
+    }
+
+    boolean addLong(int row, long v) {
+      return false;
+    }
+
+    boolean addFloat(int row, float v) {
+      return false;
+    }
+
+    boolean addDouble(int row, double v) {
+      return false;
+    }
+
+    boolean addBoolean(int row, boolean v) {
+      return false;
+    }
+
+    boolean addDate(int row, long time) {
+      return false;
+    }
+
+    boolean addString(int row, String v) {
+      return false;
+    }
+
+    @Override
+    public void writeMap(EntryWriter ew) throws IOException {
+      ew.put(NAME, name);
+      ew.put(TYPE, type());
+      if (numValues < numRows) {
+        ew.put(PRESENT, Arrays.copyOf(present, (numRows + 63) >>> 6));
+      }
+      ew.put(VALUES, values());
+    }
+  }
+
+  private class IntColumn extends Column {
+    int[] values = new int[16];
+
+    IntColumn(String name) {
+      super(name);
+    }
+
+    @Override
+    boolean addInt(int row, int v) {
+      if (row == lastRow) {
+        return false;
+      }
+      if (numValues == values.length) {
+        values = Arrays.copyOf(values, values.length * 2);
+      }
+      values[markPresent(row)] = v;
+      return true;
+    }
+
+    @Override
+    String type() {
+      return INT;
+    }
+
+    @Override
+    Object values() {
+      return Arrays.copyOf(values, numValues);
+    }
+
+    @Override
+    Object get(int i) {
+      return values[i];
+    }
+  }
+
+  private class LongColumn extends Column {
+    long[] values = new long[16];
+
+    LongColumn(String name) {
+      super(name);
+    }
+
+    @Override
+    boolean addLong(int row, long v) {
+      if (row == lastRow) {
+        return false;
+      }
+      if (numValues == values.length) {
+        values = Arrays.copyOf(values, values.length * 2);
+      }
+      values[markPresent(row)] = v;
+      return true;
+    }
+
+    @Override
+    String type() {
+      return LONG;
+    }
+
+    @Override
+    Object values() {
+      return Arrays.copyOf(values, numValues);
+    }
+
+    @Override
+    Object get(int i) {
+      return values[i];
+    }
+  }
+
+  private class DateColumn extends LongColumn {
+
+    DateColumn(String name) {
+      super(name);
+    }
+
+    @Override
+    boolean addLong(int row, long v) {
+      return false;
+    }
+
+    @Override
+    boolean addDate(int row, long time) {
+      return super.addLong(row, time);
+    }
+
+    @Override
+    String type() {
+      return DATE;
+    }
+
+    @Override
+    Object get(int i) {
+      return new Date(values[i]);
+    }
+  }
+
+  private class FloatColumn extends Column {
+    float[] values = new float[16];
+
+    FloatColumn(String name) {
+      super(name);
+    }
+
+    @Override
+    boolean addFloat(int row, float v) {
+      if (row == lastRow) {
+        return false;
+      }
+      if (numValues == values.length) {
+        values = Arrays.copyOf(values, values.length * 2);
+      }
+      values[markPresent(row)] = v;
+      return true;
+    }
+
+    @Override
+    String type() {
+      return FLOAT;
+    }
+
+    @Override
+    Object values() {
+      return Arrays.copyOf(values, numValues);
+    }
+
+    @Override
+    Object get(int i) {
+      return values[i];
+    }
+  }
+
+  private class DoubleColumn extends Column {
+    double[] values = new double[16];
+
+    DoubleColumn(String name) {
+      super(name);
+    }
+
+    @Override
+    boolean addDouble(int row, double v) {
+      if (row == lastRow) {
+        return false;
+      }
+      if (numValues == values.length) {
+        values = Arrays.copyOf(values, values.length * 2);
+      }
+      values[markPresent(row)] = v;
+      return true;
+    }
+
+    @Override
+    String type() {
+      return DOUBLE;
+    }
+
+    @Override
+    Object values() {
+      return Arrays.copyOf(values, numValues);
+    }
+
+    @Override
+    Object get(int i) {
+      return values[i];
+    }
+  }
+
+  private class BooleanColumn extends Column {
+    boolean[] values = new boolean[16];
+
+    BooleanColumn(String name) {
+      super(name);
+    }
+
+    @Override
+    boolean addBoolean(int row, boolean v) {
+      if (row == lastRow) {
+        return false;
+      }
+      if (numValues == values.length) {
+        values = Arrays.copyOf(values, values.length * 2);
+      }
+      values[markPresent(row)] = v;
+      return true;
+    }
+
+    @Override
+    String type() {
+      return BOOLEAN;
+    }
+
+    @Override
+    Object values() {
+      return Arrays.copyOf(values, numValues);
+    }
+
+    @Override
+    Object get(int i) {
+      return values[i];
+    }
+  }
+
+  private class StringColumn extends Column {
+    final Map<String, Integer> ords = new HashMap<>();
+    final List<String> dictionary = new ArrayList<>();
+    int[] values = new int[16];
+    // exports are sorted, so values often repeat
+    String last;
+    int lastOrd;
+
+    StringColumn(String name) {
+      super(name);
+    }
+
+    @Override
+    boolean addString(int row, String v) {
+      if (row == lastRow) {
+        return false;
+      }
+      if (!v.equals(last)) {
+        Integer ord = ords.get(v);
+        if (ord == null) {
+          ord = dictionary.size();
+          ords.put(v, ord);
+          dictionary.add(v);
+        }
+        last = v;
+        lastOrd = ord;
+      }
+      if (numValues == values.length) {
+        values = Arrays.copyOf(values, values.length * 2);
+      }
+      values[markPresent(row)] = lastOrd;
+      return true;
+    }
+
+    @Override
+    String type() {
+      return STRING;
+    }
+
+    @Override
+    Object values() {
+      return Arrays.copyOf(values, numValues);
+    }
+
+    @Override
+    Object get(int i) {
+      return dictionary.get(values[i]);
+    }
+
+    @Override
+    public void writeMap(EntryWriter ew) throws IOException {
+      super.writeMap(ew);
+      ew.put(DICTIONARY, dictionary);
+    }
+  }
+
+  private class ObjectColumn extends Column {
+    final List<Object> values = new ArrayList<>();
+
+    ObjectColumn(String name) {
+      super(name);
+    }
+
+    void addObject(int row, Object v) {
+      if (row == lastRow) {
+        // like in a map, the last value of a repeated field wins
+        values.set(numValues - 1, v);
+      } else {
+        values.add(v);
+        markPresent(row);
+      }
+    }
+
+    @Override
+    String type() {
+      return OBJECT;
+    }
+
+    @Override
+    Object values() {
+      return values;
+    }
+
+    @Override
+    Object get(int i) {
+      return values.get(i);
+    }
+  }
+}
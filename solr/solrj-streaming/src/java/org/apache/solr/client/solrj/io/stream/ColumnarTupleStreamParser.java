@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.client.solrj.io.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the tuples of a response written in {@link ColumnarTupleBatch}es, i.e. with {@code
+ * wt=javabin-columnar}.
+ */
+public class ColumnarTupleStreamParser extends JavabinTupleStreamParser {
+  private final boolean onlyJsonTypes;
+  private List<Map<String, Object>> batch = List.of();
+  private int nextRow;
+
+  public ColumnarTupleStreamParser(InputStream is, boolean onlyJsonTypes) throws IOException {
+    super(is, onlyJsonTypes);
+    this.onlyJsonTypes = onlyJsonTypes;
+  }
+
+  @Override
+  public Map<String, Object> next() throws IOException {
+    while (nextRow == batch.size()) {
+      Map<String, Object> item = super.next();
+      if (item == null || !ColumnarTupleBatch.isBatch(item)) {
+        // e.g. an exception
+        return item;
+      }
+      batch = ColumnarTupleBatch.decode(item, onlyJsonTypes);
+      nextRow = 0;
+    }
+    return batch.get(nextRow++);
+  }
+}
@@ -318,6 +318,8 @@ public class SolrStream extends TupleStream {
 
     if (CommonParams.JAVABIN.equals(wt)) {
       return new JavabinTupleStreamParser(stream, true);
+    } else if (ColumnarTupleBatch.WT.equals(wt)) {
+      return new ColumnarTupleStreamParser(stream, true);
     } else {
       InputStreamReader reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
       return new JSONTupleStream(reader);
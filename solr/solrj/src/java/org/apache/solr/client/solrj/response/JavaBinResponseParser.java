@@ -31,12 +31,23 @@ public class JavaBinResponseParser extends ResponseParser {
   public static final String JAVABIN_CONTENT_TYPE = "application/octet-stream";
 
   protected JavaBinCodec.StringCache stringCache;
+  protected boolean readDocsLazily;
 
   public JavaBinResponseParser setStringCache(JavaBinCodec.StringCache cache) {
     this.stringCache = cache;
     return this;
   }
 
+  /**
+   * Decode the fields of the documents of responses only when accessed
+   *
+   * @see JavaBinCodec#setReadDocsLazily(boolean)
+   */
+  public JavaBinResponseParser setReadDocsLazily(boolean readDocsLazily) {
+    this.readDocsLazily = readDocsLazily;
+    return this;
+  }
+
   @Override
   public String getWriterType() {
     return "javabin";
@@ -49,7 +60,7 @@ public class JavaBinResponseParser extends ResponseParser {
   }
 
   protected JavaBinCodec createCodec() {
-    return new JavaBinCodec(null, stringCache);
+    return new JavaBinCodec(null, stringCache).setReadDocsLazily(readDocsLazily);
   }
 
   @Override
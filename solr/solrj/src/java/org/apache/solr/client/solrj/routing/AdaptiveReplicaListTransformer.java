@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.routing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+
+/**
+ * Orders replicas by how well they have recently been responding, as ranked by {@link
+ * ReplicaLatencyStats#score(Object)}, so that requests are routed around slow, overloaded or
+ * failing replicas. Scores are randomly scaled up by as much as {@code jitter} (e.g. 0.2 for 20%)
+ * so that replicas performing about equally share the load, rather than all requests going to
+ * whichever replica was marginally faster lately.
+ */
+public class AdaptiveReplicaListTransformer implements ReplicaListTransformer {
+
+  private final ReplicaLatencyStats stats;
+  private final double jitter;
+  private final Random r;
+
+  public AdaptiveReplicaListTransformer(ReplicaLatencyStats stats, double jitter, Random r) {
+    this.stats = stats;
+    this.jitter = jitter;
+    this.r = r;
+  }
+
+  @Override
+  public <T> void transform(List<T> choices) {
+    if (choices.size() > 1) {
+      // shuffle first, so that ties (e.g. replicas without stats) are broken randomly
+      Collections.shuffle(choices, r);
+      List<ScoredChoice<T>> scored = new ArrayList<>(choices.size());
+      for (T choice : choices) {
+        scored.add(new ScoredChoice<>(choice, stats.score(choice) * (1 + jitter * r.nextDouble())));
+      }
+      scored.sort(SCORED_CHOICE_COMPARATOR);
+      ListIterator<T> iter = choices.listIterator();
+      for (ScoredChoice<T> s : scored) {
+        iter.next();
+        iter.set(s.choice);
+      }
+    }
+  }
+
+  private record ScoredChoice<T>(T choice, double score) {}
+
+  private static final Comparator<ScoredChoice<?>> SCORED_CHOICE_COMPARATOR =
+      Comparator.comparingDouble(ScoredChoice::score);
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.routing;
+
+import java.util.Random;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+
+/**
+ * Creates {@link AdaptiveReplicaListTransformer}s sharing one {@link ReplicaLatencyStats}, which
+ * the client sending the requests must keep up to date.
+ */
+public class AdaptiveReplicaListTransformerFactory implements ReplicaListTransformerFactory {
+
+  /** Config name of the weight of a new sample in the moving averages */
+  public static final String ALPHA = "alpha";
+
+  /** Config name of the time after which the stats of a replica without responses are discarded */
+  public static final String STALE_AFTER_MS = "staleAfterMs";
+
+  /** Config name of the maximum fraction by which scores are randomly scaled up */
+  public static final String JITTER = "jitter";
+
+  public static final double DEFAULT_ALPHA = 0.3;
+  public static final long DEFAULT_STALE_AFTER_MS = 30_000;
+  public static final double DEFAULT_JITTER = 0.2;
+
+  private final ReplicaLatencyStats stats;
+  private final ReplicaListTransformer transformer;
+
+  public AdaptiveReplicaListTransformerFactory() {
+    this(DEFAULT_ALPHA, DEFAULT_STALE_AFTER_MS, DEFAULT_JITTER);
+  }
+
+  public AdaptiveReplicaListTransformerFactory(double alpha, long staleAfterMs, double jitter) {
+    if (!(jitter >= 0)) {
+      throw new IllegalArgumentException("jitter must not be negative: " + jitter);
+    }
+    this.stats = new ReplicaLatencyStats(alpha, staleAfterMs);
+    this.transformer = new AdaptiveReplicaListTransformer(stats, jitter, new Random());
+  }
+
+  public AdaptiveReplicaListTransformerFactory(NamedList<?> c) {
+    this(
+        getDouble(c, ALPHA, DEFAULT_ALPHA),
+        getDouble(c, STALE_AFTER_MS, DEFAULT_STALE_AFTER_MS).longValue(),
+        getDouble(c, JITTER, DEFAULT_JITTER));
+  }
+
+  private static Double getDouble(NamedList<?> c, String name, double defaultValue) {
+    Object val = c.get(name);
+    if (val == null) {
+      return defaultValue;
+    } else if (val instanceof Number n) {
+      return n.doubleValue();
+    } else {
+      return Double.parseDouble(val.toString());
+    }
+  }
+
+  /** The stats the created transformers rank replicas by */
+  public ReplicaLatencyStats getStats() {
+    return stats;
+  }
+
+  @Override
+  public ReplicaListTransformer getInstance(
+      String configSpec, SolrParams requestParams, ReplicaListTransformerFactory fallback) {
+    if (configSpec != null) {
+      throw new IllegalArgumentException("Invalid routing spec: \"" + configSpec + '"');
+    }
+    return transformer;
+  }
+}
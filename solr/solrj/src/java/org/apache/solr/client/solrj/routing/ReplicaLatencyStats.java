@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.routing;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.util.TimeSource;
+import org.apache.solr.common.util.URLUtil;
+
+/**
+ * Tracks, per replica, the exponentially weighted moving average (EWMA) of response times and of
+ * the error rate, along with the number of requests currently in flight, as observed by this
+ * client. Replicas are identified by their core URL, regardless of the URL scheme.
+ *
+ * <p>Used by {@link AdaptiveReplicaListTransformer} to rank replicas; see {@link #score(Object)}.
+ */
+public class ReplicaLatencyStats {
+
+  /** How much a replica that only returns errors is penalized relative to a healthy one */
+  static final double ERROR_PENALTY = 10.0;
+
+  /** Assumed response time of a replica with requests in flight but no responses yet */
+  static final double UNMEASURED_LATENCY_NS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  /** Bounds the number of replicas tracked, stale ones are dropped beyond this */
+  static final int MAX_TRACKED = 4096;
+
+  private final double alpha;
+  private final long staleAfterNs;
+  private final TimeSource timeSource;
+  private final ConcurrentHashMap<String, Stats> stats = new ConcurrentHashMap<>();
+
+  /**
+   * @param alpha the weight of a new sample in the moving averages, in (0, 1]
+   * @param staleAfterMs after how long without a response the averages of a replica are discarded,
+   *     so that a replica that was slow once is eventually tried again
+   */
+  public ReplicaLatencyStats(double alpha, long staleAfterMs) {
+    this(alpha, staleAfterMs, TimeSource.NANO_TIME);
+  }
+
+  ReplicaLatencyStats(double alpha, long staleAfterMs, TimeSource timeSource) {
+    if (!(alpha > 0 && alpha <= 1)) {
+      throw new IllegalArgumentException("alpha must be in (0, 1]: " + alpha);
+    }
+    this.alpha = alpha;
+    this.staleAfterNs = TimeUnit.MILLISECONDS.toNanos(staleAfterMs);
+    this.timeSource = timeSource;
+  }
+
+  /** Records that a request to the replica with the given URL was sent */
+  public void requestStarted(String url) {
+    if (stats.size() >= MAX_TRACKED) {
+      long now = timeSource.getTimeNs();
+      for (String k : stats.keySet()) {
+        // checked again under the lock of the entry, so that a request started or finished in the
+        // meantime is never counted on an entry that is no longer in the map
+        stats.computeIfPresent(
+            k, (k1, s) -> s.inFlight.get() == 0 && s.isStale(now, staleAfterNs) ? null : s);
+      }
+    }
+    stats.compute(
+        key(url),
+        (k, s) -> {
+          if (s == null) {
+            s = new Stats();
+          }
+          s.inFlight.incrementAndGet();
+          return s;
+        });
+  }
+
+  /**
+   * Records the outcome of a request previously passed to {@link #requestStarted(String)}.
+   *
+   * @param elapsedNs how long it took until the response or error
+   * @param error whether the replica failed to respond successfully
+   */
+  public void requestFinished(String url, long elapsedNs, boolean error) {
+    stats.computeIfPresent(
+        key(url),
+        (k, s) -> {
+          s.inFlight.decrementAndGet();
+          s.update(alpha, elapsedNs, error, timeSource.getTimeNs(), staleAfterNs);
+          return s;
+        });
+  }
+
+  /**
+   * Records that a request previously passed to {@link #requestStarted(String)} was abandoned (e.g.
+   * canceled) without telling anything about the replica.
+   */
+  public void requestAbandoned(String url) {
+    stats.computeIfPresent(
+        key(url),
+        (k, s) -> {
+          s.inFlight.decrementAndGet();
+          return s;
+        });
+  }
+
+  /**
+   * Ranks a replica, lower is better. Following C3, the response time average is scaled by the cube
+   * of the queue this client has on the replica, so that requests move away from a replica as soon
+   * as they start piling up on it, and further by the recent error rate. An idle replica without
+   * recent responses scores 0, so that it is tried and gets measured.
+   *
+   * @param choice a {@link Replica} or a URL
+   */
+  public double score(Object choice) {
+    Stats s = stats.get(key(choice));
+    if (s == null) {
+      return 0;
+    }
+    return s.score(timeSource.getTimeNs(), staleAfterNs);
+  }
+
+  /** The number of requests in flight to the replica, or 0 if it isn't tracked */
+  int inFlight(Object choice) {
+    Stats s = stats.get(key(choice));
+    return s == null ? 0 : s.inFlight.get();
+  }
+
+  static String key(Object choice) {
+    String url;
+    if (choice instanceof Replica replica) {
+      url = replica.getCoreUrl();
+    } else if (choice instanceof String str) {
+      url = str;
+    } else {
+      throw new IllegalArgumentException("can't handle type " + choice.getClass());
+    }
+    if (URLUtil.hasScheme(url)) {
+      url = URLUtil.removeScheme(url);
+    }
+    return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+  }
+
+  private static final class Stats {
+    final AtomicInteger inFlight = new AtomicInteger();
+    // guarded by this
+    private double latencyNs;
+    private double errorRate;
+    private long lastUpdateNs;
+    private boolean measured;
+
+    synchronized void update(
+        double alpha, long elapsedNs, boolean error, long now, long staleAfterNs) {
+      if (isStale(now, staleAfterNs)) {
+        // start over rather than averaging with what no longer reflects the replica
+        measured = true;
+        latencyNs = elapsedNs;
+        errorRate = error ? 1 : 0;
+      } else {
+        latencyNs += alpha * (elapsedNs - latencyNs);
+        errorRate += alpha * ((error ? 1 : 0) - errorRate);
+      }
+      lastUpdateNs = now;
+    }
+
+    synchronized boolean isStale(long now, long staleAfterNs) {
+      return !measured || now - lastUpdateNs > staleAfterNs;
+    }
+
+    synchronized double score(long now, long staleAfterNs) {
+      int queued = inFlight.get();
+      double queue = 1 + queued;
+      if (isStale(now, staleAfterNs)) {
+        // probe it, but don't pile up requests on a replica that doesn't respond
+        if (queued <= 0) {
+          return 0;
+        }
+        return (measured ? latencyNs : UNMEASURED_LATENCY_NS) * queue * queue * queue;
+      }
+      return latencyNs * queue * queue * queue * (1 + ERROR_PENALTY * errorRate);
+    }
+  }
+}
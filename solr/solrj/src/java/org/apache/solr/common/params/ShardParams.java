@@ -60,6 +60,9 @@ public interface ShardParams {
   /** Should things fail if there is an error? (true/false/requireZkConnected) */
   String SHARDS_TOLERANT = "shards.tolerant";
 
+  /** Send slow shard requests to another replica too and use the first response? (true/false) */
+  String SHARDS_HEDGE = "shards.hedge";
+
   /** query purpose for shard requests */
   String SHARDS_PURPOSE = "shards.purpose";
 
@@ -93,6 +96,9 @@ public interface ShardParams {
   /** Value denoting stable replica sort */
   String REPLICA_STABLE = "stable";
 
+  /** Value denoting replica sort by recent response times, in-flight requests and errors */
+  String REPLICA_ADAPTIVE = "adaptive";
+
   /** configure dividend param for stable replica sort */
   String ROUTING_DIVIDEND = "dividend";
 
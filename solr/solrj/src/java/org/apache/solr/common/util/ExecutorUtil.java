@@ -30,6 +30,9 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -275,6 +278,85 @@ public class ExecutorUtil {
     return executor;
   }
 
+  /**
+   * See {@link java.util.concurrent.Executors#newSingleThreadScheduledExecutor(ThreadFactory)}.
+   * Like {@link MDCAwareThreadPoolExecutor}, tasks run with the MDC context of the thread that
+   * scheduled them. Cancelled tasks are removed from the queue right away.
+   */
+  public static ScheduledExecutorService newMDCAwareSingleThreadScheduledExecutor(
+      ThreadFactory threadFactory) {
+    MDCAwareScheduledThreadPoolExecutor executor =
+        new MDCAwareScheduledThreadPoolExecutor(1, threadFactory);
+    executor.setRemoveOnCancelPolicy(true);
+    return executor;
+  }
+
+  /** A {@link ScheduledThreadPoolExecutor} that runs tasks with the MDC context of the scheduler */
+  public static class MDCAwareScheduledThreadPoolExecutor extends ScheduledThreadPoolExecutor {
+
+    public MDCAwareScheduledThreadPoolExecutor(int corePoolSize, ThreadFactory threadFactory) {
+      super(corePoolSize, threadFactory);
+    }
+
+    // execute() and submit() go through schedule()
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+      return super.schedule(withSubmitterContext(command), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+      final Map<String, String> submitterContext = MDC.getCopyOfContextMap();
+      return super.schedule(
+          () -> {
+            final Map<String, String> threadContext = setContext(submitterContext);
+            try {
+              return callable.call();
+            } finally {
+              setContext(threadContext);
+            }
+          },
+          delay,
+          unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(
+        Runnable command, long initialDelay, long period, TimeUnit unit) {
+      return super.scheduleAtFixedRate(withSubmitterContext(command), initialDelay, period, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(
+        Runnable command, long initialDelay, long delay, TimeUnit unit) {
+      return super.scheduleWithFixedDelay(withSubmitterContext(command), initialDelay, delay, unit);
+    }
+
+    private static Runnable withSubmitterContext(Runnable command) {
+      final Map<String, String> submitterContext = MDC.getCopyOfContextMap();
+      return () -> {
+        final Map<String, String> threadContext = setContext(submitterContext);
+        try {
+          command.run();
+        } finally {
+          setContext(threadContext);
+        }
+      };
+    }
+
+    /** Sets the MDC context of the current thread, returning the previous one */
+    private static Map<String, String> setContext(Map<String, String> context) {
+      final Map<String, String> previous = MDC.getCopyOfContextMap();
+      if (context != null && !context.isEmpty()) {
+        MDC.setContextMap(context);
+      } else {
+        MDC.clear();
+      }
+      return previous;
+    }
+  }
+
   @SuppressForbidden(reason = "class customizes ThreadPoolExecutor so it can be used instead")
   public static class MDCAwareThreadPoolExecutor extends ThreadPoolExecutor {
 
@@ -454,6 +536,49 @@ public class ExecutorUtil {
     else isServerPool.set(flag);
   }
 
+  /**
+   * Returns a task running {@code command} with the context of the current thread: its MDC, the
+   * values of the {@link InheritableThreadLocalProvider}s and whether it is a Solr server thread,
+   * like {@link MDCAwareThreadPoolExecutor} runs the tasks it is given. This is for tasks handed
+   * over by other means than an executor, e.g. a timer.
+   *
+   * <p>The returned task must run exactly once, on a thread without a context of its own, since the
+   * providers may hold on to resources until their values are cleaned.
+   */
+  public static Runnable withCurrentContext(Runnable command) {
+    final Map<String, String> submitterContext = MDC.getCopyOfContextMap();
+    final Boolean serverThread = isServerPool.get();
+    final List<InheritableThreadLocalProvider> providersCopy = providers;
+    final List<AtomicReference<Object>> ctx = new ArrayList<>(providersCopy.size());
+    for (InheritableThreadLocalProvider provider : providersCopy) {
+      AtomicReference<Object> reference = new AtomicReference<>();
+      ctx.add(reference);
+      provider.store(reference);
+    }
+    return () -> {
+      final Map<String, String> threadContext = MDC.getCopyOfContextMap();
+      final Boolean threadServerFlag = isServerPool.get();
+      setServerThreadFlag(serverThread);
+      for (int i = 0; i < providersCopy.size(); i++) providersCopy.get(i).set(ctx.get(i));
+      if (submitterContext != null && !submitterContext.isEmpty()) {
+        MDC.setContextMap(submitterContext);
+      } else {
+        MDC.clear();
+      }
+      try {
+        command.run();
+      } finally {
+        for (int i = 0; i < providersCopy.size(); i++) providersCopy.get(i).clean(ctx.get(i));
+        setServerThreadFlag(threadServerFlag);
+        if (threadContext != null && !threadContext.isEmpty()) {
+          MDC.setContextMap(threadContext);
+        } else {
+          MDC.clear();
+        }
+      }
+    };
+  }
+
   /**
    * Takes an executor and a list of Callables and executes them returning the results as a list.
    * The method waits for the return of every task even if one of them throws an exception. If any
@@ -18,6 +18,7 @@ package org.apache.solr.common.util;
 
 import static org.apache.solr.common.util.ByteArrayUtf8CharSequence.convertCharSeq;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -124,6 +125,7 @@ public class JavaBinCodec implements PushWriter {
   private boolean alreadyMarshalled;
   private boolean alreadyUnmarshalled;
   protected boolean readStringAsCharSeq = false;
+  protected boolean readDocsLazily = false;
 
   private boolean readMapAsNamedList =
       EnvUtils.getPropertyAsBool("solr.solrj.javabin.readMapAsNamedList", false);
@@ -138,6 +140,19 @@ public class JavaBinCodec implements PushWriter {
     return this;
   }
 
+  /**
+   * If true, {@link SolrDocument}s are read without decoding their field values, which are decoded
+   * from the input when accessed instead. Reading a document then only walks over its fields to
+   * index their positions, so that documents, or fields, which aren't used are never materialized.
+   *
+   * <p>The input is read fully into memory if it isn't already, and stays referenced for as long as
+   * any document read from it is.
+   */
+  public JavaBinCodec setReadDocsLazily(boolean flag) {
+    readDocsLazily = flag;
+    return this;
+  }
+
   /**
    * Use this to use this as a PushWriter. ensure that close() is called explicitly after use
    *
@@ -201,6 +216,10 @@ public class JavaBinCodec implements PushWriter {
 
   protected FastInputStream initRead(InputStream is) throws IOException {
     assert !alreadyUnmarshalled;
+    if (readDocsLazily && !isFullyBuffered(is)) {
+      // lazily read documents decode their fields from the buffer later on
+      return initRead(is.readAllBytes());
+    }
     FastInputStream dis = FastInputStream.wrap(is);
     return _init(dis);
   }
@@ -724,6 +743,9 @@ public class JavaBinCodec implements PushWriter {
   }
 
   public SolrDocument readSolrDocument(DataInputInputStream dis) throws IOException {
+    if (readDocsLazily && isFullyBuffered(dis)) {
+      return readLazySolrDocument((FastInputStream) dis);
+    }
     tagByte = dis.readByte();
     int size = readSize(dis);
     SolrDocument doc = new SolrDocument(CollectionUtil.newLinkedHashMap(size));
@@ -742,6 +764,135 @@ public class JavaBinCodec implements PushWriter {
     return doc;
   }
 
+  private static boolean isFullyBuffered(InputStream is) {
+    return is instanceof FastInputStream fis && fis.in == null;
+  }
+
+  private LazySolrDocument.Decoder lazyDocDecoder;
+
+  private SolrDocument readLazySolrDocument(FastInputStream fis) throws IOException {
+    if (lazyDocDecoder == null) {
+      // the decoder shares the extern strings, which must thus be registered while indexing
+      if (stringsList == null) stringsList = new ArrayList<>();
+      JavaBinCodec decoder = newLazyDocDecoder();
+      decoder.stringsList = stringsList;
+      decoder.externStringsRegistered = true;
+      lazyDocDecoder = new LazySolrDocument.Decoder(fis.getBuffer(), decoder);
+    }
+    tagByte = fis.readByte();
+    int size = readSize(fis);
+    String[] names = new String[size];
+    int[] offsets = new int[size];
+    int numFields = 0;
+    List<SolrDocument> children = null;
+    for (int i = 0; i < size; i++) {
+      tagByte = fis.readByte();
+      if (tagByte == SOLRDOC) { // a child document rather than a field name
+        if (children == null) children = new ArrayList<>();
+        children.add(readSolrDocument(fis));
+        continue;
+      }
+      names[numFields] = (String) readObject(fis);
+      offsets[numFields++] = fis.getPositionInBuffer();
+      skipVal(fis);
+    }
+    SolrDocument doc = new LazySolrDocument(names, offsets, numFields, lazyDocDecoder);
+    if (children != null) {
+      doc.addChildDocuments(children);
+    }
+    return doc;
+  }
+
+  /**
+   * Creates the codec that decodes the field values of documents read by {@link
+   * #setReadDocsLazily(boolean)}, which gets to share the extern strings of this one.
+   */
+  protected JavaBinCodec newLazyDocDecoder() {
+    JavaBinCodec decoder = new JavaBinCodec(resolver, stringCache);
+    decoder.readStringAsCharSeq = readStringAsCharSeq;
+    decoder.readMapAsNamedList = readMapAsNamedList;
+    return decoder;
+  }
+
+  /**
+   * Moves past the next value without materializing it, except for the types that are rare in
+   * documents, which are read.
+   */
+  protected void skipVal(DataInputInputStream dis) throws IOException {
+    skipVal(dis, dis.readByte());
+  }
+
+  private void skipVal(DataInputInputStream dis, byte tag) throws IOException {
+    switch (tag >>> 5) {
+      case STR >>> 5:
+        tagByte = tag;
+        skipFully(dis, readSize(dis));
+        return;
+      case SINT >>> 5:
+      case SLONG >>> 5:
+        if ((tag & 0x10) != 0) readVLong(dis);
+        return;
+      case ARR >>> 5:
+        {
+          tagByte = tag;
+          int sz = readSize(dis);
+          for (int i = 0; i < sz; i++) skipVal(dis);
+          return;
+        }
+      case ORDERED_MAP >>> 5:
+      case NAMED_LST >>> 5:
+        {
+          tagByte = tag;
+          int sz = readSize(dis);
+          for (int i = 0; i < sz; i++) {
+            skipVal(dis); // the name, extern strings get registered
+            skipVal(dis);
+          }
+          return;
+        }
+      case EXTERN_STRING >>> 5:
+        tagByte = tag;
+        readExternString(dis);
+        return;
+    }
+    switch (tag) {
+      case NULL:
+      case BOOL_TRUE:
+      case BOOL_FALSE:
+        return;
+      case BYTE:
+        skipFully(dis, 1);
+        return;
+      case SHORT:
+        skipFully(dis, 2);
+        return;
+      case INT:
+      case FLOAT:
+        skipFully(dis, 4);
+        return;
+      case DATE:
+      case LONG:
+      case DOUBLE:
+        skipFully(dis, 8);
+        return;
+      case BYTEARR:
+        skipFully(dis, readVInt(dis));
+        return;
+      case ITERATOR:
+        for (byte t = dis.readByte(); t != END; t = dis.readByte()) skipVal(dis, t);
+        return;
+      default:
+        tagByte = tag;
+        readObject(dis);
+    }
+  }
+
+  private static void skipFully(DataInputInputStream dis, int n) throws IOException {
+    if (dis.skipBytes(n) != n) {
+      throw new EOFException();
+    }
+  }
+
   public SolrDocumentList readSolrDocumentList(DataInputInputStream dis) throws IOException {
     SolrDocumentList solrDocs = new SolrDocumentList();
     @SuppressWarnings("unchecked")
@@ -1388,6 +1539,8 @@ public class JavaBinCodec implements PushWriter {
   private int stringsCount = 0;
   private Map<String, Integer> stringsMap;
   private List<CharSequence> stringsList;
+  // whether the extern strings were registered already, by the codec reading documents lazily
+  private boolean externStringsRegistered;
 
   public void writeExternString(CharSequence s) throws IOException {
     if (s == null) {
@@ -1412,6 +1565,7 @@ public class JavaBinCodec implements PushWriter {
       tagByte = fis.readByte();
       CharSequence s = readStr(fis, stringCache, false);
       if (s != null) s = s.toString();
+      if (externStringsRegistered) return s;
       if (stringsList == null) stringsList = new ArrayList<>();
       stringsList.add(s);
       return s;
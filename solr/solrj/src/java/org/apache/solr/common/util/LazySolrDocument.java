@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.common.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import org.apache.solr.common.SolrDocument;
+
+/**
+ * A {@link SolrDocument} read by {@link JavaBinCodec#setReadDocsLazily(boolean)}. It knows the
+ * names of its fields and where their values are in the input, and decodes a value when it is first
+ * accessed by name. Any other access, such as iterating or modifying the fields, decodes them all
+ * and turns this into a regular document.
+ */
+final class LazySolrDocument extends SolrDocument {
+
+  LazySolrDocument(String[] names, int[] offsets, int numFields, Decoder decoder) {
+    super(new LazyFields(names, offsets, numFields, decoder));
+  }
+
+  /** Serializes as a regular document, rather than with the input it is read from */
+  private Object writeReplace() {
+    SolrDocument doc = new SolrDocument(new LinkedHashMap<>(_fields));
+    if (hasChildDocuments()) {
+      doc.addChildDocuments(getChildDocuments());
+    }
+    return doc;
+  }
+
+  /** Decodes values from the input of a response, shared by all the documents read from it */
+  static final class Decoder {
+    private final byte[] buf;
+    private final JavaBinCodec codec;
+
+    Decoder(byte[] buf, JavaBinCodec codec) {
+      this.buf = buf;
+      this.codec = codec;
+    }
+
+    synchronized Object decode(int offset) {
+      try {
+        return codec.readVal(new FastInputStream(null, buf, offset, buf.length));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  private static final Object NOT_DECODED = new Object();
+
+  private static final class LazyFields extends AbstractMap<String, Object> {
+    private final Decoder decoder;
+    // null once materialized
+    private String[] names;
+    private int[] offsets;
+    private Object[] values;
+    private final int numFields;
+    private Map<String, Object> map;
+
+    LazyFields(String[] names, int[] offsets, int numFields, Decoder decoder) {
+      this.names = names;
+      this.offsets = offsets;
+      this.numFields = numFields;
+      this.decoder = decoder;
+      this.values = new Object[numFields];
+      Arrays.fill(values, NOT_DECODED);
+    }
+
+    private int indexOf(Object key) {
+      // like when setting the fields in order, the last value of a repeated field wins
+      for (int i = numFields - 1; i >= 0; i--) {
+        if (names[i].equals(key)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private Object valueAt(int i) {
+      Object v = values[i];
+      if (v == NOT_DECODED) {
+        v = values[i] = decoder.decode(offsets[i]);
+      }
+      return v;
+    }
+
+    private synchronized Map<String, Object> materialize() {
+      if (map == null) {
+        // the same map as JavaBinCodec.readSolrDocument() creates
+        Map<String, Object> m = CollectionUtil.newLinkedHashMap(numFields);
+        for (int i = 0; i < numFields; i++) {
+          m.put(names[i], valueAt(i));
+        }
+        map = m;
+        names = null;
+        offsets = null;
+        values = null;
+      }
+      return map;
+    }
+
+    @Override
+    public synchronized Object get(Object key) {
+      if (map != null) {
+        return map.get(key);
+      }
+      int i = indexOf(key);
+      return i < 0 ? null : valueAt(i);
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+      return map != null ? map.containsKey(key) : indexOf(key) >= 0;
+    }
+
+    @Override
+    public synchronized int size() {
+      if (map != null) {
+        return map.size();
+      }
+      int size = 0;
+      for (int i = 0; i < numFields; i++) {
+        if (indexOf(names[i]) == i) {
+          size++;
+        }
+      }
+      return size;
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+      return map != null ? map.isEmpty() : numFields == 0;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+      return materialize().put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+      return materialize().remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> m) {
+      materialize().putAll(m);
+    }
+
+    @Override
+    public synchronized void clear() {
+      if (map == null) {
+        map = new LinkedHashMap<>();
+        names = null;
+        offsets = null;
+        values = null;
+      } else {
+        map.clear();
+      }
+    }
+
+    @Override
+    public Set<String> keySet() {
+      return materialize().keySet();
+    }
+
+    @Override
+    public Collection<Object> values() {
+      return materialize().values();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+      return materialize().entrySet();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+      materialize().forEach(action);
+    }
+  }
+}
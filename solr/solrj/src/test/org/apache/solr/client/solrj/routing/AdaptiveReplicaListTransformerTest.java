@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.TimeSource;
+import org.junit.Test;
+
+@SolrTestCaseJ4.SuppressSSL // not useful / needed for this test
+public class AdaptiveReplicaListTransformerTest extends SolrTestCase {
+
+  private static final String FAST = "http://host1:8983/solr/c1_s1_r1";
+  private static final String SLOW = "http://host2:8983/solr/c1_s1_r2";
+  private static final String OTHER = "http://host3:8983/solr/c1_s1_r3";
+
+  private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private static void respond(
+      ReplicaLatencyStats stats, String url, long elapsedMs, boolean error) {
+    stats.requestStarted(url);
+    stats.requestFinished(url, elapsedMs * MS, error);
+  }
+
+  private static List<String> transform(ReplicaListTransformer transformer, String... urls) {
+    List<String> choices = new ArrayList<>(List.of(urls));
+    transformer.transform(choices);
+    return choices;
+  }
+
+  @Test
+  public void testPrefersFastReplica() {
+    ReplicaLatencyStats stats = new ReplicaLatencyStats(0.3, 60_000);
+    for (int i = 0; i < 10; i++) {
+      respond(stats, FAST, 5, false);
+      respond(stats, SLOW, 500, false);
+    }
+    ReplicaListTransformer transformer = new AdaptiveReplicaListTransformer(stats, 0.2, random());
+    for (int i = 0; i < 20; i++) {
+      assertEquals(List.of(FAST, SLOW), transform(transformer, SLOW, FAST));
+      assertEquals(List.of(FAST, SLOW), transform(transformer, FAST, SLOW));
+    }
+  }
+
+  @Test
+  public void testScoreIgnoresScheme() {
+    ReplicaLatencyStats stats = new ReplicaLatencyStats(0.3, 60_000);
+    respond(stats, FAST, 5, false);
+    assertEquals(stats.score(FAST), stats.score("https://host1:8983/solr/c1_s1_r1/"), 0);
+    assertEquals(stats.score(FAST), stats.score("host1:8983/solr/c1_s1_r1"), 0);
+  }
+
+  @Test
+  public void testInFlightRequestsPenalized() {
+    ReplicaLatencyStats stats = new ReplicaLatencyStats(0.3, 60_000);
+    respond(stats, FAST, 10, false);
+    respond(stats, SLOW, 15, false);
+    assertTrue(stats.score(FAST) < stats.score(SLOW));
+
+    // requests piling up on the faster replica make the other one preferable
+    stats.requestStarted(FAST);
+    assertTrue(stats.score(FAST) > stats.score(SLOW));
+    stats.requestAbandoned(FAST);
+    assertTrue(stats.score(FAST) < stats.score(SLOW));
+  }
+
+  @Test
+  public void testErrorsPenalized() {
+    ReplicaLatencyStats stats = new ReplicaLatencyStats(0.3, 60_000);
+    respond(stats, FAST, 5, false);
+    respond(stats, SLOW, 10, false);
+    assertTrue(stats.score(FAST) < stats.score(SLOW));
+    respond(stats, FAST, 5, true);
+    assertTrue(stats.score(FAST) > stats.score(SLOW));
+  }
+
+  @Test
+  public void testUnknownAndStaleReplicasProbed() {
+    ReplicaLatencyStats stats = new ReplicaLatencyStats(0.3, 60_000);
+    respond(stats, FAST, 5, false);
+    assertEquals(0, stats.score(OTHER), 0);
+    ReplicaListTransformer transformer = new AdaptiveReplicaListTransformer(stats, 0, random());
+    assertEquals(List.of(OTHER, FAST), transform(transformer, FAST, OTHER));
+
+    // while the probe is in flight, the replica is not preferred anymore
+    stats.requestStarted(OTHER);
+    assertEquals(List.of(FAST, OTHER), transform(transformer, FAST, OTHER));
+
+    ManualTimeSource timeSource = new ManualTimeSource();
+    ReplicaLatencyStats staleStats = new ReplicaLatencyStats(0.3, 1000, timeSource);
+    respond(staleStats, SLOW, 500, false);
+    timeSource.nanos += 999 * MS;
+    assertEquals(500 * MS, staleStats.score(SLOW), 0);
+    timeSource.nanos += 2 * MS;
+    assertEquals(0, staleStats.score(SLOW), 0);
+    // a new sample replaces the stale average
+    respond(staleStats, SLOW, 5, false);
+    assertEquals(5 * MS, staleStats.score(SLOW), 0);
+  }
+
+  @Test
+  public void testEvictionRacingRequests() throws Exception {
+    // every idle replica is stale right away, so any of them may be evicted at any time
+    ReplicaLatencyStats stats = new ReplicaLatencyStats(0.3, 0);
+    int numUrls = ReplicaLatencyStats.MAX_TRACKED + 64;
+    int numThreads = 4;
+    CyclicBarrier barrier = new CyclicBarrier(numThreads);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < numThreads; t++) {
+      final int offset = t;
+      Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  barrier.await();
+                } catch (Exception e) {
+                  throw new RuntimeException(e);
+                }
+                for (int i = 0; i < 20_000; i++) {
+                  // threads overlap on the same replicas
+                  String url = "http://host" + ((i + offset) % numUrls) + ":8983/solr/c1_s1_r1";
+                  stats.requestStarted(url);
+                  if (i % 2 == 0) {
+                    stats.requestFinished(url, MS, false);
+                  } else {
+                    stats.requestAbandoned(url);
+                  }
+                }
+              });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (int i = 0; i < numUrls; i++) {
+      assertEquals(0, stats.inFlight("http://host" + i + ":8983/solr/c1_s1_r1"));
+    }
+  }
+
+  @Test
+  public void testJitterSpreadsLoadOverEqualReplicas() {
+    ReplicaLatencyStats stats = new ReplicaLatencyStats(0.3, 60_000);
+    respond(stats, FAST, 10, false);
+    respond(stats, OTHER, 10, false);
+    ReplicaListTransformer transformer = new AdaptiveReplicaListTransformer(stats, 0.2, random());
+    int fastFirst = 0;
+    for (int i = 0; i < 200; i++) {
+      if (transform(transformer, FAST, OTHER).get(0).equals(FAST)) {
+        fastFirst++;
+      }
+    }
+    assertTrue(fastFirst > 0 && fastFirst < 200);
+  }
+
+  @Test
+  public void testFactoryConfig() {
+    NamedList<Object> config = new NamedList<>();
+    config.add("default", true);
+    config.add(AdaptiveReplicaListTransformerFactory.ALPHA, 1.0);
+    config.add(AdaptiveReplicaListTransformerFactory.STALE_AFTER_MS, 60000);
+    config.add(AdaptiveReplicaListTransformerFactory.JITTER, "0");
+    AdaptiveReplicaListTransformerFactory factory =
+        new AdaptiveReplicaListTransformerFactory(config);
+    ReplicaListTransformer transformer =
+        factory.getInstance(null, new ModifiableSolrParams(), null);
+
+    // with alpha=1 only the last sample counts
+    respond(factory.getStats(), FAST, 500, false);
+    respond(factory.getStats(), SLOW, 10, false);
+    respond(factory.getStats(), FAST, 5, false);
+    assertEquals(List.of(FAST, SLOW), transform(transformer, SLOW, FAST));
+
+    expectThrows(
+        IllegalArgumentException.class,
+        () -> new AdaptiveReplicaListTransformerFactory(0, 1000, 0.2));
+    expectThrows(
+        IllegalArgumentException.class,
+        () -> factory.getInstance("foo", new ModifiableSolrParams(), null));
+  }
+
+  private static class ManualTimeSource extends TimeSource {
+    long nanos;
+
+    @Override
+    public long getTimeNs() {
+      return nanos;
+    }
+
+    @Override
+    public long getEpochTimeNs() {
+      return nanos;
+    }
+
+    @Override
+    public long[] getTimeAndEpochNs() {
+      return new long[] {nanos, nanos};
+    }
+
+    @Override
+    public void sleep(long ms) {
+      nanos += ms * MS;
+    }
+
+    @Override
+    public long convertDelay(TimeUnit fromUnit, long value, TimeUnit toUnit) {
+      return toUnit.convert(value, fromUnit);
+    }
+  }
+}
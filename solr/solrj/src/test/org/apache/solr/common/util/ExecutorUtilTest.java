@@ -19,15 +19,19 @@ package org.apache.solr.common.util;
 import com.carrotsearch.randomizedtesting.annotations.Timeout;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.solr.SolrTestCase;
 import org.apache.solr.logging.MDCLoggingContext;
@@ -276,6 +280,92 @@ public class ExecutorUtilTest extends SolrTestCase {
     }
   }
 
+  @Test
+  public void testMDCAwareScheduledExecutor() throws Exception {
+    ScheduledExecutorService executor =
+        ExecutorUtil.newMDCAwareSingleThreadScheduledExecutor(new SolrNamedThreadFactory("test"));
+    try {
+      String core = "id_" + random().nextLong();
+      MDC.put("core", core);
+      ScheduledFuture<String> scheduled =
+          executor.schedule(() -> MDC.get("core"), 10, TimeUnit.MILLISECONDS);
+      AtomicReference<String> ran = new AtomicReference<>();
+      Future<?> submitted = executor.submit(() -> ran.set(MDC.get("core")));
+      MDC.remove("core");
+
+      assertEquals(core, scheduled.get());
+      submitted.get();
+      assertEquals(core, ran.get());
+      // the context doesn't leak to tasks scheduled without one
+      assertNull(executor.schedule(() -> MDC.get("core"), 0, TimeUnit.MILLISECONDS).get());
+    } finally {
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+    }
+  }
+
+  private static final ThreadLocal<String> requestContext = new ThreadLocal<>();
+
+  private static class RequestContextProvider
+      implements ExecutorUtil.InheritableThreadLocalProvider {
+    @Override
+    public void store(AtomicReference<Object> ctx) {
+      ctx.set(requestContext.get());
+    }
+
+    @Override
+    public void set(AtomicReference<Object> ctx) {
+      requestContext.set((String) ctx.get());
+    }
+
+    @Override
+    public void clean(AtomicReference<Object> ctx) {
+      requestContext.remove();
+    }
+  }
+
+  @Test
+  public void testWithCurrentContext() throws Exception {
+    ExecutorUtil.addThreadLocalProvider(new RequestContextProvider());
+    String request = "request_" + random().nextLong();
+    List<Object> seen = new ArrayList<>();
+    Runnable task;
+    try {
+      requestContext.set(request);
+      ExecutorUtil.setServerThreadFlag(true);
+      MDC.put("core", "core1");
+      task =
+          ExecutorUtil.withCurrentContext(
+              () -> {
+                seen.add(requestContext.get());
+                seen.add(ExecutorUtil.isSolrServerThread());
+                seen.add(MDC.get("core"));
+              });
+    } finally {
+      requestContext.remove();
+      ExecutorUtil.setServerThreadFlag(null);
+      MDC.remove("core");
+    }
+
+    List<Object> after = new ArrayList<>();
+    Thread thread =
+        new Thread(
+            () -> {
+              task.run();
+              after.add(requestContext.get());
+              after.add(ExecutorUtil.isSolrServerThread());
+              after.add(MDC.get("core"));
+            });
+    try {
+      thread.start();
+      thread.join();
+    } finally {
+      ExecutorUtil.resetThreadLocalProviders();
+    }
+    assertEquals(List.of(request, true, "core1"), seen);
+    // the thread gets its own context back
+    assertEquals(Arrays.asList(null, false, null), after);
+  }
+
   @Test
   public void mdcAwarePoolToStringIncludesPoolName() {
     ExecutorService service = ExecutorUtil.newMDCAwareCachedThreadPool("test-async-task");
@@ -464,6 +464,63 @@ public class TestJavaBinCodec extends SolrTestCaseJ4 {
     assertNull(grandChildDocuments.get(0).getChildDocuments());
   }
 
+  @Test
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public void testReadDocsLazily() throws IOException {
+    SolrDocument doc = new SolrDocument();
+    doc.addField("id", "1");
+    doc.addField("multi", List.of("a", "b"));
+    doc.addField("all", generateAllDataTypes());
+    SolrDocumentList docs = new SolrDocumentList();
+    docs.setNumFound(2);
+    docs.add(doc);
+    docs.add(generateSolrDocumentWithChildDocs());
+    NamedList<Object> rsp = new NamedList<>();
+    rsp.add("response", docs);
+    // uses the extern strings first written with the documents
+    SimpleOrderedMap<Object> after = new SimpleOrderedMap<>();
+    after.add("multi", "x");
+    after.add("subject", "y");
+    rsp.add("after", after);
+
+    byte[] bytes = getBytes(rsp);
+    SolrDocumentList eagerDocs =
+        (SolrDocumentList) ((NamedList<?>) getObject(bytes)).get("response");
+    NamedList<?> lazy;
+    try (JavaBinCodec jbc = new JavaBinCodec().setReadDocsLazily(true)) {
+      lazy = (NamedList<?>) jbc.unmarshal(new ByteArrayInputStream(bytes));
+    }
+    assertEquals(after, lazy.get("after"));
+    SolrDocumentList lazyDocs = (SolrDocumentList) lazy.get("response");
+    assertEquals(2, lazyDocs.getNumFound());
+    assertEquals(2, lazyDocs.size());
+
+    SolrDocument lazyDoc = lazyDocs.get(0);
+    assertTrue(lazyDoc instanceof LazySolrDocument);
+    assertEquals(3, lazyDoc.size());
+    assertEquals("1", lazyDoc.getFieldValue("id"));
+    assertNull(lazyDoc.getFieldValue("missing"));
+    assertEquals(List.of("a", "b"), lazyDoc.getFieldValue("multi"));
+    compareObjects(
+        (List) lazyDoc.getFieldValue("all"), (List) eagerDocs.get(0).getFieldValue("all"));
+    assertEquals(List.of("id", "multi", "all"), new ArrayList<>(lazyDoc.getFieldNames()));
+
+    assertTrue(compareSolrDocument(eagerDocs.get(1), lazyDocs.get(1)));
+    assertEquals(
+        "3",
+        lazyDocs.get(1).getChildDocuments().get(0).getChildDocuments().get(0).getFieldValue("id"));
+
+    // modifications apply to the decoded fields
+    SolrDocument modified = lazyDocs.get(1);
+    modified.setField("id", "2");
+    modified.removeFields("subject");
+    assertEquals(Map.of("id", "2"), new HashMap<>(modified));
+
+    // serializes as a regular document
+    SolrDocument copy = (SolrDocument) serializeAndDeserialize(lazyDoc);
+    assertEquals("1", copy.getFieldValue("id"));
+  }
+
   @Test
   public void testStringCaching() throws Exception {
     Map<String, Object> m = Map.of("key1", "val1", "key2", "val2");